@@ -4,6 +4,8 @@ import java.io.PrintStream;
 
 import org.netlib.blas.BLAS;
 
+import gov.lbl.superlu.Dlu_slu_mt_util.order_criterion_t;
+
 public class Dlu {
 
 	public static final PrintStream stdout = System.out;
@@ -24,13 +26,130 @@ public class Dlu {
 	public static boolean CHK_NZCNT = false;
 	public static boolean DOMAINS = false;
 	public static boolean CHK_EXPAND = false;
-	public static boolean POSTORDER = false;
 	public static boolean CHK_PIVOT = false;
 	public static boolean CHK_DFS = false;
 	public static boolean DOPRINT = false;
 	public static boolean CHK_PRUNE = false;
+	/* With CHK_SCHED set, the schedulers check that each panel is taken
+	   once, and only after its kids were taken, all of them done but for
+	   one still busy when the panel is pipelined, and that its busy
+	   descendants are those marked by pxgstrf_mark_busy_descends(); a
+	   violation is thrown as an IllegalStateException from pdgstrf().
+	   The checks serialize the schedulers, and so hide some races. */
+	public static boolean CHK_SCHED = false;
 	public static boolean COMPRESS_LUSUP = false;
 	public static boolean TIMING = false;
+	public static boolean OFFHEAP_LU = false;
+	public static boolean COMPACT_LU = false;
+	public static boolean OOC_LU = false;
+
+	/* Factors with more nonzeros than this are moved off-heap
+	   when OFFHEAP_LU is set, once the factorization is done. This
+	   takes them out of the garbage collected heap for their solves;
+	   it does not lower the peak heap of the factorization, which
+	   still builds them in Java arrays, nor lift the 2^31 entry
+	   limit of those arrays (see Dlu_lustore). */
+	public static long OFFHEAP_THRESHOLD = 1L << 24;
+
+	/* With POSTORDER set, the task queue of the factorization is kept in
+	   postorder of the etree (columns in increasing order) rather than
+	   first-in first-out, if the etree is postordered (SymmetricMode = NO). */
+	public static boolean POSTORDER = false;
+	/* With CPATH_PRIORITY set, the task queue is ordered by the estimated
+	   work on the path from each task to the root of the etree, heaviest
+	   first; this takes precedence over POSTORDER. */
+	public static boolean CPATH_PRIORITY = false;
+	/* With WORK_STEALING set, each thread takes its panels from a deque of
+	   its own, seeded with the relaxed supernodes and domains of a block of
+	   the etree, and steals from the deques of the others only when its
+	   own is empty; the shared task queue is not used. */
+	public static boolean WORK_STEALING = false;
+	/* With AUTOTUNE set, pdgssv() called without a tuning chooses
+	   panel_size, relax and maxsuper with sp_autotune(), from the plans of
+	   a leading subproblem of at most AUTOTUNE_SAMPLE columns; its cost
+	   model assumes a cache of AUTOTUNE_CACHE_BYTES per thread. */
+	public static boolean AUTOTUNE = false;
+	public static int AUTOTUNE_SAMPLE = 20000;
+	public static int AUTOTUNE_CACHE_BYTES = 1 << 18;
+
+	/* With PIPELINE_SYMBOLIC set, sp_colorder() computes the column
+	   counts of H on another thread, and pdgstrf() begins with the
+	   relaxed supernodes at the leaves of the etree, which need only the
+	   etree and the structure of A, while the counts and the layout of
+	   the upper supernodes are still being computed. */
+	public static boolean PIPELINE_SYMBOLIC = false;
+
+	/* With AUTO_NPROCS set, pdgssv() uses only as many of its nprocs
+	   threads as sp_auto_nprocs() predicts useful from the parallelism
+	   of the etree: the fewest within AUTO_NPROCS_SLACK of the best
+	   modelled time. */
+	public static boolean AUTO_NPROCS = false;
+	public static double AUTO_NPROCS_SLACK = 0.05;
+	/* With PARK_IDLE set, a thread that got no panel from the scheduler
+	   PARK_SPINS times in a row waits, for at most PARK_MILLIS, until a
+	   panel is queued, instead of spinning on the scheduler. */
+	public static boolean PARK_IDLE = false;
+	public static int PARK_SPINS = 64;
+	public static long PARK_MILLIS = 1;
+	/* With SHARED_POOL set, pdgstrf() runs its panels on the workers of
+	   the process-wide pool of Dlu_pdgspool, POOL_NPROCS of them, instead
+	   of starting nprocs threads of its own. A worker leaves a
+	   factorization for another after POOL_QUANTUM ns, and the pool
+	   admits factorizations while their storage, as estimated by
+	   pdgstrf_explain(), stays below POOL_BYTES (0: no limit). */
+	public static boolean SHARED_POOL = false;
+	public static int POOL_NPROCS = Runtime.getRuntime().availableProcessors();
+	public static double POOL_QUANTUM = 2e6;
+	public static long POOL_BYTES = Runtime.getRuntime().maxMemory() / 2;
+
+	/* With SEQUENTIAL set, pdgstrf() factors with the sequential engine
+	   (pdgstrf_sequential), without any locks or scheduling, when one
+	   process is asked for or A has at most SEQUENTIAL_NCOL columns:
+	   on one process it is as fast as pdgstrf_thread, and on a small A
+	   it saves starting the threads and their waits for panels (see
+	   Dlu_sequential_bench). */
+	public static boolean SEQUENTIAL = true;
+	public static int SEQUENTIAL_NCOL = 1000;
+
+	/* With OOC_LU set, at most about this many bytes of the values of L
+	   and U stay in memory while pdgstrf runs, the rest being paged to
+	   files in OOC_DIR (default java.io.tmpdir); a factor larger than
+	   this is left on disk. */
+	public static long OOC_BUDGET = 1L << 30;
+	public static String OOC_DIR = null;
+	/* Supernodes read ahead by the out-of-core solve. */
+	public static int OOC_WINDOW = 8;
+
+	/* Threads used by get_perm_c to form the ordering graphs, and the
+	   density ratio above which rows are left out of them (0: none). */
+	public static int ORDERING_NPROCS = Runtime.getRuntime().availableProcessors();
+	public static double DENSE_ROW_RATIO = 0;
+	/* Nested-dissection ordering (permc_spec 4, 5): subgraphs with at
+	   most this many vertices are ordered by minimum degree. */
+	public static int ND_LEAF_SIZE = 128;
+	/* AMD ordering (permc_spec 6): nodes of degree above
+	   max(16, AMD_DENSE*sqrt(n)) are ordered last (none if negative),
+	   and aggressive absorption is used if AMD_AGGRESSIVE is set. */
+	public static double AMD_DENSE = 10.0;
+	public static boolean AMD_AGGRESSIVE = true;
+	/* Automatic ordering (permc_spec 7): the candidate permc_spec values,
+	   run concurrently; the criterion that picks among them; and the
+	   time in milliseconds after which unfinished candidates are
+	   cancelled (0: none). */
+	public static int AUTO_ORDER_SPECS[] = { 1, 2, 3, 4, 5, 6 };
+	public static order_criterion_t AUTO_ORDER_CRITERION = order_criterion_t.FLOPS;
+	public static long AUTO_ORDER_DEADLINE = 30000;
+	/* Tree domains (DOMAINS): an etree subtree is made a domain, factored
+	   by one thread, once it weighs at most this fraction of the average
+	   load of a thread. */
+	public static double DOMAIN_IMBALANCE = 0.25;
+	/* With ZFD_PERM set, pdgssv permutes and scales A to a large diagonal
+	   (dldperm, job 5) and factors it with this diagonal pivoting
+	   threshold. */
+	public static double ZFD_PIVOT_THRESH = 0.1;
+	/* Block triangular form (pdgssv_btf): diagonal blocks with at most
+	   this many columns are factored as dense matrices. */
+	public static int BTF_DENSE = 8;
 
 	public static void printf(String format, Object... args) {
 		System.out.printf(format, args);
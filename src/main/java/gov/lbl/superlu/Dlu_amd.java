@@ -0,0 +1,692 @@
+/*
+ * Approximate minimum degree ordering of a symmetric graph.
+ *
+ * Purpose
+ * =======
+ *
+ * amd_order() orders the graph of A'+A (symmetric, no diagonal, as formed
+ * by at_plus_a_par()) by the approximate minimum degree algorithm of
+ * Amestoy, Davis and Duff (SIAM J. Matrix Anal. Appl. 17, 1996; the AMD
+ * package, ACM TOMS 30, 2004). amd_2() below follows AMD_2 of that package:
+ *
+ *    o the graph is held as a quotient graph of elements and
+ *      supervariables in one workspace, compressed in place when full;
+ *    o degrees are approximate (upper bounds from |Le \ Lme|), which
+ *      avoids the exact degree updates of MMD (Mmdupd in genmmd);
+ *    o supervariables are found by hashing, and variables covered by the
+ *      new element are eliminated with it (mass elimination);
+ *    o with Dlu.AMD_AGGRESSIVE set, elements whose pattern lies in the
+ *      new element are absorbed into it (aggressive absorption);
+ *    o nodes of degree above max(16, Dlu.AMD_DENSE * sqrt(n)) are removed
+ *      before the ordering and numbered last (none if AMD_DENSE < 0).
+ *
+ * The assembly tree is postordered, placing the largest child of each
+ * node last. If the calling thread is interrupted, amd_order() stops with
+ * a CancellationException.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.util.concurrent.CancellationException;
+
+import static gov.lbl.superlu.Dlu.AMD_AGGRESSIVE;
+import static gov.lbl.superlu.Dlu.AMD_DENSE;
+
+
+public class Dlu_amd {
+
+	private static final int EMPTY = (-1);
+
+	static int FLIP(int i) { return -i - 2; }
+
+	public static
+	void
+	amd_order(int n, int colptr[], int rowind[], int perm_c[])
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * AMD_ORDER computes an approximate minimum degree ordering of the
+	 * symmetric graph (colptr, rowind) of n vertices, without diagonal
+	 * entries.
+	 *
+	 * perm_c  (output) int*
+	 *	   perm_c[i] = j means vertex i is numbered j.
+	 *
+	 */
+	{
+	    int nz = colptr[n], iwlen = nz + nz / 5 + n, j;
+	    int Pe[] = new int[n], Len[] = new int[n], Iw[] = new int[iwlen];
+	    int Nv[] = new int[n], Next[] = new int[n], Last[] = new int[n];
+	    int Head[] = new int[n], Elen[] = new int[n], Degree[] = new int[n];
+	    int W[] = new int[n];
+
+	    if ( n == 0 ) return;
+	    System.arraycopy(rowind, 0, Iw, 0, nz);
+	    for (j = 0; j < n; ++j) {
+		Pe[j] = colptr[j];
+		Len[j] = colptr[j+1] - colptr[j];
+	    }
+
+	    amd_2(n, Pe, Iw, Len, iwlen, nz, Nv, Next, Last, Head, Elen,
+		  Degree, W, AMD_DENSE, AMD_AGGRESSIVE);
+
+	    /* Next[i] is the position of i in the ordering. */
+	    System.arraycopy(Next, 0, perm_c, 0, n);
+	}
+
+	static
+	int clear_flag(int wflg, int wbig, int W[], int n)
+	{
+	    int x;
+
+	    if ( wflg < 2 || wflg >= wbig ) {
+		for (x = 0; x < n; x++)
+		    if ( W[x] != 0 ) W[x] = 1;
+		wflg = 2;
+	    }
+	    return wflg;
+	}
+
+	/*
+	 * On input, Iw[Pe[i] .. Pe[i]+Len[i]-1] is the adjacency list of i,
+	 * and Iw[pfree .. iwlen-1] is free. On output, Last[k] = i and
+	 * Next[i] = k mean that i is the k-th pivot.
+	 */
+	static
+	void
+	amd_2(int n, int Pe[], int Iw[], int Len[], int iwlen, int pfree,
+	      int Nv[], int Next[], int Last[], int Head[], int Elen[],
+	      int Degree[], int W[], double alpha, boolean aggressive)
+	{
+	    int deg, degme, dext, lemax, e, elenme, eln, i, ilast, inext, j,
+		jlast, jnext, k, knt1, knt2, knt3, lenj, ln, me = EMPTY, mindeg,
+		nel, nleft, nvi, nvj, nvpiv, slenme, wbig, we, wflg, wnvi,
+		dense;
+	    boolean ok;
+	    long hash;
+	    int p, p1, p2, p3, p4, pdst, pend, pj, pme, pme1, pme2, pn, psrc;
+
+	    /* ----------------------------------------------------------------
+	       initializations
+	       ---------------------------------------------------------------- */
+	    lemax = 0;
+	    mindeg = 0;
+	    nel = 0;
+
+	    if ( alpha < 0 ) dense = n - 2;
+	    else dense = (int) (alpha * Math.sqrt((double) n));
+	    dense = Math.max(16, dense);
+	    dense = Math.min(n, dense);
+
+	    for (i = 0; i < n; i++) {
+		Last[i] = EMPTY;
+		Head[i] = EMPTY;
+		Next[i] = EMPTY;
+		Nv[i] = 1;
+		W[i] = 1;
+		Elen[i] = 0;
+		Degree[i] = Len[i];
+	    }
+
+	    wbig = Integer.MAX_VALUE - n;
+	    wflg = clear_flag(0, wbig, W, n);
+
+	    /* ----------------------------------------------------------------
+	       initialize degree lists and eliminate dense and empty rows
+	       ---------------------------------------------------------------- */
+	    for (i = 0; i < n; i++) {
+		deg = Degree[i];
+		if ( deg == 0 ) {
+		    /* empty row: eliminate it now as an element */
+		    Elen[i] = FLIP(1);
+		    nel++;
+		    Pe[i] = EMPTY;
+		    W[i] = 0;
+		} else if ( deg > dense ) {
+		    /* dense row: absorbed into a dummy root, ordered last */
+		    Nv[i] = 0;
+		    Elen[i] = EMPTY;
+		    nel++;
+		    Pe[i] = EMPTY;
+		} else {
+		    inext = Head[deg];
+		    if ( inext != EMPTY ) Last[inext] = i;
+		    Next[i] = inext;
+		    Head[deg] = i;
+		}
+	    }
+
+	    /* ----------------------------------------------------------------
+	       while (selecting pivots) do
+	       ---------------------------------------------------------------- */
+	    while ( nel < n ) {
+
+		if ( Thread.currentThread().isInterrupted() )
+		    throw new CancellationException("AMD ordering interrupted");
+
+		/* get pivot of minimum degree */
+		for (deg = mindeg; deg < n; deg++) {
+		    me = Head[deg];
+		    if ( me != EMPTY ) break;
+		}
+		mindeg = deg;
+
+		/* remove chosen variable from link list */
+		inext = Next[me];
+		if ( inext != EMPTY ) Last[inext] = EMPTY;
+		Head[deg] = inext;
+
+		elenme = Elen[me];
+		nvpiv = Nv[me];
+		nel += nvpiv;
+
+		/* ------------------------------------------------------------
+		   construct new element
+		   ------------------------------------------------------------ */
+		Nv[me] = -nvpiv;
+		degme = 0;
+
+		if ( elenme == 0 ) {
+		    /* construct the new element in place */
+		    pme1 = Pe[me];
+		    pme2 = pme1 - 1;
+		    for (p = pme1; p <= pme1 + Len[me] - 1; p++) {
+			i = Iw[p];
+			nvi = Nv[i];
+			if ( nvi > 0 ) {
+			    degme += nvi;
+			    Nv[i] = -nvi;
+			    Iw[++pme2] = i;
+			    /* remove variable i from degree list */
+			    ilast = Last[i];
+			    inext = Next[i];
+			    if ( inext != EMPTY ) Last[inext] = ilast;
+			    if ( ilast != EMPTY ) Next[ilast] = inext;
+			    else Head[Degree[i]] = inext;
+			}
+		    }
+		} else {
+		    /* construct the new element in empty space, Iw[pfree ...] */
+		    p = Pe[me];
+		    pme1 = pfree;
+		    slenme = Len[me] - elenme;
+
+		    for (knt1 = 1; knt1 <= elenme + 1; knt1++) {
+			if ( knt1 > elenme ) {
+			    /* search the supervariables in me */
+			    e = me;
+			    pj = p;
+			    ln = slenme;
+			} else {
+			    /* search the elements in me */
+			    e = Iw[p++];
+			    pj = Pe[e];
+			    ln = Len[e];
+			}
+
+			for (knt2 = 1; knt2 <= ln; knt2++) {
+			    i = Iw[pj++];
+			    nvi = Nv[i];
+			    if ( nvi > 0 ) {
+				if ( pfree >= iwlen ) {
+				    /* prepare for compressing Iw by adjusting
+				       pointers and lengths so that the lists
+				       being searched in the inner and outer
+				       loops contain only the remaining entries */
+				    Pe[me] = p;
+				    Len[me] -= knt1;
+				    if ( Len[me] == 0 ) Pe[me] = EMPTY;
+				    Pe[e] = pj;
+				    Len[e] = ln - knt2;
+				    if ( Len[e] == 0 ) Pe[e] = EMPTY;
+
+				    /* store first entry of each object in Pe,
+				       and FLIP the first entry in Iw */
+				    for (j = 0; j < n; j++) {
+					pn = Pe[j];
+					if ( pn >= 0 ) {
+					    Pe[j] = Iw[pn];
+					    Iw[pn] = FLIP(j);
+					}
+				    }
+
+				    /* compress */
+				    psrc = 0;
+				    pdst = 0;
+				    pend = pme1 - 1;
+				    while ( psrc <= pend ) {
+					j = FLIP(Iw[psrc++]);
+					if ( j >= 0 ) {
+					    Iw[pdst] = Pe[j];
+					    Pe[j] = pdst++;
+					    lenj = Len[j];
+					    for (knt3 = 0; knt3 <= lenj - 2; knt3++)
+						Iw[pdst++] = Iw[psrc++];
+					}
+				    }
+
+				    /* move the new partially-constructed element */
+				    p1 = pdst;
+				    for (psrc = pme1; psrc <= pfree - 1; psrc++)
+					Iw[pdst++] = Iw[psrc];
+				    pme1 = p1;
+				    pfree = pdst;
+				    pj = Pe[e];
+				    p = Pe[me];
+				}
+
+				/* i is a principal variable not yet placed in
+				   Lme; store i in the new list */
+				degme += nvi;
+				Nv[i] = -nvi;
+				Iw[pfree++] = i;
+
+				/* remove variable i from degree link list */
+				ilast = Last[i];
+				inext = Next[i];
+				if ( inext != EMPTY ) Last[inext] = ilast;
+				if ( ilast != EMPTY ) Next[ilast] = inext;
+				else Head[Degree[i]] = inext;
+			    }
+			}
+
+			if ( e != me ) {
+			    /* element e is absorbed into the new element me */
+			    Pe[e] = FLIP(me);
+			    W[e] = 0;
+			}
+		    }
+		    pme2 = pfree - 1;
+		}
+
+		/* me has now been converted into an element in Iw[pme1..pme2] */
+		Degree[me] = degme;
+		Pe[me] = pme1;
+		Len[me] = pme2 - pme1 + 1;
+		Elen[me] = FLIP(nvpiv + degme);
+
+		wflg = clear_flag(wflg, wbig, W, n);
+
+		/* ------------------------------------------------------------
+		   compute (W[e] - wflg) = |Le \ Lme| for all elements
+		   ------------------------------------------------------------ */
+		for (pme = pme1; pme <= pme2; pme++) {
+		    i = Iw[pme];
+		    eln = Elen[i];
+		    if ( eln > 0 ) {
+			/* Nv[i] has been negated to denote i in Lme */
+			nvi = -Nv[i];
+			wnvi = wflg - nvi;
+			for (p = Pe[i]; p <= Pe[i] + eln - 1; p++) {
+			    e = Iw[p];
+			    we = W[e];
+			    if ( we >= wflg ) {
+				/* unabsorbed element e has been seen in this loop */
+				we -= nvi;
+			    } else if ( we != 0 ) {
+				/* e is an unabsorbed element, first time seen */
+				we = Degree[e] + wnvi;
+			    }
+			    W[e] = we;
+			}
+		    }
+		}
+
+		/* ------------------------------------------------------------
+		   degree update and element absorption
+		   ------------------------------------------------------------ */
+		for (pme = pme1; pme <= pme2; pme++) {
+		    i = Iw[pme];
+		    p1 = Pe[i];
+		    p2 = p1 + Elen[i] - 1;
+		    pn = p1;
+		    hash = 0;
+		    deg = 0;
+
+		    /* scan the element list associated with supervariable i */
+		    for (p = p1; p <= p2; p++) {
+			e = Iw[p];
+			we = W[e];
+			if ( we != 0 ) {
+			    /* e is an unabsorbed element; dext = |Le \ Lme| */
+			    dext = we - wflg;
+			    if ( dext > 0 || !aggressive ) {
+				deg += dext;
+				Iw[pn++] = e;
+				hash += e;
+			    } else {
+				/* external degree of e is zero, absorb e into me */
+				Pe[e] = FLIP(me);
+				W[e] = 0;
+			    }
+			}
+		    }
+
+		    /* count the number of elements in i (including me) */
+		    Elen[i] = pn - p1 + 1;
+
+		    /* scan the supervariables in the list associated with i */
+		    p3 = pn;
+		    p4 = p1 + Len[i];
+		    for (p = p2 + 1; p < p4; p++) {
+			j = Iw[p];
+			nvj = Nv[j];
+			if ( nvj > 0 ) {
+			    /* j is unabsorbed, and not in Lme */
+			    deg += nvj;
+			    Iw[pn++] = j;
+			    hash += j;
+			}
+		    }
+
+		    if ( Elen[i] == 1 && p3 == pn ) {
+			/* mass elimination: i is adjacent to me only */
+			Pe[i] = FLIP(me);
+			nvi = -Nv[i];
+			degme -= nvi;
+			nvpiv += nvi;
+			nel += nvi;
+			Nv[i] = 0;
+			Elen[i] = EMPTY;
+		    } else {
+			/* update the upper-bound degree of i */
+			Degree[i] = Math.min(Degree[i], deg);
+
+			/* add me to the front of the list of i */
+			Iw[pn] = Iw[p3];
+			Iw[p3] = Iw[p1];
+			Iw[p1] = me;
+			Len[i] = pn - p1 + 1;
+
+			/* place in hash bucket; the hash key is kept in Last[i] */
+			hash = hash % n;
+			j = Head[(int) hash];
+			if ( j <= EMPTY ) {
+			    /* degree list is empty, hash head is FLIP(j) */
+			    Next[i] = FLIP(j);
+			    Head[(int) hash] = FLIP(i);
+			} else {
+			    /* degree list is not empty, Last[Head[hash]] is
+			       the hash head */
+			    Next[i] = Last[j];
+			    Last[j] = i;
+			}
+			Last[i] = (int) hash;
+		    }
+		}
+
+		Degree[me] = degme;
+
+		/* clear the counter array W[] by incrementing wflg */
+		lemax = Math.max(lemax, degme);
+		wflg += lemax;
+		wflg = clear_flag(wflg, wbig, W, n);
+
+		/* ------------------------------------------------------------
+		   supervariable detection
+		   ------------------------------------------------------------ */
+		for (pme = pme1; pme <= pme2; pme++) {
+		    i = Iw[pme];
+		    if ( Nv[i] < 0 ) {
+			/* i is a principal variable in Lme */
+			hash = Last[i];
+			j = Head[(int) hash];
+			if ( j == EMPTY ) {
+			    /* hash bucket and degree list are both empty */
+			    i = EMPTY;
+			} else if ( j < EMPTY ) {
+			    /* degree list is empty */
+			    i = FLIP(j);
+			    Head[(int) hash] = EMPTY;
+			} else {
+			    /* degree list is not empty, restore Last[j] */
+			    i = Last[j];
+			    Last[j] = EMPTY;
+			}
+
+			while ( i != EMPTY && Next[i] != EMPTY ) {
+			    /* compare i with all j that follow it in the bucket */
+			    ln = Len[i];
+			    eln = Elen[i];
+			    /* do not flag the first element in the list (me) */
+			    for (p = Pe[i] + 1; p <= Pe[i] + ln - 1; p++)
+				W[Iw[p]] = wflg;
+
+			    jlast = i;
+			    j = Next[i];
+			    while ( j != EMPTY ) {
+				ok = (Len[j] == ln) && (Elen[j] == eln);
+				for (p = Pe[j] + 1; ok && p <= Pe[j] + ln - 1; p++)
+				    if ( W[Iw[p]] != wflg ) ok = false;
+				if ( ok ) {
+				    /* j can be absorbed into i */
+				    Pe[j] = FLIP(i);
+				    Nv[i] += Nv[j];
+				    Nv[j] = 0;
+				    Elen[j] = EMPTY;
+				    /* delete j from hash bucket */
+				    j = Next[j];
+				    Next[jlast] = j;
+				} else {
+				    jlast = j;
+				    j = Next[j];
+				}
+			    }
+
+			    wflg++;
+			    i = Next[i];
+			}
+		    }
+		}
+
+		/* ------------------------------------------------------------
+		   restore degree lists and remove nonprincipal supervariables
+		   from the element
+		   ------------------------------------------------------------ */
+		p = pme1;
+		nleft = n - nel;
+		for (pme = pme1; pme <= pme2; pme++) {
+		    i = Iw[pme];
+		    nvi = -Nv[i];
+		    if ( nvi > 0 ) {
+			/* i is a principal variable in Lme */
+			Nv[i] = nvi;
+
+			/* compute the external degree (add size of current element) */
+			deg = Degree[i] + degme - nvi;
+			deg = Math.min(deg, nleft - nvi);
+
+			/* place the supervariable at the head of the degree list */
+			inext = Head[deg];
+			if ( inext != EMPTY ) Last[inext] = i;
+			Next[i] = inext;
+			Last[i] = EMPTY;
+			Head[deg] = i;
+
+			mindeg = Math.min(mindeg, deg);
+			Degree[i] = deg;
+
+			/* place the supervariable in the element pattern */
+			Iw[p++] = i;
+		    }
+		}
+
+		/* ------------------------------------------------------------
+		   finalize the new element
+		   ------------------------------------------------------------ */
+		Nv[me] = nvpiv;
+		Len[me] = p - pme1;
+		if ( Len[me] == 0 ) {
+		    /* nothing left of the pivot element: a root of the tree */
+		    Pe[me] = EMPTY;
+		    W[me] = 0;
+		}
+		if ( elenme != 0 ) {
+		    /* element was not constructed in place: deallocate the
+		       part of it freed by nonprincipal variables */
+		    pfree = p;
+		}
+	    }
+
+	    /* ----------------------------------------------------------------
+	       postordering
+	       ---------------------------------------------------------------- */
+	    for (i = 0; i < n; i++) {
+		Pe[i] = FLIP(Pe[i]);
+		Elen[i] = FLIP(Elen[i]);
+	    }
+
+	    /* Now the parent of j is Pe[j], or EMPTY if j is a root, and
+	       Elen[e] > 0 is the front size of element e. Compress the paths
+	       of the variables so that each points to its element. */
+	    for (i = 0; i < n; i++) {
+		if ( Nv[i] == 0 ) {
+		    j = Pe[i];
+		    if ( j == EMPTY ) continue;   /* dense variable */
+		    while ( Nv[j] == 0 ) j = Pe[j];
+		    e = j;
+		    j = i;
+		    while ( Nv[j] == 0 ) {
+			jnext = Pe[j];
+			Pe[j] = e;
+			j = jnext;
+		    }
+		}
+	    }
+
+	    amd_postorder(n, Pe, Nv, Elen, W, Head, Next, Last);
+
+	    /* W[e] = k means that element e is the k-th element in the new
+	       order; Head is the inverse. */
+	    for (k = 0; k < n; k++) {
+		Head[k] = EMPTY;
+		Next[k] = EMPTY;
+	    }
+	    for (e = 0; e < n; e++) {
+		k = W[e];
+		if ( k != EMPTY ) Head[k] = e;
+	    }
+
+	    /* Number the elements, leaving room for the variables merged
+	       into each. */
+	    nel = 0;
+	    for (k = 0; k < n; k++) {
+		e = Head[k];
+		if ( e == EMPTY ) break;
+		Next[e] = nel;
+		nel += Nv[e];
+	    }
+
+	    /* Order the non-principal variables (merged and dense). */
+	    for (i = 0; i < n; i++) {
+		if ( Nv[i] == 0 ) {
+		    e = Pe[i];
+		    if ( e != EMPTY ) {
+			/* merged into element e: place i just before e */
+			Next[i] = Next[e];
+			Next[e]++;
+		    } else {
+			/* dense: place last */
+			Next[i] = nel++;
+		    }
+		}
+	    }
+
+	    for (i = 0; i < n; i++) {
+		k = Next[i];
+		Last[k] = i;
+	    }
+	}
+
+	/*
+	 * Postorder the assembly tree Parent[], placing the child with the
+	 * largest front Fsize[] last among its siblings.
+	 */
+	static
+	void
+	amd_postorder(int nn, int Parent[], int Nv[], int Fsize[], int Order[],
+		      int Child[], int Sibling[], int Stack[])
+	{
+	    int i, j, k, parent, frsize, f, fprev, maxfrsize, bigfprev, bigf, fnext;
+
+	    for (j = 0; j < nn; j++) {
+		Child[j] = EMPTY;
+		Sibling[j] = EMPTY;
+	    }
+
+	    /* place the children in link lists - bigger elements tend to be last */
+	    for (j = nn - 1; j >= 0; j--) {
+		if ( Nv[j] > 0 ) {
+		    parent = Parent[j];
+		    if ( parent != EMPTY ) {
+			Sibling[j] = Child[parent];
+			Child[parent] = j;
+		    }
+		}
+	    }
+
+	    /* place the largest child last in the list of children */
+	    for (i = 0; i < nn; i++) {
+		if ( Nv[i] > 0 && Child[i] != EMPTY ) {
+		    fprev = EMPTY;
+		    maxfrsize = EMPTY;
+		    bigfprev = EMPTY;
+		    bigf = EMPTY;
+		    for (f = Child[i]; f != EMPTY; f = Sibling[f]) {
+			frsize = Fsize[f];
+			if ( frsize >= maxfrsize ) {
+			    maxfrsize = frsize;
+			    bigfprev = fprev;
+			    bigf = f;
+			}
+			fprev = f;
+		    }
+		    fnext = Sibling[bigf];
+		    if ( fnext != EMPTY ) {
+			if ( bigfprev == EMPTY ) Child[i] = fnext;
+			else Sibling[bigfprev] = fnext;
+			Sibling[bigf] = EMPTY;
+			Sibling[fprev] = bigf;
+		    }
+		}
+	    }
+
+	    for (i = 0; i < nn; i++) Order[i] = EMPTY;
+	    k = 0;
+	    for (i = 0; i < nn; i++)
+		if ( Parent[i] == EMPTY && Nv[i] > 0 )
+		    k = amd_post_tree(i, k, Child, Sibling, Order, Stack);
+	}
+
+	/*
+	 * Non-recursive postorder of the subtree rooted at root, numbering
+	 * from k; returns the next number.
+	 */
+	static
+	int
+	amd_post_tree(int root, int k, int Child[], int Sibling[], int Order[],
+		      int Stack[])
+	{
+	    int f, head, h, i;
+
+	    head = 0;
+	    Stack[0] = root;
+	    while ( head >= 0 ) {
+		i = Stack[head];
+		if ( Child[i] != EMPTY ) {
+		    /* push the children in reverse order, so that the first
+		       (smallest) is popped first and the last (biggest) last */
+		    for (f = Child[i]; f != EMPTY; f = Sibling[f]) head++;
+		    h = head;
+		    for (f = Child[i]; f != EMPTY; f = Sibling[f]) Stack[h--] = f;
+		    Child[i] = EMPTY;
+		} else {
+		    head--;
+		    Order[i] = k++;
+		}
+	    }
+	    return k;
+	}
+
+}
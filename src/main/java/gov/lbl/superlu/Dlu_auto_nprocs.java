@@ -0,0 +1,102 @@
+/*
+ * Automatic choice of the number of workers.
+ *
+ * Purpose
+ * =======
+ *
+ * sp_auto_nprocs() chooses how many of at most maxprocs threads the
+ * factorization of A*Pc should use. A narrow etree offers little
+ * parallelism: past flops / ppath threads, the others can only spin in
+ * the scheduler and contend for its critical section. The choice is made
+ * from the symbolic analysis of pdgstrf_explain() alone:
+ *
+ *    1. the parallelism of the etree is flops / ppath, the flops bound
+ *       over the flops on its critical path when the panels of a chain
+ *       are pipelined (see ordering_stats());
+ *    2. the time on P threads is modelled by autotune_time(), from the
+ *       flops, that critical path and the panel and supernode layout,
+ *       plus WORKER_COST per thread for starting it and initializing
+ *       its working storage;
+ *    3. the chosen count is the smallest P whose modelled time is within
+ *       AUTO_NPROCS_SLACK of the best over P = 1, ..., maxprocs.
+ *
+ * pdgssv() calls sp_auto_nprocs() when AUTO_NPROCS is set, and PrintStat()
+ * reports the choice.
+ *
+ */
+package gov.lbl.superlu;
+
+import gov.lbl.superlu.Dlu_pdexplain.explain_plan_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.AUTO_NPROCS_SLACK;
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_autotune.autotune_time;
+import static gov.lbl.superlu.Dlu_pdexplain.pdgstrf_explain;
+
+
+public class Dlu_auto_nprocs {
+
+	/* Cost of a thread, in flops: its start and scheduling, plus one
+	   per word of the working storage it initializes. */
+	static final double WORKER_COST = 5e4;
+
+	public static class auto_nprocs_t {
+	    public int    nprocs;      /* chosen */
+	    public int    maxprocs;    /* asked for */
+	    public double parallelism; /* flops / ppath */
+	    public double speedup;     /* predicted, over one thread */
+	}
+
+	public static
+	int
+	sp_auto_nprocs(int maxprocs, sp_tuning_t tuning, SuperMatrix A, int perm_c[],
+		       auto_nprocs_t result)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * SP_AUTO_NPROCS returns the number of threads, between 1 and
+	 * maxprocs, for the factorization of A*Pc with the given tuning. A is
+	 * of type NC; perm_c[] is not modified. If result is not null, it
+	 * receives the choice and the estimates it was made from. See the
+	 * description at the top of this file.
+	 *
+	 */
+	    explain_plan_t plan = new explain_plan_t();
+	    double time[], best, start;
+	    int P, nprocs;
+
+	    if ( maxprocs < 1 ) maxprocs = 1;
+	    pdgstrf_explain(maxprocs, tuning, A, perm_c, plan);
+	    plan.cpath = plan.ppath;   /* pdgstrf() pipelines the chains */
+
+	    start = WORKER_COST + plan.work_bytes / 8.0;
+	    time = new double[maxprocs + 1];
+	    best = Double.MAX_VALUE;
+	    for (P = 1; P <= maxprocs; ++P) {
+		plan.nprocs = P;
+		time[P] = autotune_time(plan, tuning) + start * P;
+		best = Math.min(best, time[P]);
+	    }
+	    for (nprocs = 1; nprocs < maxprocs; ++nprocs)
+		if ( time[nprocs] <= best * (1.0 + AUTO_NPROCS_SLACK) ) break;
+
+	    if ( result != null ) {
+		result.nprocs = nprocs;
+		result.maxprocs = maxprocs;
+		result.parallelism = plan.cpath > 0 ? plan.flops / plan.cpath : 1.0;
+		result.speedup = time[nprocs] > 0 ? time[1] / time[nprocs] : 1.0;
+	    }
+	if ( PRNTlevel==1 ) {
+	    printf(".. auto_nprocs: %d of %d threads, parallelism %.2f\n",
+		   nprocs, maxprocs, plan.cpath > 0 ? plan.flops / plan.cpath : 1.0);
+	}
+	    return nprocs;
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Automatic choice of the column ordering.
+ *
+ * Purpose
+ * =======
+ *
+ * get_perm_c_auto() (permc_spec 7 in get_perm_c) runs the orderings listed
+ * in Dlu.AUTO_ORDER_SPECS concurrently, on a pool of up to
+ * Dlu.ORDERING_NPROCS threads, and computes the symbolic statistics of
+ * each result with ordering_stats() in the same task. It returns the
+ * permutation that is best by Dlu.AUTO_ORDER_CRITERION:
+ *
+ *    FLOPS          fewest predicted factorization flops;
+ *    MEMORY         fewest predicted nonzeros in L and U;
+ *    CRITICAL_PATH  shortest critical path of the column etree.
+ *
+ * Ties are broken by flops, then by the order of AUTO_ORDER_SPECS.
+ *
+ * Candidates that have not finished Dlu.AUTO_ORDER_DEADLINE milliseconds
+ * after the start (0: no deadline) are cancelled: nested dissection and
+ * AMD check for the interrupt and stop; the others run to completion in
+ * the background and their result is dropped. A candidate that fails is
+ * dropped as well. If no candidate is left, the natural ordering is used.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import gov.lbl.superlu.Dlu_ordering_stats.ordering_stats_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.order_criterion_t;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.AUTO_ORDER_CRITERION;
+import static gov.lbl.superlu.Dlu.AUTO_ORDER_DEADLINE;
+import static gov.lbl.superlu.Dlu.AUTO_ORDER_SPECS;
+import static gov.lbl.superlu.Dlu.ORDERING_NPROCS;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_ordering_stats.ordering_stats;
+
+
+public class Dlu_auto_order {
+
+	/* The outcome of one candidate ordering. */
+	static class candidate_t {
+	    int              ispec;
+	    int              perm_c[];
+	    ordering_stats_t stats;
+	    double           time;     /* seconds */
+	}
+
+	static
+	double criterion(order_criterion_t c, ordering_stats_t s)
+	{
+	    switch ( c ) {
+	        case MEMORY:        return (double) s.nnz_l + s.nnz_u;
+	        case CRITICAL_PATH: return s.cpath;
+	        default:            return s.flops;
+	    }
+	}
+
+	public static
+	int
+	get_perm_c_auto(SuperMatrix A, int perm_c[], ordering_stats_t stats)
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * GET_PERM_C_AUTO computes the candidate orderings of A and returns the
+	 * best one in perm_c[]. If stats is not null, it receives the
+	 * statistics of the chosen ordering.
+	 *
+	 * Returns the permc_spec of the chosen ordering (0 for the natural
+	 * ordering if no candidate succeeded).
+	 *
+	 */
+	{
+	    final SuperMatrix AA = A;
+	    final int n = A.ncol;
+	    int specs[] = AUTO_ORDER_SPECS, ncand = specs.length, k, best = -1;
+	    int nthreads = Math.max(1, Math.min(ncand, ORDERING_NPROCS));
+	    order_criterion_t crit = AUTO_ORDER_CRITERION;
+	    List<Future<candidate_t>> tasks = new ArrayList<Future<candidate_t>>(ncand);
+	    candidate_t cand[] = new candidate_t[ncand];
+	    long deadline = AUTO_ORDER_DEADLINE > 0
+		? System.nanoTime() + AUTO_ORDER_DEADLINE * 1000000L : Long.MAX_VALUE;
+	    double v, bestv = 0;
+
+	    ExecutorService pool = Executors.newFixedThreadPool(nthreads, new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+		    Thread t = new Thread(r, "superlu-ordering");
+		    t.setDaemon(true);
+		    return t;
+		}
+	    });
+
+	    for (k = 0; k < ncand; ++k) {
+		final int ispec = specs[k];
+		if ( ispec < 0 || ispec > 6 || (A.nrow != n && (ispec == 2 || ispec >= 5)) ) {
+		    /* not a valid candidate for A: would abort in get_perm_c */
+		    tasks.add(null);
+		    continue;
+		}
+		tasks.add(pool.submit(new Callable<candidate_t>() {
+		    public candidate_t call() {
+			candidate_t c = new candidate_t();
+			long t = System.nanoTime();
+			c.ispec = ispec;
+			c.perm_c = new int[n];
+			/* one thread each: the candidates already share the pool */
+			get_perm_c(ispec, AA, c.perm_c, 1, false);
+			c.stats = new ordering_stats_t();
+			ordering_stats(AA, c.perm_c, c.stats);
+			c.time = (System.nanoTime() - t) * 1e-9;
+			return c;
+		    }
+		}));
+	    }
+
+	    for (k = 0; k < ncand; ++k) {
+		if ( tasks.get(k) == null ) continue;
+		try {
+		    cand[k] = tasks.get(k).get(Math.max(0, deadline - System.nanoTime()),
+					   TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+		    tasks.get(k).cancel(true);
+		    printf(".. ordering %d cancelled at the deadline.\n", specs[k]);
+		} catch (ExecutionException e) {
+		    printf(".. ordering %d failed: %s\n", specs[k], e.getCause());
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    break;
+		}
+	    }
+	    pool.shutdownNow();
+
+	    for (k = 0; k < ncand; ++k) {
+		if ( cand[k] == null ) continue;
+		v = criterion(crit, cand[k].stats);
+		printf(".. ordering %d: %.3f s, nnz(L+U) <= %d, flops <= %.3e, critical path %.3e\n",
+		       cand[k].ispec, cand[k].time, cand[k].stats.nnz_l + cand[k].stats.nnz_u,
+		       cand[k].stats.flops, cand[k].stats.cpath);
+		if ( best == -1 || v < bestv
+		     || (v == bestv && cand[k].stats.flops < cand[best].stats.flops) ) {
+		    best = k;
+		    bestv = v;
+		}
+	    }
+
+	    if ( best == -1 ) {
+		for (k = 0; k < n; ++k) perm_c[k] = k;
+		if ( stats != null ) ordering_stats(A, perm_c, stats);
+		printf("Use natural column ordering: no automatic candidate finished.\n");
+		return 0;
+	    }
+
+	    System.arraycopy(cand[best].perm_c, 0, perm_c, 0, n);
+	    if ( stats != null ) {
+		stats.nnz_l = cand[best].stats.nnz_l;
+		stats.nnz_u = cand[best].stats.nnz_u;
+		stats.flops = cand[best].stats.flops;
+		stats.cpath = cand[best].stats.cpath;
+		stats.ppath = cand[best].stats.ppath;
+		stats.height = cand[best].stats.height;
+		stats.nleaves = cand[best].stats.nleaves;
+	    }
+	    printf("Use column ordering %d, chosen by %s.\n", cand[best].ispec, crit);
+	    return cand[best].ispec;
+	}
+
+}
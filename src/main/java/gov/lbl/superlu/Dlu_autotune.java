@@ -0,0 +1,381 @@
+/*
+ * Automatic choice of panel_size, relax and maxsuper.
+ *
+ * Purpose
+ * =======
+ *
+ * sp_autotune() chooses the parameters sp_ienv(1), sp_ienv(2) and
+ * sp_ienv(3) of the factorization of A*Pc on nprocs threads. It runs no
+ * numeric factorization, only the symbolic analysis of pdgstrf_explain():
+ *
+ *    1. the plan of the whole problem with the default tuning gives the
+ *       postordered column permutation and the features of A (n, nnz,
+ *       shape of the etree, colcnt_h, supernodes of H);
+ *    2. the trial subproblem is the principal submatrix of Pc'*A*Pc on
+ *       its first AUTOTUNE_SAMPLE columns, which is a forest of complete
+ *       subtrees of the etree (the whole of A if it is small enough);
+ *    3. the candidate tunings are explained on the trial subproblem and
+ *       scored by autotune_time(), a model of the time of pdgstrf() built
+ *       from the flops, the critical path, the flops on the zeros of the
+ *       relaxed supernodes and the widths of the panels and supernodes.
+ *       The search is a coordinate descent over the grids PANEL_SIZES,
+ *       RELAXES and MAXSUPERS, starting from the default tuning;
+ *    4. the model only ranks the candidates: the trial subproblem, with
+ *       the values of A, is factored once untimed, then AUTOTUNE_TRIALS
+ *       times with the default tuning and with the best candidate,
+ *       alternately, and the candidate is kept only if its fastest run
+ *       beats that of the default by AUTOTUNE_MARGIN. The ratio of the
+ *       two is the measured speedup.
+ *
+ * The choice is kept in a process-wide LRU cache keyed by the fingerprint
+ * of the pattern of A (that of Dlu_symbolic_cache), perm_c[] and nprocs,
+ * so that a class of matrices with the same pattern is tuned once.
+ *
+ * pdgssv() calls sp_autotune() when AUTOTUNE is set and no tuning is
+ * given; the choice and its speedup over the default tuning, measured on
+ * the trial subproblem, are then printed by PrintStat().
+ *
+ */
+package gov.lbl.superlu;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import gov.lbl.superlu.Dlu_pdexplain.explain_plan_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.AUTOTUNE_CACHE_BYTES;
+import static gov.lbl.superlu.Dlu.AUTOTUNE_SAMPLE;
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_pdexplain.pdgstrf_explain;
+import static gov.lbl.superlu.Dlu_pdgstrf.pdgstrf;
+import static gov.lbl.superlu.Dlu_pdgstrf_init.pdgstrf_init;
+import static gov.lbl.superlu.Dlu_pdmemory.doubleMalloc;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
+import static gov.lbl.superlu.Dlu_pxgstrf_finalize.pxgstrf_finalize;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FACT;
+import static gov.lbl.superlu.Dlu_slu_mt_util.fact_t.EQUILIBRATE;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_symbolic_cache.perm_hash;
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_fingerprint;
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_key;
+import static gov.lbl.superlu.Dlu_util.StatAlloc;
+import static gov.lbl.superlu.Dlu_util.StatFree;
+import static gov.lbl.superlu.Dlu_util.StatInit;
+
+
+public class Dlu_autotune {
+
+	/* The candidate values of panel_size, relax and maxsuper. */
+	static final int PANEL_SIZES[] = { 4, 8, 12, 16, 20, 24, 32, 48 };
+	static final int RELAXES[]     = { 2, 4, 6, 8, 12, 16, 24 };
+	static final int MAXSUPERS[]   = { 32, 64, 100, 128, 200, 256 };
+
+	/* Cost model, in flops. The dense kernels run at half speed on panels
+	   of W_HALF columns, or on supernodes of S_HALF columns; they slow down
+	   by MISS_COST for each AUTOTUNE_CACHE_BYTES their block of rowblk rows
+	   exceeds the cache. Each panel and each supernode costs PANEL_COST and
+	   SUPER_COST of symbolic work and scheduling, and every column of a
+	   panel after the first lengthens the critical path by PIPE_COST.
+	   These weights are set by hand, not fitted to any machine: the model
+	   orders the candidates, and the winner is checked by timing it. */
+	static final double W_HALF = 4.0;
+	static final double S_HALF = 8.0;
+	static final double MISS_COST = 0.5;
+	static final double PANEL_COST = 2e4;
+	static final double SUPER_COST = 2e3;
+	static final double PIPE_COST = 1.0 / 16;
+
+	/* Timed factorizations of the trial subproblem per tuning, and the
+	   fraction of the time of the default the candidate must save to be
+	   kept: a smaller gain is within the noise of so few runs. */
+	static final int AUTOTUNE_TRIALS = 2;
+	static final double AUTOTUNE_MARGIN = 0.05;
+
+	/* Number of choices kept by the cache. */
+	static final int AUTOTUNE_CACHE_SIZE = 64;
+
+	public static class autotune_t {
+	    public sp_tuning_t tuning;
+	    public double  speedup;     /* measured on the trial subproblem, over
+					   the default tuning; 0 if the trial
+					   factorization failed */
+	    public int     sample_n;    /* columns of the trial subproblem */
+	    public int     ncandidates; /* tunings explained */
+	    public boolean cached;      /* found in the cache */
+	}
+
+	static final LinkedHashMap<String, autotune_t> autotune_cache =
+	    new LinkedHashMap<String, autotune_t>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, autotune_t> eldest) {
+		    return size() > AUTOTUNE_CACHE_SIZE;
+		}
+	    };
+
+	public static
+	sp_tuning_t
+	sp_autotune(int nprocs, SuperMatrix A, int perm_c[], autotune_t result)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * SP_AUTOTUNE returns the tuning chosen for the factorization of A*Pc
+	 * on nprocs threads: that of sp_ienv() with panel_size, relax and
+	 * maxsuper replaced. A is of type NC; perm_c[] is not modified. If
+	 * result is not null, it receives the choice and how it was made.
+	 * See the description at the top of this file.
+	 *
+	 */
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, k, i, j, p, nnzb, dim, pass;
+	    int perm[], iperm[], perm_b[], colptr_b[], rowind_b[], grid[];
+	    double nzval_b[], mdef, mbest, m;
+	    long fp[] = new long[2];
+	    String key;
+	    autotune_t e;
+	    explain_plan_t plan;
+	    SuperMatrix B;
+	    HashMap<String, Double> seen = new HashMap<String, Double>();
+	    sp_tuning_t best, cand, t;
+	    double tdef, tbest, tcand, time;
+	    boolean improved;
+
+	    symbolic_fingerprint(n, Astore.nnz, Astore.colptr, Astore.rowind, fp);
+	    key = symbolic_key(fp, 't', perm_hash(n, perm_c) * 31 + nprocs);
+	    synchronized (autotune_cache) {
+		e = autotune_cache.get(key);
+	    }
+	    if ( e != null ) {
+		if ( result != null ) {
+		    result.tuning = e.tuning;
+		    result.speedup = e.speedup;
+		    result.sample_n = e.sample_n;
+		    result.ncandidates = e.ncandidates;
+		    result.cached = true;
+		}
+		return e.tuning;
+	    }
+
+	    /* The trial subproblem. */
+	    if ( n <= AUTOTUNE_SAMPLE ) {
+		k = n;
+		B = A;
+		perm_b = perm_c;
+	    } else {
+		plan = new explain_plan_t();
+		pdgstrf_explain(nprocs, SP_IENV_TUNING, A, perm_c, plan);
+	if ( PRNTlevel==1 ) {
+		printf(".. autotune: n %d, nnz %d, etree height %d, leaves %d, %d supernodes\n",
+		       n, Astore.nnz, plan.height, plan.nleaves, plan.nsuper);
+	}
+		k = AUTOTUNE_SAMPLE;
+		perm = plan.perm_c;
+		iperm = intMalloc(n);
+		for (i = 0; i < n; ++i) iperm[perm[i]] = i;
+		colptr_b = intMalloc(k+1);
+		nnzb = 0;
+		for (j = 0; j < k; ++j)
+		    for (p = Astore.colptr[iperm[j]]; p < Astore.colptr[iperm[j]+1]; ++p)
+			if ( perm[Astore.rowind[p]] < k ) ++nnzb;
+		rowind_b = intMalloc(SUPERLU_MAX(1, nnzb));
+		nzval_b = doubleMalloc(SUPERLU_MAX(1, nnzb));
+		nnzb = 0;
+		for (j = 0; j < k; ++j) {
+		    colptr_b[j] = nnzb;
+		    for (p = Astore.colptr[iperm[j]]; p < Astore.colptr[iperm[j]+1]; ++p)
+			if ( perm[Astore.rowind[p]] < k ) {
+			    rowind_b[nnzb] = perm[Astore.rowind[p]];
+			    nzval_b[nnzb++] = Astore.nzval[p];
+			}
+		}
+		colptr_b[k] = nnzb;
+		B = new SuperMatrix();
+		dCreate_CompCol_Matrix(B, k, k, nnzb, nzval_b,
+				       rowind_b, colptr_b, SLU_NC, SLU_D, SLU_GE);
+		perm_b = intMalloc(k);
+		for (j = 0; j < k; ++j) perm_b[j] = j;
+	    }
+
+	    /* Coordinate descent over the grids. */
+	    best = SP_IENV_TUNING;
+	    tdef = tbest = autotune_score(nprocs, best, B, perm_b, seen);
+	    improved = true;
+	    for (pass = 0; pass < 2 && improved; ++pass) {
+		improved = false;
+		for (dim = 0; dim < 3; ++dim) {
+		    grid = dim == 0 ? PANEL_SIZES : dim == 1 ? RELAXES : MAXSUPERS;
+		    cand = best;
+		    tcand = tbest;
+		    for (i = 0; i < grid.length; ++i) {
+			t = new sp_tuning_t(dim == 0 ? grid[i] : best.panel_size,
+					    dim == 1 ? grid[i] : best.relax,
+					    dim == 2 ? grid[i] : best.maxsuper,
+					    best.rowblk, best.colblk, best.fill_lusup,
+					    best.fill_ucol, best.fill_lsub);
+			if ( t.relax > t.maxsuper ) continue;
+			time = autotune_score(nprocs, t, B, perm_b, seen);
+			if ( time < tcand ) {
+			    cand = t;
+			    tcand = time;
+			}
+		    }
+		    if ( cand != best ) {
+			best = cand;
+			tbest = tcand;
+			improved = true;
+		    }
+		}
+	    }
+
+	    /* Time the winner against the default on the trial subproblem. */
+	    mdef = mbest = Double.MAX_VALUE;
+	    if ( best != SP_IENV_TUNING ) {
+		/* Untimed, so that the first timed run is not the coldest. */
+		if ( autotune_measure(nprocs, SP_IENV_TUNING, B, perm_b) < 0 ) mdef = -1;
+		for (i = 0; i < AUTOTUNE_TRIALS && mdef > 0 && mbest > 0; ++i) {
+		    m = autotune_measure(nprocs, SP_IENV_TUNING, B, perm_b);
+		    mdef = m < 0 ? -1 : Math.min(mdef, m);
+		    m = autotune_measure(nprocs, best, B, perm_b);
+		    mbest = m < 0 ? -1 : Math.min(mbest, m);
+		}
+	if ( PRNTlevel==1 ) {
+		printf(".. autotune: modelled speedup %.2f, trial time %.3e default, %.3e tuned\n",
+		       tbest > 0 ? tdef / tbest : 1.0, mdef, mbest);
+	}
+	    }
+
+	    e = new autotune_t();
+	    if ( best == SP_IENV_TUNING ) {
+		e.speedup = 1.0;
+	    } else if ( mdef < 0 || mbest < 0 ) {
+		e.speedup = 0;            /* not measured */
+	    } else if ( mbest < mdef * (1 - AUTOTUNE_MARGIN) ) {
+		e.speedup = mdef / SUPERLU_MAX(mbest, 1.0);
+	    } else {
+		best = SP_IENV_TUNING;    /* the model was wrong */
+		e.speedup = 1.0;
+	    }
+	    e.tuning = best;
+	    e.sample_n = k;
+	    e.ncandidates = seen.size();
+	    synchronized (autotune_cache) {
+		autotune_cache.put(key, e);
+	    }
+	if ( PRNTlevel==1 ) {
+	    printf(".. autotune: w %d, relax %d, maxsuper %d, measured speedup %.2f"
+		   + " (%d candidates on %d columns)\n", best.panel_size, best.relax,
+		   best.maxsuper, e.speedup, e.ncandidates, k);
+	}
+	    if ( result != null ) {
+		result.tuning = e.tuning;
+		result.speedup = e.speedup;
+		result.sample_n = e.sample_n;
+		result.ncandidates = e.ncandidates;
+		result.cached = false;
+	    }
+	    return best;
+	}
+
+	/*
+	 * The modelled time of the trial subproblem with tuning t; tunings
+	 * already scored are looked up in seen.
+	 */
+	static
+	double
+	autotune_score(int nprocs, sp_tuning_t t, SuperMatrix B, int perm_b[],
+		       HashMap<String, Double> seen)
+	{
+	    String key = t.panel_size + "/" + t.relax + "/" + t.maxsuper;
+	    Double time = seen.get(key);
+	    explain_plan_t plan;
+
+	    if ( time == null ) {
+		plan = new explain_plan_t();
+		pdgstrf_explain(nprocs, t, B, perm_b, plan);
+		time = autotune_time(plan, t);
+		seen.put(key, time);
+	    }
+	    return time;
+	}
+
+	/*
+	 * The time of pdgstrf() (utime[FACT]) to factor B*Pb with tuning t on
+	 * nprocs threads, or -1 if the factorization fails.
+	 */
+	static
+	double
+	autotune_measure(int nprocs, sp_tuning_t t, SuperMatrix B, int perm_b[])
+	{
+	    int k = B.ncol, perm_c[] = intMalloc(k), perm_r[] = intMalloc(k);
+	    int info[] = new int[1];
+	    SuperMatrix AC = new SuperMatrix(), L = new SuperMatrix(), U = new SuperMatrix();
+	    superlumt_options_t options = new superlumt_options_t();
+	    Gstat_t Gstat = new Gstat_t();
+	    double time;
+
+	    System.arraycopy(perm_b, 0, perm_c, 0, k);  /* pdgstrf_init() postorders it */
+	    StatAlloc(k, nprocs, t.panel_size, t.relax, Gstat);
+	    StatInit(k, nprocs, Gstat);
+	    pdgstrf_init(nprocs, EQUILIBRATE, NOTRANS, NO, t.panel_size, t.relax,
+			 1.0, NO, 0.0, perm_c, perm_r, null, 0, B, AC, options, Gstat);
+	    options.tuning = t;
+	    pdgstrf(options, AC, perm_r, L, U, Gstat, info);
+	    time = Gstat.utime[FACT.ordinal()];
+	    pxgstrf_finalize(options, AC);
+	    StatFree(Gstat);
+	    return info[0] == 0 ? time : -1;
+	}
+
+	/*
+	 * Model of the time of pdgstrf() following plan, in flops.
+	 */
+	public static
+	double
+	autotune_time(explain_plan_t plan, sp_tuning_t t)
+	{
+	    double wbar, sbar = 0, rate, block, work, path, busy;
+	    int s, smax = 1;
+
+	    if ( plan.n == 0 ) return 0;
+	    wbar = (double) plan.n / SUPERLU_MAX(1, plan.npanels);
+	    for (s = 1; s < plan.super_histo.length; ++s)
+		if ( plan.super_histo[s] != 0 ) {
+		    sbar += (double) s * s * plan.super_histo[s];
+		    smax = s;
+		}
+	    sbar /= plan.n;   /* width of the supernode of an average column */
+	    rate = 1.0 / (1.0 + W_HALF / wbar + S_HALF / SUPERLU_MAX(1.0, sbar));
+
+	    block = 8.0 * t.rowblk * (smax + t.panel_size);
+	    if ( block > AUTOTUNE_CACHE_BYTES )
+		rate /= 1.0 + MISS_COST * (block / AUTOTUNE_CACHE_BYTES - 1.0);
+
+	    work = (plan.flops + plan.relax_flops) / rate;
+	    path = plan.cpath / rate * (1.0 + PIPE_COST * (wbar - 1.0));
+	    /* The scheduling of the panels is shared by no more threads
+	       than the etree keeps busy: on a chain it is serial. */
+	    busy = plan.cpath > 0 ? Math.min(plan.nprocs, Math.max(1.0, plan.flops / plan.cpath))
+				  : plan.nprocs;
+	    return Math.max(work / plan.nprocs, path)
+		+ (PANEL_COST * plan.npanels + SUPER_COST * plan.nsuper) / busy;
+	}
+
+}
@@ -8,17 +8,28 @@
  */
 package gov.lbl.superlu;
 
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
+
 public class Dlu_await {
 
 	@SuppressWarnings("unused")
 	static
-	int await(int status)
+	int await(pxgstrf_shared_t pxgstrf_shared, int col)
 	{
+	    AtomicIntegerArray status = pxgstrf_shared.spin_locks;
 	    int i, j, k, randnum;
 
 	    /* randnum = ( random() & 0xff ); */
 	    randnum = 0;
-	    while ( status != 0 ) ;
+	    /* A volatile read: once the slot is 0, the column is seen complete. */
+	    while ( status.get(col) != 0 ) {
+		/* The thread that was to release col has failed (pxgstrf_fail). */
+		if ( pxgstrf_shared.failure != null )
+		    throw new IllegalStateException("column " + col + " will not be released");
+		Thread.yield();
+	    }
 	if (false) {
 	    {
 		/* Length better be adaptive to the number of processors */
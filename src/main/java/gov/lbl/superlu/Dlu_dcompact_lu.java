@@ -0,0 +1,551 @@
+/*
+ * Compaction of the factors into the solve-ordered SCLU layout.
+ *
+ * Purpose
+ * =======
+ *
+ * After pdgstrf, L is stored in SCP format and U in NCP format, with
+ * per-column begin/end pointers into lusup[]/lsub[] and ucol[]/usub[]
+ * that may leave gaps behind. dCompact_LU() rewrites both factors into
+ * one SCLU matrix (see Dlu_supermatrix.SCLUformat) in which the dense L
+ * block of each supernode is immediately followed by the U entries of
+ * its columns, and the subscripts of a supernode are stored once, in a
+ * single contiguous record. dgstrs_compact() then traverses the values
+ * and subscripts strictly sequentially in the forward solve and strictly
+ * backwards in the back substitution.
+ *
+ * The compaction runs at the end of pdgstrf when Dlu.COMPACT_LU is set.
+ * Factors spilled to disk (Dlu_pdooc) have the same layout, and
+ * dgstrs_compact() streams their records from the file.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.io.IOException;
+
+import gov.lbl.superlu.Dlu_pdooc.ooc_stream_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.trans_t;
+import gov.lbl.superlu.Dlu_supermatrix.DNformat;
+import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCLUformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.TRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_FST_SUPC;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_LAST_SUPC;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_SUB_START;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_SUB_END;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_NZ_START;
+import static gov.lbl.superlu.Dlu_slu_mt_util.U_NZ_START;
+import static gov.lbl.superlu.Dlu_slu_mt_util.U_NZ_END;
+import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.TRISOLVE;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_TRLU;
+
+import static gov.lbl.superlu.Dlu_xerbla_.xerbla_;
+
+import static gov.lbl.superlu.Dlu_pdmemory.doubleCalloc;
+import static gov.lbl.superlu.Dlu_pdmemory.doubleMalloc;
+import static gov.lbl.superlu.Dlu_pmemory.array_length;
+
+import static gov.lbl.superlu.Dlu_lustore.doubleStoreAlloc;
+import static gov.lbl.superlu.Dlu_lustore.intStoreAlloc;
+import static gov.lbl.superlu.Dlu_lustore.dstore_read;
+import static gov.lbl.superlu.Dlu_lustore.dstore_write;
+import static gov.lbl.superlu.Dlu_lustore.istore_read;
+import static gov.lbl.superlu.Dlu_lustore.istore_write;
+
+import static gov.lbl.superlu.Dlu_pdooc.ooc_read_block;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_stream_open;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_stream_next;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_stream_close;
+
+import static gov.lbl.superlu.Dlu_dmyblas2.dlsolve;
+import static gov.lbl.superlu.Dlu_dmyblas2.dmatvec;
+import static gov.lbl.superlu.Dlu_dmyblas2.dusolve;
+
+
+public class Dlu_dcompact_lu {
+
+	/* Size of the fixed part of a supernode's subscript record. */
+	static final int SCLU_HEADER = 2;
+
+	/*
+	 * One supernode of an SCLU factor, as seen by the solve.
+	 * The values start at val[voff], the subscripts at idx[ioff].
+	 */
+	public static class sclu_block_t {
+		public int    fsupc;
+		public int    nsupc;
+		public int    nsupr;
+		public double val[];
+		public int    voff;
+		public int    idx[];
+		public int    ioff;
+		double        vbuf[];    /* scratch for off-heap records */
+		int           ibuf[];
+	}
+
+	/* Offset in idx[] of the row subscripts of L. */
+	static int SCLU_LSUB(sclu_block_t b) {
+		return b.ioff + SCLU_HEADER;
+	}
+	/* Offset in idx[] of the U column pointers. */
+	static int SCLU_UPTR(sclu_block_t b) {
+		return b.ioff + SCLU_HEADER + b.nsupr;
+	}
+	/* Offset in idx[] of the row subscripts of U. */
+	static int SCLU_USUB(sclu_block_t b) {
+		return b.ioff + SCLU_HEADER + b.nsupr + b.nsupc + 1;
+	}
+	/* Offset in val[] of the values of U. */
+	static int SCLU_UVAL(sclu_block_t b) {
+		return b.voff + b.nsupr * b.nsupc;
+	}
+
+	public static
+	void
+	dCompact_LU(SuperMatrix L, SuperMatrix U, SuperMatrix LU, boolean offheap)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * dCompact_LU() copies the factors L (SCP) and U (NCP) computed by
+	 * pdgstrf into a single matrix LU of type SLU_SCLU. The values are put
+	 * off-heap if offheap is true, or if they do not fit in a Java array.
+	 * L and U are not modified.
+	 *
+	 */
+	    SCPformat  Lstore = (SCPformat) L.Store;
+	    NCPformat  Ustore = (NCPformat) U.Store;
+	    SCLUformat LUstore;
+	    int        n = L.ncol, nsuper = Lstore.nsuper;
+	    int        s, j, k, fsupc, nsupc, nsupr, istart, unz, len, vlen, ilen;
+	    long       vtot, itot;
+	    long       nzval_supptr[], index_supptr[];
+	    double     vblk[];
+	    int        iblk[];
+
+	    nzval_supptr = new long[nsuper + 2];
+	    index_supptr = new long[nsuper + 2];
+
+	    /* Determine the size of each supernode's record. */
+	    vtot = itot = 0;
+	    vlen = ilen = 0;
+	    for (s = 0; s <= nsuper; ++s) {
+		fsupc = L_FST_SUPC(Lstore, s);
+		nsupc = L_LAST_SUPC(Lstore, s) - fsupc;
+		nsupr = L_SUB_END(Lstore, fsupc) - L_SUB_START(Lstore, fsupc);
+		for (j = fsupc, unz = 0; j < fsupc + nsupc; ++j)
+		    unz += U_NZ_END(Ustore, j) - U_NZ_START(Ustore, j);
+		nzval_supptr[s] = vtot;
+		index_supptr[s] = itot;
+		vtot += (long) nsupr * nsupc + unz;
+		itot += SCLU_HEADER + nsupr + nsupc + 1 + unz;
+		vlen = SUPERLU_MAX(vlen, nsupr * nsupc + unz);
+		ilen = SUPERLU_MAX(ilen, SCLU_HEADER + nsupr + nsupc + 1 + unz);
+	    }
+	    nzval_supptr[nsuper + 1] = vtot;
+	    index_supptr[nsuper + 1] = itot;
+
+	    LU.Stype = SLU_SCLU;
+	    LU.Dtype = SLU_D;
+	    LU.Mtype = SLU_TRLU;
+	    LU.nrow = L.nrow;
+	    LU.ncol = n;
+	    LUstore = new SCLUformat();
+	    LU.Store = LUstore;
+	    LUstore.nnz = Lstore.nnz + ((NCPformat) U.Store).nnz;
+	    LUstore.nsuper = nsuper;
+	    LUstore.sup_to_col = new int[nsuper + 2];
+	    for (s = 0; s <= nsuper; ++s) LUstore.sup_to_col[s] = L_FST_SUPC(Lstore, s);
+	    LUstore.sup_to_col[nsuper + 1] = n;
+	    LUstore.nzval_supptr = nzval_supptr;
+	    LUstore.index_supptr = index_supptr;
+
+	    if ( offheap || array_length(vtot) < 0 || array_length(itot) < 0 ) {
+		LUstore.nzval_store = doubleStoreAlloc(vtot);
+		LUstore.index_store = intStoreAlloc(itot);
+	    } else {
+		LUstore.nzval = new double[(int) vtot];
+		LUstore.index = new int[(int) itot];
+	    }
+
+	    /* Assemble each record in vblk[]/iblk[], then copy it in place. */
+	    vblk = new double[vlen];
+	    iblk = new int[ilen];
+	    for (s = 0; s <= nsuper; ++s) {
+		fsupc = L_FST_SUPC(Lstore, s);
+		nsupc = L_LAST_SUPC(Lstore, s) - fsupc;
+		istart = L_SUB_START(Lstore, fsupc);
+		nsupr = L_SUB_END(Lstore, fsupc) - istart;
+
+		iblk[0] = nsupr;
+		iblk[1] = nsupc;
+		System.arraycopy(Lstore.rowind, istart, iblk, SCLU_HEADER, nsupr);
+
+		if ( Lstore.nzval != null )
+		    System.arraycopy(Lstore.nzval, L_NZ_START(Lstore, fsupc), vblk, 0, nsupr * nsupc);
+		else
+		    dstore_read(Lstore.nzval_store, L_NZ_START(Lstore, fsupc), vblk, 0, nsupr * nsupc);
+
+		k = SCLU_HEADER + nsupr;
+		iblk[k] = 0;
+		for (j = fsupc, unz = 0; j < fsupc + nsupc; ++j) {
+		    len = U_NZ_END(Ustore, j) - U_NZ_START(Ustore, j);
+		    System.arraycopy(Ustore.rowind, U_NZ_START(Ustore, j),
+				     iblk, k + nsupc + 1 + unz, len);
+		    if ( Ustore.nzval != null )
+			System.arraycopy(Ustore.nzval, U_NZ_START(Ustore, j),
+					 vblk, nsupr * nsupc + unz, len);
+		    else
+			dstore_read(Ustore.nzval_store, U_NZ_START(Ustore, j),
+				    vblk, nsupr * nsupc + unz, len);
+		    unz += len;
+		    iblk[k + j - fsupc + 1] = unz;
+		}
+
+		len = (int) (nzval_supptr[s+1] - nzval_supptr[s]);
+		if ( LUstore.nzval != null )
+		    System.arraycopy(vblk, 0, LUstore.nzval, (int) nzval_supptr[s], len);
+		else
+		    dstore_write(LUstore.nzval_store, nzval_supptr[s], vblk, 0, len);
+		len = (int) (index_supptr[s+1] - index_supptr[s]);
+		if ( LUstore.index != null )
+		    System.arraycopy(iblk, 0, LUstore.index, (int) index_supptr[s], len);
+		else
+		    istore_write(LUstore.index_store, index_supptr[s], iblk, 0, len);
+	    }
+	}
+
+	/*
+	 * Set b to refer to supernode s of the SCLU factor. Off-heap and
+	 * on-disk records are copied into scratch arrays owned by b, which
+	 * grow as needed.
+	 */
+	public static
+	void
+	dsclu_get_block(SCLUformat LUstore, int s, sclu_block_t b)
+	{
+	    int vlen, ilen;
+
+	    b.fsupc = LUstore.sup_to_col[s];
+	    if ( LUstore.nzval != null ) {
+		b.val = LUstore.nzval;
+		b.voff = (int) LUstore.nzval_supptr[s];
+		b.idx = LUstore.index;
+		b.ioff = (int) LUstore.index_supptr[s];
+	    } else {
+		vlen = (int) (LUstore.nzval_supptr[s+1] - LUstore.nzval_supptr[s]);
+		ilen = (int) (LUstore.index_supptr[s+1] - LUstore.index_supptr[s]);
+		if ( b.vbuf == null || b.vbuf.length < vlen ) b.vbuf = new double[vlen];
+		if ( b.ibuf == null || b.ibuf.length < ilen ) b.ibuf = new int[ilen];
+		b.val = b.vbuf;
+		b.idx = b.ibuf;
+		if ( LUstore.ooc_file != null ) {
+		    try {
+			ooc_read_block(LUstore, s, b.val, b.idx);
+		    } catch (IOException e) {
+			SUPERLU_ABORT("Cannot read the factor file: " + e);
+		    }
+		} else {
+		    dstore_read(LUstore.nzval_store, LUstore.nzval_supptr[s], b.val, 0, vlen);
+		    istore_read(LUstore.index_store, LUstore.index_supptr[s], b.idx, 0, ilen);
+		}
+		b.voff = 0;
+		b.ioff = 0;
+	    }
+	    b.nsupr = b.idx[b.ioff];
+	    b.nsupc = b.idx[b.ioff + 1];
+	}
+
+	/*
+	 * Forward solve with the unit lower triangular L of supernode b,
+	 * for nrhs right-hand sides in Bmat (leading dimension ldb).
+	 * Returns the number of operations.
+	 */
+	static
+	float
+	dsclu_lsolve(sclu_block_t b, int nrhs, double Bmat[], int ldb, double work[])
+	{
+	    int i, j, bptr, irow, iptr, luptr;
+	    int fsupc = b.fsupc, nsupc = b.nsupc, nsupr = b.nsupr;
+	    int nrow = nsupr - nsupc;
+	    double val[] = b.val;
+	    int idx[] = b.idx;
+
+	    if ( nsupc == 1 ) {
+		for (j = 0, bptr = 0; j < nrhs; j++, bptr += ldb) {
+		    luptr = b.voff;
+		    for (iptr = SCLU_LSUB(b) + 1; iptr < SCLU_LSUB(b) + nsupr; iptr++) {
+			irow = idx[iptr];
+			++luptr;
+			Bmat[bptr+irow] -= Bmat[bptr+fsupc] * val[luptr];
+		    }
+		}
+	    } else {
+		for (j = 0, bptr = 0; j < nrhs; j++, bptr += ldb) {
+		    dlsolve (nsupr, nsupc, val, b.voff, Bmat, bptr+fsupc);
+		    dmatvec (nsupr, nrow, nsupc, val, b.voff+nsupc,
+			     Bmat, bptr+fsupc, work, 0);
+		    iptr = SCLU_LSUB(b) + nsupc;
+		    for (i = 0; i < nrow; i++) {
+			irow = idx[iptr++];
+			Bmat[bptr+irow] -= work[i];
+			work[i] = 0.0;
+		    }
+		}
+	    }
+	    return nsupc * (nsupc - 1) * nrhs + 2 * nrow * nsupc * nrhs;
+	}
+
+	/*
+	 * Back substitution with the upper triangular part of supernode b:
+	 * the diagonal block followed by the U columns of the supernode.
+	 * Returns the number of operations.
+	 */
+	static
+	float
+	dsclu_usolve(sclu_block_t b, int nrhs, double Bmat[], int ldb)
+	{
+	    int i, j, jcol, bptr, irow;
+	    int fsupc = b.fsupc, nsupc = b.nsupc, nsupr = b.nsupr;
+	    int uptr = SCLU_UPTR(b), usub = SCLU_USUB(b), uval = SCLU_UVAL(b);
+	    double val[] = b.val;
+	    int idx[] = b.idx;
+	    float ops;
+
+	    ops = nsupc * (nsupc + 1) * nrhs;
+	    if ( nsupc == 1 ) {
+		for (j = 0, bptr = 0; j < nrhs; j++, bptr += ldb)
+		    Bmat[bptr+fsupc] /= val[b.voff];
+	    } else {
+		for (j = 0, bptr = fsupc; j < nrhs; j++, bptr += ldb)
+		    dusolve (nsupr, nsupc, val, b.voff, Bmat, bptr);
+	    }
+
+	    for (j = 0, bptr = 0; j < nrhs; ++j, bptr += ldb) {
+		for (jcol = 0; jcol < nsupc; jcol++) {
+		    ops += 2 * (idx[uptr+jcol+1] - idx[uptr+jcol]);
+		    for (i = idx[uptr+jcol]; i < idx[uptr+jcol+1]; i++) {
+			irow = idx[usub+i];
+			Bmat[bptr+irow] -= Bmat[bptr+fsupc+jcol] * val[uval+i];
+		    }
+		}
+	    }
+	    return ops;
+	}
+
+	/*
+	 * Solve with the transpose of the upper triangular part of supernode b.
+	 */
+	static
+	float
+	dsclu_utsolve(sclu_block_t b, int nrhs, double Bmat[], int ldb)
+	{
+	    int i, j, jj, ii, bptr;
+	    int fsupc = b.fsupc, nsupc = b.nsupc, nsupr = b.nsupr;
+	    int uptr = SCLU_UPTR(b), usub = SCLU_USUB(b), uval = SCLU_UVAL(b);
+	    double val[] = b.val;
+	    int idx[] = b.idx;
+	    double x;
+	    float ops = 0;
+
+	    for (j = 0, bptr = 0; j < nrhs; ++j, bptr += ldb) {
+		for (jj = 0; jj < nsupc; ++jj) {
+		    x = Bmat[bptr+fsupc+jj];
+		    for (i = idx[uptr+jj]; i < idx[uptr+jj+1]; i++)
+			x -= val[uval+i] * Bmat[bptr+idx[usub+i]];
+		    for (ii = 0; ii < jj; ++ii)
+			x -= val[b.voff+ii+jj*nsupr] * Bmat[bptr+fsupc+ii];
+		    Bmat[bptr+fsupc+jj] = x / val[b.voff+jj+jj*nsupr];
+		    ops += 2 * (idx[uptr+jj+1] - idx[uptr+jj]) + 2 * jj + 1;
+		}
+	    }
+	    return ops;
+	}
+
+	/*
+	 * Solve with the transpose of the unit lower triangular part of
+	 * supernode b.
+	 */
+	static
+	float
+	dsclu_ltsolve(sclu_block_t b, int nrhs, double Bmat[], int ldb)
+	{
+	    int j, jj, ii, bptr;
+	    int fsupc = b.fsupc, nsupc = b.nsupc, nsupr = b.nsupr;
+	    int lsub = SCLU_LSUB(b);
+	    double val[] = b.val;
+	    int idx[] = b.idx;
+	    double x;
+
+	    for (j = 0, bptr = 0; j < nrhs; ++j, bptr += ldb) {
+		for (jj = nsupc - 1; jj >= 0; --jj) {
+		    x = Bmat[bptr+fsupc+jj];
+		    for (ii = nsupc; ii < nsupr; ++ii)
+			x -= val[b.voff+ii+jj*nsupr] * Bmat[bptr+idx[lsub+ii]];
+		    for (ii = jj + 1; ii < nsupc; ++ii)
+			x -= val[b.voff+ii+jj*nsupr] * Bmat[bptr+fsupc+ii];
+		    Bmat[bptr+fsupc+jj] = x;
+		}
+	    }
+	    return 2 * nsupr * nsupc * nrhs - nsupc * (nsupc + 1) * nrhs;
+	}
+
+	/*
+	 * Start a pass over the supernodes of LUstore, forward or backward.
+	 * Factors on disk are streamed with read-ahead (see Dlu_pdooc);
+	 * for the others the pass needs no state and null is returned.
+	 */
+	static
+	ooc_stream_t
+	dsclu_open(SCLUformat LUstore, boolean forward)
+	{
+	    return LUstore.ooc_file != null ? ooc_stream_open(LUstore, forward) : null;
+	}
+
+	/* Set b to supernode s, the next one of the pass st. */
+	static
+	void
+	dsclu_next_block(SCLUformat LUstore, ooc_stream_t st, int s, sclu_block_t b)
+	{
+	    if ( st != null ) ooc_stream_next(st, s, b);
+	    else dsclu_get_block(LUstore, s, b);
+	}
+
+	static
+	void
+	dsclu_close(ooc_stream_t st, Gstat_t Gstat)
+	{
+	    if ( st != null ) ooc_stream_close(st, Gstat);
+	}
+
+	public static
+	void
+	dgstrs_compact(trans_t trans, SuperMatrix LU, int perm_r[], int perm_c[],
+		       SuperMatrix B, Gstat_t Gstat, int info[])
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * dgstrs_compact() solves A*X=B or A'*X=B as dgstrs() does, using the
+	 * factors in the SLU_SCLU matrix LU produced by dCompact_LU().
+	 *
+	 * Arguments
+	 * =========
+	 *
+	 * trans   (input) trans_t
+	 *          Specifies the form of the system of equations:
+	 *          = NOTRANS: A * X = B  (No transpose)
+	 *          = TRANS:   A'* X = B  (Transpose)
+	 *
+	 * LU      (input) SuperMatrix*
+	 *         The factors L and U from the factorization A = P*L*U,
+	 *         compacted by dCompact_LU(); Stype = SLU_SCLU.
+	 *
+	 * perm_r, perm_c, B, Gstat, info
+	 *         As in dgstrs().
+	 *
+	 */
+	    SCLUformat LUstore;
+	    DNformat   Bstore;
+	    sclu_block_t blk = new sclu_block_t();
+	    ooc_stream_t st;
+	    double     Bmat[], work[], soln[];
+	    int        i, k, s, n, nrhs, ldb, bptr, nsuper;
+	    float      solve_ops = 0;
+
+	    info[0] = 0;
+	    Bstore = (DNformat) B.Store;
+	    ldb = Bstore.lda;
+	    nrhs = B.ncol;
+	    if ( trans != NOTRANS && trans != TRANS ) info[0] = -1;
+	    else if ( LU.nrow != LU.ncol || LU.nrow < 0 || LU.Stype != SLU_SCLU ) info[0] = -2;
+	    else if ( ldb < SUPERLU_MAX(0, LU.nrow) ) info[0] = -6;
+	    if ( info[0] != 0 ) {
+		xerbla_("dgstrs_compact", -info[0]);
+		return;
+	    }
+
+	    n = LU.nrow;
+	    LUstore = (SCLUformat) LU.Store;
+	    nsuper = LUstore.nsuper;
+	    Bmat = Bstore.nzval;
+	    if ( (work = doubleCalloc(n)) == null )
+		SUPERLU_ABORT("Malloc fails for local work[].");
+	    if ( (soln = doubleMalloc(n)) == null )
+		SUPERLU_ABORT("Malloc fails for local soln[].");
+
+	    if ( trans == NOTRANS ) {
+		/* Permute right hand sides to form Pr*B */
+		for (i = 0, bptr = 0; i < nrhs; i++, bptr += ldb) {
+		    for (k = 0; k < n; k++) soln[perm_r[k]] = Bmat[bptr+k];
+		    for (k = 0; k < n; k++) Bmat[bptr+k] = soln[k];
+		}
+
+		/* Forward solve PLy=Pb. */
+		st = dsclu_open(LUstore, true);
+		for (s = 0; s <= nsuper; ++s) {
+		    dsclu_next_block(LUstore, st, s, blk);
+		    solve_ops += dsclu_lsolve(blk, nrhs, Bmat, ldb, work);
+		}
+		dsclu_close(st, Gstat);
+
+		/* Back solve Ux=y. */
+		st = dsclu_open(LUstore, false);
+		for (s = nsuper; s >= 0; --s) {
+		    dsclu_next_block(LUstore, st, s, blk);
+		    solve_ops += dsclu_usolve(blk, nrhs, Bmat, ldb);
+		}
+		dsclu_close(st, Gstat);
+
+		/* Compute the final solution X <= Pc*X. */
+		for (i = 0, bptr = 0; i < nrhs; i++, bptr += ldb) {
+		    for (k = 0; k < n; k++) soln[k] = Bmat[bptr+perm_c[k]];
+		    for (k = 0; k < n; k++) Bmat[bptr+k] = soln[k];
+		}
+
+	    } else { /* Solve A'*X=B */
+		/* Permute right hand sides to form Pc'*B. */
+		for (i = 0, bptr = 0; i < nrhs; i++, bptr += ldb) {
+		    for (k = 0; k < n; k++) soln[perm_c[k]] = Bmat[bptr+k];
+		    for (k = 0; k < n; k++) Bmat[bptr+k] = soln[k];
+		}
+
+		/* Multiply by inv(U'). */
+		st = dsclu_open(LUstore, true);
+		for (s = 0; s <= nsuper; ++s) {
+		    dsclu_next_block(LUstore, st, s, blk);
+		    solve_ops += dsclu_utsolve(blk, nrhs, Bmat, ldb);
+		}
+		dsclu_close(st, Gstat);
+
+		/* Multiply by inv(L'). */
+		st = dsclu_open(LUstore, false);
+		for (s = nsuper; s >= 0; --s) {
+		    dsclu_next_block(LUstore, st, s, blk);
+		    solve_ops += dsclu_ltsolve(blk, nrhs, Bmat, ldb);
+		}
+		dsclu_close(st, Gstat);
+
+		/* Compute the final solution X <= Pr'*X (=inv(Pr)*X) */
+		for (i = 0, bptr = 0; i < nrhs; i++, bptr += ldb) {
+		    for (k = 0; k < n; k++) soln[k] = Bmat[bptr+perm_r[k]];
+		    for (k = 0; k < n; k++) Bmat[bptr+k] = soln[k];
+		}
+	    }
+
+	    Gstat.ops[TRISOLVE.ordinal()] = solve_ops;
+	}
+
+}
@@ -16,6 +16,7 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.L_SUB_START;
 import static gov.lbl.superlu.Dlu_slu_mt_util.L_SUB_END;
 import static gov.lbl.superlu.Dlu_slu_mt_util.L_LAST_SUPC;
 import static gov.lbl.superlu.Dlu_slu_mt_util.L_NZ_START;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_NZ_END;
 import static gov.lbl.superlu.Dlu_slu_mt_util.L_SUB;
 import static gov.lbl.superlu.Dlu_slu_mt_util.U_NZ_END;
 import static gov.lbl.superlu.Dlu_slu_mt_util.U_NZ_START;
@@ -32,6 +33,7 @@ import static gov.lbl.superlu.Dlu.DEBUGlevel;
 import static gov.lbl.superlu.Dlu.printf;
 import static gov.lbl.superlu.Dlu.dtrsm;
 import static gov.lbl.superlu.Dlu.dgemm;
+import static gov.lbl.superlu.Dlu.dtrsv;
 
 import static gov.lbl.superlu.Dlu_dmyblas2.dlsolve;
 import static gov.lbl.superlu.Dlu_dmyblas2.dmatvec;
@@ -39,6 +41,14 @@ import static gov.lbl.superlu.Dlu_dmyblas2.dusolve;
 
 import static gov.lbl.superlu.Dlu_dsp_blas2.sp_dtrsv;
 
+import static gov.lbl.superlu.Dlu_lustore.dstore_read;
+
+import static gov.lbl.superlu.Dlu_pmemory.intCalloc;
+
+import static gov.lbl.superlu.Dlu_dcompact_lu.dgstrs_compact;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
+
 
 public class Dlu_dgstrs {
 
@@ -114,9 +124,18 @@ public class Dlu_dgstrs {
 	    NCPformat Ustore;
 	    double   Lval[], Uval[], Bmat[];
 	    double   work[], work_col[], rhs_work[], soln[];
+	    double   lblk[] = null, ublk[] = null;
+	    int      lshift = 0, ushift[] = null;
+	    boolean  offheap;
 	    float  solve_ops;
 	    //void dprint_soln();
 
+	    /* Factors compacted by dCompact_LU() have their own solve. */
+	    if ( L.Stype == SLU_SCLU ) {
+		dgstrs_compact(trans, L, perm_r, perm_c, B, Gstat, info);
+		return;
+	    }
+
 	    /* Test input parameters ... */
 	    info[0] = 0;
 	    Bstore = (DNformat) B.Store;
@@ -147,6 +166,12 @@ public class Dlu_dgstrs {
 	    nsuper = Lstore.nsuper;
 	    solve_ops = 0;
 
+	    /* If the values were moved off-heap (see Dlu_lustore), each
+	       supernode is gathered into lblk[]/ublk[] before it is used;
+	       lshift and ushift[] translate the offsets. */
+	    offheap = Lstore.nzval_store != null;
+	    if ( offheap ) ushift = intCalloc(n);
+
 	    if ( trans == NOTRANS ) {
 		/* Permute right hand sides to form Pr*B */
 		for (i = 0, bptr = 0; i < nrhs; i++, bptr += ldb) {
@@ -167,6 +192,11 @@ public class Dlu_dgstrs {
 		    nsupc = L_LAST_SUPC(Lstore, ksupno) - fsupc;
 		    nrow = nsupr - nsupc;
 
+		    if ( offheap ) {
+			lshift = L_NZ_START(Lstore, fsupc);
+			Lval = lblk = dgather_L(Lstore, fsupc, nsupr, nsupc, lblk);
+		    }
+
 		    solve_ops += nsupc * (nsupc - 1) * nrhs;
 		    solve_ops += 2 * nrow * nsupc * nrhs;
 
@@ -174,7 +204,7 @@ public class Dlu_dgstrs {
 			for (j = 0, bptr = 0; j < nrhs; j++, bptr += ldb) {
 			    rhs_work = Bmat;
 			    int rhs_work_offset = bptr;
-		    	luptr = L_NZ_START(Lstore, fsupc);
+		    	luptr = L_NZ_START(Lstore, fsupc) - lshift;
 			    for (iptr=istart+1; iptr < L_SUB_END(Lstore, fsupc); iptr++){
 				irow = L_SUB(Lstore, iptr);
 				++luptr;
@@ -182,7 +212,7 @@ public class Dlu_dgstrs {
 			    }
 			}
 		    } else {
-		    	luptr = L_NZ_START(Lstore, fsupc);
+		    	luptr = L_NZ_START(Lstore, fsupc) - lshift;
 	if (USE_VENDOR_BLAS) {
 
 	 		dtrsm("L", "L", "N", "U", nsupc, nrhs, alpha,
@@ -240,7 +270,13 @@ public class Dlu_dgstrs {
 		    istart = L_SUB_START(Lstore, fsupc);
 		    nsupr = L_SUB_END(Lstore, fsupc) - istart;
 		    nsupc = L_LAST_SUPC(Lstore, ksupno) - fsupc;
-		    luptr = L_NZ_START(Lstore, fsupc);
+
+		    if ( offheap ) {
+			lshift = L_NZ_START(Lstore, fsupc);
+			Lval = lblk = dgather_L(Lstore, fsupc, nsupr, nsupc, lblk);
+			Uval = ublk = dgather_U(Ustore, fsupc, nsupc, ublk, ushift);
+		    }
+		    luptr = L_NZ_START(Lstore, fsupc) - lshift;
 
 		    solve_ops += nsupc * (nsupc + 1) * nrhs;
 
@@ -271,7 +307,8 @@ public class Dlu_dgstrs {
 	                    solve_ops += 2*(U_NZ_END(Ustore, jcol) - U_NZ_START(Ustore, jcol));
 			    for (i = U_NZ_START(Ustore, jcol); i < U_NZ_END(Ustore, jcol); i++ ){
 				irow = U_SUB(Ustore, i);
-	            rhs_work[rhs_work_offset+irow] -= rhs_work[rhs_work_offset+jcol] * Uval[i];
+	            rhs_work[rhs_work_offset+irow] -= rhs_work[rhs_work_offset+jcol]
+	                * Uval[offheap ? i - ushift[jcol] : i];
 			    }
 			}
 		    }
@@ -300,15 +337,80 @@ public class Dlu_dgstrs {
 		    for (k = 0; k < n; k++) rhs_work[rhs_work_offset+k] = soln[k];
 		}
 
-	        for (k = 0; k < nrhs; ++k) {
+	        if ( !offheap ) {
+	            for (k = 0; k < nrhs; ++k) {
+
+	                /* Multiply by inv(U'). */
+	                sp_dtrsv('U', 'T', 'N', L, U, Bmat, k*ldb, info);
+
+	                /* Multiply by inv(L'). */
+	                sp_dtrsv('L', 'T', 'U', L, U, Bmat, k*ldb, info);
+
+	            }
+	        } else {
+		    /* The loops of sp_dtrsv(), one supernode gathered at a
+		       time, for all the right hand sides. */
+
+		    /* Multiply by inv(U'). */
+		    for (ksupno = 0; ksupno <= nsuper; ++ksupno) {
+			fsupc = L_FST_SUPC(Lstore, ksupno);
+			nsupr = L_SUB_END(Lstore, fsupc) - L_SUB_START(Lstore, fsupc);
+			nsupc = L_LAST_SUPC(Lstore, ksupno) - fsupc;
+			Lval = lblk = dgather_L(Lstore, fsupc, nsupr, nsupc, lblk);
+			Uval = ublk = dgather_U(Ustore, fsupc, nsupc, ublk, ushift);
+
+			for (j = 0, bptr = 0; j < nrhs; ++j, bptr += ldb) {
+			    for (jcol = fsupc; jcol < fsupc + nsupc; jcol++) {
+				solve_ops += 2*(U_NZ_END(Ustore, jcol) - U_NZ_START(Ustore, jcol));
+				for (i = U_NZ_START(Ustore, jcol); i < U_NZ_END(Ustore, jcol); i++) {
+				    irow = U_SUB(Ustore, i);
+				    Bmat[bptr+jcol] -= Bmat[bptr+irow] * Uval[i - ushift[jcol]];
+				}
+			    }
+
+			    solve_ops += nsupc * (nsupc + 1);
+
+			    if ( nsupc == 1 ) {
+				Bmat[bptr+fsupc] /= Lval[0];
+			    } else {
+				dtrsv("U", "T", "N", nsupc, Lval, 0, nsupr,
+				      Bmat, bptr+fsupc, 1);
+			    }
+			}
+		    }
 
-	            /* Multiply by inv(U'). */
-	            sp_dtrsv('U', 'T', 'N', L, U, Bmat, k*ldb, info);
+		    /* Multiply by inv(L'). */
+		    for (ksupno = nsuper; ksupno >= 0; --ksupno) {
+			fsupc = L_FST_SUPC(Lstore, ksupno);
+			istart = L_SUB_START(Lstore, fsupc);
+			nsupr = L_SUB_END(Lstore, fsupc) - istart;
+			nsupc = L_LAST_SUPC(Lstore, ksupno) - fsupc;
+			lshift = L_NZ_START(Lstore, fsupc);
+			Lval = lblk = dgather_L(Lstore, fsupc, nsupr, nsupc, lblk);
+
+			for (j = 0, bptr = 0; j < nrhs; ++j, bptr += ldb) {
+			    solve_ops += 2 * (nsupr - nsupc) * nsupc;
+
+			    for (jcol = fsupc; jcol < fsupc + nsupc; jcol++) {
+				iptr = istart + nsupc;
+				for (i = L_NZ_START(Lstore, jcol) + nsupc;
+					i < L_NZ_END(Lstore, jcol); i++) {
+				    irow = L_SUB(Lstore, iptr);
+				    Bmat[bptr+jcol] -= Bmat[bptr+irow] * Lval[i - lshift];
+				    iptr++;
+				}
+			    }
 
-	            /* Multiply by inv(L'). */
-	            sp_dtrsv('L', 'T', 'U', L, U, Bmat, k*ldb, info);
+			    if ( nsupc > 1 ) {
+				solve_ops += nsupc * (nsupc - 1);
 
+				dtrsv("L", "T", "U", nsupc, Lval, 0, nsupr,
+				      Bmat, bptr+fsupc, 1);
+			    }
+			}
+		    }
 	        }
+
 		/* Compute the final solution X <= Pr'*X (=inv(Pr)*X) */
 		for (i = 0, bptr = 0; i < nrhs; i++, bptr += ldb) {
 		    rhs_work = Bmat;
@@ -322,6 +424,41 @@ public class Dlu_dgstrs {
 	    Gstat.ops[TRISOLVE.ordinal()] = solve_ops;
 	}
 
+	/*
+	 * Reads the values of supernode L(:,fsupc:fsupc+nsupc-1) from the
+	 * off-heap store into blk[], reallocated if too short, and returns it.
+	 */
+	static
+	double[] dgather_L(SCPformat Lstore, int fsupc, int nsupr, int nsupc, double blk[])
+	{
+	    if ( blk == null || blk.length < nsupr * (nsupc + 1) )
+		blk = new double[nsupr * (nsupc + 1)]; /* dgemm() copies lda*k */
+	    dstore_read(Lstore.nzval_store, L_NZ_START(Lstore, fsupc), blk, 0, nsupr * nsupc);
+	    return blk;
+	}
+
+	/*
+	 * Reads the values of U columns fsupc:fsupc+nsupc-1 from the off-heap
+	 * store into blk[], reallocated if too short, and returns it; entry i
+	 * of column jcol is then blk[i - shift[jcol]].
+	 */
+	static
+	double[] dgather_U(NCPformat Ustore, int fsupc, int nsupc, double blk[], int shift[])
+	{
+	    int jcol, k, len;
+
+	    for (jcol = fsupc, k = 0; jcol < fsupc + nsupc; jcol++)
+		k += U_NZ_END(Ustore, jcol) - U_NZ_START(Ustore, jcol);
+	    if ( blk == null || blk.length < k ) blk = new double[k];
+	    for (jcol = fsupc, k = 0; jcol < fsupc + nsupc; jcol++) {
+		len = U_NZ_END(Ustore, jcol) - U_NZ_START(Ustore, jcol);
+		dstore_read(Ustore.nzval_store, U_NZ_START(Ustore, jcol), blk, k, len);
+		shift[jcol] = U_NZ_START(Ustore, jcol) - k;
+		k += len;
+	    }
+	    return blk;
+	}
+
 	/*
 	 * Diagnostic print of the solution vector
 	 */
@@ -0,0 +1,303 @@
+/*
+ * Row permutations to a zero-free or heavy diagonal.
+ *
+ * Purpose
+ * =======
+ *
+ * dldperm() finds a row permutation Pr of a square matrix A such that
+ * Pr*A has a zero-free diagonal (job = 1, as MC21), or such that the
+ * product of the magnitudes of the diagonal of Pr*A is maximum (job = 5,
+ * as MC64 job 5). For job = 5 it also returns row and column scale
+ * factors R and C with which every entry of Pr*R*A*C is at most 1 in
+ * magnitude, and the diagonal entries are exactly 1.
+ *
+ * On such a matrix, Gaussian elimination with threshold partial pivoting
+ * mostly keeps the diagonal pivots, so that the structure of the factors
+ * follows from the column ordering alone (see ZFD_PERM in pdgssv).
+ *
+ */
+package gov.lbl.superlu;
+
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+
+
+public class Dlu_dldperm {
+
+	public static
+	int
+	dldperm(int job, int n, int colptr[], int rowind[], double nzval[],
+		int perm[], double R[], double C[])
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * DLDPERM computes a row permutation of the n-by-n matrix A, stored
+	 * column-wise in colptr[], rowind[] and nzval[].
+	 *
+	 * Arguments
+	 * =========
+	 *
+	 * job    (input) int
+	 *        = 1: zero-free diagonal (maximum transversal);
+	 *        = 5: maximum product of the diagonal, with scaling.
+	 *
+	 * perm   (output) int*, size n
+	 *        perm[i] = j means row i of A is in position j in Pr*A.
+	 *
+	 * R, C   (output) double*, size n, job = 5 only
+	 *        The row and column scale factors.
+	 *
+	 * Returns the number of matched columns: n on success, less if A is
+	 * structurally singular, in which case perm[] is not set.
+	 *
+	 */
+	    int jmatch[] = new int[n], imatch[] = new int[n], rank, i;
+
+	    if ( job == 5 ) rank = maxprod(n, colptr, rowind, nzval, jmatch, imatch, R, C);
+	    else rank = maxtrans(n, n, colptr, null, rowind, jmatch, imatch);
+
+	if ( PRNTlevel>=1 ) {
+	    printf(".. dldperm(): job %d, n %d, matched %d\n", job, n, rank);
+	}
+	    if ( rank < n ) return rank;
+	    for (i = 0; i < n; ++i) perm[i] = imatch[i];
+	    return rank;
+	}
+
+	static
+	int
+	maxtrans(int m, int n, int colbeg[], int colend[], int rowind[],
+		 int jmatch[], int imatch[])
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * MAXTRANS finds a maximum matching of the rows and columns of the
+	 * m-by-n structure with the row indices of column j in
+	 * rowind[colbeg[j]:colend[j]-1] (colend null: colbeg[j+1]-1), by
+	 * depth-first search for augmenting paths, with a cheap assignment
+	 * looked for first in each column. On return, row jmatch[j] is matched
+	 * to column j and column imatch[i] to row i, or they are EMPTY.
+	 * Returns the number of matched columns.
+	 *
+	 */
+	    int cheap[] = new int[n], w[] = new int[n];
+	    int js[] = new int[n], is[] = new int[n], ps[] = new int[n];
+	    int i, j, k, p, end, head, rank = 0;
+	    boolean found;
+
+	    for (j = 0; j < n; ++j) {
+		jmatch[j] = EMPTY;
+		cheap[j] = colbeg[j];
+		w[j] = EMPTY;
+	    }
+	    for (i = 0; i < m; ++i) imatch[i] = EMPTY;
+
+	    for (k = 0; k < n; ++k) {
+		found = false;
+		head = 0;
+		js[0] = k;
+		i = EMPTY;
+		while ( head >= 0 ) {
+		    j = js[head];
+		    end = colend == null ? colbeg[j+1] : colend[j];
+		    if ( w[j] != k ) {
+			/* First visit of column j: look for an unmatched row. */
+			w[j] = k;
+			for (p = cheap[j]; p < end && !found; ++p) {
+			    i = rowind[p];
+			    found = imatch[i] == EMPTY;
+			}
+			cheap[j] = p;
+			if ( found ) {
+			    is[head] = i;
+			    break;
+			}
+			ps[head] = colbeg[j];
+		    }
+		    /* Go down the column matched to the next row of column j. */
+		    for (p = ps[head]; p < end; ++p) {
+			i = rowind[p];
+			if ( w[imatch[i]] == k ) continue;
+			ps[head] = p + 1;
+			is[head] = i;
+			js[++head] = imatch[i];
+			break;
+		    }
+		    if ( p == end ) --head;
+		}
+		if ( found ) {
+		    for (p = head; p >= 0; --p) {
+			jmatch[js[p]] = is[p];
+			imatch[is[p]] = js[p];
+		    }
+		    ++rank;
+		}
+	    }
+	    return rank;
+	}
+
+	static
+	int
+	maxprod(int n, int colptr[], int rowind[], double nzval[],
+		int jmatch[], int imatch[], double R[], double C[])
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * MAXPROD finds the matching that maximizes the product of the
+	 * magnitudes of the matched entries, as the minimum cost matching with
+	 * costs c(i,j) = log(cmax(j)) - log|a(i,j)| >= 0, where cmax(j) is the
+	 * largest magnitude in column j. Each column is matched in turn by a
+	 * shortest augmenting path (Dijkstra, on a heap of rows) in the
+	 * reduced costs c(i,j) - u(i) - v(j) >= 0, after which the dual
+	 * variables u and v are updated so that the reduced costs stay
+	 * nonnegative and vanish on the matching. At the end,
+	 *    R(i) = exp(u(i)),  C(j) = exp(v(j)) / cmax(j)
+	 * scale A so that |R(i) a(i,j) C(j)| <= 1, with equality on the
+	 * matching. Entries that are exactly zero are ignored.
+	 *
+	 * Returns the number of matched columns.
+	 *
+	 */
+	    double cost[], cmax[], u[], v[], d[], dnew, lsap;
+	    int heap[], hpos[], pr[], done[], touched[];
+	    int i, j, j0, jj, k, p, isap, hsize, nt, nd, rank = 0;
+
+	    cost = new double[colptr[n]];
+	    cmax = new double[n];
+	    for (j = 0; j < n; ++j) {
+		for (p = colptr[j]; p < colptr[j+1]; ++p)
+		    cmax[j] = Math.max(cmax[j], Math.abs(nzval[p]));
+		for (p = colptr[j]; p < colptr[j+1]; ++p)
+		    cost[p] = nzval[p] == 0.0 ? Double.POSITIVE_INFINITY
+			: Math.log(cmax[j]) - Math.log(Math.abs(nzval[p]));
+	    }
+
+	    u = new double[n];
+	    v = new double[n];
+	    d = new double[n];
+	    heap = new int[n];
+	    hpos = new int[n];
+	    pr = new int[n];
+	    done = new int[n];
+	    touched = new int[n];
+	    for (i = 0; i < n; ++i) {
+		jmatch[i] = imatch[i] = EMPTY;
+		d[i] = Double.POSITIVE_INFINITY;
+		hpos[i] = EMPTY;
+	    }
+
+	    for (j0 = 0; j0 < n; ++j0) {
+		/* Shortest path from column j0 to an unmatched row. */
+		hsize = nt = nd = 0;
+		isap = EMPTY;
+		lsap = 0.0;
+		j = j0;
+		dnew = 0.0;   /* distance of column j */
+		for (;;) {
+		    for (p = colptr[j]; p < colptr[j+1]; ++p) {
+			i = rowind[p];
+			if ( cost[p] == Double.POSITIVE_INFINITY || hpos[i] == -2 ) continue;
+			double di = dnew + cost[p] - u[i] - v[j];
+			if ( di < d[i] ) {
+			    if ( d[i] == Double.POSITIVE_INFINITY ) touched[nt++] = i;
+			    d[i] = di;
+			    pr[i] = j;
+			    if ( hpos[i] == EMPTY ) {
+				hpos[i] = hsize;
+				heap[hsize++] = i;
+			    }
+			    hsift_up(heap, hpos, d, hpos[i]);
+			}
+		    }
+		    if ( hsize == 0 ) break;   /* no augmenting path */
+		    /* Take the nearest row. */
+		    i = heap[0];
+		    heap[0] = heap[--hsize];
+		    hpos[heap[0]] = 0;
+		    hpos[i] = -2;
+		    if ( hsize > 0 ) hsift_down(heap, hpos, d, 0, hsize);
+		    done[nd++] = i;
+		    if ( imatch[i] == EMPTY ) {
+			isap = i;
+			lsap = d[i];
+			break;
+		    }
+		    j = imatch[i];
+		    dnew = d[i];
+		}
+
+		if ( isap != EMPTY ) {
+		    /* Update the duals of the rows and columns in the tree. */
+		    for (k = 0; k < nd - 1; ++k) {
+			i = done[k];
+			u[i] += d[i] - lsap;
+			v[imatch[i]] += lsap - d[i];
+		    }
+		    v[j0] += lsap;
+		    /* Augment along the path. */
+		    for (i = isap; ; ) {
+			j = pr[i];
+			jj = jmatch[j];
+			jmatch[j] = i;
+			imatch[i] = j;
+			if ( j == j0 ) break;
+			i = jj;
+		    }
+		    ++rank;
+		}
+
+		/* Reset the work arrays of the rows seen. */
+		for (k = 0; k < nt; ++k) {
+		    i = touched[k];
+		    d[i] = Double.POSITIVE_INFINITY;
+		    hpos[i] = EMPTY;
+		}
+		if ( isap == EMPTY ) return rank;  /* structurally singular */
+	    }
+
+	    for (i = 0; i < n; ++i) R[i] = Math.exp(u[i]);
+	    for (j = 0; j < n; ++j) C[j] = cmax[j] == 0.0 ? 1.0 : Math.exp(v[j]) / cmax[j];
+	    return rank;
+	}
+
+	private static
+	void
+	hsift_up(int heap[], int hpos[], double d[], int k)
+	{
+	    int i = heap[k], p;
+
+	    while ( k > 0 && d[heap[p = (k - 1) / 2]] > d[i] ) {
+		heap[k] = heap[p];
+		hpos[heap[k]] = k;
+		k = p;
+	    }
+	    heap[k] = i;
+	    hpos[i] = k;
+	}
+
+	private static
+	void
+	hsift_down(int heap[], int hpos[], double d[], int k, int hsize)
+	{
+	    int i = heap[k], c;
+
+	    while ( (c = 2*k + 1) < hsize ) {
+		if ( c + 1 < hsize && d[heap[c+1]] < d[heap[c]] ) ++c;
+		if ( d[heap[c]] >= d[i] ) break;
+		heap[k] = heap[c];
+		hpos[heap[k]] = k;
+		k = c;
+	    }
+	    heap[k] = i;
+	    hpos[i] = k;
+	}
+
+}
@@ -6,12 +6,15 @@ import gov.lbl.superlu.Dlu_supermatrix.NCformat;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.FALSE;
 
 import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
 
 import static gov.lbl.superlu.Dlu.printf;
+import static gov.lbl.superlu.Dlu.ORDERING_NPROCS;
+import static gov.lbl.superlu.Dlu.DENSE_ROW_RATIO;
 
 import static edu.ufl.cise.colamd.tdouble.Dcolamd.COLAMD_STATS;
 import static edu.ufl.cise.colamd.tdouble.Dcolamd.COLAMD_recommended;
@@ -21,6 +24,14 @@ import static edu.ufl.cise.colamd.tdouble.Dcolamd.colamd;
 
 import static gov.lbl.superlu.mmd.Genmmd.genmmd;
 
+import static gov.lbl.superlu.Dlu_ndorder.get_nd_order;
+import static gov.lbl.superlu.Dlu_amd.amd_order;
+import static gov.lbl.superlu.Dlu_auto_order.get_perm_c_auto;
+
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache;
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache_get_perm;
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache_put_perm;
+
 
 public class Dlu_get_perm_c {
 
@@ -329,9 +340,394 @@ public class Dlu_get_perm_c {
 	    (b_colptr[0])[n] = num_nz;
 	}
 
+	/*
+	 * Body of a parallel loop over the blocks of a partition.
+	 */
+	static interface block_body_t {
+		void run(int t, int lo, int hi);
+	}
+
+	/*
+	 * Run body on the blocks [bnd[t], bnd[t+1]) of a partition, block t on
+	 * the t-th of nblocks threads, the caller taking block 0.
+	 */
+	static
+	void
+	par_blocks(final int nblocks, final int bnd[], final block_body_t body)
+	{
+	    Thread thr[] = new Thread[nblocks];
+	    int    t;
+
+	    for (t = 1; t < nblocks; ++t) {
+		final int tt = t;
+		thr[t] = new Thread() {
+		    public void run() {
+			body.run(tt, bnd[tt], bnd[tt+1]);
+		    }
+		};
+		thr[t].start();
+	    }
+	    body.run(0, bnd[0], bnd[1]);
+	    for (t = 1; t < nblocks; ++t) {
+		try {
+		    thr[t].join();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    SUPERLU_ABORT("Interrupted while forming the ordering graph.");
+		}
+	    }
+	}
+
+	/*
+	 * Split the n columns of (colptr, rowind) into at most nthreads blocks
+	 * of about the same number of nonzeros; returns the number of blocks,
+	 * with the block boundaries in bnd[0..nblocks].
+	 */
+	static
+	int
+	split_columns(int n, int colptr[], int nthreads, int bnd[])
+	{
+	    int  t, j, nblocks;
+	    long nz = colptr[n];
+
+	    nblocks = SUPERLU_MAX(1, SUPERLU_MIN(nthreads, n / 256));
+	    bnd[0] = 0;
+	    for (t = 1, j = 0; t < nblocks; ++t) {
+		while ( j < n && (long) colptr[j] * nblocks < nz * t ) ++j;
+		bnd[t] = j;
+	    }
+	    bnd[nblocks] = n;
+	    return nblocks;
+	}
+
+	/*
+	 * Form T = A' in column form (t_colptr[m+1], t_rowind[nz]) in
+	 * parallel over the column blocks bnd[] of A. cnt[t] are scratch arrays
+	 * of at least m entries; the row indices in each column of T come out
+	 * in increasing order, as in the sequential transpose.
+	 */
+	static
+	void
+	par_transpose(final int m, final int nblocks, final int bnd[],
+		      final int colptr[], final int rowind[], final int cnt[][],
+		      final int t_colptr[], final int t_rowind[])
+	{
+	    final int rbnd[] = new int[nblocks + 1];
+	    int i, t;
+
+	    /* Count the entries of each row of A, block by block. */
+	    par_blocks(nblocks, bnd, new block_body_t() {
+		public void run(int t, int lo, int hi) {
+		    int c[] = cnt[t];
+		    for (int i = 0; i < m; ++i) c[i] = 0;
+		    for (int j = lo; j < hi; ++j)
+			for (int i = colptr[j]; i < colptr[j+1]; ++i) ++c[rowind[i]];
+		}
+	    });
+
+	    t_colptr[0] = 0;
+	    for (i = 0; i < m; ++i) {
+		int k = 0;
+		for (t = 0; t < nblocks; ++t) k += cnt[t][i];
+		t_colptr[i+1] = t_colptr[i] + k;
+	    }
+
+	    /* Turn the counts into the positions where each block starts
+	       filling each row, in parallel over ranges of rows. */
+	    for (t = 0; t <= nblocks; ++t) rbnd[t] = (int) ((long) m * t / nblocks);
+	    par_blocks(nblocks, rbnd, new block_body_t() {
+		public void run(int tt, int lo, int hi) {
+		    for (int i = lo; i < hi; ++i) {
+			int pos = t_colptr[i], k;
+			for (int t = 0; t < nblocks; ++t) {
+			    k = cnt[t][i];
+			    cnt[t][i] = pos;
+			    pos += k;
+			}
+		    }
+		}
+	    });
+
+	    par_blocks(nblocks, bnd, new block_body_t() {
+		public void run(int t, int lo, int hi) {
+		    int c[] = cnt[t];
+		    for (int j = lo; j < hi; ++j)
+			for (int i = colptr[j]; i < colptr[j+1]; ++i)
+			    t_rowind[c[rowind[i]]++] = j;
+		}
+	    });
+	}
+
+	/* Row count above which a row is considered dense; 0 for none. */
+	static
+	int
+	dense_row_bound(int n, double ratio)
+	{
+	    if ( ratio <= 0 ) return 0;
+	    return (int) Math.max(16, Math.min(Integer.MAX_VALUE, ratio * Math.sqrt(n)));
+	}
+
+	public static
+	void
+	getata_par(
+		   final int m,      /* number of rows in matrix A. */
+		   final int n,      /* number of columns in matrix A. */
+		   final int nz,     /* number of nonzeros in matrix A */
+		   final int colptr[],/* column pointer of size n+1 for matrix A. */
+		   final int rowind[],/* row indices of size nz for matrix A. */
+		   int dense_row,    /* rows with more entries are left out;
+				        0 keeps all rows */
+		   int nthreads,     /* number of threads to use */
+		   int atanz[],      /* out - the number of nonzeros in A'*A. */
+		   int ata_colptr[][],/* out - size n+1 */
+		   int ata_rowind[][],/* out - size *atanz */
+		   int ndense[]      /* out - the number of rows left out */
+		   )
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * Form the structure of A'*A as getata() does, in two passes over the
+	 * columns (count, then fill), each run in parallel over blocks of
+	 * columns with about the same number of nonzeros. Each thread owns one
+	 * scratch array of max(m,n) entries, used for the transpose and then
+	 * as the marker of both passes; nothing else is allocated besides T
+	 * and the result.
+	 *
+	 * A row with r entries adds up to r^2 entries to A'*A. If dense_row > 0,
+	 * rows with more than dense_row entries are left out of the product
+	 * (as COLAMD does); their number is returned in ndense[0]. With
+	 * dense_row == 0 the result is identical to that of getata().
+	 *
+	 */
+	{
+	    final int bnd[] = new int[SUPERLU_MAX(nthreads, 1) + 1];
+	    final int nblocks = split_columns(n, colptr, nthreads, bnd);
+	    final int work[][] = new int[nblocks][SUPERLU_MAX(m, n) + 1];
+	    final int t_colptr[] = new int[m+1], t_rowind[] = new int[nz];
+	    final int b_colptr[] = new int[n+1];
+	    final boolean skip[] = new boolean[m];
+	    long      num_nz;
+	    int       i, j;
+
+	    par_transpose(m, nblocks, bnd, colptr, rowind, work, t_colptr, t_rowind);
+
+	    ndense[0] = 0;
+	    if ( dense_row > 0 ) {
+		for (i = 0; i < m; ++i)
+		    if ( t_colptr[i+1] - t_colptr[i] > dense_row ) {
+			skip[i] = true;
+			++ndense[0];
+		    }
+	    }
+
+	    /* First pass: the number of nonzeros in each column of B. */
+	    par_blocks(nblocks, bnd, new block_body_t() {
+		public void run(int t, int lo, int hi) {
+		    int marker[] = work[t];
+		    int i, j, k, ti, trow, cnt;
+		    for (i = 0; i < n; ++i) marker[i] = -1;
+		    for (j = lo; j < hi; ++j) {
+			marker[j] = j;
+			cnt = 0;
+			for (i = colptr[j]; i < colptr[j+1]; ++i) {
+			    k = rowind[i];
+			    if ( skip[k] ) continue;
+			    for (ti = t_colptr[k]; ti < t_colptr[k+1]; ++ti) {
+				trow = t_rowind[ti];
+				if ( marker[trow] != j ) {
+				    marker[trow] = j;
+				    ++cnt;
+				}
+			    }
+			}
+			b_colptr[j+1] = cnt;
+		    }
+		}
+	    });
+
+	    num_nz = 0;
+	    for (j = 0; j < n; ++j) {
+		num_nz += b_colptr[j+1];
+		if ( num_nz > Integer.MAX_VALUE - 8 )
+		    SUPERLU_ABORT("A'*A has too many nonzeros; leave out the dense rows.");
+		b_colptr[j+1] = (int) num_nz;
+	    }
+	    atanz[0] = (int) num_nz;
+	    ata_colptr[0] = b_colptr;
+	    ata_rowind[0] = new int[atanz[0]];
+	    final int b_rowind[] = ata_rowind[0];
+
+	    /* Second pass: fill in each column of B. */
+	    par_blocks(nblocks, bnd, new block_body_t() {
+		public void run(int t, int lo, int hi) {
+		    int marker[] = work[t];
+		    int i, j, k, ti, trow, pos;
+		    for (i = 0; i < n; ++i) marker[i] = -1;
+		    for (j = lo; j < hi; ++j) {
+			marker[j] = j;
+			pos = b_colptr[j];
+			for (i = colptr[j]; i < colptr[j+1]; ++i) {
+			    k = rowind[i];
+			    if ( skip[k] ) continue;
+			    for (ti = t_colptr[k]; ti < t_colptr[k+1]; ++ti) {
+				trow = t_rowind[ti];
+				if ( marker[trow] != j ) {
+				    marker[trow] = j;
+				    b_rowind[pos++] = trow;
+				}
+			    }
+			}
+		    }
+		}
+	    });
+	}
+
+	public static
+	void
+	at_plus_a_par(
+		      final int n,      /* number of columns in matrix A. */
+		      final int nz,     /* number of nonzeros in matrix A */
+		      final int colptr[],/* column pointer of size n+1 for matrix A. */
+		      final int rowind[],/* row indices of size nz for matrix A. */
+		      int dense_row,    /* nodes of higher degree are left out;
+					   0 keeps all nodes */
+		      int nthreads,     /* number of threads to use */
+		      int bnz[],        /* out - the number of nonzeros in A'+A. */
+		      int b_colptr[][], /* out - size n+1 */
+		      int b_rowind[][], /* out - size *bnz */
+		      boolean dense[]   /* out - size n; dense[j] is set for the
+					   nodes left out; may be null */
+		      )
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * Form the structure of A'+A as at_plus_a() does, with the same
+	 * parallel count-then-fill scheme as getata_par().
+	 *
+	 * If dense_row > 0, a node j with more than dense_row entries in row
+	 * and column j of A is left out: it has no edges in the result, and
+	 * the caller should order it last. dense[] reports these nodes. With
+	 * dense_row == 0 the result is identical to that of at_plus_a().
+	 *
+	 */
+	{
+	    final int bnd[] = new int[SUPERLU_MAX(nthreads, 1) + 1];
+	    final int nblocks = split_columns(n, colptr, nthreads, bnd);
+	    final int work[][] = new int[nblocks][n + 1];
+	    final int t_colptr[] = new int[n+1], t_rowind[] = new int[nz];
+	    final int c_colptr[] = new int[n+1];
+	    final boolean skip[] = new boolean[n];
+	    long      num_nz;
+	    int       j;
+
+	    par_transpose(n, nblocks, bnd, colptr, rowind, work, t_colptr, t_rowind);
+
+	    if ( dense_row > 0 ) {
+		for (j = 0; j < n; ++j)
+		    skip[j] = (colptr[j+1] - colptr[j]) + (t_colptr[j+1] - t_colptr[j]) > dense_row;
+	    }
+	    if ( dense != null ) System.arraycopy(skip, 0, dense, 0, n);
+
+	    /* First pass: the number of nonzeros in each column of B. */
+	    par_blocks(nblocks, bnd, new block_body_t() {
+		public void run(int t, int lo, int hi) {
+		    int marker[] = work[t];
+		    int i, j, k, cnt;
+		    for (i = 0; i < n; ++i) marker[i] = -1;
+		    for (j = lo; j < hi; ++j) {
+			cnt = 0;
+			if ( !skip[j] ) {
+			    marker[j] = j;
+			    for (i = colptr[j]; i < colptr[j+1]; ++i) {
+				k = rowind[i];
+				if ( marker[k] != j && !skip[k] ) {
+				    marker[k] = j;
+				    ++cnt;
+				}
+			    }
+			    for (i = t_colptr[j]; i < t_colptr[j+1]; ++i) {
+				k = t_rowind[i];
+				if ( marker[k] != j && !skip[k] ) {
+				    marker[k] = j;
+				    ++cnt;
+				}
+			    }
+			}
+			c_colptr[j+1] = cnt;
+		    }
+		}
+	    });
+
+	    num_nz = 0;
+	    for (j = 0; j < n; ++j) {
+		num_nz += c_colptr[j+1];
+		c_colptr[j+1] = (int) num_nz;
+	    }
+	    bnz[0] = (int) num_nz;
+	    b_colptr[0] = c_colptr;
+	    b_rowind[0] = new int[bnz[0]];
+	    final int c_rowind[] = b_rowind[0];
+
+	    /* Second pass: fill in each column of B. */
+	    par_blocks(nblocks, bnd, new block_body_t() {
+		public void run(int t, int lo, int hi) {
+		    int marker[] = work[t];
+		    int i, j, k, pos;
+		    for (i = 0; i < n; ++i) marker[i] = -1;
+		    for (j = lo; j < hi; ++j) {
+			if ( skip[j] ) continue;
+			marker[j] = j;
+			pos = c_colptr[j];
+			for (i = colptr[j]; i < colptr[j+1]; ++i) {
+			    k = rowind[i];
+			    if ( marker[k] != j && !skip[k] ) {
+				marker[k] = j;
+				c_rowind[pos++] = k;
+			    }
+			}
+			for (i = t_colptr[j]; i < t_colptr[j+1]; ++i) {
+			    k = t_rowind[i];
+			    if ( marker[k] != j && !skip[k] ) {
+				marker[k] = j;
+				c_rowind[pos++] = k;
+			    }
+			}
+		    }
+		}
+	    });
+	}
+
+	/*
+	 * Move the columns flagged in dense[] to the end of the ordering
+	 * perm_c[], keeping the relative order of the others.
+	 */
+	static
+	void
+	order_dense_last(int n, int perm_c[], boolean dense[])
+	{
+	    int iperm[] = new int[n];
+	    int i, k;
+
+	    for (i = 0; i < n; ++i) iperm[perm_c[i]] = i;
+	    k = 0;
+	    for (i = 0; i < n; ++i)
+		if ( !dense[iperm[i]] ) perm_c[iperm[i]] = k++;
+	    for (i = 0; i < n; ++i)
+		if ( dense[iperm[i]] ) perm_c[iperm[i]] = k++;
+	}
+
 	public static
 	void
 	get_perm_c(int ispec, SuperMatrix A, int perm_c[])
+	{
+	    get_perm_c(ispec, A, perm_c, ORDERING_NPROCS, true);
+	}
+
+	static
+	void
+	get_perm_c(int ispec, SuperMatrix A, int perm_c[], int nthreads, boolean verbose)
 	/*
 	 * Purpose
 	 * =======
@@ -350,8 +746,31 @@ public class Dlu_get_perm_c {
 	 *         = 1: minimum degree on the structure of A^T * A
 	 *         = 2: minimum degree on the structure of A^T + A
 	 *         = 3: approximate minimum degree for unsymmetric matrices
+	 *         = 4: nested dissection on the structure of A^T * A
+	 *         = 5: nested dissection on the structure of A^T + A
+	 *         = 6: approximate minimum degree (see Dlu_amd) on the
+	 *              structure of A^T + A; much faster than 2 on large
+	 *              graphs, with similar fill
+	 *         = 7: the best of the orderings in Dlu.AUTO_ORDER_SPECS by
+	 *              predicted flops, memory or critical path, computed
+	 *              concurrently (see Dlu_auto_order)
 	 *         If ispec == 0, the natural ordering (i.e., Pc = I) is returned.
 	 *
+	 *         Nested dissection (see Dlu_ndorder) gives more fill than
+	 *         minimum degree on some matrices, but a short, balanced
+	 *         column etree with many independent subtrees, which keeps
+	 *         more threads busy in the factorization.
+	 *
+	 *         The graphs for ispec = 1, 2, 4, 5, 6 are formed with Dlu.ORDERING_NPROCS
+	 *         threads; with Dlu.DENSE_ROW_RATIO > 0, rows (for A'+A: rows and
+	 *         columns) with more than max(16, DENSE_ROW_RATIO*sqrt(n)) entries
+	 *         are left out of them, the dense columns of A'+A being ordered
+	 *         last.
+	 *
+	 *         If a symbolic cache is installed (see Dlu_symbolic_cache), an
+	 *         ordering previously computed with the same ispec for a matrix
+	 *         with the same nonzero pattern is returned without recomputing it.
+	 *
 	 * A       (input) SuperMatrix*
 	 *         Matrix A in A*X=B, of dimension (A.nrow, A.ncol). The number
 	 *         of the linear equations is A.nrow. Currently, the type of A
@@ -363,6 +782,12 @@ public class Dlu_get_perm_c {
 	 *         permutation matrix Pc; perm_c[i] = j means column i of A is
 	 *         in position j in A*Pc.
 	 *
+	 * nthreads (input) int
+	 *         Threads forming the graphs; Dlu.ORDERING_NPROCS by default.
+	 *
+	 * verbose (input) boolean
+	 *         Whether the ordering used is printed; true by default.
+	 *
 	 */
 	{
 	    NCformat Astore = (NCformat) A.Store;
@@ -373,42 +798,95 @@ public class Dlu_get_perm_c {
 	    intW nofsub = new intW(0);
 	    int b_rowind[][], dhead[], qsize[], llist[], marker[];
 	    b_rowind = new int[1][];
+	    int ndense[] = new int[1];
+	    boolean dense[] = null;
 	    double t;
 
 	    m = A.nrow;
 	    n = A.ncol;
 
+	    if ( symbolic_cache != null && ispec != 0 ) {
+		int cached[] = symbolic_cache_get_perm(symbolic_cache, ispec, A);
+		if ( cached != null ) {
+		    System.arraycopy(cached, 0, perm_c, 0, n);
+		    if ( verbose ) printf("Use cached column ordering %d.\n", ispec);
+		    return;
+		}
+	    }
+
 	    t = SuperLU_timer_();
 	    switch ( ispec ) {
 	        case 0: /* Natural ordering */
 		      for (i = 0; i < n; ++i) perm_c[i] = i;
-		      printf("Use natural column ordering.\n");
+		      if ( verbose ) printf("Use natural column ordering.\n");
 		      return;
 	        case 1: /* Minimum degree ordering on A'*A */
-		      getata(m, n, Astore.nnz, Astore.colptr, Astore.rowind,
-			     bnz, b_colptr, b_rowind);
-		      printf("Use minimum degree ordering on A'*A.\n");
+	        case 4: /* Nested dissection on A'*A */
+		      getata_par(m, n, Astore.nnz, Astore.colptr, Astore.rowind,
+				 dense_row_bound(n, DENSE_ROW_RATIO), nthreads,
+				 bnz, b_colptr, b_rowind, ndense);
+		      if ( verbose ) {
+			  if ( ispec == 1 )
+			      printf("Use minimum degree ordering on A'*A.\n");
+			  else
+			      printf("Use nested dissection ordering on A'*A.\n");
+			  if ( ndense[0] > 0 )
+			      printf(".. %d dense rows left out of A'*A.\n", ndense[0]);
+		      }
 		      t = SuperLU_timer_() - t;
 		      /*printf("Form A'*A time = %8.3f\n", t);*/
 		      break;
 	        case 2: /* Minimum degree ordering on A'+A */
+	        case 5: /* Nested dissection on A'+A */
+	        case 6: /* Approximate minimum degree on A'+A */
 		      if ( m != n ) SUPERLU_ABORT("Matrix is not square");
-		      at_plus_a(n, Astore.nnz, Astore.colptr, Astore.rowind,
-				bnz, b_colptr, b_rowind);
-		      printf("Use minimum degree ordering on A'+A.\n");
+		      dense = new boolean[n];
+		      at_plus_a_par(n, Astore.nnz, Astore.colptr, Astore.rowind,
+				    dense_row_bound(n, DENSE_ROW_RATIO), nthreads,
+				    bnz, b_colptr, b_rowind, dense);
+		      for (i = 0; i < n; ++i) if ( dense[i] ) ++ndense[0];
+		      if ( verbose ) {
+			  if ( ispec == 2 )
+			      printf("Use minimum degree ordering on A'+A.\n");
+			  else if ( ispec == 5 )
+			      printf("Use nested dissection ordering on A'+A.\n");
+			  else
+			      printf("Use approximate minimum degree ordering on A'+A.\n");
+			  if ( ndense[0] > 0 )
+			      printf(".. %d dense rows/columns ordered last.\n", ndense[0]);
+		      }
 		      t = SuperLU_timer_() - t;
 		      /*printf("Form A'+A time = %8.3f\n", t);*/
 		      break;
 	        case 3: /* Approximate minimum degree column ordering. */
 		      get_colamd(m, n, Astore.nnz, Astore.colptr, Astore.rowind,
 				 perm_c);
-		      printf(".. Use approximate minimum degree column ordering.\n");
+		      if ( verbose ) printf(".. Use approximate minimum degree column ordering.\n");
+		      if ( symbolic_cache != null )
+			  symbolic_cache_put_perm(symbolic_cache, ispec, A, perm_c);
+		      return;
+	        case 7: /* Best of several orderings, computed concurrently. */
+		      get_perm_c_auto(A, perm_c, null);
+		      if ( symbolic_cache != null )
+			  symbolic_cache_put_perm(symbolic_cache, ispec, A, perm_c);
 		      return;
 	        default:
 		      SUPERLU_ABORT("Invalid ISPEC");
 	    }
 
-	    if ( bnz[0] != 0 ) {
+	    if ( bnz[0] != 0 && ispec == 6 ) {
+		t = SuperLU_timer_();
+		amd_order(n, b_colptr[0], b_rowind[0], perm_c);
+		t = SuperLU_timer_() - t;
+		/*  printf("call amd_order time = %8.3f\n", t);*/
+
+	    } else if ( bnz[0] != 0 && ispec >= 4 ) {
+		t = SuperLU_timer_();
+		get_nd_order(n, b_colptr[0], b_rowind[0], perm_c);
+		t = SuperLU_timer_() - t;
+		/*  printf("call get_nd_order time = %8.3f\n", t);*/
+
+	    } else if ( bnz[0] != 0 ) {
 		t = SuperLU_timer_();
 
 		/* Initialize and allocate storage for GENMMD. */
@@ -443,5 +921,10 @@ public class Dlu_get_perm_c {
 		for (i = 0; i < n; ++i) perm_c[i] = i;
 	    }
 
+	    if ( ndense[0] > 0 && dense != null ) order_dense_last(n, perm_c, dense);
+
+	    if ( symbolic_cache != null )
+		symbolic_cache_put_perm(symbolic_cache, ispec, A, perm_c);
+
 	}
 }
@@ -10,7 +10,6 @@ package gov.lbl.superlu;
 import gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_relax_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
 
-import static gov.lbl.superlu.Dlu.DOMAINS;
 import static gov.lbl.superlu.Dlu.PRNTlevel;
 import static gov.lbl.superlu.Dlu.printf;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
@@ -97,10 +96,6 @@ public class Dlu_heap_relax_snode {
 		    /* It's also a supernode in the original etree */
 		    pxgstrf_relax[nsuper_et].fcol = snode_start;
 		    pxgstrf_relax[nsuper_et].size = j - snode_start + 1;
-	if (DOMAINS) {
-			throw new UnsupportedOperationException();
-//		    for (i = snode_start; i <= j; ++i) in_domain[i] = RELAXED_SNODE;
-	}
 		    ++nsuper_et;
 		} else {
 		    for (i = snode_start; i <= j; ++i) {
@@ -0,0 +1,290 @@
+/*
+ * Off-heap storage for factor data.
+ *
+ * Purpose
+ * =======
+ *
+ * The factorization kernels work on int-indexed Java arrays, which remain
+ * the fast path. Once a factorization is complete, the numerical values of
+ * L and U (the largest arrays by far) can be moved into a dstore_t, which
+ * keeps them in direct (native-order) ByteBuffer chunks outside the
+ * garbage-collected heap, so that they do not burden the collector with
+ * humongous objects while they are kept for solves. The move happens
+ * after the factorization, so the peak heap is not lowered: it is
+ * reached while the values are still in their arrays, and the move
+ * briefly holds both copies. The stores address their chunks with long
+ * offsets, but the factors that reach them are still bounded by the
+ * kernels: the column pointers (xlusup, xusub) and the work arrays are
+ * int, so each of L and U holds at most 2^31 - 9 values whether on-heap
+ * or off-heap. Dlu.OOC_LU is the option that keeps large factors off the
+ * heap during the factorization as well.
+ *
+ * istore_t is the corresponding store for subscripts.
+ *
+ * The move is done by dLUMoveOffHeap() at the end of pdgstrf when
+ * Dlu.OFFHEAP_LU is set and the factor has more than Dlu.OFFHEAP_THRESHOLD
+ * nonzeros; dLUMoveOnHeap() reverses it.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+
+import static gov.lbl.superlu.Dlu_pmemory.array_length;
+
+
+public class Dlu_lustore {
+
+	/* Each chunk holds 2^CHUNK_SHIFT elements. */
+	public static final int  CHUNK_SHIFT = 24;
+	public static final int  CHUNK_SIZE  = 1 << CHUNK_SHIFT;
+	public static final long CHUNK_MASK  = CHUNK_SIZE - 1;
+
+	public static class dstore_t {
+		public long   size;      /* number of doubles */
+		DoubleBuffer  chunk[];
+	}
+
+	public static class istore_t {
+		public long   size;      /* number of ints */
+		IntBuffer     chunk[];
+	}
+
+	static
+	int nchunks(long size)
+	{
+	    long nc = (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+	    if ( nc > Integer.MAX_VALUE ) SUPERLU_ABORT("Off-heap store too large.");
+	    return (int) nc;
+	}
+
+	static
+	int chunk_len(long size, int c)
+	{
+	    long rest = size - ((long) c << CHUNK_SHIFT);
+	    return rest < CHUNK_SIZE ? (int) rest : CHUNK_SIZE;
+	}
+
+	/*
+	 * Allocate a zero-filled off-heap store of size doubles.
+	 */
+	public static
+	dstore_t doubleStoreAlloc(long size)
+	{
+	    dstore_t s = new dstore_t();
+	    int c;
+
+	    s.size = size;
+	    s.chunk = new DoubleBuffer[nchunks(size)];
+	    for (c = 0; c < s.chunk.length; ++c)
+		s.chunk[c] = ByteBuffer.allocateDirect(8 * chunk_len(size, c))
+		    .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	    return s;
+	}
+
+	/*
+	 * Allocate a zero-filled off-heap store of size ints.
+	 */
+	public static
+	istore_t intStoreAlloc(long size)
+	{
+	    istore_t s = new istore_t();
+	    int c;
+
+	    s.size = size;
+	    s.chunk = new IntBuffer[nchunks(size)];
+	    for (c = 0; c < s.chunk.length; ++c)
+		s.chunk[c] = ByteBuffer.allocateDirect(4 * chunk_len(size, c))
+		    .order(ByteOrder.nativeOrder()).asIntBuffer();
+	    return s;
+	}
+
+	public static
+	double dstore_get(dstore_t s, long i)
+	{
+	    return s.chunk[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+	}
+
+	public static
+	void dstore_set(dstore_t s, long i, double v)
+	{
+	    s.chunk[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), v);
+	}
+
+	public static
+	int istore_get(istore_t s, long i)
+	{
+	    return s.chunk[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+	}
+
+	public static
+	void istore_set(istore_t s, long i, int v)
+	{
+	    s.chunk[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), v);
+	}
+
+	/*
+	 * Copy len doubles starting at offset off of the store into dst[doff..].
+	 */
+	public static
+	void dstore_read(dstore_t s, long off, double dst[], int doff, int len)
+	{
+	    int c, p, k;
+	    DoubleBuffer b;
+
+	    while ( len > 0 ) {
+		c = (int) (off >>> CHUNK_SHIFT);
+		p = (int) (off & CHUNK_MASK);
+		k = Math.min(len, CHUNK_SIZE - p);
+		b = s.chunk[c].duplicate();
+		b.position(p);
+		b.get(dst, doff, k);
+		off += k;
+		doff += k;
+		len -= k;
+	    }
+	}
+
+	/*
+	 * Copy len doubles from src[soff..] into the store at offset off.
+	 */
+	public static
+	void dstore_write(dstore_t s, long off, double src[], int soff, int len)
+	{
+	    int c, p, k;
+	    DoubleBuffer b;
+
+	    while ( len > 0 ) {
+		c = (int) (off >>> CHUNK_SHIFT);
+		p = (int) (off & CHUNK_MASK);
+		k = Math.min(len, CHUNK_SIZE - p);
+		b = s.chunk[c].duplicate();
+		b.position(p);
+		b.put(src, soff, k);
+		off += k;
+		soff += k;
+		len -= k;
+	    }
+	}
+
+	public static
+	void istore_read(istore_t s, long off, int dst[], int doff, int len)
+	{
+	    int c, p, k;
+	    IntBuffer b;
+
+	    while ( len > 0 ) {
+		c = (int) (off >>> CHUNK_SHIFT);
+		p = (int) (off & CHUNK_MASK);
+		k = Math.min(len, CHUNK_SIZE - p);
+		b = s.chunk[c].duplicate();
+		b.position(p);
+		b.get(dst, doff, k);
+		off += k;
+		doff += k;
+		len -= k;
+	    }
+	}
+
+	public static
+	void istore_write(istore_t s, long off, int src[], int soff, int len)
+	{
+	    int c, p, k;
+	    IntBuffer b;
+
+	    while ( len > 0 ) {
+		c = (int) (off >>> CHUNK_SHIFT);
+		p = (int) (off & CHUNK_MASK);
+		k = Math.min(len, CHUNK_SIZE - p);
+		b = s.chunk[c].duplicate();
+		b.position(p);
+		b.put(src, soff, k);
+		off += k;
+		soff += k;
+		len -= k;
+	    }
+	}
+
+	/*
+	 * Release the chunks; the native memory is returned when the buffers
+	 * are collected.
+	 */
+	public static
+	void dstore_free(dstore_t s)
+	{
+	    s.chunk = null;
+	    s.size = 0;
+	}
+
+	public static
+	void istore_free(istore_t s)
+	{
+	    s.chunk = null;
+	    s.size = 0;
+	}
+
+	/*
+	 * Move the numerical values of L (SCP) and U (NCP) off the heap.
+	 * The subscripts and column pointers stay in their int arrays.
+	 */
+	public static
+	void dLUMoveOffHeap(SuperMatrix L, SuperMatrix U)
+	{
+	    SCPformat Lstore = (SCPformat) L.Store;
+	    NCPformat Ustore = (NCPformat) U.Store;
+	    int j, n = L.ncol, llen = 0, ulen = 0;
+
+	    if ( Lstore.nzval_store != null ) return;
+
+	    for (j = 0; j < n; ++j) {
+		llen = SUPERLU_MAX(llen, Lstore.nzval_colend[j]);
+		ulen = SUPERLU_MAX(ulen, Ustore.colend[j]);
+	    }
+
+	    Lstore.nzval_store = doubleStoreAlloc(llen);
+	    dstore_write(Lstore.nzval_store, 0, Lstore.nzval, 0, llen);
+	    Lstore.nzval = null;
+
+	    Ustore.nzval_store = doubleStoreAlloc(ulen);
+	    dstore_write(Ustore.nzval_store, 0, Ustore.nzval, 0, ulen);
+	    Ustore.nzval = null;
+	}
+
+	/*
+	 * Move the numerical values of L and U back into Java arrays.
+	 */
+	public static
+	void dLUMoveOnHeap(SuperMatrix L, SuperMatrix U)
+	{
+	    SCPformat Lstore = (SCPformat) L.Store;
+	    NCPformat Ustore = (NCPformat) U.Store;
+	    int len;
+
+	    if ( Lstore.nzval_store == null ) return;
+
+	    if ( (len = array_length(Lstore.nzval_store.size)) < 0 ||
+		 array_length(Ustore.nzval_store.size) < 0 )
+		SUPERLU_ABORT("Factor too large for on-heap storage.");
+	    Lstore.nzval = new double[len];
+	    dstore_read(Lstore.nzval_store, 0, Lstore.nzval, 0, len);
+	    dstore_free(Lstore.nzval_store);
+	    Lstore.nzval_store = null;
+
+	    len = (int) Ustore.nzval_store.size;
+	    Ustore.nzval = new double[len];
+	    dstore_read(Ustore.nzval_store, 0, Ustore.nzval, 0, len);
+	    dstore_free(Ustore.nzval_store);
+	    Ustore.nzval_store = null;
+	}
+
+}
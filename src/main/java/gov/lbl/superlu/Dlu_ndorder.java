@@ -0,0 +1,700 @@
+/*
+ * Nested-dissection ordering of a symmetric graph.
+ *
+ * Purpose
+ * =======
+ *
+ * get_nd_order() orders the vertices of the graph of A'*A or A'+A, as
+ * formed by getata_par() or at_plus_a_par() (symmetric, no diagonal), by
+ * recursive nested dissection. Each subgraph is split by a small vertex
+ * separator into two halves of about the same size; the halves are
+ * numbered first and the separator last. Every separator is then the top
+ * of two independent subtrees of the column elimination tree, which gives
+ * a short, bushy etree with many subtrees that the scheduler can hand to
+ * different threads. Subgraphs with at most Dlu.ND_LEAF_SIZE vertices are
+ * ordered by minimum degree.
+ *
+ * The separators come from multilevel bisection:
+ *
+ *    1. the graph is coarsened by heavy-edge matching until it has about
+ *       ND_COARSEN_TO vertices;
+ *    2. the coarsest graph is bisected by graph growing from a few
+ *       random seeds, keeping the smallest cut;
+ *    3. the bisection is projected back level by level and refined by
+ *       Fiduccia-Mattheyses passes under a balance constraint;
+ *    4. the edge separator is turned into a vertex separator by a
+ *       minimum vertex cover of the cut edges (Konig's theorem).
+ *
+ * All random choices use a fixed seed, so the ordering is reproducible.
+ * If the calling thread is interrupted, get_nd_order() stops with a
+ * CancellationException.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static gov.lbl.superlu.Dlu.ND_LEAF_SIZE;
+
+
+public class Dlu_ndorder {
+
+	/* Stop coarsening at this many vertices. */
+	static final int ND_COARSEN_TO = 100;
+
+	/* Initial bisections tried on the coarsest graph. */
+	static final int ND_NTRIALS = 4;
+
+	/* Fiduccia-Mattheyses passes per level. */
+	static final int ND_NPASSES = 8;
+
+	static class graph_t {
+	    int n;
+	    int xadj[];     /* size n+1 */
+	    int adj[];      /* neighbours */
+	    int adjw[];     /* edge weights */
+	    int vwgt[];     /* vertex weights */
+	    int twgt;       /* sum of the vertex weights */
+	}
+
+	/*
+	 * Indexed max-heap of vertices keyed by gain.
+	 */
+	static class heap_t {
+	    int n;
+	    int heap[];
+	    int key[];
+	    int pos[];      /* position in heap[], or -1 */
+
+	    heap_t(int size) {
+		heap = new int[size];
+		key = new int[size];
+		pos = new int[size];
+		Arrays.fill(pos, -1);
+	    }
+	}
+
+	static
+	void heap_up(heap_t h, int i)
+	{
+	    int v = h.heap[i], p;
+
+	    while ( i > 0 ) {
+		p = (i - 1) >> 1;
+		if ( h.key[h.heap[p]] >= h.key[v] ) break;
+		h.heap[i] = h.heap[p];
+		h.pos[h.heap[i]] = i;
+		i = p;
+	    }
+	    h.heap[i] = v;
+	    h.pos[v] = i;
+	}
+
+	static
+	void heap_down(heap_t h, int i)
+	{
+	    int v = h.heap[i], c;
+
+	    while ( (c = 2*i + 1) < h.n ) {
+		if ( c + 1 < h.n && h.key[h.heap[c+1]] > h.key[h.heap[c]] ) ++c;
+		if ( h.key[v] >= h.key[h.heap[c]] ) break;
+		h.heap[i] = h.heap[c];
+		h.pos[h.heap[i]] = i;
+		i = c;
+	    }
+	    h.heap[i] = v;
+	    h.pos[v] = i;
+	}
+
+	static
+	void heap_insert(heap_t h, int v, int key)
+	{
+	    h.key[v] = key;
+	    h.heap[h.n] = v;
+	    heap_up(h, h.n++);
+	}
+
+	static
+	void heap_update(heap_t h, int v, int key)
+	{
+	    int old = h.key[v];
+
+	    h.key[v] = key;
+	    if ( key > old ) heap_up(h, h.pos[v]);
+	    else heap_down(h, h.pos[v]);
+	}
+
+	static
+	void heap_delete(heap_t h, int v)
+	{
+	    int i = h.pos[v], last;
+
+	    h.pos[v] = -1;
+	    if ( i == --h.n ) return;
+	    last = h.heap[h.n];
+	    h.heap[i] = last;
+	    h.pos[last] = i;
+	    heap_up(h, i);
+	    heap_down(h, h.pos[last]);
+	}
+
+	static
+	void heap_clear(heap_t h)
+	{
+	    for (int i = 0; i < h.n; ++i) h.pos[h.heap[i]] = -1;
+	    h.n = 0;
+	}
+
+	/*
+	 * Form the subgraph induced by vtx[lo..hi-1], with unit weights.
+	 * g2l[] must be -1 on entry and is -1 again on exit.
+	 */
+	static
+	graph_t subgraph(int xadj[], int adj[], int vtx[], int lo, int hi, int g2l[])
+	{
+	    graph_t g = new graph_t();
+	    int ns = hi - lo, k, j, u, nnz = 0;
+
+	    for (k = 0; k < ns; ++k) g2l[vtx[lo + k]] = k;
+	    for (k = 0; k < ns; ++k)
+		for (j = xadj[vtx[lo + k]]; j < xadj[vtx[lo + k] + 1]; ++j)
+		    if ( g2l[adj[j]] >= 0 && adj[j] != vtx[lo + k] ) ++nnz;
+
+	    g.n = ns;
+	    g.twgt = ns;
+	    g.xadj = new int[ns + 1];
+	    g.adj = new int[nnz];
+	    g.adjw = new int[nnz];
+	    g.vwgt = new int[ns];
+	    nnz = 0;
+	    for (k = 0; k < ns; ++k) {
+		g.xadj[k] = nnz;
+		g.vwgt[k] = 1;
+		for (j = xadj[vtx[lo + k]]; j < xadj[vtx[lo + k] + 1]; ++j) {
+		    u = adj[j];
+		    if ( g2l[u] >= 0 && u != vtx[lo + k] ) {
+			g.adj[nnz] = g2l[u];
+			g.adjw[nnz++] = 1;
+		    }
+		}
+	    }
+	    g.xadj[ns] = nnz;
+	    for (k = 0; k < ns; ++k) g2l[vtx[lo + k]] = -1;
+	    return g;
+	}
+
+	/*
+	 * Coarsen g by heavy-edge matching; cmap[v] is the coarse vertex
+	 * that v is merged into.
+	 */
+	static
+	graph_t coarsen(graph_t g, int cmap[], Random rand)
+	{
+	    graph_t c = new graph_t();
+	    int n = g.n, i, j, k, v, u, w, best, bw, cn = 0, nnz = 0;
+	    int match[] = new int[n], order[] = new int[n], first[] = new int[n];
+	    int mark[];
+
+	    for (i = 0; i < n; ++i) {
+		match[i] = -1;
+		order[i] = i;
+	    }
+	    for (i = n - 1; i > 0; --i) {
+		j = rand.nextInt(i + 1);
+		k = order[i]; order[i] = order[j]; order[j] = k;
+	    }
+
+	    for (i = 0; i < n; ++i) {
+		v = order[i];
+		if ( match[v] != -1 ) continue;
+		best = v;
+		bw = 0;
+		for (j = g.xadj[v]; j < g.xadj[v+1]; ++j) {
+		    u = g.adj[j];
+		    if ( match[u] == -1 && g.adjw[j] > bw ) {
+			best = u;
+			bw = g.adjw[j];
+		    }
+		}
+		match[v] = best;
+		match[best] = v;
+		cmap[v] = cmap[best] = cn;
+		first[cn++] = v;
+	    }
+
+	    c.n = cn;
+	    c.twgt = g.twgt;
+	    c.xadj = new int[cn + 1];
+	    c.vwgt = new int[cn];
+	    c.adj = new int[g.xadj[n]];
+	    c.adjw = new int[g.xadj[n]];
+	    mark = new int[cn];
+	    Arrays.fill(mark, -1);
+	    for (k = 0; k < cn; ++k) {
+		c.xadj[k] = nnz;
+		v = first[k];
+		u = match[v];
+		c.vwgt[k] = g.vwgt[v] + (u != v ? g.vwgt[u] : 0);
+		for (w = v; ; w = u) {
+		    for (j = g.xadj[w]; j < g.xadj[w+1]; ++j) {
+			i = cmap[g.adj[j]];
+			if ( i == k ) continue;
+			if ( mark[i] >= c.xadj[k] ) {
+			    c.adjw[mark[i]] += g.adjw[j];
+			} else {
+			    mark[i] = nnz;
+			    c.adj[nnz] = i;
+			    c.adjw[nnz++] = g.adjw[j];
+			}
+		    }
+		    if ( w == u || u == v ) break;
+		}
+	    }
+	    c.xadj[cn] = nnz;
+	    return c;
+	}
+
+	static
+	int edge_cut(graph_t g, int part[])
+	{
+	    int v, j, cut = 0;
+
+	    for (v = 0; v < g.n; ++v)
+		for (j = g.xadj[v]; j < g.xadj[v+1]; ++j)
+		    if ( part[g.adj[j]] != part[v] ) cut += g.adjw[j];
+	    return cut / 2;
+	}
+
+	/*
+	 * Largest weight a half may have: half the total plus 5%, and at
+	 * least one vertex more than half.
+	 */
+	static
+	int max_part_weight(graph_t g)
+	{
+	    int v, maxv = 0;
+
+	    for (v = 0; v < g.n; ++v) maxv = Math.max(maxv, g.vwgt[v]);
+	    return g.twgt / 2 + Math.max(g.twgt / 40, maxv);
+	}
+
+	/*
+	 * Grow part 0 from seed in breadth-first order until it holds half
+	 * of the weight; unreached vertices (other components) are used as
+	 * new seeds.
+	 */
+	static
+	void grow_bisection(graph_t g, int part[], int seed)
+	{
+	    int n = g.n, queue[] = new int[n], head = 0, tail = 0, next = 0;
+	    int v, u, j, w0 = 0;
+
+	    Arrays.fill(part, 1);
+	    part[seed] = 0;
+	    queue[tail++] = seed;
+	    while ( 2 * w0 < g.twgt ) {
+		if ( head == tail ) {
+		    while ( next < n && part[next] == 0 ) ++next;
+		    if ( next == n ) break;
+		    part[next] = 0;
+		    queue[tail++] = next;
+		}
+		v = queue[head++];
+		w0 += g.vwgt[v];
+		for (j = g.xadj[v]; j < g.xadj[v+1]; ++j) {
+		    u = g.adj[j];
+		    if ( part[u] == 1 ) {
+			part[u] = 0;
+			queue[tail++] = u;
+		    }
+		}
+	    }
+	    /* Vertices queued but not reached keep to part 1. */
+	    while ( head < tail ) part[queue[head++]] = 1;
+	}
+
+	/*
+	 * Fiduccia-Mattheyses refinement of the bisection part[] of g.
+	 * Each pass moves every vertex at most once, highest gain first,
+	 * keeping both halves under max_part_weight(), and rolls back to the
+	 * best cut seen; a pass that does not improve ends the refinement.
+	 * An unbalanced input is first rebalanced.
+	 */
+	static
+	void fm_refine(graph_t g, int part[])
+	{
+	    int n = g.n, maxw = max_part_weight(g);
+	    int id[] = new int[n], ed[] = new int[n], moves[] = new int[n];
+	    boolean locked[] = new boolean[n];
+	    heap_t h[] = { new heap_t(n), new heap_t(n) };
+	    int pwgt[] = new int[2];
+	    int pass, v, u, j, w, from, to, nmoves, best_moves, cut, best_cut, nbad;
+	    int bal, best_bal, limit = Math.max(25, n / 100);
+
+	    for (v = 0; v < n; ++v) pwgt[part[v]] += g.vwgt[v];
+	    cut = edge_cut(g, part);
+
+	    for (pass = 0; pass < ND_NPASSES; ++pass) {
+		for (v = 0; v < n; ++v) {
+		    id[v] = ed[v] = 0;
+		    locked[v] = false;
+		    for (j = g.xadj[v]; j < g.xadj[v+1]; ++j)
+			if ( part[g.adj[j]] == part[v] ) id[v] += g.adjw[j];
+			else ed[v] += g.adjw[j];
+		    if ( ed[v] > 0 || pwgt[part[v]] > maxw )
+			heap_insert(h[part[v]], v, ed[v] - id[v]);
+		}
+
+		best_cut = cut;
+		best_bal = bal = Math.max(0, Math.max(pwgt[0], pwgt[1]) - maxw);
+		best_moves = nmoves = nbad = 0;
+		while ( true ) {
+		    if ( pwgt[0] > maxw ) from = 0;
+		    else if ( pwgt[1] > maxw ) from = 1;
+		    else {
+			from = -1;
+			for (to = 0; to < 2; ++to) {
+			    if ( h[1-to].n == 0 ) continue;
+			    v = h[1-to].heap[0];
+			    if ( pwgt[to] + g.vwgt[v] > maxw ) continue;
+			    if ( from == -1 || h[1-to].key[v] > h[from].key[h[from].heap[0]] )
+				from = 1 - to;
+			}
+		    }
+		    if ( from == -1 || h[from].n == 0 ) break;
+		    to = 1 - from;
+		    v = h[from].heap[0];
+		    heap_delete(h[from], v);
+
+		    locked[v] = true;
+		    moves[nmoves++] = v;
+		    part[v] = to;
+		    pwgt[from] -= g.vwgt[v];
+		    pwgt[to] += g.vwgt[v];
+		    cut -= ed[v] - id[v];
+		    w = id[v]; id[v] = ed[v]; ed[v] = w;
+		    for (j = g.xadj[v]; j < g.xadj[v+1]; ++j) {
+			u = g.adj[j];
+			if ( part[u] == to ) {
+			    id[u] += g.adjw[j];
+			    ed[u] -= g.adjw[j];
+			} else {
+			    id[u] -= g.adjw[j];
+			    ed[u] += g.adjw[j];
+			}
+			if ( locked[u] ) continue;
+			if ( h[part[u]].pos[u] >= 0 )
+			    heap_update(h[part[u]], u, ed[u] - id[u]);
+			else if ( ed[u] > 0 )
+			    heap_insert(h[part[u]], u, ed[u] - id[u]);
+		    }
+
+		    bal = Math.max(0, Math.max(pwgt[0], pwgt[1]) - maxw);
+		    if ( bal < best_bal || (bal == best_bal && cut < best_cut) ) {
+			best_bal = bal;
+			best_cut = cut;
+			best_moves = nmoves;
+			nbad = 0;
+		    } else if ( ++nbad > limit ) {
+			break;
+		    }
+		}
+		heap_clear(h[0]);
+		heap_clear(h[1]);
+
+		/* Undo the moves after the best point. */
+		while ( nmoves > best_moves ) {
+		    v = moves[--nmoves];
+		    pwgt[part[v]] -= g.vwgt[v];
+		    part[v] = 1 - part[v];
+		    pwgt[part[v]] += g.vwgt[v];
+		}
+		cut = best_cut;
+		if ( best_moves == 0 ) break;
+	    }
+	}
+
+	/*
+	 * Multilevel bisection of g into part[v] = 0 or 1.
+	 */
+	static
+	void bisect(graph_t g, int part[], Random rand)
+	{
+	    ArrayList<graph_t> graphs = new ArrayList<graph_t>();
+	    ArrayList<int[]> cmaps = new ArrayList<int[]>();
+	    graph_t cg = g, c;
+	    int cmap[], cpart[], fpart[], best[], trial, cut, best_cut, v, l;
+
+	    while ( cg.n > ND_COARSEN_TO ) {
+		cmap = new int[cg.n];
+		c = coarsen(cg, cmap, rand);
+		if ( c.n > 0.95 * cg.n ) break;
+		graphs.add(cg);
+		cmaps.add(cmap);
+		cg = c;
+	    }
+
+	    cpart = new int[cg.n];
+	    best = new int[cg.n];
+	    best_cut = Integer.MAX_VALUE;
+	    for (trial = 0; trial < ND_NTRIALS; ++trial) {
+		grow_bisection(cg, cpart, rand.nextInt(cg.n));
+		fm_refine(cg, cpart);
+		cut = edge_cut(cg, cpart);
+		if ( cut < best_cut ) {
+		    best_cut = cut;
+		    System.arraycopy(cpart, 0, best, 0, cg.n);
+		}
+	    }
+	    cpart = best;
+
+	    for (l = graphs.size() - 1; l >= 0; --l) {
+		cg = graphs.get(l);
+		cmap = cmaps.get(l);
+		fpart = (l == 0) ? part : new int[cg.n];
+		for (v = 0; v < cg.n; ++v) fpart[v] = cpart[cmap[v]];
+		fm_refine(cg, fpart);
+		cpart = fpart;
+	    }
+	    if ( cpart != part ) System.arraycopy(cpart, 0, part, 0, g.n);
+	}
+
+	/*
+	 * Turn the edge separator of the bisection part[] into a vertex
+	 * separator (part[v] = 2), using a minimum vertex cover of the
+	 * bipartite graph of cut edges. Returns the separator size.
+	 */
+	static
+	int vertex_separator(graph_t g, int part[])
+	{
+	    int n = g.n, mate[] = new int[n], visit[] = new int[n], via[] = new int[n];
+	    int it[] = new int[n], stack[] = new int[n], queue[] = new int[n];
+	    int v, u, x, j, k, top, head, tail, stamp = 0, nsep = 0;
+	    boolean found;
+
+	    Arrays.fill(mate, -1);
+
+	    /* Greedy matching of the cut edges, from part 0 to part 1. */
+	    for (v = 0; v < n; ++v) {
+		if ( part[v] != 0 ) continue;
+		for (j = g.xadj[v]; j < g.xadj[v+1]; ++j) {
+		    u = g.adj[j];
+		    if ( part[u] == 1 && mate[u] == -1 ) {
+			mate[v] = u;
+			mate[u] = v;
+			break;
+		    }
+		}
+	    }
+
+	    /* Augment by depth-first search; one visit stamp per phase. */
+	    do {
+		found = false;
+		++stamp;
+		for (v = 0; v < n; ++v) {
+		    if ( part[v] != 0 || mate[v] != -1 ) continue;
+		    top = 0;
+		    stack[0] = v;
+		    it[v] = g.xadj[v];
+		    while ( top >= 0 ) {
+			x = stack[top];
+			for (u = -1; it[x] < g.xadj[x+1]; ) {
+			    u = g.adj[it[x]++];
+			    if ( part[u] == 1 && visit[u] != stamp ) break;
+			    u = -1;
+			}
+			if ( u == -1 ) {
+			    --top;
+			    continue;
+			}
+			visit[u] = stamp;
+			via[x] = u;
+			if ( mate[u] == -1 ) {
+			    for (k = top; k >= 0; --k) {
+				x = stack[k];
+				mate[x] = via[x];
+				mate[via[x]] = x;
+			    }
+			    found = true;
+			    break;
+			}
+			stack[++top] = mate[u];
+			it[mate[u]] = g.xadj[mate[u]];
+		    }
+		}
+	    } while ( found );
+
+	    /* Konig: mark the vertices reachable by alternating paths from
+	       the unmatched boundary vertices of part 0. */
+	    ++stamp;
+	    head = tail = 0;
+	    for (v = 0; v < n; ++v) {
+		if ( part[v] != 0 || mate[v] != -1 ) continue;
+		for (j = g.xadj[v]; j < g.xadj[v+1]; ++j)
+		    if ( part[g.adj[j]] == 1 ) break;
+		if ( j < g.xadj[v+1] ) {
+		    visit[v] = stamp;
+		    queue[tail++] = v;
+		}
+	    }
+	    while ( head < tail ) {
+		x = queue[head++];
+		for (j = g.xadj[x]; j < g.xadj[x+1]; ++j) {
+		    u = g.adj[j];
+		    if ( part[u] != 1 || visit[u] == stamp ) continue;
+		    visit[u] = stamp;
+		    if ( mate[u] != -1 && visit[mate[u]] != stamp ) {
+			visit[mate[u]] = stamp;
+			queue[tail++] = mate[u];
+		    }
+		}
+	    }
+
+	    /* The cover: matched part-0 vertices not reached, and reached
+	       part-1 vertices. */
+	    for (v = 0; v < n; ++v) {
+		if ( (part[v] == 0 && mate[v] != -1 && visit[v] != stamp)
+		     || (part[v] == 1 && visit[v] == stamp) ) {
+		    via[nsep++] = v;
+		}
+	    }
+	    for (k = 0; k < nsep; ++k) part[via[k]] = 2;
+	    return nsep;
+	}
+
+	/*
+	 * Minimum degree ordering of the subgraph induced by vtx[lo..hi-1];
+	 * vtx[lo..hi-1] is rearranged into elimination order. The
+	 * elimination graph is kept as one bit set per vertex.
+	 */
+	static
+	void md_order(int xadj[], int adj[], int vtx[], int lo, int hi, int g2l[])
+	{
+	    int ns = hi - lo, words = (ns + 63) >>> 6, k, j, v, u, w, best;
+	    long bits[] = new long[ns * words];
+	    int deg[] = new int[ns], order[] = new int[ns];
+	    boolean done[] = new boolean[ns];
+
+	    for (k = 0; k < ns; ++k) g2l[vtx[lo + k]] = k;
+	    for (k = 0; k < ns; ++k) {
+		for (j = xadj[vtx[lo + k]]; j < xadj[vtx[lo + k] + 1]; ++j) {
+		    u = g2l[adj[j]];
+		    if ( u >= 0 && u != k ) bits[k * words + (u >>> 6)] |= 1L << u;
+		}
+		for (w = 0; w < words; ++w) deg[k] += Long.bitCount(bits[k * words + w]);
+	    }
+	    for (k = 0; k < ns; ++k) g2l[vtx[lo + k]] = -1;
+
+	    for (k = 0; k < ns; ++k) {
+		best = -1;
+		for (v = 0; v < ns; ++v)
+		    if ( !done[v] && (best == -1 || deg[v] < deg[best]) ) best = v;
+		v = best;
+		done[v] = true;
+		order[k] = vtx[lo + v];
+
+		/* The neighbours of v become a clique. */
+		for (w = 0; w < words; ++w) {
+		    long m = bits[v * words + w];
+		    while ( m != 0 ) {
+			u = (w << 6) + Long.numberOfTrailingZeros(m);
+			m &= m - 1;
+			for (j = 0; j < words; ++j)
+			    bits[u * words + j] |= bits[v * words + j];
+			bits[u * words + (u >>> 6)] &= ~(1L << u);
+			bits[u * words + (v >>> 6)] &= ~(1L << v);
+			deg[u] = 0;
+			for (j = 0; j < words; ++j)
+			    deg[u] += Long.bitCount(bits[u * words + j]);
+		    }
+		}
+	    }
+	    System.arraycopy(order, 0, vtx, lo, ns);
+	}
+
+	public static
+	void
+	get_nd_order(int n, int colptr[], int rowind[], int perm_c[])
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * GET_ND_ORDER computes a nested-dissection ordering of the symmetric
+	 * graph (colptr, rowind) of n vertices, without diagonal entries.
+	 *
+	 * perm_c  (output) int*
+	 *	   perm_c[i] = j means vertex i is numbered j.
+	 *
+	 */
+	{
+	    int vtx[] = new int[n], g2l[] = new int[n];
+	    int stack[] = new int[2 * n + 2], top = 0;
+	    int lo, hi, ns, k, n0, n1, part[], tmp[];
+	    Random rand = new Random(0x5eed);
+	    graph_t g;
+
+	    for (k = 0; k < n; ++k) {
+		vtx[k] = k;
+		g2l[k] = -1;
+	    }
+	    if ( n > 0 ) {
+		stack[top++] = 0;
+		stack[top++] = n;
+	    }
+
+	    /* vtx[lo..hi-1] holds the vertices of a subgraph that are to be
+	       numbered lo..hi-1. */
+	    while ( top > 0 ) {
+		if ( Thread.currentThread().isInterrupted() )
+		    throw new CancellationException("nested dissection interrupted");
+		hi = stack[--top];
+		lo = stack[--top];
+		ns = hi - lo;
+
+		if ( ns <= ND_LEAF_SIZE ) {
+		    md_order(colptr, rowind, vtx, lo, hi, g2l);
+		    continue;
+		}
+
+		g = subgraph(colptr, rowind, vtx, lo, hi, g2l);
+		part = new int[ns];
+		bisect(g, part, rand);
+		vertex_separator(g, part);
+
+		n0 = n1 = 0;
+		for (k = 0; k < ns; ++k) {
+		    if ( part[k] == 0 ) ++n0;
+		    else if ( part[k] == 1 ) ++n1;
+		}
+		if ( (n0 == 0 && n1 == ns) || (n1 == 0 && n0 == ns) ) {
+		    /* No split found; keep the current numbering. */
+		    continue;
+		}
+
+		/* Halves first, separator last. */
+		tmp = new int[ns];
+		int p0 = 0, p1 = n0, p2 = n0 + n1;
+		for (k = 0; k < ns; ++k) {
+		    if ( part[k] == 0 ) tmp[p0++] = vtx[lo + k];
+		    else if ( part[k] == 1 ) tmp[p1++] = vtx[lo + k];
+		    else tmp[p2++] = vtx[lo + k];
+		}
+		System.arraycopy(tmp, 0, vtx, lo, ns);
+
+		if ( n0 > 0 ) {
+		    stack[top++] = lo;
+		    stack[top++] = lo + n0;
+		}
+		if ( n1 > 0 ) {
+		    stack[top++] = lo + n0;
+		    stack[top++] = lo + n0 + n1;
+		}
+	    }
+
+	    for (k = 0; k < n; ++k) perm_c[vtx[k]] = k;
+	}
+
+}
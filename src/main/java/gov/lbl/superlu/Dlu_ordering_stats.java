@@ -0,0 +1,111 @@
+/*
+ * Symbolic statistics of a column ordering.
+ *
+ * Purpose
+ * =======
+ *
+ * ordering_stats() predicts, without factoring, how good a column
+ * permutation perm_c[] is for the LU factorization of A*Pc. It does the
+ * symbolic steps of sp_colorder() on a copy of the column pointers
+ * (column etree, postorder, qrnzcnt()) and reports:
+ *
+ *    nnz_l   nonzeros in the Householder matrix H, an upper bound on L;
+ *    nnz_u   nonzeros in R, an upper bound on U;
+ *    flops   the flops of the factorization when L and U fill these bounds:
+ *            sum over k of |L(:,k)| - 1 + 2 (|L(:,k)| - 1)(|U(k,:)| - 1);
+ *    cpath   the largest flops on a path from a leaf to a root of the
+ *            column etree, a lower bound on the parallel time;
+ *    ppath   the same path when the columns of a chain are pipelined, as
+ *            pdgstrf() does: a column waits for its children only for
+ *            its last update, 1 + 3 (|L(:,k)| - 1) flops, but is done by
+ *            one thread, so its path is at least its own flops;
+ *    height  the number of columns on the longest such path;
+ *    nleaves the number of leaves of the column etree.
+ *
+ * flops / cpath is the parallelism the column etree allows, and
+ * flops / ppath the parallelism with pipelining.
+ *
+ */
+package gov.lbl.superlu;
+
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu_qrnzcnt.qrnzcnt;
+import static gov.lbl.superlu.Dlu_sp_coletree.TreePostorder;
+import static gov.lbl.superlu.Dlu_sp_coletree.sp_coletree;
+
+
+public class Dlu_ordering_stats {
+
+	public static class ordering_stats_t {
+	    public long   nnz_l;
+	    public long   nnz_u;
+	    public double flops;
+	    public double cpath;
+	    public double ppath;
+	    public int    height;
+	    public int    nleaves;
+	}
+
+	public static
+	void
+	ordering_stats(SuperMatrix A, int perm_c[], ordering_stats_t stats)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, i, k, p;
+	    int colbeg[] = new int[n], colend[] = new int[n];
+	    int etree[] = new int[n], iwork[] = new int[n], post[];
+	    int perm[] = new int[n], invp[] = new int[n], iperm[] = new int[n];
+	    int colcnt_h[] = new int[n], colcnt_r[] = new int[n];
+	    int part_super_ata[] = new int[n], part_super_h[] = new int[n];
+	    int nlnz[] = new int[1], depth[] = new int[n+1];
+	    double path[] = new double[n+1], pipe[] = new double[n+1], f;
+	    boolean leaf[] = new boolean[n];
+
+	    for (i = 0; i < n; ++i) {
+		colbeg[perm_c[i]] = Astore.colptr[i];
+		colend[perm_c[i]] = Astore.colptr[i+1];
+	    }
+	    sp_coletree(colbeg, colend, Astore.rowind, A.nrow, n, etree);
+
+	    /* Postorder, as sp_colorder() does. */
+	    post = TreePostorder(n, etree);
+	    for (i = 0; i < n; ++i) iwork[post[i]] = post[etree[i]];
+	    for (i = 0; i < n; ++i) etree[i] = iwork[i];
+	    for (i = 0; i < n; ++i) perm[i] = post[perm_c[i]];
+	    for (i = 0; i < n; ++i) invp[perm[i]] = i;
+	    for (i = 0; i < n; ++i) iperm[i] = i;
+
+	    qrnzcnt(n, Astore.nnz, Astore.colptr, Astore.rowind, iperm,
+		    invp, perm, etree, colcnt_h, nlnz,
+		    part_super_ata, part_super_h, colcnt_r);
+
+	    /* Children come before their parent in postorder. */
+	    stats.nnz_l = stats.nnz_u = 0;
+	    stats.flops = stats.cpath = stats.ppath = 0.0;
+	    stats.height = stats.nleaves = 0;
+	    for (k = 0; k < n; ++k) leaf[k] = true;
+	    for (k = 0; k < n; ++k) {
+		stats.nnz_l += colcnt_h[k];
+		stats.nnz_u += colcnt_r[k];
+		f = (colcnt_h[k] - 1) + 2.0 * (colcnt_h[k] - 1) * (colcnt_r[k] - 1);
+		stats.flops += f;
+		path[k] += f;
+		pipe[k] = Math.max(pipe[k] + 1 + 3.0 * (colcnt_h[k] - 1), f);
+		++depth[k];
+		stats.cpath = Math.max(stats.cpath, path[k]);
+		stats.ppath = Math.max(stats.ppath, pipe[k]);
+		stats.height = Math.max(stats.height, depth[k]);
+		if ( leaf[k] ) ++stats.nleaves;
+		p = etree[k];
+		if ( p < n ) {
+		    leaf[p] = false;
+		    path[p] = Math.max(path[p], path[k]);
+		    pipe[p] = Math.max(pipe[p], pipe[k]);
+		    depth[p] = Math.max(depth[p], depth[k]);
+		}
+	    }
+	}
+
+}
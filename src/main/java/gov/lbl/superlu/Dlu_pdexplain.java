@@ -0,0 +1,323 @@
+/*
+ * Symbolic "explain plan" of a factorization.
+ *
+ * Purpose
+ * =======
+ *
+ * pdgstrf_explain() runs the symbolic steps that pdgssv() does before
+ * the numeric factorization, and nothing else: the column ordering
+ * (get_perm_c), the column etree and its postorder (sp_colorder), the
+ * row and column counts of H and R (qrnzcnt, through ordering_stats),
+ * the relaxed supernodes (pxgstrf_relax_snode), the panel partition
+ * (ParallelInit) and the static layout of lusup[] (dPresetMap). No value
+ * of A is read, and no storage of the size of L or U is allocated.
+ *
+ * The result predicts the cost of pdgstrf() on nprocs threads:
+ *
+ *    nnz_l, nnz_u      upper bounds on nnz(L) and nnz(U);
+ *    flops, cpath      the flops bound and its critical path in the etree;
+ *    ppath             the critical path when chains are pipelined;
+ *    height, nleaves   shape of the column etree;
+ *    super_histo[]     sizes of the supernodes of H, split at maxsuper;
+ *    nrelax            number of relaxed supernodes at the leaves;
+ *    relax_flops       flops on the zeros the relaxed supernodes store;
+ *    panel_histo[]     sizes of the panels, as in Gstat.panel_histo;
+ *    npanels, ntasks   panels, and tasks initially known to the scheduler;
+ *    lu_bytes          storage pdgstrf_MemInit() allocates for L and U;
+ *    work_bytes        storage pdgstrf_WorkInit() and friends allocate
+ *                      per thread, plus shared_bytes for the scheduler.
+ *
+ * The byte counts are those of the initial allocation: if L or U fill
+ * more than the guess of the tuning (sp_ienv(7), sp_ienv(8) by default),
+ * the arrays are expanded during the factorization, up to the bounds
+ * nnz_l and nnz_u.
+ *
+ */
+package gov.lbl.superlu;
+
+import gov.lbl.superlu.Dlu_ordering_stats.ordering_stats_t;
+import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
+import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
+import gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_relax_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.panstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.PREDICT_OPT;
+import static gov.lbl.superlu.Dlu.PROFILE;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_ordering_stats.ordering_stats;
+import static gov.lbl.superlu.Dlu_pdmemory.GluIntArray;
+import static gov.lbl.superlu.Dlu_pdmemory.NUM_TEMPV;
+import static gov.lbl.superlu.Dlu_pdmemory.dPresetMap;
+import static gov.lbl.superlu.Dlu_pdmemory.fill_guess;
+import static gov.lbl.superlu.Dlu_pmemory.intCalloc;
+import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
+import static gov.lbl.superlu.Dlu_pxgstrf_relax_snode.pxgstrf_relax_snode;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.ParallelInit;
+import static gov.lbl.superlu.Dlu_slu_mt_util.NO_MARKER;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.YES;
+import static gov.lbl.superlu.Dlu_sp_colorder.sp_colorder;
+import static gov.lbl.superlu.Dlu_sp_colorder.sp_symbolic_wait;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+
+
+public class Dlu_pdexplain {
+
+	static final int IWORD = 4; /* sizeof(int) */
+	static final int DWORD = 8; /* sizeof(double) */
+
+	public static class explain_plan_t {
+	    public int    n;
+	    public int    nprocs;
+	    public int    panel_size;
+	    public int    relax;
+	    public int    maxsuper;
+	    public int    perm_c[];      /* the postordered column permutation */
+	    public long   nnz_l;
+	    public long   nnz_u;
+	    public double flops;
+	    public double cpath;
+	    public double ppath;         /* cpath with pipelining */
+	    public int    height;
+	    public int    nleaves;
+	    public int    nsuper;
+	    public int    super_histo[]; /* size maxsuper+1 */
+	    public int    nrelax;
+	    public double relax_flops;
+	    public int    npanels;
+	    public int    ntasks;
+	    public int    panel_histo[]; /* size max(panel_size, relax)+1 */
+	    public long   nzlumax;       /* initial length of lusup[] */
+	    public boolean dynamic_snode_bound;
+	    public long   lu_bytes;
+	    public long   work_bytes;    /* per thread */
+	    public long   shared_bytes;
+	    public long   total_bytes;
+	}
+
+	public static
+	void
+	pdgstrf_explain(int nprocs, int permc_spec, SuperMatrix A, explain_plan_t plan)
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * Computes the column ordering of A with get_perm_c(permc_spec, ...),
+	 * and the plan of its factorization on nprocs threads with the
+	 * default tuning of sp_ienv(), as pdgssv() would use it.
+	 *
+	 */
+	{
+	    int perm_c[] = new int[A.ncol];
+
+	    get_perm_c(permc_spec, A, perm_c);
+	    pdgstrf_explain(nprocs, SP_IENV_TUNING, A, perm_c, plan);
+	}
+
+	public static
+	void
+	pdgstrf_explain(int nprocs, int panel_size, int relax,
+			SuperMatrix A, int perm_c[], explain_plan_t plan)
+	{
+	    sp_tuning_t d = SP_IENV_TUNING;
+
+	    pdgstrf_explain(nprocs,
+			    new sp_tuning_t(panel_size, relax, d.maxsuper, d.rowblk,
+					    d.colblk, d.fill_lusup, d.fill_ucol, d.fill_lsub),
+			    A, perm_c, plan);
+	}
+
+	public static
+	void
+	pdgstrf_explain(int nprocs, sp_tuning_t tuning,
+			SuperMatrix A, int perm_c[], explain_plan_t plan)
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * PDGSTRF_EXPLAIN fills plan with the symbolic analysis of the LU
+	 * factorization of A*Pc on nprocs threads, with the given tuning, as
+	 * pdgssv() would do it. A is of type NC; perm_c[] is not modified.
+	 * See the description at the top of this file.
+	 *
+	 */
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, m = A.nrow, annz = Astore.nnz, i, j, k, r, w, maxsup;
+	    int panel_size = tuning.panel_size, relax = tuning.relax;
+	    int perm[] = new int[n];
+	    superlumt_options_t options = new superlumt_options_t();
+	    SuperMatrix AC = new SuperMatrix();
+	    ordering_stats_t stats = new ordering_stats_t();
+	    pxgstrf_relax_t pxgstrf_relax[];
+	    pxgstrf_shared_t pxgstrf_shared = new pxgstrf_shared_t();
+	    Gstat_t Gstat = new Gstat_t();
+	    GlobalLU_t Glu = new GlobalLU_t();
+	    long nzlumax;
+	    double c, d;
+
+	    plan.n = n;
+	    plan.nprocs = nprocs;
+	    plan.panel_size = panel_size;
+	    plan.relax = relax;
+	    plan.maxsuper = maxsup = tuning.maxsuper;
+
+	    /* Column etree, postorder and the structure of H, as pdgstrf_init(). */
+	    System.arraycopy(perm_c, 0, perm, 0, n);
+	    options.nprocs = nprocs;
+	    options.refact = NO;
+	    options.panel_size = panel_size;
+	    options.relax = relax;
+	    options.usepr[0] = NO;
+	    options.SymmetricMode = NO;
+	    options.PrintStat = NO;
+	    options.perm_c = perm;
+	    options.tuning = tuning;
+	    sp_colorder(A, perm, options, AC);
+	    sp_symbolic_wait(options);
+	    plan.perm_c = perm;
+
+	    /* Bounds on L and U, flops and the critical path. */
+	    ordering_stats(A, perm, stats);
+	    plan.nnz_l = stats.nnz_l;
+	    plan.nnz_u = stats.nnz_u;
+	    plan.flops = stats.flops;
+	    plan.cpath = stats.cpath;
+	    plan.ppath = stats.ppath;
+	    plan.height = stats.height;
+	    plan.nleaves = stats.nleaves;
+
+	    /* Relaxed supernodes and panels, as pdgstrf_thread_init(). */
+	    pxgstrf_relax = new pxgstrf_relax_t[n+2];
+	    for (i = 0; i < n+2; ++i) pxgstrf_relax[i] = new pxgstrf_relax_t();
+	    pxgstrf_relax_snode(n, options, pxgstrf_relax);
+	    plan.nrelax = pxgstrf_relax[0].size;
+
+	    /* A relaxed supernode is stored as a dense trapezoid with the rows
+	       of its last column below it; count the updates of its zeros. */
+	    plan.relax_flops = 0;
+	    for (k = 1; k <= plan.nrelax; ++k) {
+		j = pxgstrf_relax[k].fcol;
+		w = pxgstrf_relax[k].size;
+		r = w + options.colcnt_h[j + w - 1] - 1;
+		for (i = 0; i < w; ++i) {
+		    d = r - i - 1;
+		    c = options.colcnt_h[j + i] - 1;
+		    plan.relax_flops += 2.0 * SUPERLU_MAX(0.0, d * d - c * c);
+		}
+	    }
+
+	    w = SUPERLU_MAX(panel_size, relax) + 1;
+	    Gstat.panel_histo = intCalloc(w);
+	if (PROFILE) {
+	    Gstat.panstat = new panstat_t[n];
+	    for (i = 0; i < n; ++i) Gstat.panstat[i] = new panstat_t();
+	}
+	if (PREDICT_OPT) {
+	    Gstat.cp_firstkid = intMalloc(n+1);
+	    Gstat.cp_nextkid = intMalloc(n+1);
+	}
+	    pxgstrf_shared.Gstat = Gstat;
+	    ParallelInit(n, pxgstrf_relax, options, pxgstrf_shared);
+	    plan.panel_histo = Gstat.panel_histo;
+	    plan.ntasks = pxgstrf_shared.tasks_remain;
+	    plan.npanels = 0;
+	    for (i = 0; i < w; ++i) plan.npanels += plan.panel_histo[i];
+
+	    /* Layout of lusup[]; this also splits part_super_h at maxsup. */
+	    nzlumax = dPresetMap(n, AC, pxgstrf_relax, options, Glu);
+	    plan.dynamic_snode_bound = Glu.dynamic_snode_bound == YES.ordinal();
+
+	    plan.super_histo = new int[maxsup+1];
+	    plan.nsuper = 0;
+	    for (j = 0; j < n; j += options.part_super_h[j]) {
+		++plan.super_histo[Math.min(options.part_super_h[j], maxsup)];
+		++plan.nsuper;
+	    }
+
+	    explain_bytes(m, n, annz, nprocs, tuning,
+			  plan.dynamic_snode_bound ? -1 : nzlumax, plan);
+	}
+
+	/*
+	 * The storage of pdgstrf() on nprocs threads for an m-by-n A with annz
+	 * nonzeros: sets plan.nzlumax, lu_bytes, work_bytes, shared_bytes and
+	 * total_bytes. nzlumax is the size of lusup[] from dPresetMap(), or -1
+	 * for that of the dynamic scheme, from the fill guess of the tuning.
+	 */
+	static
+	void
+	explain_bytes(int m, int n, int annz, int nprocs, sp_tuning_t tuning,
+		      long nzlumax, explain_plan_t plan)
+	{
+	    int panel_size = tuning.panel_size, maxsup = tuning.maxsuper;
+	    long nzumax, nzlmax;
+
+	    /* Initial sizes of the factor arrays, as pdgstrf_MemInit(). */
+	    nzumax = tuning.fill_ucol < 0 ? fill_guess(-tuning.fill_ucol, annz) : tuning.fill_ucol;
+	    nzlmax = tuning.fill_lsub < 0 ? fill_guess(-tuning.fill_lsub, annz) : tuning.fill_lsub;
+	    if ( nzlumax < 0 )
+		nzlumax = tuning.fill_lusup < 0 ? fill_guess(-tuning.fill_lusup, annz) : tuning.fill_lusup;
+	    plan.nzlumax = nzlumax;
+	    plan.lu_bytes = (long) GluIntArray(n) * IWORD
+		+ (nzlmax + nzumax) * IWORD + (nzlumax + nzumax) * DWORD;
+
+	    /* Per thread: pdgstrf_WorkInit(), tempv[], spa_marker[], w_lsub_end[]. */
+	    plan.work_bytes = ((2L*panel_size + 5 + NO_MARKER) * m + (long) m * panel_size
+			       + panel_size) * IWORD
+		+ ((long) m * panel_size + Math.max(0, NUM_TEMPV(m, panel_size, maxsup, tuning.rowblk)))
+		* DWORD;
+
+	    /* Shared by the threads: permutations, pruning, scheduling state. */
+	    plan.shared_bytes = 14L * n * IWORD;
+
+	    plan.total_bytes = plan.lu_bytes + plan.shared_bytes
+		+ (long) nprocs * plan.work_bytes;
+	}
+
+	/*
+	 * Print the plan.
+	 */
+	public static
+	void
+	print_explain_plan(explain_plan_t plan)
+	{
+	    int i;
+
+	    printf("Plan: n %d, nprocs %d, panel_size %d, relax %d, maxsuper %d\n",
+		   plan.n, plan.nprocs, plan.panel_size, plan.relax, plan.maxsuper);
+	    printf("  nnz(L) <= %d, nnz(U) <= %d, flops <= %.3e\n",
+		   plan.nnz_l, plan.nnz_u, plan.flops);
+	    printf("  etree height %d, leaves %d, critical path %.3e flops (parallelism %.2f)\n",
+		   plan.height, plan.nleaves, plan.cpath,
+		   plan.cpath > 0 ? plan.flops / plan.cpath : 1.0);
+	    printf("  pipelined critical path %.3e flops (parallelism %.2f)\n",
+		   plan.ppath, plan.ppath > 0 ? plan.flops / plan.ppath : 1.0);
+	    printf("  %d supernodes in H, %d relaxed supernodes (%.3e flops on zeros)\n",
+		   plan.nsuper, plan.nrelax, plan.relax_flops);
+	    printf("  %d panels, %d initial tasks\n", plan.npanels, plan.ntasks);
+	    printf("  panel size histogram:\n");
+	    for (i = 0; i < plan.panel_histo.length; ++i)
+		if ( plan.panel_histo[i] != 0 )
+		    printf("\t%4d\t%8d\n", i, plan.panel_histo[i]);
+	    printf("  supernode size histogram:\n");
+	    for (i = 0; i < plan.super_histo.length; ++i)
+		if ( plan.super_histo[i] != 0 )
+		    printf("\t%4d\t%8d\n", i, plan.super_histo[i]);
+	    printf("  memory: L\\U %.1f MB (lusup %d%s), work %.1f MB per thread, "
+		   + "shared %.1f MB, total %.1f MB\n",
+		   plan.lu_bytes / 1048576.0, plan.nzlumax,
+		   plan.dynamic_snode_bound ? ", dynamic" : "",
+		   plan.work_bytes / 1048576.0, plan.shared_bytes / 1048576.0,
+		   plan.total_bytes / 1048576.0);
+	}
+
+}
@@ -0,0 +1,449 @@
+/*
+ * Asynchronous factor and solve, with cancellation, deadlines and
+ * progress reports.
+ *
+ * Purpose
+ * =======
+ *
+ * pdgstrf_async() factors A*Pc, for a column permutation given by the
+ * caller, on nprocs threads as pdgssv() does, but in a task of the given
+ * executor, and returns at once a CompletableFuture of the factors.
+ * pdgstrs_async() then solves with them, and pdgsfree() releases them.
+ * Given a pool_job_t, the panels run on the workers of its pool instead
+ * of threads of their own (see Dlu_pdgspool).
+ *
+ * The factorization is controlled through a factor_control_t, which
+ * superlumt_options.control refers to:
+ *
+ *    o cancel(), or cancel() of the future, asks the factorization to
+ *      stop. The threads of pdgstrf() and pdgstrf_sequential() check the
+ *      request each time they are about to take a panel: a panel begun is
+ *      completed, so that no thread waits for one nobody will finish,
+ *      and then every thread leaves its main loop, frees its working
+ *      storage and ends. pdgstrf() then drops L, U and the storage of the
+ *      scheduler and returns info = CANCELLED;
+ *    o a deadline, in SuperLU_timer_() time (see set_timeout()), cancels
+ *      the factorization the same way once it has passed; the future then
+ *      completes with a TimeoutException;
+ *    o a listener receives, at most every interval ns, the panels taken
+ *      so far (from tasks_remain) out of npanels and the flops so far
+ *      (the sum of procstat[].fcops). It is called by one of the threads
+ *      of the factorization, and must be quick.
+ *
+ * The future of the factors completes normally when pdgstrf() returns
+ * info >= 0 (info > 0 is a singular U or a memory failure, as for
+ * pdgssv(), and is left in factors_t.info), with a CancellationException
+ * when cancelled, with a TimeoutException when the deadline passed, even
+ * before the first panel, with an IllegalArgumentException when an
+ * argument is wrong, and with the exception or error thrown by the
+ * factorization otherwise.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gov.lbl.superlu.Dlu_pdgspool.pool_job_t;
+import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.procstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.trans_t;
+import gov.lbl.superlu.Dlu_supermatrix.DNformat;
+import gov.lbl.superlu.Dlu_supermatrix.NRformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.AUTOTUNE;
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_autotune.sp_autotune;
+import static gov.lbl.superlu.Dlu_dgstrs.dgstrs;
+import static gov.lbl.superlu.Dlu_pdgstrf.pdgstrf;
+import static gov.lbl.superlu.Dlu_pdgstrf_init.pdgstrf_init;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_pxgstrf_finalize.pxgstrf_finalize;
+import static gov.lbl.superlu.Dlu_slu_mt_util.CANCELLED;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FACT;
+import static gov.lbl.superlu.Dlu_slu_mt_util.fact_t.EQUILIBRATE;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.TRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NR;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCP;
+import static gov.lbl.superlu.Dlu_util.Destroy_SuperNode_SCLU;
+import static gov.lbl.superlu.Dlu_util.Destroy_SuperNode_SCP;
+import static gov.lbl.superlu.Dlu_util.Destroy_CompCol_NCP;
+import static gov.lbl.superlu.Dlu_util.StatAlloc;
+import static gov.lbl.superlu.Dlu_util.StatFree;
+import static gov.lbl.superlu.Dlu_util.StatInit;
+
+
+public class Dlu_pdgsasync {
+
+	/* Receives the progress of a factorization. */
+	public interface progress_listener_t {
+	    void progress(int panels_done, int npanels, double flops);
+	}
+
+	/* Cancellation, deadline and progress of one factorization. */
+	public static class factor_control_t {
+	    volatile boolean cancelled;     /* cancel() called or deadline passed */
+	    volatile boolean expired;       /* the deadline passed */
+	    public double deadline;         /* SuperLU_timer_() time; none if 0 */
+	    public progress_listener_t listener;
+	    public double interval = 1e8;   /* ns between two reports */
+	    final AtomicLong next_report = new AtomicLong();
+	    int npanels;                    /* set by pdgstrf() */
+
+	    public void cancel() { cancelled = true; }
+	    public boolean is_cancelled() { return cancelled; }
+	    public boolean is_expired() { return expired; }
+
+	    /* Set the deadline to millis ms from now. */
+	    public void set_timeout(long millis) {
+		deadline = SuperLU_timer_() + millis * 1e6;
+	    }
+	}
+
+	/* The factors of pdgstrf_async(), as pdgssv() keeps them. */
+	public static class factors_t {
+	    public SuperMatrix L = new SuperMatrix();
+	    public SuperMatrix U = new SuperMatrix();
+	    public int         perm_c[];
+	    public int         perm_r[];
+	    public trans_t     trans;
+	    public Gstat_t     Gstat = new Gstat_t();
+	    public int         info;
+	    public double      flops;
+	    SuperMatrix        AC = new SuperMatrix();
+	    superlumt_options_t options = new superlumt_options_t();
+	}
+
+	/* Executor of the tasks when none is given: daemon threads, created
+	   as needed. */
+	static ExecutorService default_executor;
+
+	static synchronized
+	Executor
+	async_executor()
+	{
+	    if ( default_executor == null )
+		default_executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		    public Thread newThread(Runnable r) {
+			Thread thr = new Thread(r, "superlu-async");
+			thr.setDaemon(true);
+			return thr;
+		    }
+		});
+	    return default_executor;
+	}
+
+	public static
+	CompletableFuture<factors_t>
+	pdgstrf_async(int nprocs, SuperMatrix A, int perm_c[], sp_tuning_t tuning,
+		      factor_control_t control, Executor executor)
+	{
+	    return pdgstrf_async(nprocs, A, perm_c, tuning, control, null, executor);
+	}
+
+	public static
+	CompletableFuture<factors_t>
+	pdgstrf_async(final int nprocs, final SuperMatrix A, final int perm_c[],
+		      final sp_tuning_t tuning, final factor_control_t control,
+		      final pool_job_t job, Executor executor)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * PDGSTRF_ASYNC factors A*Pc = L*U, with the partial pivoting of
+	 * pdgssv(), on nprocs threads, in a task of executor (of daemon threads
+	 * of this class if null). See the description at the top of this file.
+	 *
+	 * Arguments
+	 * =========
+	 *
+	 * nprocs  (input) int
+	 *         Number of threads of pdgstrf().
+	 *
+	 * A       (input) SuperMatrix*
+	 *         The matrix, square, of type NC or NR, as in pdgssv().
+	 *
+	 * perm_c  (input) int*
+	 *         The column permutation, as in pdgssv(); it is copied.
+	 *
+	 * tuning  (input) sp_tuning_t*
+	 *         The tuning parameters; chosen as in pdgssv() if null.
+	 *
+	 * control (input) factor_control_t*
+	 *         Cancellation, deadline and progress; a new one if null.
+	 *
+	 * job     (input) pool_job_t*
+	 *         The pool that runs the panels, with the weight and priority
+	 *         of this factorization; see Dlu_pdgspool. If null, pdgstrf()
+	 *         starts threads of its own, unless SHARED_POOL is set.
+	 *
+	 */
+	    final factor_control_t ctl = control != null ? control : new factor_control_t();
+	    final CompletableFuture<factors_t> future = new CompletableFuture<factors_t>() {
+		public boolean cancel(boolean mayInterruptIfRunning) {
+		    ctl.cancel();
+		    return super.cancel(mayInterruptIfRunning);
+		}
+	    };
+
+	    (executor != null ? executor : async_executor()).execute(new Runnable() {
+		public void run() {
+		    factors_t F;
+		    if ( control_stop(ctl) ) {
+			future.completeExceptionally(ctl.expired ?
+			    new TimeoutException("pdgstrf_async(): deadline passed") :
+			    new CancellationException());
+			return;
+		    }
+		    try {
+			F = factor(nprocs, A, perm_c, tuning, ctl, job);
+		    } catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			return;
+		    }
+		    if ( F.info == CANCELLED ) {
+			if ( ctl.expired )
+			    future.completeExceptionally(new TimeoutException(
+				"pdgstrf_async(): deadline passed"));
+			else
+			    future.completeExceptionally(new CancellationException());
+		    } else if ( F.info < 0 ) {
+			future.completeExceptionally(new IllegalArgumentException(
+			    "pdgstrf_async(): argument " + (-F.info) + " had an illegal value"));
+		    } else if ( !future.complete(F) ) {
+			pdgsfree(F);    /* cancelled meanwhile */
+		    }
+		}
+	    });
+	    return future;
+	}
+
+	public static
+	CompletableFuture<SuperMatrix>
+	pdgstrs_async(final factors_t F, final SuperMatrix B, Executor executor)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * PDGSTRS_ASYNC solves A*X = B with the factors F of pdgstrf_async(),
+	 * in a task of executor (of daemon threads of this class if null). The
+	 * future completes with B, which holds X, or with an
+	 * IllegalArgumentException if F is not a successful factorization or
+	 * B is wrong.
+	 *
+	 */
+	    final CompletableFuture<SuperMatrix> future = new CompletableFuture<SuperMatrix>();
+
+	    (executor != null ? executor : async_executor()).execute(new Runnable() {
+		public void run() {
+		    int info[] = new int[1];
+		    if ( F.info != 0 )
+			info[0] = -1;
+		    else if ( B.ncol < 0 || ((DNformat) B.Store).lda < SUPERLU_MAX(1, F.L.nrow) )
+			info[0] = -2;
+		    if ( info[0] == 0 ) {
+			try {
+			    dgstrs(F.trans, F.L, F.U, F.perm_r, F.perm_c, B, F.Gstat, info);
+			} catch (RuntimeException | Error e) {
+			    future.completeExceptionally(e);
+			    return;
+			}
+		    }
+		    if ( info[0] != 0 )
+			future.completeExceptionally(new IllegalArgumentException(
+			    "pdgstrs_async(): argument " + (-info[0]) + " had an illegal value"));
+		    else
+			future.complete(B);
+		}
+	    });
+	    return future;
+	}
+
+	/*
+	 * Release the factors of pdgstrf_async().
+	 */
+	public static
+	void
+	pdgsfree(factors_t F)
+	{
+	    if ( F.options == null ) return;
+	    pxgstrf_finalize(F.options, F.AC);
+	    if ( F.L.Stype == SLU_SCLU && F.L.Store != null ) {
+		Destroy_SuperNode_SCLU(F.L);
+	    } else if ( F.L.Stype == SLU_SCP && F.L.Store != null ) {
+		Destroy_SuperNode_SCP(F.L);
+		Destroy_CompCol_NCP(F.U);
+	    }
+	    F.L.Store = F.U.Store = null;
+	    StatFree(F.Gstat);
+	    F.options = null;
+	}
+
+	/*
+	 * Factor A*Pc in the calling thread, as pdgssv() does; F.info is the
+	 * info of pdgstrf(), or that of the argument checks.
+	 */
+	static
+	factors_t
+	factor(int nprocs, SuperMatrix A, int perm_c[], sp_tuning_t tuning,
+	       factor_control_t control, pool_job_t job)
+	{
+	    factors_t F = new factors_t();
+	    SuperMatrix AA;
+	    int n, i, info[] = new int[1];
+
+	    if ( nprocs <= 0 ) F.info = -1;
+	    else if ( A.nrow != A.ncol || A.nrow < 0 ||
+		      (A.Stype != SLU_NC && A.Stype != SLU_NR) ||
+		      A.Dtype != SLU_D || A.Mtype != SLU_GE )
+		F.info = -2;
+	    else if ( perm_c == null || perm_c.length < A.ncol ) F.info = -3;
+	    else if ( tuning != null && tuning.check() != 0 ) F.info = -4;
+	    if ( F.info != 0 ) {
+		F.options = null;
+		return F;
+	    }
+
+	    n = A.ncol;
+	    F.trans = NOTRANS;
+	    if ( A.Stype == SLU_NR ) {
+		NRformat Astore = (NRformat) A.Store;
+		AA = new SuperMatrix();
+		dCreate_CompCol_Matrix(AA, A.ncol, A.nrow, Astore.nnz,
+				       Astore.nzval, Astore.colind, Astore.rowptr,
+				       SLU_NC, A.Dtype, A.Mtype);
+		F.trans = TRANS;
+	    } else {
+		AA = A;
+	    }
+
+	    F.perm_c = new int[n];
+	    System.arraycopy(perm_c, 0, F.perm_c, 0, n);
+	    F.perm_r = new int[n];
+	    if ( tuning == null )
+		tuning = AUTOTUNE ? sp_autotune(nprocs, AA, F.perm_c, null) : SP_IENV_TUNING;
+
+	    StatAlloc(n, nprocs, tuning.panel_size, tuning.relax, F.Gstat);
+	    StatInit(n, nprocs, F.Gstat);
+	    pdgstrf_init(nprocs, EQUILIBRATE, F.trans, NO, tuning.panel_size,
+			 tuning.relax, 1.0, NO, 0.0, F.perm_c, F.perm_r, null, 0,
+			 AA, F.AC, F.options, F.Gstat);
+	    F.options.tuning = tuning;
+	    F.options.control = control;
+	    F.options.pool_job = job;
+
+	    pdgstrf(F.options, F.AC, F.perm_r, F.L, F.U, F.Gstat, info);
+	    F.info = info[0];
+	    F.options.control = null;
+	    F.options.pool_job = null;
+
+	    F.flops = 0;
+	    for (i = 0; i < nprocs; ++i)
+		if ( F.Gstat.procstat[i] != null ) F.flops += F.Gstat.procstat[i].fcops;
+	    F.Gstat.ops[FACT.ordinal()] = (float) F.flops;
+
+	    if ( F.info == CANCELLED ) {
+		/* L and U were not set up: release the rest at once. */
+		pdgsfree(F);
+	if ( PRNTlevel>=1 ) {
+		printf(".. pdgstrf_async(): %s after %.3e flops\n",
+		       control.expired ? "deadline passed" : "cancelled", F.flops);
+	}
+	    }
+	    return F;
+	}
+
+	/*
+	 * Whether the factorization is to stop: cancelled, or its deadline
+	 * passed.
+	 */
+	static
+	boolean
+	control_stop(factor_control_t control)
+	{
+	    if ( control.cancelled ) return true;
+	    if ( control.deadline != 0 && SuperLU_timer_() > control.deadline ) {
+		control.expired = true;
+		control.cancelled = true;
+		return true;
+	    }
+	    return false;
+	}
+
+	/*
+	 * Called by each thread of pdgstrf() before it takes a panel: reports
+	 * the progress if it is time to, and returns whether the factorization
+	 * is to stop.
+	 */
+	static
+	boolean
+	pxgstrf_cancelled(pxgstrf_shared_t pxgstrf_shared, factor_control_t control)
+	{
+	    double now;
+	    long next;
+
+	    if ( control.cancelled ) return true;
+	    if ( control.deadline == 0 && control.listener == null ) return false;
+
+	    now = SuperLU_timer_();
+	    if ( control.deadline != 0 && now > control.deadline ) {
+		control.expired = true;
+		control.cancelled = true;
+		return true;
+	    }
+	    if ( control.listener != null && now >= (next = control.next_report.get())
+		 && control.next_report.compareAndSet(next, (long) (now + control.interval)) )
+		pxgstrf_progress(pxgstrf_shared, control);
+	    return false;
+	}
+
+	/*
+	 * Called by pdgstrf() before the threads start, and once more when
+	 * they have all ended.
+	 */
+	static
+	void
+	pxgstrf_progress_start(pxgstrf_shared_t pxgstrf_shared, factor_control_t control)
+	{
+	    control.npanels = pxgstrf_shared.tasks_remain;
+	    control.next_report.set((long) SuperLU_timer_());
+	}
+
+	static
+	void
+	pxgstrf_progress(pxgstrf_shared_t pxgstrf_shared, factor_control_t control)
+	{
+	    procstat_t procstat[] = pxgstrf_shared.Gstat.procstat;
+	    double flops = 0;
+	    int i;
+
+	    for (i = 0; i < procstat.length; ++i)
+		if ( procstat[i] != null ) flops += procstat[i].fcops;
+	    control.listener.progress(control.npanels - Math.max(0, pxgstrf_shared.tasks_remain),
+				      control.npanels, flops);
+	}
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Throughput mode: many small independent systems.
+ *
+ * Purpose
+ * =======
+ *
+ * pdgssv_batch() solves the independent systems A[k] * X[k] = B[k],
+ * k = 0, ..., nsys-1, on nworkers threads. For small matrices the
+ * parallel machinery of pdgstrf() (threads created per factorization,
+ * ParallelInit(), the scheduler critical section, spin waits) costs more
+ * than the arithmetic, so each system is instead ordered, factored and
+ * solved entirely by one worker, with the sequential engine of pdgstrf()
+ * (pdgstrf_sequential, whatever Dlu.SEQUENTIAL), which runs in the worker
+ * itself and takes no lock at all.
+ *
+ * The systems are handed out through an atomic counter, so the workers
+ * balance themselves without a shared queue. Each worker keeps the
+ * working storage of pdgstrf_thread() (a pdgstrf_work_t) across its
+ * systems, growing it to the largest it has seen. With AUTOTUNE set,
+ * sp_autotune() is run once, on the largest system, and its choice is
+ * used for all of them.
+ *
+ * The aggregate figures (systems per second, flops) are returned in a
+ * batch_stat_t.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gov.lbl.superlu.Dlu_pdmemory.pdgstrf_work_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.trans_t;
+import gov.lbl.superlu.Dlu_supermatrix.DNformat;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.NRformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.AUTOTUNE;
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_autotune.sp_autotune;
+import static gov.lbl.superlu.Dlu_dgstrs.dgstrs;
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgstrf.pdgstrf;
+import static gov.lbl.superlu.Dlu_pdgstrf_init.pdgstrf_init;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_pxgstrf_finalize.pxgstrf_finalize;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
+import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.TRISOLVE;
+import static gov.lbl.superlu.Dlu_slu_mt_util.fact_t.EQUILIBRATE;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.TRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NR;
+import static gov.lbl.superlu.Dlu_util.StatAlloc;
+import static gov.lbl.superlu.Dlu_util.StatFree;
+import static gov.lbl.superlu.Dlu_util.StatInit;
+import static gov.lbl.superlu.Dlu_xerbla_.xerbla_;
+
+
+public class Dlu_pdgsbatch {
+
+	/* Aggregate statistics of a batch. */
+	public static class batch_stat_t {
+	    public int    nsys;
+	    public int    nsolved;        /* systems with info = 0 */
+	    public int    nworkers;
+	    public double wtime;          /* seconds, wall clock */
+	    public double systems_per_sec;
+	    public double flops;          /* factor and solve */
+	    public double mflops;
+	}
+
+	public static
+	void
+	pdgssv_batch(int nworkers, int permc_spec, final SuperMatrix A[],
+		     final SuperMatrix B[], final int info[], batch_stat_t stat)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * PDGSSV_BATCH solves the systems A[k] * X[k] = B[k], each as pdgssv()
+	 * would on one thread, distributing them over nworkers threads. See
+	 * the description at the top of this file.
+	 *
+	 * Arguments
+	 * =========
+	 *
+	 * nworkers (input) int
+	 *        Number of worker threads; each system is solved by one of
+	 *        them.
+	 *
+	 * permc_spec (input) int
+	 *        Column ordering of every A[k], as in get_perm_c(). The graphs
+	 *        of the orderings are formed by the worker alone.
+	 *
+	 * A      (input) SuperMatrix*[]
+	 *        The matrices, square, of type NC or NR, as in pdgssv().
+	 *
+	 * B      (input/output) SuperMatrix*[]
+	 *        The right-hand sides, of type DN; on exit, B[k] holds the
+	 *        solution X[k] if info[k] = 0.
+	 *
+	 * info   (output) int[]
+	 *        info[k] is the info of system k, as returned by pdgssv(), or
+	 *        A[k].ncol + 1 if its factorization failed with an exception;
+	 *        -1 is returned in info[0], after xerbla_(), if the arguments
+	 *        of the batch itself are wrong.
+	 *
+	 * stat   (output) batch_stat_t*
+	 *        The aggregate statistics of the batch, if not null.
+	 *
+	 */
+	    final int nsys;
+	    final AtomicInteger next = new AtomicInteger();
+	    final double flops[];
+	    final int spec = permc_spec;
+	    final sp_tuning_t tuning;
+	    ExecutorService pool = null;
+	    List<Future<?>> tasks;
+	    double t;
+	    int k, i, iinfo = 0;
+
+	    if ( nworkers <= 0 ) iinfo = 1;
+	    else if ( A == null ) iinfo = 3;
+	    else if ( B == null || B.length < A.length ) iinfo = 4;
+	    else if ( info == null || info.length < A.length ) iinfo = 5;
+	    if ( iinfo != 0 ) {
+		xerbla_("pdgssv_batch", iinfo);
+		if ( info != null && info.length > 0 ) info[0] = -1;
+		return;
+	    }
+
+	    nsys = A.length;
+	    nworkers = SUPERLU_MAX(1, SUPERLU_MIN(nworkers, nsys));
+	    flops = new double[nworkers];
+
+	    t = SuperLU_timer_();
+	    tuning = AUTOTUNE ? batch_tuning(spec, A) : SP_IENV_TUNING;
+	    tasks = new ArrayList<Future<?>>(nworkers);
+	    if ( nworkers > 1 ) {
+		pool = Executors.newFixedThreadPool(nworkers, new ThreadFactory() {
+		    public Thread newThread(Runnable r) {
+			Thread thr = new Thread(r, "superlu-batch");
+			thr.setDaemon(true);
+			return thr;
+		    }
+		});
+	    }
+	    for (i = 0; i < nworkers; ++i) {
+		final int pnum = i;
+		Runnable worker = new Runnable() {
+		    public void run() {
+			pdgstrf_work_t work = new pdgstrf_work_t();
+			int kk;
+			while ( (kk = next.getAndIncrement()) < nsys ) {
+			    try {
+				flops[pnum] += batch_solve(spec, tuning, A[kk], B[kk], info, kk, work);
+			    } catch (RuntimeException | Error e) {
+				printf(".. pdgssv_batch(): system %d failed: %s\n", kk, e);
+				info[kk] = A[kk].ncol + 1;
+				work = new pdgstrf_work_t();
+			    }
+			}
+		    }
+		};
+		if ( pool == null ) worker.run();
+		else tasks.add(pool.submit(worker));
+	    }
+	    for (i = 0; i < tasks.size(); ++i) {
+		try {
+		    tasks.get(i).get();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+		    printf(".. pdgssv_batch(): worker %d failed: %s\n", i, e.getCause());
+		}
+	    }
+	    if ( pool != null ) pool.shutdown();
+	    t = (SuperLU_timer_() - t) * 1e-9;  /* SuperLU_timer_() counts ns */
+
+	    if ( stat != null ) {
+		stat.nsys = nsys;
+		stat.nworkers = nworkers;
+		stat.wtime = t;
+		stat.nsolved = 0;
+		for (k = 0; k < nsys; ++k) if ( info[k] == 0 ) ++stat.nsolved;
+		stat.flops = 0;
+		for (i = 0; i < nworkers; ++i) stat.flops += flops[i];
+		stat.systems_per_sec = t > 0 ? nsys / t : 0;
+		stat.mflops = t > 0 ? stat.flops * 1e-6 / t : 0;
+	    }
+
+	if ( PRNTlevel>=1 ) {
+	    printf(".. pdgssv_batch(): %d systems on %d workers, %.3f s\n", nsys, nworkers, t);
+	}
+	}
+
+	/*
+	 * Print the aggregate statistics of a batch.
+	 */
+	public static
+	void
+	print_batch_stat(batch_stat_t stat)
+	{
+	    printf("Batch        = %d systems, %d solved, %d workers\n",
+		   stat.nsys, stat.nsolved, stat.nworkers);
+	    printf("Batch time   = %8.3f\tsystems/s = %10.1f\n",
+		   stat.wtime, stat.systems_per_sec);
+	    printf("Batch flops  = %e\tMflops = %8.2f\n", stat.flops, stat.mflops);
+	}
+
+	/*
+	 * The tuning of sp_autotune() for the largest system of A[] (by nnz)
+	 * of a valid type, ordered by permc_spec; that of sp_ienv() if none.
+	 */
+	static
+	sp_tuning_t
+	batch_tuning(int permc_spec, SuperMatrix A[])
+	{
+	    SuperMatrix AA = null;
+	    int k, nnz, best = -1, perm_c[];
+
+	    for (k = 0; k < A.length; ++k) {
+		if ( A[k].nrow != A[k].ncol || A[k].Dtype != SLU_D || A[k].Mtype != SLU_GE )
+		    continue;
+		if ( A[k].Stype == SLU_NC ) nnz = ((NCformat) A[k].Store).nnz;
+		else if ( A[k].Stype == SLU_NR ) nnz = ((NRformat) A[k].Store).nnz;
+		else continue;
+		if ( nnz > best ) {
+		    best = nnz;
+		    AA = A[k];
+		}
+	    }
+	    if ( AA == null ) return SP_IENV_TUNING;
+	    if ( AA.Stype == SLU_NR ) AA = nc_view(AA);
+
+	    perm_c = new int[AA.ncol];
+	    get_perm_c(permc_spec, AA, perm_c, 1, false);
+	    return sp_autotune(1, AA, perm_c, null);
+	}
+
+	/* A of type NR viewed as its transpose, of type NC. */
+	static
+	SuperMatrix
+	nc_view(SuperMatrix A)
+	{
+	    NRformat Astore = (NRformat) A.Store;
+	    SuperMatrix AA = new SuperMatrix();
+
+	    dCreate_CompCol_Matrix(AA, A.ncol, A.nrow, Astore.nnz,
+				   Astore.nzval, Astore.colind, Astore.rowptr,
+				   SLU_NC, A.Dtype, A.Mtype);
+	    return AA;
+	}
+
+	/*
+	 * Order, factor with tuning and solve system k in the calling thread,
+	 * re-using the working storage work; returns the flops of its factor
+	 * and solve.
+	 */
+	static
+	double
+	batch_solve(int permc_spec, sp_tuning_t tuning, SuperMatrix A,
+		    SuperMatrix B, int info[], int k, pdgstrf_work_t work)
+	{
+	    SuperMatrix AA = null, AC = new SuperMatrix();
+	    SuperMatrix L = new SuperMatrix(), U = new SuperMatrix();
+	    superlumt_options_t options = new superlumt_options_t();
+	    Gstat_t Gstat = new Gstat_t();
+	    trans_t trans = NOTRANS;
+	    int n, perm_c[], perm_r[];
+	    int iinfo[] = new int[1];
+	    double flopcnt;
+
+	    info[k] = 0;
+	    if ( A.nrow != A.ncol || A.nrow < 0 ||
+		 (A.Stype != SLU_NC && A.Stype != SLU_NR) ||
+		 A.Dtype != SLU_D || A.Mtype != SLU_GE )
+		info[k] = -2;
+	    else if ( B.ncol < 0 || ((DNformat) B.Store).lda < SUPERLU_MAX(1, A.nrow) )
+		info[k] = -7;
+	    if ( info[k] != 0 ) return 0;
+
+	    n = A.ncol;
+	    if ( A.Stype == SLU_NR ) {
+		AA = nc_view(A);
+		trans = TRANS;
+	    } else {
+		AA = A;
+	    }
+
+	    perm_c = new int[n];
+	    perm_r = new int[n];
+	    get_perm_c(permc_spec, AA, perm_c, 1, false);
+
+	    StatAlloc(n, 1, tuning.panel_size, tuning.relax, Gstat);
+	    StatInit(n, 1, Gstat);
+	    pdgstrf_init(1, EQUILIBRATE, trans, NO, tuning.panel_size, tuning.relax,
+			 1.0, NO, 0.0, perm_c, perm_r, null, 0, AA, AC,
+			 options, Gstat);
+	    options.tuning = tuning;
+	    options.workspace = work;
+	    options.sequential = true;
+
+	    pdgstrf(options, AC, perm_r, L, U, Gstat, iinfo);
+	    flopcnt = Gstat.procstat[0].fcops;
+	    if ( iinfo[0] == 0 ) {
+		dgstrs(trans, L, U, perm_r, perm_c, B, Gstat, iinfo);
+		flopcnt += Gstat.ops[TRISOLVE.ordinal()];
+	    }
+	    info[k] = iinfo[0];
+
+	    pxgstrf_finalize(options, AC);
+	    StatFree(Gstat);
+	    return flopcnt;
+	}
+
+}
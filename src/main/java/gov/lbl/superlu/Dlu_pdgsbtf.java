@@ -0,0 +1,754 @@
+/*
+ * Block triangular form.
+ *
+ * Purpose
+ * =======
+ *
+ * A reducible matrix can be permuted to block upper triangular form
+ *
+ *                 [ A11 A12 ... A1k ]
+ *    A(p,q)  =    [     A22 ... A2k ]
+ *                 [         ... ... ]
+ *                 [             Akk ]
+ *
+ * with square, irreducible diagonal blocks. btf_order() computes p and q:
+ * a maximum transversal of A (a row permutation with a zero-free
+ * diagonal), then the strongly connected components of the graph of the
+ * permuted matrix (Tarjan's algorithm), which are the diagonal blocks.
+ *
+ * pdgssv_btf() solves A*X = B through this form. Only the diagonal
+ * blocks are factored, concurrently, each with its own column ordering:
+ * the blocks of one column are factored directly, those of at most
+ * Dlu.BTF_DENSE columns as dense matrices, and the others by pdgstrf(),
+ * with a share of the nprocs threads proportional to their size. X is
+ * then found by block back substitution, from Akk up to A11, through the
+ * off-diagonal blocks, which are neither factored nor filled.
+ *
+ * singleton_order() and pdgssv_singletons() do the same with a cheaper
+ * form that only peels the row and column singletons of A: triangular
+ * parts of 1-by-1 blocks before and after a single core block.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+import gov.lbl.superlu.Dlu_supermatrix.DNformat;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.AUTOTUNE;
+import static gov.lbl.superlu.Dlu.BTF_DENSE;
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_autotune.sp_autotune;
+import static gov.lbl.superlu.Dlu_dgstrs.dgstrs;
+import static gov.lbl.superlu.Dlu_dldperm.maxtrans;
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdgstrf.pdgstrf;
+import static gov.lbl.superlu.Dlu_pdgstrf_init.pdgstrf_init;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+import static gov.lbl.superlu.Dlu_pxgstrf_finalize.pxgstrf_finalize;
+import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
+import static gov.lbl.superlu.Dlu_slu_mt_util.fact_t.EQUILIBRATE;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_util.StatAlloc;
+import static gov.lbl.superlu.Dlu_util.StatFree;
+import static gov.lbl.superlu.Dlu_util.StatInit;
+import static gov.lbl.superlu.Dlu_xerbla_.xerbla_;
+
+
+public class Dlu_pdgsbtf {
+
+	/* The block triangular form A(p,q) of a square matrix A. */
+	public static class btf_t {
+	    public int n;
+	    public int rank;      /* structural rank of A */
+	    public int nblocks;   /* number of diagonal blocks; 0 if rank < n */
+	    public int p[];       /* row p[k] of A is row k of A(p,q) */
+	    public int q[];       /* column q[k] of A is column k of A(p,q) */
+	    public int r[];       /* block k is rows and columns r[k]:r[k+1]-1 */
+	}
+
+	/* The factors of one diagonal block. */
+	static class btf_block_t {
+	    int         fst, size;
+	    int         nprocs;
+	    double      lu[];        /* dense factors, column-major */
+	    int         ipiv[];
+	    SuperMatrix L, U, AC;
+	    int         perm_c[], perm_r[];
+	    superlumt_options_t options;
+	    Gstat_t     Gstat;
+	    int         info;
+	}
+
+	public static
+	int
+	btf_order(SuperMatrix A, btf_t btf)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * BTF_ORDER computes the block upper triangular form of the square
+	 * matrix A, stored column-wise (Stype = NC). Returns the structural
+	 * rank of A; if it is less than n, A has no zero-free diagonal and
+	 * btf.nblocks is 0.
+	 *
+	 * The maximum transversal is found by maxtrans() (see dldperm), the
+	 * strongly connected components by Tarjan's algorithm, with explicit
+	 * stacks, in O(n + nnz).
+	 *
+	 */
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, colptr[] = Astore.colptr, rowind[] = Astore.rowind;
+	    int jmatch[], imatch[];
+	    int index[], low[], stk[], cs[], ep[];
+	    boolean onstk[];
+	    int j, k, v, rank, cnt, top, ctop, pos, nb;
+
+	    btf.n = n;
+	    btf.nblocks = 0;
+
+	    /* Maximum transversal: jmatch[j] is the row matched to column j. */
+	    jmatch = new int[n];
+	    imatch = new int[A.nrow];
+	    rank = maxtrans(A.nrow, n, colptr, null, rowind, jmatch, imatch);
+	    btf.rank = rank;
+	    if ( rank < n ) return rank;
+
+	    /* Strongly connected components of the graph with an edge from
+	       column j to column imatch[i] for each entry (i, j) of A. A
+	       component is complete before any component that reaches it, so
+	       numbering them in that order gives an upper triangular form. */
+	    btf.p = new int[n];
+	    btf.q = new int[n];
+	    btf.r = new int[n+1];
+	    index = new int[n];
+	    low = new int[n];
+	    stk = new int[n];
+	    cs = new int[n];
+	    ep = new int[n];
+	    onstk = new boolean[n];
+	    for (j = 0; j < n; ++j) index[j] = EMPTY;
+	    cnt = pos = nb = 0;
+	    top = -1;
+	    btf.r[0] = 0;
+	    for (k = 0; k < n; ++k) {
+		if ( index[k] != EMPTY ) continue;
+		ctop = 0;
+		cs[0] = k;
+		index[k] = low[k] = cnt++;
+		stk[++top] = k;
+		onstk[k] = true;
+		ep[k] = colptr[k];
+		while ( ctop >= 0 ) {
+		    v = cs[ctop];
+		    if ( ep[v] < colptr[v+1] ) {
+			j = imatch[rowind[ep[v]++]];
+			if ( index[j] == EMPTY ) {
+			    cs[++ctop] = j;
+			    index[j] = low[j] = cnt++;
+			    stk[++top] = j;
+			    onstk[j] = true;
+			    ep[j] = colptr[j];
+			} else if ( onstk[j] ) {
+			    low[v] = SUPERLU_MIN(low[v], index[j]);
+			}
+			continue;
+		    }
+		    if ( --ctop >= 0 ) low[cs[ctop]] = SUPERLU_MIN(low[cs[ctop]], low[v]);
+		    if ( low[v] == index[v] ) {
+			/* v is the root of a component: pop it. */
+			do {
+			    j = stk[top--];
+			    onstk[j] = false;
+			    btf.q[pos++] = j;
+			} while ( j != v );
+			btf.r[++nb] = pos;
+		    }
+		}
+	    }
+	    for (k = 0; k < n; ++k) btf.p[k] = jmatch[btf.q[k]];
+	    btf.nblocks = nb;
+
+	if ( PRNTlevel>=1 ) {
+	    int nsingle = 0, maxb = 0;
+	    for (k = 0; k < nb; ++k) {
+		if ( btf.r[k+1] - btf.r[k] == 1 ) ++nsingle;
+		maxb = SUPERLU_MAX(maxb, btf.r[k+1] - btf.r[k]);
+	    }
+	    printf(".. btf_order(): n %d, %d blocks, %d of size 1, largest %d\n",
+		   n, nb, nsingle, maxb);
+	}
+	    return rank;
+	}
+
+	public static
+	int
+	singleton_order(SuperMatrix A, btf_t btf)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * SINGLETON_ORDER peels the row and column singletons of the square
+	 * matrix A (Stype = NC), and returns the form
+	 *
+	 *                 [ U11 A12 A13 ]
+	 *    A(p,q)  =    [     A22 A23 ]
+	 *                 [         U33 ]
+	 *
+	 * in btf, where U11 and U33 are upper triangular, made of 1-by-1
+	 * diagonal blocks, and A22 is the core, one block (btf.nblocks counts
+	 * them all). A column with a single nonzero in the remaining rows is
+	 * moved to the front, with that row, and its row removed; a row with
+	 * a single nonzero in the remaining columns is moved to the back, with
+	 * that column, and its column removed; until there is neither. A
+	 * singleton whose value is zero is left in the core. The core keeps
+	 * the relative order of the rows and columns of A.
+	 *
+	 * Returns the order of the core. Runs in O(n + nnz).
+	 *
+	 */
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, colptr[] = Astore.colptr, rowind[] = Astore.rowind;
+	    double nzval[] = Astore.nzval;
+	    int rowptr[], colind[], colcnt[], rowcnt[], cq[], rq[];
+	    int i, j, k, pp, pivp, ncq = 0, nrq = 0, fst = 0, lst = n, ncore;
+	    boolean rdead[], cdead[];
+
+	    btf.n = n;
+	    btf.rank = n;
+	    btf.p = new int[n];
+	    btf.q = new int[n];
+
+	    /* Row-wise structure of A, and the counts. */
+	    rowptr = new int[n+1];
+	    colind = new int[colptr[n]];
+	    colcnt = new int[n];
+	    rowcnt = new int[n];
+	    for (j = 0; j < n; ++j) {
+		colcnt[j] = colptr[j+1] - colptr[j];
+		for (pp = colptr[j]; pp < colptr[j+1]; ++pp) ++rowcnt[rowind[pp]];
+	    }
+	    for (i = 0; i < n; ++i) rowptr[i+1] = rowptr[i] + rowcnt[i];
+	    cq = new int[n];   /* used as a fill pointer first */
+	    System.arraycopy(rowptr, 0, cq, 0, n);
+	    for (j = 0; j < n; ++j)
+		for (pp = colptr[j]; pp < colptr[j+1]; ++pp) colind[cq[rowind[pp]]++] = j;
+
+	    rq = new int[n];
+	    rdead = new boolean[n];
+	    cdead = new boolean[n];
+	    for (j = 0; j < n; ++j) if ( colcnt[j] == 1 ) cq[ncq++] = j;
+	    for (i = 0; i < n; ++i) if ( rowcnt[i] == 1 ) rq[nrq++] = i;
+
+	    while ( ncq > 0 || nrq > 0 ) {
+		if ( ncq > 0 ) {
+		    /* Column singleton j: pivot on its one live row. */
+		    j = cq[--ncq];
+		    if ( cdead[j] || colcnt[j] != 1 ) continue;
+		    for (pivp = colptr[j]; rdead[rowind[pivp]]; ++pivp) ;
+		    if ( nzval[pivp] == 0.0 ) continue;
+		    i = rowind[pivp];
+		    btf.q[fst] = j;
+		    btf.p[fst++] = i;
+		    cdead[j] = rdead[i] = true;
+		    for (pp = rowptr[i]; pp < rowptr[i+1]; ++pp) {
+			k = colind[pp];
+			if ( !cdead[k] && --colcnt[k] == 1 ) cq[ncq++] = k;
+		    }
+		} else {
+		    /* Row singleton i: pivot on its one live column. */
+		    i = rq[--nrq];
+		    if ( rdead[i] || rowcnt[i] != 1 ) continue;
+		    for (pivp = rowptr[i]; cdead[colind[pivp]]; ++pivp) ;
+		    j = colind[pivp];
+		    for (pivp = colptr[j]; rowind[pivp] != i; ++pivp) ;
+		    if ( nzval[pivp] == 0.0 ) continue;
+		    btf.q[--lst] = j;
+		    btf.p[lst] = i;
+		    cdead[j] = rdead[i] = true;
+		    for (pp = colptr[j]; pp < colptr[j+1]; ++pp) {
+			k = rowind[pp];
+			if ( !rdead[k] && --rowcnt[k] == 1 ) rq[nrq++] = k;
+		    }
+		}
+	    }
+
+	    /* The core, in the order of A. */
+	    for (i = 0, k = fst; i < n; ++i) if ( !rdead[i] ) btf.p[k++] = i;
+	    for (j = 0, k = fst; j < n; ++j) if ( !cdead[j] ) btf.q[k++] = j;
+
+	    /* Blocks: the front singletons, the core, the back singletons. */
+	    ncore = lst - fst;
+	    btf.nblocks = fst + (ncore > 0 ? 1 : 0) + (n - lst);
+	    btf.r = new int[btf.nblocks + 1];
+	    for (k = 0; k <= fst; ++k) btf.r[k] = k;
+	    if ( ncore > 0 ) btf.r[k++] = lst;
+	    for (j = lst + 1; j <= n; ++j) btf.r[k++] = j;
+
+	if ( PRNTlevel>=1 ) {
+	    printf(".. singleton_order(): n %d, %d column and %d row singletons, core %d\n",
+		   n, fst, n - lst, ncore);
+	}
+	    return ncore;
+	}
+
+	public static
+	void
+	pdgssv_btf(int nprocs, int permc_spec, SuperMatrix A, SuperMatrix B,
+		   btf_t btf, int info[])
+	{
+	    pdgssv_btf(nprocs, permc_spec, A, B, btf, info, null);
+	}
+
+	public static
+	void
+	pdgssv_btf(int nprocs, int permc_spec, SuperMatrix A, SuperMatrix B,
+		   btf_t btf, int info[], sp_tuning_t tuning)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * PDGSSV_BTF solves the system of linear equations A*X=B through the
+	 * block triangular form of A. It performs the following steps:
+	 *
+	 *   1. Permute A to block upper triangular form A(p,q) (btf_order).
+	 *
+	 *   2. Factor the diagonal blocks, concurrently: blocks of size 1 are
+	 *      their own pivot; blocks of at most BTF_DENSE columns are
+	 *      factored as dense matrices with partial pivoting; the others
+	 *      are ordered by get_perm_c(permc_spec) and factored by pdgstrf()
+	 *      on a share of the nprocs threads proportional to their size.
+	 *
+	 *   3. Solve by block back substitution, with the factors of the
+	 *      diagonal blocks and the off-diagonal blocks of A(p,q).
+	 *
+	 * If A is structurally singular, or irreducible with more than
+	 * BTF_DENSE columns, the whole matrix is solved by pdgssv() instead;
+	 * a smaller irreducible A is factored as one dense block.
+	 *
+	 * Arguments
+	 * =========
+	 *
+	 * nprocs     (input) int
+	 *            Number of threads used to factor the diagonal blocks.
+	 *
+	 * permc_spec (input) int
+	 *            Column ordering of the blocks, as in get_perm_c().
+	 *
+	 * A          (input) SuperMatrix*
+	 *            Matrix A in A*X=B, square, with Stype = NC, Dtype = _D,
+	 *            Mtype = GE.
+	 *
+	 * B          (input/output) SuperMatrix*
+	 *            B has types: Stype = DN, Dtype = _D, Mtype = GE.
+	 *            On entry, the right hand side matrix.
+	 *            On exit, the solution matrix if info = 0.
+	 *
+	 * btf        (output) btf_t*
+	 *            The block triangular form used; if not null.
+	 *
+	 * info       (output) int*
+	 *            = 0: successful exit
+	 *            < 0: if info = -i, the i-th argument had an illegal value
+	 *            > 0: if info = i, and i is
+	 *                 <= A.ncol: the diagonal block that holds column i-1
+	 *                    of A(p,q) is singular, so the solution could not
+	 *                    be computed.
+	 *                 > A.ncol: memory allocation failure, as in pdgssv().
+	 *
+	 * tuning     (input) sp_tuning_t*
+	 *            The tuning parameters of every factorization by pdgstrf()
+	 *            or pdgssv(); if null, those chosen by sp_autotune() for
+	 *            each block when AUTOTUNE is set, and those of sp_ienv()
+	 *            otherwise, as in pdgssv().
+	 *
+	 */
+	    if ( btf_check("pdgssv_btf", nprocs, A, B, info, tuning) != 0 ) return;
+	    if ( btf == null ) btf = new btf_t();
+	    btf_order(A, btf);
+
+	    if ( btf.nblocks == 0 || (btf.nblocks == 1 && A.ncol > BTF_DENSE) ) {
+		/* Structurally singular, or irreducible: nothing to split. */
+		btf_whole(nprocs, permc_spec, A, B, info, tuning);
+		return;
+	    }
+	    btf_factor_solve(nprocs, permc_spec, A, B, btf, info, tuning);
+	}
+
+	public static
+	void
+	pdgssv_singletons(int nprocs, int permc_spec, SuperMatrix A, SuperMatrix B,
+			  btf_t btf, int info[])
+	{
+	    pdgssv_singletons(nprocs, permc_spec, A, B, btf, info, null);
+	}
+
+	public static
+	void
+	pdgssv_singletons(int nprocs, int permc_spec, SuperMatrix A, SuperMatrix B,
+			  btf_t btf, int info[], sp_tuning_t tuning)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * PDGSSV_SINGLETONS solves A*X=B as pdgssv_btf(), with the form of
+	 * singleton_order() in place of the block triangular form: the row
+	 * and column singletons are peeled off, and only the core A22 is
+	 * ordered by get_perm_c(permc_spec) and factored by pdgstrf(). The
+	 * solve goes through U33, A22 and U11 by block back substitution.
+	 * There is no maximum transversal, so the cost of the peeling is
+	 * O(nnz) whatever A.
+	 *
+	 * If no singleton is found, A is solved by pdgssv(), or as one dense
+	 * block if it has at most BTF_DENSE columns. The arguments are those
+	 * of pdgssv_btf().
+	 *
+	 */
+	    if ( btf_check("pdgssv_singletons", nprocs, A, B, info, tuning) != 0 ) return;
+	    if ( btf == null ) btf = new btf_t();
+	    if ( singleton_order(A, btf) == A.ncol && A.ncol > BTF_DENSE ) {
+		btf_whole(nprocs, permc_spec, A, B, info, tuning);
+		return;
+	    }
+	    btf_factor_solve(nprocs, permc_spec, A, B, btf, info, tuning);
+	}
+
+	/* Check the arguments of pdgssv_btf() and pdgssv_singletons(). */
+	static
+	int
+	btf_check(String name, int nprocs, SuperMatrix A, SuperMatrix B, int info[],
+		  sp_tuning_t tuning)
+	{
+	    info[0] = 0;
+	    if ( nprocs <= 0 ) info[0] = -1;
+	    else if ( A.nrow != A.ncol || A.nrow < 0 || A.Stype != SLU_NC ||
+		      A.Dtype != SLU_D || A.Mtype != SLU_GE )
+		info[0] = -3;
+	    else if ( B.ncol < 0 || ((DNformat) B.Store).lda < SUPERLU_MAX(1, A.nrow) )
+		info[0] = -4;
+	    else if ( tuning != null && tuning.check() != 0 ) info[0] = -7;
+	    if ( info[0] != 0 ) xerbla_(name, -info[0]);
+	    return info[0];
+	}
+
+	/* Solve A*X = B by pdgssv(), when A is not split. */
+	static
+	void
+	btf_whole(int nprocs, int permc_spec, SuperMatrix A, SuperMatrix B, int info[],
+		  sp_tuning_t tuning)
+	{
+	    int n = A.ncol, perm_c[] = new int[n];
+
+	    get_perm_c(permc_spec, A, perm_c);
+	    pdgssv(nprocs, A, perm_c, new int[n], new SuperMatrix(),
+		   new SuperMatrix(), B, info, tuning);
+	}
+
+	/* Factor the diagonal blocks of A(p,q) and solve A*X = B by block
+	   back substitution (steps 2 and 3 of pdgssv_btf). */
+	static
+	void
+	btf_factor_solve(int nprocs, int permc_spec, SuperMatrix A, SuperMatrix B,
+			 btf_t btf, int info[], sp_tuning_t tuning)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    DNformat Bstore = (DNformat) B.Store;
+	    btf_block_t blk[];
+	    int n = A.ncol, nb = btf.nblocks;
+	    int k, j, jj, i, c, pp, lda, nrhs, nlarge = 0, maxb = 0;
+	    int pinv[];
+	    long nzlarge = 0;
+	    double x[], xk;
+	    ExecutorService pool = null;
+	    List<Future<?>> tasks;
+
+	    info[0] = 0;
+	    pinv = new int[n];
+	    for (k = 0; k < n; ++k) pinv[btf.p[k]] = k;
+
+	    /* Share the threads among the blocks factored by pdgstrf(). */
+	    blk = new btf_block_t[nb];
+	    for (k = 0; k < nb; ++k) {
+		blk[k] = new btf_block_t();
+		blk[k].fst = btf.r[k];
+		blk[k].size = btf.r[k+1] - btf.r[k];
+		if ( blk[k].size > BTF_DENSE ) {
+		    ++nlarge;
+		    nzlarge += blk[k].size;
+		    maxb = SUPERLU_MAX(maxb, blk[k].size);
+		}
+	    }
+	    for (k = 0; k < nb; ++k)
+		if ( blk[k].size > BTF_DENSE )
+		    blk[k].nprocs = (int) SUPERLU_MAX(1, SUPERLU_MIN(nprocs,
+				     Math.round((double) nprocs * blk[k].size / nzlarge)));
+
+	if ( PRNTlevel>=1 ) {
+	    printf(".. btf_factor_solve(): %d blocks, %d factored by pdgstrf(), largest %d\n",
+		   nb, nlarge, maxb);
+	}
+
+	    /* Factor the large blocks in the background, the others here. */
+	    tasks = new ArrayList<Future<?>>(nb);
+	    for (k = 0; k < nb; ++k) tasks.add(null);
+	    if ( nlarge > 1 ) {
+		pool = Executors.newFixedThreadPool(SUPERLU_MIN(nprocs, nlarge),
+						    new ThreadFactory() {
+		    public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "superlu-btf");
+			t.setDaemon(true);
+			return t;
+		    }
+		});
+	    }
+	    for (k = 0; k < nb; ++k) {
+		if ( blk[k].size <= BTF_DENSE ) continue;
+		final btf_block_t b = blk[k];
+		final SuperMatrix Ab = btf_block(A, btf, pinv, b.fst, b.size);
+		final int spec = permc_spec;
+		final sp_tuning_t t = tuning;
+		if ( pool == null ) {
+		    btf_factor_sparse(spec, t, Ab, b, n);
+		} else {
+		    tasks.set(k, pool.submit(new Runnable() {
+			public void run() {
+			    btf_factor_sparse(spec, t, Ab, b, n);
+			}
+		    }));
+		}
+	    }
+	    for (k = 0; k < nb; ++k)
+		if ( blk[k].size <= BTF_DENSE ) btf_factor_dense(A, btf, pinv, blk[k]);
+	    for (k = 0; k < nb; ++k) {
+		if ( tasks.get(k) == null ) continue;
+		try {
+		    tasks.get(k).get();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    blk[k].info = blk[k].fst + 1;
+		} catch (ExecutionException e) {
+		    printf(".. pdgssv_btf(): block %d failed: %s\n", k, e.getCause());
+		    blk[k].info = blk[k].fst + 1;
+		}
+	    }
+	    if ( pool != null ) pool.shutdown();
+
+	    for (k = 0; k < nb; ++k)
+		if ( blk[k].info != 0 && (info[0] == 0 || blk[k].info < info[0]) )
+		    info[0] = blk[k].info;
+
+	    /* Block back substitution on x = B(p,:), then X(q,:) = x. */
+	    if ( info[0] == 0 ) {
+		nrhs = B.ncol;
+		lda = Bstore.lda;
+		x = new double[n * nrhs];
+		for (c = 0; c < nrhs; ++c)
+		    for (k = 0; k < n; ++k) x[k + c*n] = Bstore.nzval[btf.p[k] + c*lda];
+		for (k = nb-1; k >= 0; --k) {
+		    btf_solve_block(blk[k], x, n, nrhs);
+		    for (jj = blk[k].fst; jj < blk[k].fst + blk[k].size; ++jj) {
+			j = btf.q[jj];
+			for (pp = Astore.colptr[j]; pp < Astore.colptr[j+1]; ++pp) {
+			    i = pinv[Astore.rowind[pp]];
+			    if ( i >= blk[k].fst ) continue;
+			    for (c = 0; c < nrhs; ++c) {
+				xk = x[jj + c*n];
+				x[i + c*n] -= Astore.nzval[pp] * xk;
+			    }
+			}
+		    }
+		}
+		for (c = 0; c < nrhs; ++c)
+		    for (k = 0; k < n; ++k) Bstore.nzval[btf.q[k] + c*lda] = x[k + c*n];
+	    }
+
+	    for (k = 0; k < nb; ++k) {
+		if ( blk[k].options != null ) {
+		    pxgstrf_finalize(blk[k].options, blk[k].AC);
+		    StatFree(blk[k].Gstat);
+		}
+	    }
+	}
+
+	/* Diagonal block A(p(fst:fst+size-1), q(fst:fst+size-1)), NC. */
+	static
+	SuperMatrix
+	btf_block(SuperMatrix A, btf_t btf, int pinv[], int fst, int size)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    SuperMatrix Ab = new SuperMatrix();
+	    int colptr[] = new int[size+1], rowind[], j, jj, pp, i, nnz = 0;
+	    double nzval[];
+
+	    for (jj = 0; jj < size; ++jj) {
+		j = btf.q[fst + jj];
+		for (pp = Astore.colptr[j]; pp < Astore.colptr[j+1]; ++pp) {
+		    i = pinv[Astore.rowind[pp]] - fst;
+		    if ( i >= 0 && i < size ) ++nnz;
+		}
+	    }
+	    rowind = new int[nnz];
+	    nzval = new double[nnz];
+	    nnz = 0;
+	    for (jj = 0; jj < size; ++jj) {
+		colptr[jj] = nnz;
+		j = btf.q[fst + jj];
+		for (pp = Astore.colptr[j]; pp < Astore.colptr[j+1]; ++pp) {
+		    i = pinv[Astore.rowind[pp]] - fst;
+		    if ( i >= 0 && i < size ) {
+			rowind[nnz] = i;
+			nzval[nnz++] = Astore.nzval[pp];
+		    }
+		}
+	    }
+	    colptr[size] = nnz;
+	    dCreate_CompCol_Matrix(Ab, size, size, nnz, nzval, rowind, colptr,
+				   SLU_NC, SLU_D, SLU_GE);
+	    return Ab;
+	}
+
+	/* Order and factor a diagonal block of A, of order N, with pdgstrf(),
+	   with tuning if not null, else as pdgssv() would. */
+	static
+	void
+	btf_factor_sparse(int permc_spec, sp_tuning_t tuning, SuperMatrix Ab,
+			  btf_block_t b, int N)
+	{
+	    int n = b.size, panel_size, relax;
+	    int info[] = new int[1];
+	    superlumt_options_t options = new superlumt_options_t();
+
+	    b.perm_c = new int[n];
+	    b.perm_r = new int[n];
+	    b.L = new SuperMatrix();
+	    b.U = new SuperMatrix();
+	    b.AC = new SuperMatrix();
+	    b.Gstat = new Gstat_t();
+	    get_perm_c(permc_spec, Ab, b.perm_c);
+	    if ( tuning == null )
+		tuning = AUTOTUNE ? sp_autotune(b.nprocs, Ab, b.perm_c, null) : SP_IENV_TUNING;
+	    panel_size = tuning.panel_size;
+	    relax = tuning.relax;
+	    StatAlloc(n, b.nprocs, panel_size, relax, b.Gstat);
+	    StatInit(n, b.nprocs, b.Gstat);
+	    pdgstrf_init(b.nprocs, EQUILIBRATE, NOTRANS, NO, panel_size, relax,
+			 1.0, NO, 0.0, b.perm_c, b.perm_r, null, 0, Ab, b.AC,
+			 options, b.Gstat);
+	    options.tuning = tuning;
+	    b.options = options;  /* AC is to be freed */
+	    pdgstrf(b.options, b.AC, b.perm_r, b.L, b.U, b.Gstat, info);
+	    if ( info[0] != 0 ) b.info = info[0] <= n ? b.fst + info[0] : info[0] - n + N;
+	}
+
+	/* Factor a diagonal block of at most BTF_DENSE columns as a dense
+	   matrix, with partial pivoting. */
+	static
+	void
+	btf_factor_dense(SuperMatrix A, btf_t btf, int pinv[], btf_block_t b)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = b.size, i, j, k, pp, piv;
+	    double lu[] = new double[n * n], t;
+
+	    for (j = 0; j < n; ++j) {
+		k = btf.q[b.fst + j];
+		for (pp = Astore.colptr[k]; pp < Astore.colptr[k+1]; ++pp) {
+		    i = pinv[Astore.rowind[pp]] - b.fst;
+		    if ( i >= 0 && i < n ) lu[i + j*n] += Astore.nzval[pp];
+		}
+	    }
+	    b.ipiv = new int[n];
+	    for (k = 0; k < n; ++k) {
+		piv = k;
+		for (i = k+1; i < n; ++i)
+		    if ( Math.abs(lu[i + k*n]) > Math.abs(lu[piv + k*n]) ) piv = i;
+		b.ipiv[k] = piv;
+		if ( lu[piv + k*n] == 0.0 ) {
+		    if ( b.info == 0 ) b.info = b.fst + k + 1;
+		    continue;
+		}
+		if ( piv != k )
+		    for (j = 0; j < n; ++j) {
+			t = lu[k + j*n];
+			lu[k + j*n] = lu[piv + j*n];
+			lu[piv + j*n] = t;
+		    }
+		for (i = k+1; i < n; ++i) lu[i + k*n] /= lu[k + k*n];
+		for (j = k+1; j < n; ++j) {
+		    t = lu[k + j*n];
+		    if ( t != 0.0 )
+			for (i = k+1; i < n; ++i) lu[i + j*n] -= lu[i + k*n] * t;
+		}
+	    }
+	    b.lu = lu;
+	}
+
+	/* Overwrite x(fst:fst+size-1, :) with the solution of the diagonal
+	   block b; x has leading dimension ldx. */
+	static
+	void
+	btf_solve_block(btf_block_t b, double x[], int ldx, int nrhs)
+	{
+	    int n = b.size, fst = b.fst, i, j, c, info[] = new int[1];
+	    double t, xb[];
+	    SuperMatrix Bb;
+
+	    if ( b.lu != null ) {
+		for (c = 0; c < nrhs; ++c) {
+		    int o = fst + c*ldx;
+		    for (i = 0; i < n; ++i) {
+			j = b.ipiv[i];
+			if ( j != i ) {
+			    t = x[o + i];
+			    x[o + i] = x[o + j];
+			    x[o + j] = t;
+			}
+		    }
+		    for (j = 0; j < n; ++j)
+			for (i = j+1; i < n; ++i) x[o + i] -= b.lu[i + j*n] * x[o + j];
+		    for (j = n-1; j >= 0; --j) {
+			x[o + j] /= b.lu[j + j*n];
+			for (i = 0; i < j; ++i) x[o + i] -= b.lu[i + j*n] * x[o + j];
+		    }
+		}
+		return;
+	    }
+
+	    xb = new double[n * nrhs];
+	    for (c = 0; c < nrhs; ++c)
+		System.arraycopy(x, fst + c*ldx, xb, c*n, n);
+	    Bb = new SuperMatrix();
+	    dCreate_Dense_Matrix(Bb, n, nrhs, xb, n, SLU_DN, SLU_D, SLU_GE);
+	    dgstrs(NOTRANS, b.L, b.U, b.perm_r, b.perm_c, Bb, b.Gstat, info);
+	    for (c = 0; c < nrhs; ++c)
+		System.arraycopy(xb, c*n, x, fst + c*ldx, n);
+	}
+
+}
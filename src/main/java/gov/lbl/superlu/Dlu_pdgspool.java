@@ -0,0 +1,553 @@
+/*
+ * A pool of workers shared fairly by concurrent factorizations.
+ *
+ * Purpose
+ * =======
+ *
+ * pdgstrf() starts nprocs threads of its own: several factorizations at
+ * once, each asked for with nprocs = the number of processors, start many
+ * times more threads than there are processors, and those without a
+ * panel spin in the scheduler. A pool_t owns a fixed number of workers
+ * instead, and runs on them the panels of all the factorizations given
+ * to it:
+ *
+ *    o admission: before it allocates anything, pdgstrf() asks the pool
+ *      for the storage of its L, U and scheduler, as estimated by
+ *      explain_bytes(), and waits while the factorizations admitted
+ *      already hold more than max_bytes together; the waiting ones are
+ *      admitted in order of priority, then of arrival. One larger than
+ *      max_bytes alone is admitted when no other one is. The storage is
+ *      given back when pdgstrf() returns;
+ *    o slots: the nprocs threads of pdgstrf() become nprocs slots, each
+ *      run by at most one worker at a time. A worker runs pdgstrf_thread()
+ *      for a slot, for a turn, with working storage of its own, and takes
+ *      panels from the scheduler of the factorization as a thread would;
+ *    o fairness: a free worker takes a slot of the factorization of
+ *      highest priority and, among those, of least virtual time: the time
+ *      workers spent on it, divided by its weight. A factorization starts
+ *      at the virtual time of the pool, so that it gets its share from
+ *      then on, not the time it did not use before. Priorities are strict:
+ *      a factorization runs only on workers none of higher priority can
+ *      use;
+ *    o preemption: between two panels, a turn ends when it ran for more
+ *      than quantum ns and another factorization comes first, or at once
+ *      when the scheduler has no panel for it while other slots of its
+ *      factorization run; that factorization is then passed over until
+ *      one of its panels is done, instead of spinning.
+ *
+ * A panel begun is always completed in the same turn, so that a slot
+ * waiting for a busy panel waits only for a running worker. pdgstrf()
+ * waits in the calling thread for the end of the turns, then finalizes
+ * there as usual. The sequential engine runs in a single turn.
+ *
+ * With SHARED_POOL set, every pdgstrf() without a pool_job, pdgssv() in
+ * particular, runs on the process-wide pool of pdgspool(), with weight 1
+ * and priority 0. A pool_job_t in superlumt_options (see pdgstrf_async())
+ * gives another pool, weight or priority.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.util.ArrayList;
+
+import gov.lbl.superlu.Dlu_pdexplain.explain_plan_t;
+import gov.lbl.superlu.Dlu_pdgsasync.factor_control_t;
+import gov.lbl.superlu.Dlu_pdmemory.pdgstrf_work_t;
+import gov.lbl.superlu.Dlu_pdsp_defs.pdgstrf_threadarg_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.POOL_BYTES;
+import static gov.lbl.superlu.Dlu.POOL_NPROCS;
+import static gov.lbl.superlu.Dlu.POOL_QUANTUM;
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.SHARED_POOL;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_pdexplain.explain_bytes;
+import static gov.lbl.superlu.Dlu_pdgsasync.control_stop;
+import static gov.lbl.superlu.Dlu_pdgstrf_sequential.pdgstrf_sequential;
+import static gov.lbl.superlu.Dlu_pdgstrf_thread.pdgstrf_thread;
+import static gov.lbl.superlu.Dlu_slu_mt_util.CANCELLED;
+import static gov.lbl.superlu.Dlu_sp_ienv.sp_tuning;
+import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
+
+
+public class Dlu_pdgspool {
+
+	/* ms between two checks of the control by a waiting pdgstrf() */
+	static final long POLL_MILLIS = 10;
+
+	public static class pool_t {
+	    public int     nworkers;
+	    public long    max_bytes;     /* admission limit; none if 0 */
+	    public double  quantum;       /* ns of a turn, at least */
+
+	    /* Guarded by the pool itself. */
+	    long    bytes;                /* held by the admitted */
+	    int     nadmitted;
+	    int     nbusy;                /* workers in a turn */
+	    long    arrivals;
+	    double  vclock;               /* virtual time of the pool */
+	    boolean shutdown;
+	    final ArrayList<pool_job_t> pending = new ArrayList<pool_job_t>();
+	    final ArrayList<pool_job_t> running = new ArrayList<pool_job_t>();
+	    Thread  workers[];
+
+	    /* Statistics */
+	    public long    njobs;         /* factorizations run */
+	    public long    turns;
+	    public long    yields;        /* turns ended by the quantum */
+	    public long    starved;       /* turns ended for want of a panel */
+	    public int     max_admitted;
+	    public long    max_bytes_used;
+	    public double  admit_wait;    /* ns spent waiting for admission */
+	}
+
+	/* A factorization given to a pool, one at a time. */
+	public static class pool_job_t {
+	    public pool_t  pool;
+	    public double  weight = 1.0;  /* share against the same priority */
+	    public int     priority;      /* higher first */
+
+	    /* Set by the pool. */
+	    long    bytes;                /* storage estimate */
+	    long    arrival;
+	    boolean admitted;
+	    double  vtime;                /* time of its turns / weight */
+	    pdgstrf_threadarg_t slots[];
+	    int     idle[];               /* pnum of the idle slots */
+	    int     nidle;
+	    volatile int active;          /* slots in a turn */
+	    volatile boolean starved;     /* no panel until one is done */
+	    boolean failed;               /* a turn ran out of memory or threw */
+	    Throwable error;              /* thrown by a turn */
+
+	    public pool_job_t(pool_t pool, double weight, int priority) {
+		this.pool = pool;
+		this.weight = weight;
+		this.priority = priority;
+	    }
+	}
+
+	/* The turn of a worker: the factorization it runs a slot of. */
+	static class pool_turn_t {
+	    pool_job_t     job;
+	    pdgstrf_work_t work = new pdgstrf_work_t();
+	    double         start;         /* time charged from */
+	    double         until;         /* end of the quantum */
+	}
+
+	static pool_t shared_pool;
+
+	/*
+	 * The process-wide pool: POOL_NPROCS workers, POOL_BYTES, started at
+	 * the first call.
+	 */
+	public static synchronized
+	pool_t
+	pdgspool()
+	{
+	    if ( shared_pool == null || shared_pool.shutdown )
+		shared_pool = pool_create(POOL_NPROCS, POOL_BYTES);
+	    return shared_pool;
+	}
+
+	public static
+	pool_t
+	pool_create(int nworkers, long max_bytes)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * POOL_CREATE starts a pool of nworkers daemon workers, admitting
+	 * factorizations while their storage stays below max_bytes (no limit
+	 * if 0), with turns of POOL_QUANTUM ns. See the description at the
+	 * top of this file.
+	 *
+	 */
+	    final pool_t pool = new pool_t();
+	    int i;
+
+	    pool.nworkers = Math.max(1, nworkers);
+	    pool.max_bytes = max_bytes;
+	    pool.quantum = POOL_QUANTUM;
+	    pool.workers = new Thread[pool.nworkers];
+	    for (i = 0; i < pool.nworkers; ++i) {
+		pool.workers[i] = new Thread("superlu-pool-" + i) {
+		    public void run() {
+			pool_worker(pool);
+		    }
+		};
+		pool.workers[i].setDaemon(true);
+		pool.workers[i].start();
+	    }
+	    return pool;
+	}
+
+	/*
+	 * Stop the workers once the factorizations given to the pool are done;
+	 * later ones run on threads of their own.
+	 */
+	public static
+	void
+	pool_shutdown(pool_t pool)
+	{
+	    synchronized (pool) {
+		pool.shutdown = true;
+		pool.notifyAll();
+	    }
+	}
+
+	/*
+	 * The pool job of a factorization: that of its options, or one on the
+	 * process-wide pool if SHARED_POOL is set; null if none, or if the
+	 * pool was shut down.
+	 */
+	static
+	pool_job_t
+	pool_job(superlumt_options_t options)
+	{
+	    pool_job_t job = options.pool_job;
+
+	    if ( job == null && SHARED_POOL )
+		job = new pool_job_t(pdgspool(), 1.0, 0);
+	    if ( job == null || job.pool == null || job.pool.shutdown ) return null;
+	    return job;
+	}
+
+	/*
+	 * Called by pdgstrf() before pdgstrf_thread_init(): waits until the
+	 * pool admits the factorization of AC. Returns 0, or CANCELLED if the
+	 * control of the options stopped it meanwhile.
+	 */
+	static
+	int
+	pool_admit(pool_job_t job, superlumt_options_t options, SuperMatrix AC)
+	{
+	    pool_t pool = job.pool;
+	    factor_control_t control = options.control;
+	    explain_plan_t plan = new explain_plan_t();
+	    boolean interrupted = false;
+	    double t;
+	    int i;
+
+	    /* The working storage belongs to the workers: count L, U and the
+	       scheduler only. */
+	    explain_bytes(AC.nrow, AC.ncol, ((NCPformat) AC.Store).nnz, 0,
+			  sp_tuning(options), -1, plan);
+
+	    t = SuperLU_timer_();
+	    synchronized (pool) {
+		job.bytes = plan.total_bytes;
+		job.arrival = pool.arrivals++;
+		job.admitted = false;
+		for (i = pool.pending.size(); i > 0; --i)
+		    if ( pool.pending.get(i-1).priority >= job.priority ) break;
+		pool.pending.add(i, job);
+		pool_admit_pending(pool);
+
+		while ( !job.admitted ) {
+		    if ( control != null && control_stop(control) ) {
+			pool.pending.remove(job);
+			pool_admit_pending(pool);
+			break;
+		    }
+		    try {
+			pool.wait(control != null ? POLL_MILLIS : 0);
+		    } catch (InterruptedException e) {
+			if ( control != null ) control.cancel();
+			interrupted = true;
+		    }
+		}
+		pool.admit_wait += SuperLU_timer_() - t;
+	    }
+	    if ( interrupted ) Thread.currentThread().interrupt();
+
+	if ( PRNTlevel>=1 ) {
+	    printf(".. pool_admit(): %.1f MB, %s after %.3f s\n", job.bytes / 1048576.0,
+		   job.admitted ? "admitted" : "cancelled", (SuperLU_timer_() - t) * 1e-9);
+	}
+	    return job.admitted ? 0 : CANCELLED;
+	}
+
+	/*
+	 * Admit the pending factorizations that fit, in order. Called with the
+	 * pool locked.
+	 */
+	static
+	void
+	pool_admit_pending(pool_t pool)
+	{
+	    pool_job_t job;
+
+	    while ( !pool.pending.isEmpty() ) {
+		job = pool.pending.get(0);
+		if ( pool.nadmitted > 0 && pool.max_bytes > 0 &&
+		     pool.bytes + job.bytes > pool.max_bytes )
+		    break;
+		pool.pending.remove(0);
+		job.admitted = true;
+		pool.bytes += job.bytes;
+		++pool.nadmitted;
+		pool.max_admitted = Math.max(pool.max_admitted, pool.nadmitted);
+		pool.max_bytes_used = Math.max(pool.max_bytes_used, pool.bytes);
+	    }
+	    pool.notifyAll();
+	}
+
+	/*
+	 * Called by pdgstrf() when it returns: gives the storage of an admitted
+	 * factorization back to the pool.
+	 */
+	static
+	void
+	pool_release(pool_job_t job)
+	{
+	    pool_t pool = job.pool;
+
+	    synchronized (pool) {
+		if ( !job.admitted ) return;
+		job.admitted = false;
+		pool.bytes -= job.bytes;
+		--pool.nadmitted;
+		pool_admit_pending(pool);
+	    }
+	}
+
+	/*
+	 * Called by pdgstrf() in place of starting its threads: gives the
+	 * slots of pdgstrf_threadarg[] to the workers of the pool and waits
+	 * until no slot is in a turn and the factorization is over: all the
+	 * panels taken, cancelled, or failed. An exception or error thrown in a
+	 * turn is thrown again here; pdgstrf() then releases the admission.
+	 */
+	static
+	void
+	pool_run(pool_job_t job, pdgstrf_threadarg_t pdgstrf_threadarg[])
+	{
+	    pool_t pool = job.pool;
+	    factor_control_t control = pdgstrf_threadarg[0].superlumt_options.control;
+	    int i, nslots;
+	    boolean interrupted = false;
+
+	    nslots = pdgstrf_threadarg[0].pxgstrf_shared.sequential ? 1 : pdgstrf_threadarg.length;
+	    synchronized (pool) {
+		job.slots = pdgstrf_threadarg;
+		job.idle = new int[nslots];
+		for (i = 0; i < nslots; ++i) job.idle[i] = nslots - 1 - i;
+		job.nidle = nslots;
+		job.active = 0;
+		job.starved = false;
+		job.failed = false;
+		job.error = null;
+		job.vtime = pool.vclock;
+		pool.running.add(job);
+		++pool.njobs;
+		pool.notifyAll();
+
+		while ( job.active > 0 || !pool_over(job) ) {
+		    try {
+			pool.wait(control != null ? POLL_MILLIS : 0);
+		    } catch (InterruptedException e) {
+			/* The turns cannot be interrupted: stop them through
+			   the control, if any, and wait again. */
+			if ( control != null ) control.cancel();
+			interrupted = true;
+		    }
+		}
+		pool.running.remove(job);
+		job.slots = null;
+	    }
+	    if ( interrupted ) Thread.currentThread().interrupt();
+
+	    if ( job.error instanceof Error ) throw (Error) job.error;
+	    if ( job.error != null ) throw (RuntimeException) job.error;
+	}
+
+	/* Whether no panel of job is left to take, or none is to be taken. */
+	static
+	boolean
+	pool_over(pool_job_t job)
+	{
+	    factor_control_t control = job.slots[0].superlumt_options.control;
+
+	    return job.failed || job.slots[0].pxgstrf_shared.tasks_remain <= 0 ||
+		( control != null && control.is_cancelled() );
+	}
+
+	/* Whether job comes before other for a free worker. */
+	static
+	boolean
+	pool_before(pool_job_t job, pool_job_t other)
+	{
+	    if ( job.priority != other.priority ) return job.priority > other.priority;
+	    return job.vtime < other.vtime;
+	}
+
+	/*
+	 * The factorization a free worker is to take a slot of, or null.
+	 * Called with the pool locked.
+	 */
+	static
+	pool_job_t
+	pool_pick(pool_t pool)
+	{
+	    pool_job_t job, best = null;
+	    int i;
+
+	    for (i = 0; i < pool.running.size(); ++i) {
+		job = pool.running.get(i);
+		if ( job.nidle == 0 || job.starved || pool_over(job) ) continue;
+		if ( best == null || pool_before(job, best) ) best = job;
+	    }
+	    return best;
+	}
+
+	/*
+	 * The main loop of a worker: take the slot of the factorization that
+	 * comes first, run it for a turn, and charge the time to it.
+	 */
+	static
+	void
+	pool_worker(pool_t pool)
+	{
+	    pool_turn_t turn = new pool_turn_t();
+	    pool_job_t job;
+	    pdgstrf_threadarg_t arg;
+	    double t;
+
+	    for (;;) {
+		synchronized (pool) {
+		    while ( (job = pool_pick(pool)) == null ) {
+			if ( pool.shutdown && pool.running.isEmpty() && pool.pending.isEmpty() )
+			    return;
+			try {
+			    pool.wait();
+			} catch (InterruptedException e) {
+			    /* Only pool_shutdown() ends a worker. */
+			}
+		    }
+		    arg = job.slots[job.idle[--job.nidle]];
+		    ++job.active;
+		    ++pool.nbusy;
+		    ++pool.turns;
+		    pool.vclock = Math.max(pool.vclock, job.vtime);
+		}
+
+		turn.job = job;
+		turn.start = SuperLU_timer_();
+		turn.until = turn.start + pool.quantum;
+		arg.turn = turn;
+		try {
+		    if ( arg.pxgstrf_shared.sequential )
+			pdgstrf_sequential(arg);
+		    else
+			pdgstrf_thread(arg);
+		} catch (RuntimeException | Error e) {
+		    job.error = e;
+		}
+		arg.turn = null;
+		t = SuperLU_timer_();
+
+		synchronized (pool) {
+		    job.vtime += (t - turn.start) / job.weight;
+		    job.idle[job.nidle++] = arg.pnum;
+		    --job.active;
+		    --pool.nbusy;
+		    if ( job.error != null || arg.pxgstrf_shared.failure != null ||
+			 arg.info[0] > arg.pxgstrf_shared.A.ncol )
+			job.failed = true;
+		    /* Its panels done meanwhile may have made others ready. */
+		    if ( job.active == 0 ) job.starved = false;
+		    pool.notifyAll();
+		}
+		turn.job = null;
+	    }
+	}
+
+	/*
+	 * Called by pdgstrf_thread() before it takes a panel: whether the turn
+	 * is to end because its quantum is over and another factorization
+	 * comes first.
+	 */
+	static
+	boolean
+	pool_yield(pool_turn_t turn)
+	{
+	    pool_job_t job = turn.job, best;
+	    pool_t pool = job.pool;
+	    double t = SuperLU_timer_();
+
+	    if ( t < turn.until ) return false;
+	    synchronized (pool) {
+		job.vtime += (t - turn.start) / job.weight;
+		turn.start = t;
+		if ( pool.nbusy == pool.nworkers && (best = pool_pick(pool)) != null &&
+		     best != job && pool_before(best, job) ) {
+		    ++pool.yields;
+		    return true;
+		}
+		turn.until = t + pool.quantum;
+		return false;
+	    }
+	}
+
+	/*
+	 * Called by pdgstrf_thread() when the scheduler has no panel for it:
+	 * whether the turn is to end, other slots of the factorization being in
+	 * a turn and holding the panels that are to make new ones ready.
+	 */
+	static
+	boolean
+	pool_starved(pool_turn_t turn)
+	{
+	    pool_job_t job = turn.job;
+	    pool_t pool = job.pool;
+
+	    if ( job.active <= 1 ) return false;
+	    synchronized (pool) {
+		if ( job.active <= 1 ) return false;
+		job.starved = true;
+		++pool.starved;
+		return true;
+	    }
+	}
+
+	/*
+	 * Called by pdgstrf_thread() when a panel is done: the factorization
+	 * may have a panel ready again.
+	 */
+	static
+	void
+	pool_panel_done(pool_turn_t turn)
+	{
+	    pool_job_t job = turn.job;
+	    pool_t pool = job.pool;
+
+	    if ( !job.starved ) return;
+	    synchronized (pool) {
+		job.starved = false;
+		pool.notifyAll();
+	    }
+	}
+
+	/*
+	 * Print the statistics of a pool.
+	 */
+	public static
+	void
+	print_pool_stat(pool_t pool)
+	{
+	    printf("Pool         = %d workers, %d factorizations, %d turns\n",
+		   pool.nworkers, pool.njobs, pool.turns);
+	    printf("Pool turns   = %d ended by the quantum, %d for want of a panel\n",
+		   pool.yields, pool.starved);
+	    printf("Pool admits  = at most %d at once, %.1f MB (limit %.1f MB), wait %.3f s\n",
+		   pool.max_admitted, pool.max_bytes_used / 1048576.0,
+		   pool.max_bytes / 1048576.0, pool.admit_wait * 1e-9);
+	}
+
+}
@@ -1,18 +1,30 @@
 package gov.lbl.superlu;
 
+import gov.lbl.superlu.Dlu_autotune.autotune_t;
+import gov.lbl.superlu.Dlu_auto_nprocs.auto_nprocs_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.equed_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.fact_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.trans_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t;
 import gov.lbl.superlu.Dlu_supermatrix.DNformat;
 import gov.lbl.superlu.Dlu_supermatrix.NCformat;
 import gov.lbl.superlu.Dlu_supermatrix.NRformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCLUformat;
 import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
+import static gov.lbl.superlu.Dlu.AUTOTUNE;
+import static gov.lbl.superlu.Dlu.AUTO_NPROCS;
 import static gov.lbl.superlu.Dlu.PRNTlevel;
 import static gov.lbl.superlu.Dlu.PROFILE;
+import static gov.lbl.superlu.Dlu.ZFD_PERM;
+import static gov.lbl.superlu.Dlu.ZFD_PIVOT_THRESH;
+import static gov.lbl.superlu.Dlu_dldperm.dldperm;
+import static gov.lbl.superlu.Dlu_autotune.sp_autotune;
+import static gov.lbl.superlu.Dlu_auto_nprocs.sp_auto_nprocs;
 import static gov.lbl.superlu.Dlu_dgstrs.dgstrs;
 import static gov.lbl.superlu.Dlu_pdgstrf.pdgstrf;
 import static gov.lbl.superlu.Dlu_pdgstrf_init.pdgstrf_init;
@@ -22,15 +34,19 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FACT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.SOLVE;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.TRISOLVE;
+import static gov.lbl.superlu.Dlu_slu_mt_util.equed_t.BOTH;
+import static gov.lbl.superlu.Dlu_slu_mt_util.equed_t.NOEQUIL;
 import static gov.lbl.superlu.Dlu_slu_mt_util.fact_t.EQUILIBRATE;
 import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
 import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.TRANS;
 import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
-import static gov.lbl.superlu.Dlu_sp_ienv.sp_ienv;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
 import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
+import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
 import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
 import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
 import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
 import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NR;
 import static gov.lbl.superlu.Dlu_util.Destroy_SuperMatrix_Store;
 import static gov.lbl.superlu.Dlu_util.ParallelProfile;
@@ -47,11 +63,50 @@ import static gov.lbl.superlu.Dlu.stdout;
 
 public class Dlu_pdgssv {
 
-	@SuppressWarnings("unused")
 	public static
 	void
 	pdgssv(int nprocs, SuperMatrix A, int perm_c[], int perm_r[],
 	       SuperMatrix L, SuperMatrix U, SuperMatrix B, int[] info )
+	{
+	    pdgssv(nprocs, A, perm_c, perm_r, L, U, B, info, null);
+	}
+
+	@SuppressWarnings("unused")
+	public static
+	void
+	pdgssv(int nprocs, SuperMatrix A, int perm_c[], int perm_r[],
+	       SuperMatrix L, SuperMatrix U, SuperMatrix B, int[] info,
+	       sp_tuning_t tuning )
+	{
+	    pdgssv(nprocs, A, perm_c, perm_r, L, U, B, info, tuning, null);
+	}
+
+	/*
+	 * The row permutation and scalings of ZFD_PERM: pdgssv() factors
+	 * Az = Pz*R*A*C, where row i of A, scaled by R[i], is row zperm[i] of
+	 * Az, and column j is scaled by C[j]. Since perm_r on exit includes
+	 * Pz, the L, U, perm_r (Pr) and perm_c (Pc) of pdgssv() satisfy
+	 * Pr*R*A*C*Pc = L*U: A*x = b is solved by scaling b to R.*b, solving
+	 * with the factors as for an unscaled A, and scaling the solution y
+	 * to x = C.*y; A'*x = b likewise with C.*b and x = R.*y.
+	 */
+	public static class zfd_scale_t {
+	    /* On entry, the diagonal pivoting threshold used to factor Az,
+	       in [0, 1]. */
+	    public double  diag_pivot_thresh = ZFD_PIVOT_THRESH;
+	    /* On exit: BOTH if A was permuted and scaled, NOEQUIL if not
+	       (A.Stype = NR, or A structurally singular). */
+	    public equed_t equed = NOEQUIL;
+	    public int     zperm[];   /* Pz, if equed = BOTH */
+	    public double  R[], C[];  /* row and column scalings, if equed = BOTH */
+	}
+
+	@SuppressWarnings("unused")
+	public static
+	void
+	pdgssv(int nprocs, SuperMatrix A, int perm_c[], int perm_r[],
+	       SuperMatrix L, SuperMatrix U, SuperMatrix B, int[] info,
+	       sp_tuning_t tuning, zfd_scale_t zfd )
 	{
 	/*
 	 * -- SuperLU MT routine (version 2.0) --
@@ -94,6 +149,14 @@ public class Dlu_pdgssv {
 	 *      2.3. Solve the system of equations A*X=B using the factored
 	 *           form of A.
 	 *
+	 *   If ZFD_PERM is set or zfd is given, and A.Stype = NC, A is first
+	 *   permuted and scaled to Az = Pz*R*A*C with a large diagonal (dldperm,
+	 *   job 5), and Az is factored with the diagonal pivoting threshold
+	 *   zfd.diag_pivot_thresh (ZFD_PIVOT_THRESH without zfd), so that few
+	 *   rows are swapped. L and U are then the factors of Az, perm_r on
+	 *   exit includes Pz, and R and C are returned in zfd. Otherwise the
+	 *   threshold is 1.0 (partial pivoting).
+	 *
 	 *   See supermatrix.h for the definition of "SuperMatrix" structure.
 	 *
 	 *
@@ -104,7 +167,9 @@ public class Dlu_pdgssv {
 	 *        Number of processes (or threads) to be spawned and used to perform
 	 *        the LU factorization by pdgstrf(). There is a single thread of
 	 *        control to call pdgstrf(), and all threads spawned by pdgstrf()
-	 *        are terminated before returning from pdgstrf().
+	 *        are terminated before returning from pdgstrf(). If AUTO_NPROCS
+	 *        is set, nprocs is an upper bound, and only as many threads as
+	 *        sp_auto_nprocs() finds useful for the etree of A*Pc are spawned.
 	 *
 	 * A      (input) SuperMatrix*
 	 *        Matrix A in A*X=B, of dimension (A.nrow, A.ncol), where
@@ -163,6 +228,18 @@ public class Dlu_pdgssv {
 	 *             > A.ncol: number of bytes allocated when memory allocation
 	 *                failure occurred, plus A.ncol.
 	 *
+	 * tuning (input) sp_tuning_t*
+	 *        The tuning parameters of the factorization (panel size,
+	 *        relaxation, blocking, initial fill guesses); if null, those
+	 *        chosen by sp_autotune() when AUTOTUNE is set, and those of
+	 *        sp_ienv() otherwise.
+	 *
+	 * zfd    (input/output) zfd_scale_t*
+	 *        If not null, A is permuted and scaled as with ZFD_PERM. On
+	 *        entry, zfd.diag_pivot_thresh is the diagonal pivoting threshold;
+	 *        on exit, zfd.equed, zfd.zperm, zfd.R and zfd.C tell how A was
+	 *        permuted and scaled (see zfd_scale_t).
+	 *
 	 */
 	    trans_t  trans;
 	    NCformat Astore;
@@ -180,6 +257,10 @@ public class Dlu_pdgssv {
 	    double   t; /* Temporary time */
 	    double   utime[];
 	    float  ops[], flopcnt;
+	    int      zperm[] = null; /* row permutation of ZFD_PERM */
+	    double   R[] = null, C[] = null;
+	    autotune_t autotune = null;
+	    auto_nprocs_t auto_nprocs = null;
 
 	    /* ------------------------------------------------------------
 	       Test the input parameters.
@@ -193,40 +274,28 @@ public class Dlu_pdgssv {
 		      A.Dtype != SLU_D || A.Mtype != SLU_GE )
 		info[0] = -2;
 	    else if ( B.ncol < 0 || Bstore.lda < SUPERLU_MAX(1, A.nrow) ) info[0] = -7;
+	    else if ( tuning != null && tuning.check() != 0 ) info[0] = -9;
+	    else if ( zfd != null && !(zfd.diag_pivot_thresh >= 0.0
+				       && zfd.diag_pivot_thresh <= 1.0) ) info[0] = -10;
 	    if ( info[0] != 0 ) {
 	        i = -(info[0]);
 		xerbla_("pdgssv", i);
 		return;
 	    }
 
-	if (false) {
-	    /* Use the best sequential code.
-	       if this part is commented out, we will use the parallel code
-	       run on one processor. */
-	    if ( nprocs == 1 ) {
-	        return;
-	    }
-	}
+	    /* The best sequential code, pdgstrf_sequential(), is chosen by
+	       pdgstrf() when nprocs == 1 (see Dlu.SEQUENTIAL). */
 
 	    fact               = EQUILIBRATE;
 	    refact             = NO;
 	    trans              = NOTRANS;
-	    panel_size         = sp_ienv(1);
-	    relax              = sp_ienv(2);
 	    diag_pivot_thresh  = 1.0;
 	    usepr              = NO;
 	    drop_tol           = 0.0;
 	    work               = null;
 	    lwork              = 0;
 
-	    /* ------------------------------------------------------------
-	       Allocate storage and initialize statistics variables.
-	       ------------------------------------------------------------*/
 	    n = A.ncol;
-	    StatAlloc(n, nprocs, panel_size, relax, Gstat);
-	    StatInit(n, nprocs, Gstat);
-	    utime = Gstat.utime;
-	    ops = Gstat.ops;
 
 	    /* ------------------------------------------------------------
 	       Convert A to NC format when necessary.
@@ -240,6 +309,70 @@ public class Dlu_pdgssv {
 		trans = TRANS;
 	    } else if ( A.Stype == SLU_NC ) AA = A;
 
+	    if ( zfd != null ) {
+		zfd.equed = NOEQUIL;
+		zfd.zperm = null;
+		zfd.R = zfd.C = null;
+	    }
+	    /* Permute and scale the rows so that the diagonal is large
+	       (MC64): factor Az = Pz*R*A*C, and solve Az*y = Pz*R*b, x = C*y. */
+	    if ( (ZFD_PERM || zfd != null) && trans == NOTRANS ) {
+		NCformat AAstore = (NCformat) AA.Store;
+		int k, nnz = AAstore.nnz, zrowind[] = new int[nnz];
+		double zval[] = new double[nnz];
+		zperm = intMalloc(n);
+		R = new double[n];
+		C = new double[n];
+		if ( dldperm(5, n, AAstore.colptr, AAstore.rowind, AAstore.nzval,
+			     zperm, R, C) == n ) {
+		    for (i = 0; i < n; ++i)
+			for (k = AAstore.colptr[i]; k < AAstore.colptr[i+1]; ++k) {
+			    zrowind[k] = zperm[AAstore.rowind[k]];
+			    zval[k] = R[AAstore.rowind[k]] * AAstore.nzval[k] * C[i];
+			}
+		    AA = new SuperMatrix();
+		    dCreate_CompCol_Matrix(AA, n, n, nnz, zval, zrowind,
+					   AAstore.colptr, SLU_NC, SLU_D, SLU_GE);
+		    diag_pivot_thresh = zfd != null ? zfd.diag_pivot_thresh
+					: ZFD_PIVOT_THRESH;
+		    if ( zfd != null ) {
+			zfd.equed = BOTH;
+			zfd.zperm = zperm;
+			zfd.R = R;
+			zfd.C = C;
+		    }
+		} else {
+		    zperm = null;  /* structurally singular: factor A as is */
+		}
+	    }
+
+	if ( PRNTlevel==1 ) {
+	    if ( zperm != null )
+		printf(".. ZFD_PERM: diag_pivot_thresh %.2f\n", diag_pivot_thresh);
+	}
+
+	    /* ------------------------------------------------------------
+	       Choose the tuning and the number of threads, allocate storage
+	       and initialize statistics variables.
+	       ------------------------------------------------------------*/
+	    if ( tuning == null && AUTOTUNE ) {
+		autotune = new autotune_t();
+		tuning = sp_autotune(nprocs, AA, perm_c, autotune);
+	    }
+	    if ( tuning == null ) tuning = SP_IENV_TUNING;
+	    if ( AUTO_NPROCS && nprocs > 1 ) {
+		auto_nprocs = new auto_nprocs_t();
+		nprocs = sp_auto_nprocs(nprocs, tuning, AA, perm_c, auto_nprocs);
+	    }
+	    panel_size = tuning.panel_size;
+	    relax      = tuning.relax;
+	    StatAlloc(n, nprocs, panel_size, relax, Gstat);
+	    StatInit(n, nprocs, Gstat);
+	    Gstat.autotune = autotune;
+	    Gstat.auto_nprocs = auto_nprocs;
+	    utime = Gstat.utime;
+	    ops = Gstat.ops;
+
 	    /* ------------------------------------------------------------
 	       Initialize the option structure superlumt_options using the
 	       user-input parameters;
@@ -248,6 +381,7 @@ public class Dlu_pdgssv {
 	    pdgstrf_init(nprocs, fact, trans, refact, panel_size, relax,
 			 diag_pivot_thresh, usepr, drop_tol, perm_c, perm_r,
 			 work, lwork, AA, AC, superlumt_options, Gstat);
+	    superlumt_options.tuning = tuning;
 
 	    /* ------------------------------------------------------------
 	       Compute the LU factorization of A.
@@ -263,7 +397,8 @@ public class Dlu_pdgssv {
 	    printf("nprocs = %d, flops %e, Mflops %.2f\n",
 		   nprocs, flopcnt, flopcnt/utime[FACT.ordinal()]*1e-6);
 	    printf("Parameters: w %d, relax %d, maxsuper %d, rowblk %d, colblk %d\n",
-		   sp_ienv(1), sp_ienv(2), sp_ienv(3), sp_ienv(4), sp_ienv(5));
+		   tuning.panel_size, tuning.relax, tuning.maxsuper, tuning.rowblk,
+		   tuning.colblk);
 		fflush(stdout);
 	}
 
@@ -272,16 +407,29 @@ public class Dlu_pdgssv {
 	       ------------------------------------------------------------*/
 	    if ( info[0] == 0 ) {
 	        t = SuperLU_timer_();
+		if ( zperm != null ) dzperm_rhs(n, zperm, R, B);
 		dgstrs (trans, L, U, perm_r, perm_c, B, Gstat, info);
+		if ( zperm != null ) {
+		    Bstore = (DNformat) B.Store;
+		    for (int k = 0; k < B.ncol; ++k)
+			for (i = 0; i < n; ++i) Bstore.nzval[i + k*Bstore.lda] *= C[i];
+		}
 		utime[SOLVE.ordinal()] = SuperLU_timer_() - t;
 		ops[SOLVE.ordinal()] = ops[TRISOLVE.ordinal()];
 	    }
 
+	    /* Row i of A is row zperm[i] of Az, so row perm_r[zperm[i]] of L*U. */
+	    if ( zperm != null ) {
+		int tmp[] = intMalloc(n);
+		for (i = 0; i < n; ++i) tmp[i] = perm_r[zperm[i]];
+		System.arraycopy(tmp, 0, perm_r, 0, n);
+	    }
+
 	    /* ------------------------------------------------------------
 	       Deallocate storage after factorization.
 	       ------------------------------------------------------------*/
 	    pxgstrf_finalize(superlumt_options, AC);
-	    if ( A.Stype == SLU_NR ) {
+	    if ( A.Stype == SLU_NR || zperm != null ) {
 		Destroy_SuperMatrix_Store(AA);
 	    }
 
@@ -290,12 +438,30 @@ public class Dlu_pdgssv {
 	       ------------------------------------------------------------*/
 	if (PROFILE) {
 	    {
-		SCPformat Lstore_ = (SCPformat) L.Store;
-		ParallelProfile(n, Lstore_.nsuper+1, Gstat.num_panels, nprocs, Gstat);
+		int nsuper_ = L.Stype == SLU_SCLU ? ((SCLUformat) L.Store).nsuper
+			      : ((SCPformat) L.Store).nsuper;
+		ParallelProfile(n, nsuper_+1, Gstat.num_panels, nprocs, Gstat);
 	    }
 	}
 	    PrintStat(Gstat);
 	    StatFree(Gstat);
 	}
 
+
+	/* B = Pz*R*B, for the matrix Pz*R*A*C factored with ZFD_PERM. */
+	static
+	void
+	dzperm_rhs(int n, int zperm[], double R[], SuperMatrix B)
+	{
+	    DNformat Bstore = (DNformat) B.Store;
+	    double b[] = new double[n];
+	    int i, k, o;
+
+	    for (k = 0; k < B.ncol; ++k) {
+		o = k * Bstore.lda;
+		for (i = 0; i < n; ++i) b[zperm[i]] = R[i] * Bstore.nzval[o + i];
+		System.arraycopy(b, 0, Bstore.nzval, o, n);
+	    }
+	}
+
 }
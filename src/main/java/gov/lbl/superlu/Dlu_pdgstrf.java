@@ -1,5 +1,7 @@
 package gov.lbl.superlu;
 
+import gov.lbl.superlu.Dlu_pdgspool.pool_job_t;
+import gov.lbl.superlu.Dlu_pmemory.mem_error_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.pdgstrf_threadarg_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
@@ -7,6 +9,7 @@ import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
+import static gov.lbl.superlu.Dlu_slu_mt_util.CANCELLED;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FACT;
 
 import static gov.lbl.superlu.Dlu.printf;
@@ -19,8 +22,21 @@ import static gov.lbl.superlu.Dlu_superlu_timer.usertimer_;
 
 import static gov.lbl.superlu.Dlu_pdgstrf_thread_init.pdgstrf_thread_init;
 import static gov.lbl.superlu.Dlu_pdgstrf_thread_finalize.pdgstrf_thread_finalize;
+import static gov.lbl.superlu.Dlu_pdgstrf_thread_finalize.pdgstrf_thread_cancelled;
+import static gov.lbl.superlu.Dlu_pdgsasync.control_stop;
+import static gov.lbl.superlu.Dlu_pdgsasync.pxgstrf_progress;
+import static gov.lbl.superlu.Dlu_pdgsasync.pxgstrf_progress_start;
+import static gov.lbl.superlu.Dlu_sp_colorder.sp_symbolic_wait;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_admit;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_job;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_release;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_run;
 
 import static gov.lbl.superlu.Dlu_pdgstrf_thread.pdgstrf_thread;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_rethrow;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_discard;
+import static gov.lbl.superlu.Dlu_pdgstrf_sequential.pdgstrf_sequential;
+import static gov.lbl.superlu.Dlu_pdgstrf_sequential.use_sequential;
 
 
 public class Dlu_pdgstrf {
@@ -57,6 +73,9 @@ public class Dlu_pdgstrf {
 	 *
 	 *        o nprocs (int)
 	 *          Number of processes to be spawned and used for factorization.
+	 *          With Dlu.SEQUENTIAL set, a single process, or a matrix of at
+	 *          most Dlu.SEQUENTIAL_NCOL columns, is factored in the calling
+	 *          thread by pdgstrf_sequential().
 	 *
 	 *        o refact (yes_no_t)
 	 *          Specifies whether this is first time or subsequent factorization.
@@ -115,6 +134,11 @@ public class Dlu_pdgstrf {
 	 *                  performing the factorization, and returns it in
 	 *                  superlu_memusage.total_needed; no other side effects.
 	 *
+	 *        o control (factor_control_t*)
+	 *          Cancellation, deadline and progress reports, checked by each
+	 *          thread before it takes a panel; none if null. See
+	 *          Dlu_pdgsasync.
+	 *
 	 * A      (input) SuperMatrix*
 	 *	  Original matrix A, permuted by columns, of dimension
 	 *        (A.nrow, A.ncol). The type of A can be:
@@ -153,27 +177,74 @@ public class Dlu_pdgstrf {
 	 *                and division by zero will occur if it is used to solve a
 	 *                system of equations.
 	 *             > A.ncol: number of bytes allocated when memory allocation
-	 *                failure occurred, plus A.ncol.
+	 *                failure occurred, plus A.ncol; L and U are not set up.
+	 *                Other failures in the threads are thrown again here.
+	 *        = CANCELLED: the factorization was cancelled through
+	 *             superlumt_options.control, or its deadline passed, before
+	 *             all panels were taken;
+	 *             L and U are not set up, and the threads have ended.
 	 *
 	 */
-	    pdgstrf_threadarg_t pdgstrf_threadarg[];
 	    pxgstrf_shared_t pxgstrf_shared = new pxgstrf_shared_t();
+	    pool_job_t  job;
+
+
+	    /* Cancelled, or the deadline passed, before the first panel. */
+	    if ( superlumt_options.control != null &&
+		 control_stop(superlumt_options.control) ) {
+		sp_symbolic_wait(superlumt_options);
+		info[0] = CANCELLED;
+		return;
+	    }
+
+	    /* --------------------------------------------------------------
+	       Initializes the parallel data structures for pdgstrf_thread(),
+	       or only the panels for the sequential engine.
+	       --------------------------------------------------------------*/
+	    pxgstrf_shared.sequential = use_sequential(superlumt_options, A);
+	    job = pool_job(superlumt_options);
+	    if ( job != null && (info[0] = pool_admit(job, superlumt_options, A)) != 0 ) {
+		sp_symbolic_wait(superlumt_options);
+		return;
+	    }
+	    try {
+		pdgstrf_admitted(superlumt_options, A, perm_r, L, U, Gstat,
+				 pxgstrf_shared, job, info);
+	    } finally {
+		if ( job != null ) pool_release(job);
+	    }
+	}
+
+	/*
+	 * The factorization of pdgstrf() once admitted to the pool of job, if
+	 * any; pdgstrf() releases the admission however it ends.
+	 */
+	static
+	void
+	pdgstrf_admitted(superlumt_options_t superlumt_options, SuperMatrix A,
+			 int perm_r[], SuperMatrix L, SuperMatrix U, Gstat_t Gstat,
+			 pxgstrf_shared_t pxgstrf_shared, pool_job_t job, int info[])
+	{
+	    pdgstrf_threadarg_t pdgstrf_threadarg[];
 	    int nprocs = superlumt_options.nprocs;
 	    int i;
 		int iinfo;
 	    double    utime[] = Gstat.utime;
 	    double    usrtime, wtime;
 	    Thread thread_id[];
+	    boolean interrupted;
 	    Object      status[];
 //	    void      *pdgstrf_thread(void *);
 
-
-	    /* --------------------------------------------------------------
-	       Initializes the parallel data structures for pdgstrf_thread().
-	       --------------------------------------------------------------*/
 	    pdgstrf_threadarg = pdgstrf_thread_init(A, L, U, superlumt_options,
 						    pxgstrf_shared, Gstat, info);
-	    if ( info[0] != 0 ) return;
+	    if ( info[0] != 0 ) {
+		sp_symbolic_wait(superlumt_options);
+		return;
+	    }
+
+	    if ( superlumt_options.control != null )
+		pxgstrf_progress_start(pxgstrf_shared, superlumt_options.control);
 
 	    /* Start timing factorization. */
 	    usrtime = usertimer_();
@@ -182,18 +253,46 @@ public class Dlu_pdgstrf {
 	    /* ------------------------------------------------------------
 	       Use POSIX threads.
 	       ------------------------------------------------------------*/
-	if ( true )	{  /* Use pthread ... */
+	if ( job != null ) {
+
+	    /* The workers of a shared pool run the threads. */
+	    pool_run(job, pdgstrf_threadarg);
+
+	} else if ( pxgstrf_shared.sequential ) {
+
+	    /* One thread or a small matrix: no synchronization at all. */
+	    pdgstrf_sequential( pdgstrf_threadarg[0] );
+
+	} else if ( nprocs > 1 )	{  /* Use pthread ... */
 
 	    /* Create nproc threads for concurrent factorization. */
 	    thread_id = new Thread [nprocs];
 
-	    for (final pdgstrf_threadarg_t arg : pdgstrf_threadarg) {
-	    	new Thread() {
+	    for (i = 0; i < nprocs; ++i) {
+		final pdgstrf_threadarg_t arg = pdgstrf_threadarg[i];
+		thread_id[i] = new Thread() {
 				public void run() {
 					pdgstrf_thread(arg);
 				}
-			}.start();
+			};
+		thread_id[i].start();
+	    }
+
+	    /* Wait for all threads to terminate. */
+	    interrupted = false;
+	    for (i = 0; i < nprocs; i++) {
+		try {
+		    thread_id[i].join();
+		} catch (InterruptedException e) {
+		    /* The threads cannot be interrupted: stop them through the
+		       control, if any, and wait again. */
+		    if ( superlumt_options.control != null )
+			superlumt_options.control.cancel();
+		    interrupted = true;
+		    --i;
 		}
+	    }
+	    if ( interrupted ) Thread.currentThread().interrupt();
 
 //	    for (i = 0; i < nprocs; ++i) {
 //		if ( iinfo = pthread_create(&thread_id[i],
@@ -211,12 +310,11 @@ public class Dlu_pdgstrf {
 	/* _PTHREAD */
 
 	    /* ------------------------------------------------------------
-	       On all other systems, use single processor.
+	       A single thread of the parallel engine (Dlu.SEQUENTIAL cleared)
+	       factors in the calling thread.
 	       ------------------------------------------------------------*/
 	} else {
 
-	    printf("pdgstrf() is not parallelized on this machine.\n");
-	    printf("pdgstrf() will be run on single processor.\n");
 	    pdgstrf_thread( pdgstrf_threadarg[0] );
 
 	}
@@ -225,6 +323,39 @@ public class Dlu_pdgstrf {
 	    usrtime = usertimer_() - usrtime;
 	    utime[FACT.ordinal()] = wtime;
 
+	    /* A thread threw; the others stopped at the next panel or busy
+	       column (pxgstrf_fail). */
+	    if ( pxgstrf_shared.failure != null ) {
+		if ( pxgstrf_shared.failure instanceof mem_error_t ) {
+		    /* A storage was full (XPAND_HINT()): L and U are not set
+		       up, as when cancelled. */
+		    pdgstrf_thread_cancelled(pdgstrf_threadarg, pxgstrf_shared);
+		    info[0] = (int) Math.min(A.ncol +
+			((mem_error_t) pxgstrf_shared.failure).bytes, Integer.MAX_VALUE);
+		    return;
+		}
+		if ( pxgstrf_shared.ooc != null ) {
+		    ooc_discard(pxgstrf_shared.ooc, pxgstrf_shared.Glu);
+		    pxgstrf_shared.ooc = null;
+		}
+		pxgstrf_rethrow(pxgstrf_shared);
+	    }
+
+	    /* Done already if a panel above the relaxed supernodes was taken
+	       (PIPELINE_SYMBOLIC). */
+	    sp_symbolic_wait(superlumt_options);
+
+	    if ( superlumt_options.control != null ) {
+		if ( superlumt_options.control.listener != null )
+		    pxgstrf_progress(pxgstrf_shared, superlumt_options.control);
+		if ( pxgstrf_shared.tasks_remain > 0 ) {
+		    /* Cancelled: some panels were never taken. */
+		    pdgstrf_thread_cancelled(pdgstrf_threadarg, pxgstrf_shared);
+		    info[0] = CANCELLED;
+		    return;
+		}
+	    }
+
 	if ( PRNTlevel==1 ) {
 	    printf(".. pdgstrf_thread() returns info %d, usrtime %.2f, wtime %.2f\n",
 	           info[0], usrtime, wtime);
@@ -237,6 +368,7 @@ public class Dlu_pdgstrf {
 	       ------------------------------------------------------------*/
 	    pdgstrf_thread_finalize(pdgstrf_threadarg, pxgstrf_shared,
 				    A, perm_r, L, U);
+	    info[0] = pxgstrf_shared.info;
 
 	}
 
@@ -6,6 +6,8 @@ import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
 import static gov.lbl.superlu.Dlu_sp_ienv.sp_ienv;
 
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup_off;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FLOAT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
 import static gov.lbl.superlu.Dlu_slu_mt_util.BADPAN;
@@ -84,7 +86,7 @@ public class Dlu_pdgstrf_bmod1D {
 	    int          col_lsub[];   /* each column of the panel_lsub[*,w] */
 	    int          lsub[], xlsub_end[];
 	    double       lusup[];
-	    int          xlusup[];
+	    int          luptr0;    /* start of the supernode in lusup */
 	    float flopcnt;
 
 	    double      zero = 0.0;
@@ -95,8 +97,8 @@ public class Dlu_pdgstrf_bmod1D {
 
 	    lsub      = Glu.lsub;
 	    xlsub_end = Glu.xlsub_end;
-	    lusup     = Glu.lusup;
-	    xlusup    = Glu.xlusup;
+	    lusup     = ooc_lusup(Glu, Glu.xlusup[fsupc]); /* Glu.lusup unless paged */
+	    luptr0    = ooc_lusup_off(Glu, Glu.xlusup[fsupc]);
 	    lptr      = Glu.xlsub[fsupc];
 	    krep_ind  = lptr + nsupc - 1;
 
@@ -126,7 +128,7 @@ public class Dlu_pdgstrf_bmod1D {
 		if ( kfnz == EMPTY ) continue;	/* Skip any zero segment */
 
 		segsze = krep - kfnz + 1;
-		luptr = xlusup[fsupc];
+		luptr = luptr0;
 
 		/* Calculate flops: tri-solve + mat-vector */
 	        flopcnt = segsze * (segsze - 1) + 2 * nrow * segsze;
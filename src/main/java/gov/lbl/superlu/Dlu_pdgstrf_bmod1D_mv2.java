@@ -6,6 +6,8 @@ import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
 import static gov.lbl.superlu.Dlu_sp_ienv.sp_ienv;
 
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup_off;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FLOAT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
@@ -95,7 +97,7 @@ public class Dlu_pdgstrf_bmod1D_mv2 {
 	    int  col_lsub[], col_lsub1[];   /* each column of the panel_lsub[*,w] */
 	    int          lsub[], xlsub_end[];
 	    double	lusup[];
-	    int          xlusup[];
+	    int          luptr0;    /* start of the supernode in lusup */
 	    float flopcnt;
 
 	    double utime[] = Gstat.utime;
@@ -103,8 +105,8 @@ public class Dlu_pdgstrf_bmod1D_mv2 {
 
 	    lsub      = Glu.lsub;
 	    xlsub_end = Glu.xlsub_end;
-	    lusup     = Glu.lusup;
-	    xlusup    = Glu.xlusup;
+	    lusup     = ooc_lusup(Glu, Glu.xlusup[fsupc]); /* Glu.lusup unless paged */
+	    luptr0    = ooc_lusup_off(Glu, Glu.xlusup[fsupc]);
 	    lptr      = Glu.xlsub[fsupc];
 	    krep_ind  = lptr + nsupc - 1;
 	    twocols = 0;
@@ -137,7 +139,7 @@ public class Dlu_pdgstrf_bmod1D_mv2 {
 		if ( kfnz == EMPTY ) continue;	/* skip any zero segment */
 
 		segsze = krep - kfnz + 1;
-		luptr = xlusup[fsupc];
+		luptr = luptr0;
 
 	        flopcnt = segsze * (segsze - 1) + 2 * nrow * segsze;
 		Gstat.procstat[pnum].fcops += flopcnt;
@@ -248,7 +250,7 @@ public class Dlu_pdgstrf_bmod1D_mv2 {
 			    f_time = SuperLU_timer_();
 	}
 			    /* start effective triangle */
-			    luptr = xlusup[fsupc] + nsupr * no_zeros + no_zeros;
+			    luptr = luptr0 + nsupr * no_zeros + no_zeros;
 
 	if (USE_VENDOR_BLAS) {
 			    dtrsv( "L", "N", "U", segsze, lusup, luptr,
@@ -269,7 +271,7 @@ public class Dlu_pdgstrf_bmod1D_mv2 {
 			if ( kfnz2[0] < kfnz2[1] ) { /* First column is bigger */
 			    no_zeros = kfnz2[0] - fsupc;
 			    segsze = kfnz2[1] - kfnz2[0];
-			    luptr = xlusup[fsupc] + nsupr * no_zeros + nsupc;
+			    luptr = luptr0 + nsupr * no_zeros + nsupc;
 	if (USE_VENDOR_BLAS) {
 			    dgemv( "N", nrow, segsze, alpha, lusup, luptr,
 				   nsupr, tri[0], tri_offset[0], incx, beta, matvec[0], matvec_offset[0], incy );
@@ -281,7 +283,7 @@ public class Dlu_pdgstrf_bmod1D_mv2 {
 			} else if ( kfnz2[0] > kfnz2[1] ) {
 			    no_zeros = kfnz2[1] - fsupc;
 			    segsze = kfnz2[0] - kfnz2[1];
-			    luptr = xlusup[fsupc] + nsupr * no_zeros + nsupc;
+			    luptr = luptr0 + nsupr * no_zeros + nsupc;
 	if (USE_VENDOR_BLAS) {
 			    dgemv( "N", nrow, segsze, alpha, lusup, luptr,
 				   nsupr, tri[1], tri_offset[1], incx, beta, matvec[1], matvec_offset[1], incy );
@@ -295,7 +297,7 @@ public class Dlu_pdgstrf_bmod1D_mv2 {
 			kfnz = SUPERLU_MAX( kfnz2[0], kfnz2[1] );
 			no_zeros = kfnz - fsupc;
 			segsze = krep - kfnz + 1;
-			luptr = xlusup[fsupc] + nsupr * no_zeros + nsupc;
+			luptr = luptr0 + nsupr * no_zeros + nsupc;
 
 			dmatvec2(nsupr, nrow, segsze, lusup, luptr,
 				 tri[0], tri_offset[0]+kfnz-kfnz2[0],
@@ -383,7 +385,7 @@ public class Dlu_pdgstrf_bmod1D_mv2 {
 		f_time = SuperLU_timer_();
 	}
 		/* start effective triangle */
-		luptr = xlusup[fsupc] + nsupr * no_zeros + no_zeros;
+		luptr = luptr0 + nsupr * no_zeros + no_zeros;
 	if (USE_VENDOR_BLAS) {
 		dtrsv( "L", "N", "U", segsze, lusup, luptr,
 		       nsupr, tri[0], tri_offset[0], incx );
@@ -3,9 +3,10 @@ package gov.lbl.superlu;
 import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
 
-import static gov.lbl.superlu.Dlu_sp_ienv.sp_ienv;
 
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup_off;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FLOAT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
 
@@ -23,8 +24,6 @@ import static gov.lbl.superlu.Dlu_dmyblas2.dmatvec;
 
 public class Dlu_pdgstrf_bmod2D {
 
-    static int first = 1, maxsuper, rowblk;
-
 	static
 	void
 	pdgstrf_bmod2D(
@@ -85,23 +84,19 @@ public class Dlu_pdgstrf_bmod2D {
 	    int r_ind, r_hi;
 	    int          lsub[], xlsub_end[];
 	    double       lusup[];
-	    int          xlusup[];
+	    int          luptr0;    /* start of the supernode in lusup */
 	    float flopcnt;
 
 	    double utime[] = Gstat.utime;
 	    double f_time = 0;
 
-	    if ( first != 0 ) {
-		maxsuper = sp_ienv(3);
-		rowblk   = sp_ienv(4);
-		first = 0;
-	    }
+	    int maxsuper = Glu.tuning.maxsuper, rowblk = Glu.tuning.rowblk;
 	    ldaTmp = maxsuper + rowblk;
 
 	    lsub      = Glu.lsub;
 	    xlsub_end = Glu.xlsub_end;
-	    lusup     = Glu.lusup;
-	    xlusup    = Glu.xlusup;
+	    lusup     = ooc_lusup(Glu, Glu.xlusup[fsupc]); /* Glu.lusup unless paged */
+	    luptr0    = ooc_lusup_off(Glu, Glu.xlusup[fsupc]);
 	    lptr      = Glu.xlsub[fsupc];
 	    krep_ind  = lptr + nsupc - 1;
 
@@ -129,7 +124,7 @@ public class Dlu_pdgstrf_bmod2D {
 		if ( kfnz == EMPTY ) continue;	/* Skip any zero segment */
 
 		segsze = krep - kfnz + 1;
-		luptr = xlusup[fsupc];
+		luptr = luptr0;
 
 	        flopcnt = segsze * (segsze - 1) + 2 * nrow * segsze;
 		Gstat.procstat[pnum].fcops += flopcnt;
@@ -246,7 +241,7 @@ public class Dlu_pdgstrf_bmod2D {
 
 		r_hi = SUPERLU_MIN(nrow, r_ind + rowblk);
 		block_nrow = SUPERLU_MIN(rowblk, r_hi - r_ind);
-		luptr = xlusup[fsupc] + nsupc + r_ind;
+		luptr = luptr0 + nsupc + r_ind;
 		isub1 = lptr + nsupc + r_ind;
 
 		repfnz_col = repfnz;
@@ -3,9 +3,10 @@ package gov.lbl.superlu;
 import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
 
-import static gov.lbl.superlu.Dlu_sp_ienv.sp_ienv;
 
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup_off;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FLOAT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
@@ -25,8 +26,6 @@ import static gov.lbl.superlu.Dlu_dmyblas2.dmatvec2;
 
 public class Dlu_pdgstrf_bmod2D_mv2 {
 
-    static int first = 1, maxsuper, rowblk;
-
 	static
 	void
 	pdgstrf_bmod2D_mv2(
@@ -97,23 +96,19 @@ public class Dlu_pdgstrf_bmod2D_mv2 {
 	    int[] matvec_offset = {0, 0};
 	    int          lsub[], xlsub_end[];
 	    double       lusup[];
-	    int          xlusup[];
+	    int          luptr0;    /* start of the supernode in lusup */
 	    float flopcnt;
 
 	    double utime[] = Gstat.utime;
 	    double f_time = 0;
 
-	    if ( first != 0 ) {
-		maxsuper = sp_ienv(3);
-		rowblk   = sp_ienv(4);
-		first = 0;
-	    }
+	    int maxsuper = Glu.tuning.maxsuper, rowblk = Glu.tuning.rowblk;
 	    ldaTmp = maxsuper + rowblk;
 
 	    lsub      = Glu.lsub;
 	    xlsub_end = Glu.xlsub_end;
-	    lusup     = Glu.lusup;
-	    xlusup    = Glu.xlusup;
+	    lusup     = ooc_lusup(Glu, Glu.xlusup[fsupc]); /* Glu.lusup unless paged */
+	    luptr0    = ooc_lusup_off(Glu, Glu.xlusup[fsupc]);
 	    lptr      = Glu.xlsub[fsupc];
 	    krep_ind  = lptr + nsupc - 1;
 
@@ -142,7 +137,7 @@ public class Dlu_pdgstrf_bmod2D_mv2 {
 		if ( kfnz == EMPTY ) continue;	/* Skip any zero segment */
 
 		segsze = krep - kfnz + 1;
-		luptr = xlusup[fsupc];
+		luptr = luptr0;
 
 	        flopcnt = segsze * (segsze - 1) + 2 * nrow * segsze;
 		Gstat.procstat[pnum].fcops += flopcnt;
@@ -254,7 +249,7 @@ public class Dlu_pdgstrf_bmod2D_mv2 {
 	    for ( r_ind = 0; r_ind < nrow; r_ind += rowblk ) {
 		r_hi = SUPERLU_MIN(nrow, r_ind + rowblk);
 		block_nrow = SUPERLU_MIN(rowblk, r_hi - r_ind);
-		luptr1 = xlusup[fsupc] + nsupc + r_ind;
+		luptr1 = luptr0 + nsupc + r_ind;
 		isub1 = lptr + nsupc + r_ind;
 		repfnz_col = repfnz;
 		repfnz_col_offset = 0;
@@ -10,6 +10,8 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.SUPER_FSUPC;
 import static gov.lbl.superlu.Dlu_slu_mt_util.MemType.LUSUP;
 
 import static gov.lbl.superlu.Dlu_pmemory.Glu_alloc;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup_off;
 
 import static gov.lbl.superlu.Dlu.DEBUGlevel;
 import static gov.lbl.superlu.Dlu.printf;
@@ -34,8 +36,11 @@ public class Dlu_pdgstrf_column_bmod {
 			    final int  fpanelc,/* first column in the panel */
 			    final int  nseg,   /* number of s-nodes to update jcol */
 			    int        segrep[],/* in */
+			    int        segrep_offset,
 			    int        repfnz[],/* in */
+			    int        repfnz_offset,
 			    double     dense[], /* modified */
+			    int        dense_offset,
 			    double     tempv[], /* working array */
 			    pxgstrf_shared_t pxgstrf_shared, /* modified */
 			    Gstat_t Gstat     /* modified */
@@ -111,7 +116,7 @@ public class Dlu_pdgstrf_column_bmod {
 	    k = nseg - 1;
 	    for (ksub = 0; ksub < nseg; ksub++) {
 
-		krep = segrep[k];
+		krep = segrep[segrep_offset+k];
 		k--;
 		ksupno = supno[krep];
 	if ( DEBUGlevel>=2 ) {
@@ -129,8 +134,10 @@ public class Dlu_pdgstrf_column_bmod {
 	  	    d_fsupc = fst_col - fsupc;
 
 		    luptr = xlusup[fst_col] + d_fsupc;
+		    lusup = ooc_lusup(Glu, luptr);  /* Glu.lusup unless paged */
+		    luptr = ooc_lusup_off(Glu, luptr);
 		    lptr = xlsub[fsupc] + d_fsupc;
-		    kfnz = repfnz[krep];
+		    kfnz = repfnz[repfnz_offset+krep];
 		    kfnz = SUPERLU_MAX ( kfnz, fpanelc );
 		    segsze = krep - kfnz + 1;
 		    nsupc = krep - fst_col + 1;
@@ -153,42 +160,42 @@ public class Dlu_pdgstrf_column_bmod {
 		     * Case 1: Update U-segment of size 1 -- col-col update
 		     */
 		    if ( segsze == 1 ) {
-		  	ukj = dense[lsub[krep_ind]];
+		  	ukj = dense[dense_offset+lsub[krep_ind]];
 			luptr += nsupr*(nsupc-1) + nsupc;
 
 			for (i = lptr + nsupc; i < xlsub_end[fsupc]; ++i) {
 			    irow = lsub[i];
-			    dense[irow] -=  ukj*lusup[luptr];
+			    dense[dense_offset+irow] -=  ukj*lusup[luptr];
 			    luptr++;
 			}
 		    } else if ( segsze <= 3 ) {
-			ukj = dense[lsub[krep_ind]];
+			ukj = dense[dense_offset+lsub[krep_ind]];
 			luptr += nsupr*(nsupc-1) + nsupc-1;
-			ukj1 = dense[lsub[krep_ind - 1]];
+			ukj1 = dense[dense_offset+lsub[krep_ind - 1]];
 			luptr1 = luptr - nsupr;
 			if ( segsze == 2 ) { /* Case 2: 2cols-col update */
 			    ukj -= ukj1 * lusup[luptr1];
-			    dense[lsub[krep_ind]] = ukj;
+			    dense[dense_offset+lsub[krep_ind]] = ukj;
 			    for (i = lptr + nsupc; i < xlsub_end[fsupc]; ++i) {
 			    	irow = lsub[i];
 			    	luptr++;
 			    	luptr1++;
-			    	dense[irow] -= ( ukj*lusup[luptr]
+			    	dense[dense_offset+irow] -= ( ukj*lusup[luptr]
 						+ ukj1*lusup[luptr1] );
 			    }
 			} else { /* Case 3: 3cols-col update */
-			    ukj2 = dense[lsub[krep_ind - 2]];
+			    ukj2 = dense[dense_offset+lsub[krep_ind - 2]];
 			    luptr2 = luptr1 - nsupr;
 			    ukj1 -= ukj2 * lusup[luptr2-1];
 			    ukj = ukj - ukj1*lusup[luptr1] - ukj2*lusup[luptr2];
-			    dense[lsub[krep_ind]] = ukj;
-			    dense[lsub[krep_ind-1]] = ukj1;
+			    dense[dense_offset+lsub[krep_ind]] = ukj;
+			    dense[dense_offset+lsub[krep_ind-1]] = ukj1;
 			    for (i = lptr + nsupc; i < xlsub_end[fsupc]; ++i) {
 			    	irow = lsub[i];
 			    	luptr++;
 			    	luptr1++;
 				luptr2++;
-			    	dense[irow] -= ( ukj*lusup[luptr]
+			    	dense[dense_offset+irow] -= ( ukj*lusup[luptr]
 				     + ukj1*lusup[luptr1] + ukj2*lusup[luptr2] );
 			    }
 			}
@@ -206,7 +213,7 @@ public class Dlu_pdgstrf_column_bmod {
 		        isub = lptr + no_zeros;
 		        for (i = 0; i < segsze; i++) {
 		  	    irow = lsub[isub];
-			    tempv[i] = dense[irow];
+			    tempv[i] = dense[dense_offset+irow];
 			    ++isub;
 		        }
 
@@ -230,13 +237,13 @@ public class Dlu_pdgstrf_column_bmod {
 	 		luptr += segsze;  /* Dense matrix-vector */
 			tempv1 = tempv;
 			tempv1_offset = segsze;
-			dmatvec (nsupr, nrow , segsze, lusup, luptr, tempv, tempv1_offset, tempv1, 0);
+			dmatvec (nsupr, nrow , segsze, lusup, luptr, tempv, 0, tempv1, tempv1_offset);
 	}
 	                /* Scatter tempv[] into SPA dense[*] */
 	                isub = lptr + no_zeros;
 	                for (i = 0; i < segsze; i++) {
 	                    irow = lsub[isub];
-	                    dense[irow] = tempv[i]; /* Scatter */
+	                    dense[dense_offset+irow] = tempv[i]; /* Scatter */
 	                    tempv[i] = zero;
 	                    isub++;
 	                }
@@ -244,8 +251,8 @@ public class Dlu_pdgstrf_column_bmod {
 			/* Scatter tempv1[] into SPA dense[*] */
 			for (i = 0; i < nrow; i++) {
 			    irow = lsub[isub];
-	                    dense[irow] -= tempv1[i];
-			    tempv1[i] = zero;
+	                    dense[dense_offset+irow] -= tempv1[tempv1_offset+i];
+			    tempv1[tempv1_offset+i] = zero;
 			    ++isub;
 			}
 		    } /* else segsze >= 4 */
@@ -265,18 +272,20 @@ public class Dlu_pdgstrf_column_bmod {
 				       pxgstrf_shared)) != 0 )
 		return mem_error;
 	    xlusup[jcol] = nextlu[0];
-	    lusup = Glu.lusup;
+	    lusup = ooc_lusup(Glu, nextlu[0]);
+	    luptr = ooc_lusup_off(Glu, nextlu[0]);
 
 	    /* Gather the nonzeros from SPA dense[*,j] into L\U[*,j] */
 	    for (isub = xlsub[fsupc]; isub < xlsub_end[fsupc]; ++isub) {
 	  	irow = lsub[isub];
-		lusup[nextlu[0]] = dense[irow];
-		dense[irow] = zero;
+		lusup[luptr] = dense[dense_offset+irow];
+		dense[dense_offset+irow] = zero;
 	if (DEBUG) {
 	if (jcol == -1)
 	    printf("(%d) pdgstrf_column_bmod[lusup] jcol %d, irow %d, lusup %.10e\n",
-		   pnum, jcol, irow, lusup[nextlu[0]]);
+		   pnum, jcol, irow, lusup[luptr]);
 	}
+		++luptr;
 		++nextlu[0];
 	    }
 	    xlusup_end[jcol] = nextlu[0]; /* close L\U[*,jcol] */
@@ -285,7 +294,7 @@ public class Dlu_pdgstrf_column_bmod {
 	if (jcol == -1) {
 	    nrow = xlusup_end[jcol] - xlusup[jcol];
 	    print_double_vec("before sup-col update", nrow, lsub, xlsub[fsupc],
-			     lusup, xlusup[jcol]);
+			     lusup, ooc_lusup_off(Glu, xlusup[jcol]));
 	}
 	}
 
@@ -312,6 +321,8 @@ public class Dlu_pdgstrf_column_bmod {
 
 		/* points to the beginning of jcol in supernode L\U[*,jsupno] */
 		ufirst = xlusup[jcol] + d_fsupc;
+		luptr = ooc_lusup_off(Glu, luptr);
+		ufirst = ooc_lusup_off(Glu, ufirst);
 
 	if ( DEBUGlevel>=2 ) {
 	if (jcol==BADCOL)
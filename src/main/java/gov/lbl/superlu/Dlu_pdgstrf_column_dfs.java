@@ -4,8 +4,6 @@ import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
 
-import static gov.lbl.superlu.Dlu_sp_ienv.sp_ienv;
-
 import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.YES;
 import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
@@ -27,8 +25,6 @@ import static gov.lbl.superlu.Dlu_util.PrintInt10;
 
 public class Dlu_pdgstrf_column_dfs {
 
-    static  int  first = 1, maxsuper;
-
     static
 	int
 	pdgstrf_column_dfs(
@@ -39,11 +35,13 @@ public class Dlu_pdgstrf_column_dfs {
 			   int perm_r[],   /* row pivotings that are done so far */
 			   int ispruned[], /* in */
 			   int col_lsub[], /* the RHS vector to start the dfs */
+			   int col_lsub_offset,
 			   int lsub_end,  /* size of col_lsub[] */
 			   int super_bnd[],/* supernode partition by upper bound */
 			   int nseg[],     /* modified - with new segments appended */
 			   int segrep[],   /* modified - with new segments appended */
 			   int repfnz[],   /* modified */
+			   int repfnz_offset,
 			   int xprune[],   /* modified */
 			   int marker2[],  /* modified */
 			   int marker2_offset,
@@ -100,10 +98,7 @@ public class Dlu_pdgstrf_column_dfs {
 	    int     mem_error;
 	    int[]     xsup, xsup_end, supno, lsub, xlsub, xlsub_end;
 
-	    if ( first != 0 ) {
-		maxsuper = sp_ienv(3);
-		first = 0;
-	    }
+	    int maxsuper = Glu.tuning.maxsuper;
 
 	    /* Initialize pointers */
 	    xsup      = Glu.xsup;
@@ -120,7 +115,7 @@ public class Dlu_pdgstrf_column_dfs {
 	    /* Test whether the row structure of column jcol is contained
 	       in that of column jcol-1. */
 	    for (k = 0; k < lsub_end; ++k) {
-		krow = col_lsub[k];
+		krow = col_lsub[col_lsub_offset+k];
 		if ( perm_r[krow] == EMPTY ) { /* krow is in L */
 		    ++no_lsub;
 		    if (marker2[marker2_offset+krow] != jcolm1)
@@ -139,7 +134,7 @@ public class Dlu_pdgstrf_column_dfs {
 	     * For each nonzero in A[fstcol:n,jcol] perform DFS ...
 	     */
 	    for (k = 0; k < lsub_end; ++k) {
-		krow = col_lsub[k];
+		krow = col_lsub[col_lsub_offset+k];
 
 		/* if krow was visited before, go to the next nonzero */
 		if ( marker2[marker2_offset+krow] == jcol ) continue;
@@ -159,7 +154,7 @@ public class Dlu_pdgstrf_column_dfs {
 		     * has been explored, update repfnz[*].
 		     */
 		    krep = SUPER_REP(xsup_end, supno[kperm]);
-		    myfnz = repfnz[krep];
+		    myfnz = repfnz[repfnz_offset+krep];
 
 	if ( DEBUGlevel>=3 ) {
 	  if (jcol == BADCOL)
@@ -167,14 +162,14 @@ public class Dlu_pdgstrf_column_dfs {
 		   pnum, krep, myfnz, kperm);
 	}
 		    if ( myfnz != EMPTY ) {	/* Visited before */
-			if ( myfnz > kperm ) repfnz[krep] = kperm;
+			if ( myfnz > kperm ) repfnz[repfnz_offset+krep] = kperm;
 			/* continue; */
 		    } else {
 			/* Otherwise, perform dfs starting at krep */
 			parent[krep] = EMPTY;
-			repfnz[krep] = kperm;
+			repfnz[repfnz_offset+krep] = kperm;
 			if ( ispruned[krep] != 0 ) {
-			    if ( SINGLETON( xsup_end, xsup_end, supno[krep] ) )
+			    if ( SINGLETON( xsup_end, xsup, supno[krep] ) )
 				xdfs = xlsub_end[krep];
 			    else xdfs = xlsub[krep];
 			    maxdfs = xprune[krep];
@@ -182,7 +177,7 @@ public class Dlu_pdgstrf_column_dfs {
 			    Gstat.procstat[pnum].pruned++;
 	}
 			} else {
-			    fsupc = SUPER_FSUPC( xsup_end, supno[krep] );
+			    fsupc = SUPER_FSUPC(xsup, supno[krep] );
 			    xdfs = xlsub[fsupc] + krep-fsupc+1;
 			    maxdfs = xlsub_end[fsupc];
 	if (PROFILE) {
@@ -207,7 +202,7 @@ public class Dlu_pdgstrf_column_dfs {
 				    if ( chperm == EMPTY ) {
 					/* kchild is in L: place it in L[*,k]. */
 					++no_lsub;
-					col_lsub[nextl++] = kchild;
+					col_lsub[col_lsub_offset+nextl++] = kchild;
 					if (chmark != jcolm1) samesuper = NO.ordinal();
 				    } else {
 					/* kchild is in U: chrep = its supernode
@@ -215,19 +210,19 @@ public class Dlu_pdgstrf_column_dfs {
 					 * been explored, update its repfnz[*].
 					 */
 					chrep = SUPER_REP( xsup_end, supno[chperm] );
-					myfnz = repfnz[chrep];
+					myfnz = repfnz[repfnz_offset+chrep];
 					if ( myfnz != EMPTY ) { /* Visited before */
 					    if ( myfnz > chperm )
-						repfnz[chrep] = chperm;
+						repfnz[repfnz_offset+chrep] = chperm;
 					} else {
 					    /* Continue dfs at super-rep of kchild */
 					    xplore[krep] = xdfs;
 					    xplore[m + krep] = maxdfs;
 					    parent[chrep] = krep;
 					    krep = chrep; /* Go deeper down G(L^t) */
-					    repfnz[krep] = chperm;
+					    repfnz[repfnz_offset+krep] = chperm;
 					    if ( ispruned[krep] != 0 ) {
-						if ( SINGLETON( xsup_end, xsup_end, supno[krep] ) )
+						if ( SINGLETON( xsup_end, xsup, supno[krep] ) )
 						    xdfs = xlsub_end[krep];
 						else xdfs = xlsub[krep];
 						maxdfs = xprune[krep];
@@ -235,7 +230,7 @@ public class Dlu_pdgstrf_column_dfs {
 						Gstat.procstat[pnum].pruned++;
 	}
 					    } else {
-						fsupc = SUPER_FSUPC( xsup_end, supno[krep] );
+						fsupc = SUPER_FSUPC(xsup, supno[krep] );
 						xdfs = xlsub[fsupc] + krep-fsupc+1;
 						maxdfs = xlsub_end[fsupc];
 	if (PROFILE) {
@@ -256,7 +251,7 @@ public class Dlu_pdgstrf_column_dfs {
 	if ( DEBUGlevel>=3 ) {
 	  if (jcol == BADCOL)
 	    printf("(%d) pdgstrf_column_dfs[inner-dfs] new nseg %d, repfnz[krep=%d] %d\n",
-		   pnum, nseg[0], krep, repfnz[krep]);
+		   pnum, nseg[0], krep, repfnz[repfnz_offset+krep]);
 	}
 			    kpar = parent[krep]; /* Pop from stack, mimic recursion */
 			    if ( kpar == EMPTY ) break; /* dfs done */
@@ -310,9 +305,7 @@ public class Dlu_pdgstrf_column_dfs {
 	     * a previous supernode. (first for num values, last for pruning)
 	     */
 	    if ( samesuper == NO.ordinal() ) { /* starts a new supernode */
-	    int[] nsuper_ = new int[1];
-		nsuper = NewNsuper(pnum, pxgstrf_shared, nsuper_);
-		Glu.nsuper = nsuper_[0];
+		nsuper = NewNsuper(pnum, pxgstrf_shared, Glu);
 		xsup[nsuper] = jcol;
 
 		/* Copy column jcol; also reserve space to store pruned graph */
@@ -322,7 +315,7 @@ public class Dlu_pdgstrf_column_dfs {
 		xlsub[jcol] = ito[0];
 		lsub = Glu.lsub;
 		for (ifrom = 0; ifrom < nextl; ++ifrom) {
-		    krow = col_lsub[ifrom];
+		    krow = col_lsub[col_lsub_offset+ifrom];
 		    if ( perm_r[krow] == EMPTY ) /* Filter U-subscript */
 			lsub[ito[0]++] = krow;
 		}
@@ -338,7 +331,7 @@ public class Dlu_pdgstrf_column_dfs {
 		xlsub[jcol] = k;
 		xprune[fsupc] = k;
 		for (ifrom = 0; ifrom < nextl; ++ifrom) {
-		    krow = col_lsub[ifrom];
+		    krow = col_lsub[col_lsub_offset+ifrom];
 		    if ( perm_r[krow] == EMPTY ) /* Filter U-subscript */
 			lsub[k++] = krow;
 		}
@@ -5,6 +5,9 @@ import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
 
 import static gov.lbl.superlu.Dlu.DEBUG;
 import static gov.lbl.superlu.Dlu_pmemory.Glu_alloc;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_ucol;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_ucol_off;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_ucol_written;
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
 import static gov.lbl.superlu.Dlu_slu_mt_util.MemType.UCOL;
 
@@ -21,8 +24,10 @@ public class Dlu_pdgstrf_copy_to_ucol {
 			     final int  nseg,	 /* number of U-segments */
 			     final int  segrep[], /* in */
 			     final int  repfnz[], /* in */
+			     final int  repfnz_offset,
 			     final int  perm_r[], /* in */
 			     double	 dense[],  /* modified - reset to zero on exit */
+			     int	 dense_offset,
 			     pxgstrf_shared_t pxgstrf_shared /* modified */
 			     )
 	{
@@ -40,6 +45,7 @@ public class Dlu_pdgstrf_copy_to_ucol {
 	    nextu = new int[1];
 	    int[]    xsup, supno, lsub, xlsub, usub;
 	    double   ucol[];
+	    int      ubase;      /* ucol[k] is U's value nextu[0] = ubase + k */
 	    GlobalLU_t Glu = pxgstrf_shared.Glu; /* modified */
 
 	    double zero = 0.0;
@@ -58,7 +64,7 @@ public class Dlu_pdgstrf_copy_to_ucol {
 		ksupno = supno[krep];
 
 		if ( ksupno != jsupno ) { /* should go into ucol[] */
-		    kfnz = repfnz[krep];
+		    kfnz = repfnz[repfnz_offset+krep];
 		    if ( kfnz != EMPTY )  /* nonzero U-segment */
 			colsize += krep - kfnz + 1;;
 		}
@@ -68,7 +74,8 @@ public class Dlu_pdgstrf_copy_to_ucol {
 					pxgstrf_shared)) != 0 )
 		return mem_error;
 	    Glu.xusub[jcol] = nextu[0];
-	    ucol = Glu.ucol;
+	    ucol = ooc_ucol(Glu, nextu[0]); /* Glu.ucol unless paged */
+	    ubase = nextu[0] - ooc_ucol_off(Glu, nextu[0]);
 	    usub = Glu.usub;
 
 	    /* Now, it does not have to be in topological order! */
@@ -79,7 +86,7 @@ public class Dlu_pdgstrf_copy_to_ucol {
 		ksupno = supno[krep];
 
 		if ( ksupno != jsupno ) { /* should go into ucol[] */
-		    kfnz = repfnz[krep];
+		    kfnz = repfnz[repfnz_offset+krep];
 		    if ( kfnz != EMPTY ) { /* nonzero U-segment */
 		    	fsupc = xsup[ksupno];
 		        isub = xlsub[fsupc] + kfnz - fsupc;
@@ -88,12 +95,16 @@ public class Dlu_pdgstrf_copy_to_ucol {
 			for (i = 0; i < segsze; i++) {
 			    irow = lsub[isub];
 			    usub[nextu[0]] = perm_r[irow];
-			    ucol[nextu[0]] = dense[irow];
-			    dense[irow] = zero;
+			    if ( nextu[0] - ubase == ucol.length ) { /* next page */
+				ucol = ooc_ucol(Glu, nextu[0]);
+				ubase = nextu[0];
+			    }
+			    ucol[nextu[0] - ubase] = dense[dense_offset+irow];
+			    dense[dense_offset+irow] = zero;
 	if (DEBUG) {
 	if (jcol == EMPTY)
 	    printf("pcopy_to_ucol[]: jcol %d, krep %d, irow %d, ucol %.10e\n",
-		   jcol, krep, irow, ucol[nextu[0]]);
+		   jcol, krep, irow, ucol[nextu[0] - ubase]);
 	}
 			    nextu[0]++;
 			    isub++;
@@ -104,6 +115,7 @@ public class Dlu_pdgstrf_copy_to_ucol {
 	    } /* for each segment... */
 
 	    Glu.xusub_end[jcol] = nextu[0]; /* close U[*,jcol] */
+	    ooc_ucol_written(Glu, Glu.xusub[jcol], nextu[0]);
 	    return 0;
 	}
 
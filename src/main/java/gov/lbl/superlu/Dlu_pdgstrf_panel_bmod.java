@@ -7,7 +7,6 @@ import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.desc_eft_t;
 
-import static gov.lbl.superlu.Dlu_sp_ienv.sp_ienv;
 import static gov.lbl.superlu.Dlu_slu_mt_util.BADPAN;
 import static gov.lbl.superlu.Dlu_slu_mt_util.BADCOL;
 import static gov.lbl.superlu.Dlu_slu_mt_util.BADROW;
@@ -57,8 +56,6 @@ public class Dlu_pdgstrf_panel_bmod {
 		return 0;
 	}
 
-    static int first = 1, rowblk, colblk;
-
 	static
 	void
 	pdgstrf_panel_bmod(
@@ -109,7 +106,7 @@ public class Dlu_pdgstrf_panel_bmod {
 	    Gstat_t Gstat = pxgstrf_shared.Gstat; /* modified */
 	    int j, k, ksub;
 	    int fsupc, nsupc, nsupr, nrow;
-	    int kcol, krep, ksupno, dadsupno;
+	    int kcol, icol, krep, ksupno, dadsupno;
 	    int jj;	      /* index through each column in the panel */
 	    int          xsup[], xsup_end[], supno[];
 	    int          lsub[], xlsub[], xlsub_end[];
@@ -130,11 +127,7 @@ public class Dlu_pdgstrf_panel_bmod {
 	    int dbg_addr = 0*m;
 	}
 
-	    if ( first != 0 ) {
-		rowblk   = sp_ienv(4);
-		colblk   = sp_ienv(5);
-		first = 0;
-	    }
+	    int rowblk = Glu.tuning.rowblk, colblk = Glu.tuning.colblk;
 
 	    xsup      = Glu.xsup;
 	    xsup_end  = Glu.xsup_end;
@@ -252,13 +245,15 @@ public class Dlu_pdgstrf_panel_bmod {
 		dense_col = dense;
 		col_marker = spa_marker;
 		col_lsub = panel_lsub;
+		int repfnz_col_offset = 0, dense_col_offset = 0;
+		int col_marker_offset = 0, col_lsub_offset = 0;
 
 		/* Wait for the supernode, and collect wait-time statistics. */
-		if ( pxgstrf_shared.spin_locks[kcol] != 0 ) {
+		if ( pxgstrf_shared.spin_locks.get(kcol) != 0 ) {
 	if (PROFILE) {
 		    TIC(t1);
 	}
-		    await( pxgstrf_shared.spin_locks[kcol] );
+		    await(pxgstrf_shared, kcol);
 
 	if (PROFILE) {
 		    TOC(t2, t1[0]);
@@ -289,11 +284,11 @@ public class Dlu_pdgstrf_panel_bmod {
 		    krep = SUPER_REP( xsup_end, ksupno );
 		    kcol = etree[kcol];
 		    if ( kcol >= jcol ) break;
-		    if ( pxgstrf_shared.spin_locks[kcol] != 0 ) {
+		    if ( pxgstrf_shared.spin_locks.get(kcol) != 0 ) {
 	if (PROFILE) {
 			TIC(t1);
 	}
-			await ( pxgstrf_shared.spin_locks[kcol] );
+			await(pxgstrf_shared, kcol);
 
 	if (PROFILE) {
 			TOC(t2, t1[0]);
@@ -323,25 +318,25 @@ public class Dlu_pdgstrf_panel_bmod {
 	        ++(nseg[0]);
 
 		/* Determine repfnz[krep, w] for each column in the panel */
-		for (jj = jcol; jj < jcol + w; ++jj, dense_col[0] += m,
-		       repfnz_col[0] += m, col_marker[0] += m, col_lsub[0] += m) {
+		for (jj = jcol; jj < jcol + w; ++jj, dense_col_offset += m,
+		       repfnz_col_offset += m, col_marker_offset += m, col_lsub_offset += m) {
 		    /*
 		     * Note: relaxed supernode may not form a path on the e-tree,
 		     *       but its column numbers are contiguous.
 		     */
 	if (SCATTER_FOUND) {
-	 	    for (kcol = fsupc; kcol <= krep; ++kcol) {
-			if ( col_marker[inv_perm_r[kcol]] == jj ) {
-			    repfnz_col[krep] = kcol;
+	 	    for (icol = fsupc; icol <= krep; ++icol) {
+			if ( col_marker[col_marker_offset+inv_perm_r[icol]] == jj ) {
+			    repfnz_col[repfnz_col_offset+krep] = icol;
 
 	 		    /* Append new fills in panel_lsub[*,jj]. */
 			    j = w_lsub_end[jj - jcol];
 	/*#pragma ivdep*/
 			    for (k = xlsub[krep]; k < xlsub_end[krep]; ++k) {
 				ksub = lsub[k];
-				if ( col_marker[ksub] != jj ) {
-				    col_marker[ksub] = jj;
-				    col_lsub[j++] = ksub;
+				if ( col_marker[col_marker_offset+ksub] != jj ) {
+				    col_marker[col_marker_offset+ksub] = jj;
+				    col_lsub[col_lsub_offset+j++] = ksub;
 				}
 			    }
 			    w_lsub_end[jj - jcol] = j;
@@ -351,34 +346,43 @@ public class Dlu_pdgstrf_panel_bmod {
 		    }
 
 	} else {
-		    for (kcol = fsupc; kcol <= krep; ++kcol) {
-	                if ( dense_col[inv_perm_r[kcol]] != 0.0 ) {
-			    repfnz_col[krep] = kcol;
+		    for (icol = fsupc; icol <= krep; ++icol) {
+	                if ( dense_col[dense_col_offset+inv_perm_r[icol]] != 0.0 ) {
+			    repfnz_col[repfnz_col_offset+krep] = icol;
 			    break; /* Found the leading nonzero in the U-segment */
 			}
 		    }
 
-		    /* In this case, we always treat the L-subscripts of the
-		       busy s-node [kcol : krep] as the new fills, even if the
-		       corresponding U-segment may be all zero. */
-
-		    /* Append new fills in panel_lsub[*,jj]. */
-		    j = w_lsub_end[jj - jcol];
+		    /* The L-subscripts of the busy s-node [kcol : krep] are the
+		       new fills if the U-segment is nonzero in structure, even
+		       if it may be all zero in value. The structure is in
+		       col_marker[*], from pdgstrf_panel_dfs() and the fills of
+		       the busy s-nodes below; taking the fills of a segment that
+		       is not in it would make L[*,jj] larger than the prediction
+		       of pxgstrf_super_bnd_dfs() in the dynamic scheme. */
+		    for (icol = fsupc; icol <= krep; ++icol)
+			if ( col_marker[col_marker_offset+inv_perm_r[icol]] == jj )
+			    break;
+
+		    if ( icol <= krep ) {
+			/* Append new fills in panel_lsub[*,jj]. */
+			j = w_lsub_end[jj - jcol];
 	/*#pragma ivdep*/
-		    for (k = xlsub[krep]; k < xlsub_end[krep]; ++k) {
-		        ksub = lsub[k];
-			if ( col_marker[ksub] != jj ) {
-			    col_marker[ksub] = jj;
-			    col_lsub[j++] = ksub;
+			for (k = xlsub[krep]; k < xlsub_end[krep]; ++k) {
+			    ksub = lsub[k];
+			    if ( col_marker[col_marker_offset+ksub] != jj ) {
+				col_marker[col_marker_offset+ksub] = jj;
+				col_lsub[col_lsub_offset+j++] = ksub;
+			    }
 			}
+			w_lsub_end[jj - jcol] = j;
 		    }
-		    w_lsub_end[jj - jcol] = j;
 	}
 
 	if ( DEBUGlevel>=2 ) {
 	if (jj == BADCOL) {
 	printf("(%d) pdgstrf_panel_bmod[fills]: jj %d, repfnz_col[%d] %d, inv_pr[%d] %d\n",
-		   pnum, jj, krep, repfnz_col[krep], fsupc, inv_perm_r[fsupc]);
+		   pnum, jj, krep, repfnz_col[repfnz_col_offset+krep], fsupc, inv_perm_r[fsupc]);
 	printf("(%d) pdgstrf_panel_bmod[fills] xlsub %d, xlsub_end %d, #lsub[%d] %d\n",
 	       pnum,xlsub[krep],xlsub_end[krep],krep, xlsub_end[krep]-xlsub[krep]);
 	}
@@ -192,7 +192,7 @@ public class Dlu_pdgstrf_panel_dfs {
 	if (CHK_DFS) {
 	if (jj == BADCOL)
 	    printf("(%d) pdgstrf_panel_dfs[1] %d, krep %d, fsupc %d, Pr[krow %d] %d, myfnz %d\n",
-		   pnum, jj, krep, SUPER_FSUPC(xsup_end, supno[krep]), krow, kperm, myfnz);
+		   pnum, jj, krep, SUPER_FSUPC(xsup, supno[krep]), krow, kperm, myfnz);
 	}
 			if ( myfnz != EMPTY ) {	/* Representative visited before */
 			    if ( myfnz > kperm ) repfnz_col[repfnz_col_offset+krep] = kperm;
@@ -202,7 +202,7 @@ public class Dlu_pdgstrf_panel_dfs {
 			    parent[krep] = EMPTY;
 			    repfnz_col[repfnz_col_offset+krep] = kperm;
 			    if ( ispruned[krep] != 0 ) {
-				if ( SINGLETON( xsup_end, xsup_end, supno[krep] ) )
+				if ( SINGLETON( xsup_end, xsup, supno[krep] ) )
 				    xdfs = xlsub_end[krep];
 				else xdfs = xlsub[krep];
 				maxdfs = xprune[krep];
@@ -210,7 +210,7 @@ public class Dlu_pdgstrf_panel_dfs {
 				/*Gstat.procstat[pnum].pruned++;*/
 	}
 			    } else {
-				fsupc = SUPER_FSUPC( xsup_end, supno[krep] );
+				fsupc = SUPER_FSUPC(xsup, supno[krep] );
 				xdfs = xlsub[fsupc] + krep-fsupc+1;
 				maxdfs = xlsub_end[fsupc];
 	if (PROFILE) {
@@ -262,7 +262,7 @@ public class Dlu_pdgstrf_panel_dfs {
 	if (jj == BADCOL)
 	    printf("(%d) pdgstrf_panel_dfs[3] %d, krep %d, Pr[kchild %d] %d, chrep %d, fsupc %d, myfnz %d\n",
 		   pnum, jj, krep, kchild, chperm, chrep,
-		   SUPER_FSUPC(xsup_end, supno[chrep]), myfnz);
+		   SUPER_FSUPC(xsup, supno[chrep]), myfnz);
 	}
 					    if ( myfnz != EMPTY ) {/* Visited before */
 						if ( myfnz > chperm )
@@ -275,7 +275,7 @@ public class Dlu_pdgstrf_panel_dfs {
 						krep = chrep; /* Go deeper down G(L) */
 						repfnz_col[repfnz_col_offset+krep] = chperm;
 						if ( ispruned[krep] != 0 ) {
-						    if ( SINGLETON( xsup_end, xsup_end, supno[krep] ) )
+						    if ( SINGLETON( xsup_end, xsup, supno[krep] ) )
 							xdfs = xlsub_end[krep];
 						    else xdfs = xlsub[krep];
 						    maxdfs = xprune[krep];
@@ -283,7 +283,7 @@ public class Dlu_pdgstrf_panel_dfs {
 						    /*procstat[pnum].pruned++;*/
 	}
 						} else {
-						    fsupc = SUPER_FSUPC(xsup_end, supno[krep]);
+						    fsupc = SUPER_FSUPC(xsup, supno[krep]);
 						    xdfs = xlsub[fsupc] + krep-fsupc+1;
 						    maxdfs = xlsub_end[fsupc];
 	if (PROFILE) {
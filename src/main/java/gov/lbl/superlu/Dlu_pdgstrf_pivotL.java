@@ -7,6 +7,8 @@ import gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t;
 import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.YES;
 import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup_off;
 
 import static gov.lbl.superlu.Dlu.CHK_PIVOT;
 import static gov.lbl.superlu.Dlu.printf;
@@ -77,16 +79,16 @@ public class Dlu_pdgstrf_pivotL {
 
 	    /* Initialize pointers */
 	    lsub       = Glu.lsub;
-	    lusup      = Glu.lusup;
 	    xlusup     = Glu.xlusup;
 	    fsupc      = Glu.xsup[Glu.supno[jcol]];
+	    lusup      = ooc_lusup(Glu, xlusup[fsupc]); /* Glu.lusup unless paged */
 	    nsupc      = jcol - fsupc;	        /* excluding jcol; nsupc >= 0 */
 	    lptr       = Glu.xlsub[fsupc];
 	    nsupr      = Glu.xlsub_end[fsupc] - lptr;
 	    lu_sup_ptr = lusup;	/* start of the current supernode */
-	    int lu_sup_ptr_offset = xlusup[fsupc];
+	    int lu_sup_ptr_offset = ooc_lusup_off(Glu, xlusup[fsupc]);
 	    lu_col_ptr = lusup;	/* start of jcol in the supernode */
-	    int lu_col_ptr_offset = xlusup[jcol];
+	    int lu_col_ptr_offset = ooc_lusup_off(Glu, xlusup[jcol]);
 	    lsub_ptr   = lsub;	/* start of row indices of the supernode */
 	    int lsub_ptr_offset = lptr;
 
@@ -116,7 +118,7 @@ public class Dlu_pdgstrf_pivotL {
 
 	    /* Test for singularity */
 	    if ( pivmax == 0.0 ) {
-		pivrow[0] = lsub_ptr[pivptr];
+		pivrow[0] = lsub_ptr[lsub_ptr_offset+pivptr];
 		perm_r[pivrow[0]] = jcol;
 		inv_perm_r[jcol] = pivrow[0];
 		usepr[0] = NO;
@@ -143,6 +145,7 @@ public class Dlu_pdgstrf_pivotL {
 	    }
 
 	    /* Record pivot row */
+	    if ( pivptr != diag ) ++Gstat.procstat[pnum].offdiag_pivots;
 	    perm_r[pivrow[0]] = jcol;
 	    inv_perm_r[jcol] = pivrow[0];
 
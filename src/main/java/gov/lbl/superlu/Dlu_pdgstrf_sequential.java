@@ -0,0 +1,416 @@
+/*
+ * Sequential engine of the factorization.
+ *
+ * pdgstrf_thread() pays for its parallelism on every panel, even when it
+ * runs alone: the scheduler critical section, the busy descendants of
+ * pxgstrf_mark_busy_descends(), the spin locks of the columns and the
+ * locks of Glu_alloc(). pdgstrf_sequential() is the left-looking
+ * supernodal algorithm of sequential SuperLU with the same kernels, run
+ * over the panels in column order, without any of them.
+ */
+package gov.lbl.superlu;
+
+import gov.lbl.superlu.Dlu_pdmemory.pdgstrf_work_t;
+import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
+import gov.lbl.superlu.Dlu_pdsp_defs.pdgstrf_threadarg_t;
+import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.PROFILE;
+import static gov.lbl.superlu.Dlu.PREDICT_OPT;
+import static gov.lbl.superlu.Dlu.SEQUENTIAL;
+import static gov.lbl.superlu.Dlu.SEQUENTIAL_NCOL;
+import static gov.lbl.superlu.Dlu.DEBUGlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_slu_mt_util.NO_MARKER;
+import static gov.lbl.superlu.Dlu_slu_mt_util.TIC;
+import static gov.lbl.superlu.Dlu_slu_mt_util.TOC;
+import static gov.lbl.superlu.Dlu_slu_mt_util.BADCOL;
+import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.DFS;
+
+import static gov.lbl.superlu.Dlu_util.ifill;
+import static gov.lbl.superlu.Dlu_util.pxgstrf_resetrep_col;
+
+import static gov.lbl.superlu.Dlu_pdutil.dprint_lu_col;
+import static gov.lbl.superlu.Dlu_pdutil.dcheck_zero_vec;
+
+import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
+
+import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_WorkInit;
+import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_WorkReuse;
+import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_memory_use;
+import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_SetRWork;
+import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_WorkFree;
+
+import static gov.lbl.superlu.Dlu_pmemory.pxgstrf_SetIWork;
+import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
+
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.panel_t.RELAXED_SNODE;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.pipe_state_t.DONE;
+import static gov.lbl.superlu.Dlu_pdgsasync.pxgstrf_cancelled;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_fail;
+import static gov.lbl.superlu.Dlu_sp_colorder.sp_symbolic_wait;
+import static gov.lbl.superlu.Dlu_pdgstrf_factor_snode.pdgstrf_factor_snode;
+import static gov.lbl.superlu.Dlu_pdgstrf_panel_dfs.pdgstrf_panel_dfs;
+import static gov.lbl.superlu.Dlu_pdgstrf_panel_bmod.pdgstrf_panel_bmod;
+import static gov.lbl.superlu.Dlu_pxgstrf_super_bnd_dfs.pxgstrf_super_bnd_dfs;
+import static gov.lbl.superlu.Dlu_pdgstrf_column_dfs.pdgstrf_column_dfs;
+import static gov.lbl.superlu.Dlu_pdgstrf_column_bmod.pdgstrf_column_bmod;
+import static gov.lbl.superlu.Dlu_pdgstrf_pivotL.pdgstrf_pivotL;
+import static gov.lbl.superlu.Dlu_pdgstrf_copy_to_ucol.pdgstrf_copy_to_ucol;
+import static gov.lbl.superlu.Dlu_pxgstrf_pruneL.pxgstrf_pruneL;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_panel_done;
+
+
+public class Dlu_pdgstrf_sequential {
+
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * Whether pdgstrf() factors A with the sequential engine: if the options
+	 * ask for it, or if SEQUENTIAL is set and either one process is asked
+	 * for or A has at most SEQUENTIAL_NCOL columns, too few to keep several
+	 * processes busy.
+	 *
+	 */
+	static
+	boolean
+	use_sequential(superlumt_options_t superlumt_options, SuperMatrix A)
+	{
+	    if ( superlumt_options.sequential ) return true;
+	    if ( !SEQUENTIAL ) return false;
+	    return superlumt_options.nprocs == 1 || A.ncol <= SEQUENTIAL_NCOL;
+	}
+
+	/*
+	 * Runs pdgstrf_sequential_loop(). If it throws, the exception is
+	 * recorded in pxgstrf_shared (pxgstrf_fail), as by pdgstrf_thread(),
+	 * and pdgstrf() throws it again.
+	 */
+	static
+	Object[]
+	pdgstrf_sequential(pdgstrf_threadarg_t arg)
+	{
+	    try {
+		return pdgstrf_sequential_loop(arg);
+	    } catch (RuntimeException | Error e) {
+		pxgstrf_fail(arg.pxgstrf_shared, e);
+		return null;
+	    }
+	}
+
+	static
+	Object[]
+	pdgstrf_sequential_loop(pdgstrf_threadarg_t arg)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * pdgstrf_sequential() factors the matrix in the calling thread, in
+	 * place of pdgstrf_thread(). The data structures are those set up by
+	 * pdgstrf_thread_init() with pxgstrf_shared.sequential set, i.e. by
+	 * SequentialInit(): panels and relaxed supernodes, but no task queue
+	 * and no locks.
+	 *
+	 * A column comes after all its descendants in the elimination tree
+	 * (etree[j] > j), so taking the panels in increasing order of their
+	 * leading column, a postorder when the etree is postordered, finishes
+	 * all the descendants of a panel before it begins. Hence, compared with
+	 * pdgstrf_thread():
+	 *
+	 *     o there is no scheduler: panel jcol is followed by panel jcol+w;
+	 *     o no descendant is ever busy: lbusy[] stays EMPTY, so that
+	 *       pdgstrf_panel_dfs() skips no supernode, and bcol = jcol, so
+	 *       that pdgstrf_panel_bmod() waits for none;
+	 *     o the spin locks of the columns are neither set nor released;
+	 *     o Glu_alloc(), DynamicSetMap() and NewNsuper() take no locks.
+	 *
+	 * The working arrays are as in pdgstrf_thread(), and are those of
+	 * superlumt_options.workspace if it is set.
+	 *
+	 */
+
+	    pdgstrf_threadarg_t thr_arg = arg;
+	    int         pnum = thr_arg.pnum;
+
+	    /* Unpack the options argument */
+	    superlumt_options_t superlumt_options = thr_arg.superlumt_options;
+	    pxgstrf_shared_t  pxgstrf_shared = thr_arg.pxgstrf_shared;
+	    int         panel_size = superlumt_options.panel_size;
+	    double     diag_pivot_thresh = superlumt_options.diag_pivot_thresh;
+	    /* may be modified */
+	    yes_no_t    usepr[]     = superlumt_options.usepr;
+	    int         etree[]     = superlumt_options.etree;
+	    int         super_bnd[] = superlumt_options.part_super_h;
+	    int         perm_r[]    = superlumt_options.perm_r;
+	    int         inv_perm_c[]= pxgstrf_shared.inv_perm_c;
+	    int         inv_perm_r[]= pxgstrf_shared.inv_perm_r;
+	    int	        xprune[]    = pxgstrf_shared.xprune;
+	    int	        ispruned[]  = pxgstrf_shared.ispruned;
+	    SuperMatrix A          = pxgstrf_shared.A;
+	    GlobalLU_t  Glu        = pxgstrf_shared.Glu;
+	    Gstat_t 	Gstat      = pxgstrf_shared.Gstat;
+	    int         info[]     = thr_arg.info;
+
+	    /* Local working arrays */
+	    int       iwork[][] = new int[1][];
+	    double    dwork[][] = new double[1][];
+	    int[][]	      segrep, repfnz, parent, xplore;
+	    segrep = new int[1][];
+	    repfnz = new int[1][];
+	    parent = new int[1][];
+	    xplore = new int[1][];
+	    int	      panel_lsub[][]; /* dense[]/panel_lsub[] pair forms a w-wide SPA */
+	    panel_lsub = new int[1][];
+	    int	      marker[][], marker1[], marker2[];
+	    int marker1_offset, marker2_offset;
+	    marker = new int[1][];
+	    int       lbusy[][]; /* all EMPTY: no descendant is busy */
+	    lbusy = new int[1][];
+
+	    int       spa_marker[]; /* size n-by-w */
+	    int       w_lsub_end[]; /* record the end of each column in panel_lsub */
+	    double    dense[][] = new double[1][], tempv[][] = new double[1][];
+	    int       lsub[], xlsub[], xlsub_end[];
+
+	    /* Local scalars */
+	    int m, n, k, jj, jcol, jcolm1, itemp, singular, w;
+	    int       pivrow[];   /* pivotal row number in the original matrix A */
+	    pivrow = new int[1];
+	    int       nseg1[];	/* no of segments in U-column above panel row jcol */
+	    nseg1 = new int[1];
+	    int       nseg[];	/* no of segments in each U-column */
+	    nseg = new int[1];
+
+	    double utime[] = Gstat.utime;
+	    double t1[], t2[], t[], stime = 0;
+	    t = new double[1];
+	    t1 = new double[1];
+	    t2 = new double[1];
+	    float flopcnt = 0;
+	    float pdiv = 0;
+
+	    singular   = 0;
+	    m          = A.nrow;
+	    n          = A.ncol;
+	    lsub       = Glu.lsub;
+	    xlsub      = Glu.xlsub;
+	    xlsub_end  = Glu.xlsub_end;
+
+	    /* Allocate and initialize the working storage, or re-use that of
+	       the caller. */
+	    if ( superlumt_options.workspace != null ) {
+		pdgstrf_work_t work = superlumt_options.workspace;
+		if ( (info[0] = pdgstrf_WorkReuse(m, panel_size, Glu.tuning, work)) != 0 ) {
+		    info[0] += pdgstrf_memory_use(Glu.nzlmax, Glu.nzumax, Glu.nzlumax);
+		    return null/*0*/;
+		}
+		segrep[0]     = work.segrep;
+		parent[0]     = work.parent;
+		xplore[0]     = work.xplore;
+		repfnz[0]     = work.repfnz;
+		panel_lsub[0] = work.panel_lsub;
+		marker[0]     = work.marker;
+		lbusy[0]      = work.lbusy;
+		dense[0]      = work.dense;
+		tempv[0]      = work.tempv;
+		spa_marker    = work.spa_marker;
+		w_lsub_end    = work.w_lsub_end;
+	    } else {
+		if ( (info[0] = pdgstrf_WorkInit(m, panel_size, Glu.tuning, iwork, dwork, Glu)) != 0 ) {
+		    info[0] += pdgstrf_memory_use(Glu.nzlmax, Glu.nzumax, Glu.nzlumax);
+		    return null/*0*/;
+		}
+		pxgstrf_SetIWork(m, panel_size, /*iwork, */segrep, parent, xplore,
+			 repfnz, panel_lsub, marker, lbusy);
+		pdgstrf_SetRWork(m, panel_size, Glu.tuning, dwork[0], dense, tempv);
+
+		spa_marker = intMalloc(m * panel_size);
+		w_lsub_end = intMalloc(panel_size);
+	    }
+	    ifill (spa_marker, m * panel_size, EMPTY);
+	    ifill (marker[0], m * NO_MARKER, EMPTY);
+	    ifill (lbusy[0], m, EMPTY);
+	    marker1 = marker[0];
+	    marker1_offset = m;
+	    marker2 = marker[0];
+	    marker2_offset = 2*m;
+
+	if (PROFILE) {
+	    stime = SuperLU_timer_();
+	}
+
+	    /* -------------------------------------
+	       Main loop: the panels in column order
+	       ------------------------------------- */
+	    for (jcol = 0; jcol < n; jcol += w) {
+		if ( superlumt_options.control != null &&
+		     pxgstrf_cancelled(pxgstrf_shared, superlumt_options.control) )
+		    break;
+		w = pxgstrf_shared.pan_status[jcol].size;
+		--pxgstrf_shared.tasks_remain;
+
+	if (PROFILE) {
+		Gstat.procstat[pnum].panels++;
+		flopcnt = Gstat.procstat[pnum].fcops;
+		Gstat.panstat[jcol].pnum = pnum;
+		TIC(t1);
+		Gstat.panstat[jcol].starttime = t1[0];
+	}
+		if ( pxgstrf_shared.pan_status[jcol].type == RELAXED_SNODE ) {
+
+	if (PREDICT_OPT) {
+		    pdiv = Gstat.procstat[pnum].fcops;
+	}
+		    /* A relaxed supernode at the bottom of the etree */
+		    pdgstrf_factor_snode
+			(pnum, jcol, A, diag_pivot_thresh, usepr,
+			 perm_r, inv_perm_r, inv_perm_c, xprune, marker[0],
+			 panel_lsub[0], dense[0], tempv[0], pxgstrf_shared, info);
+		    if ( info[0] != 0 ) {
+			if ( info[0] > n ) return null/*0*/;
+			else if ( singular == 0 || info[0] < singular )
+			    singular = info[0];
+		    }
+	if (PREDICT_OPT) {
+		    pdiv = Gstat.procstat[pnum].fcops - pdiv;
+		    Gstat.cp_panel[jcol].pdiv = pdiv;
+	}
+		} else { /* Regular panel */
+		    /* Needs super_bnd[] (PIPELINE_SYMBOLIC). */
+		    sp_symbolic_wait(superlumt_options);
+	if (PROFILE) {
+		    TIC(t);
+	}
+		    /* Symbolic factor on a panel of columns */
+		    pdgstrf_panel_dfs
+			(pnum, m, w, jcol, A, perm_r, xprune, ispruned, lbusy[0],
+			 nseg1, panel_lsub[0], w_lsub_end, segrep[0], repfnz[0],
+			 marker[0], spa_marker, parent[0], xplore[0], dense[0], Glu);
+	if (PROFILE) {
+		    TOC(t2, t[0]);
+		    utime[DFS.ordinal()] += t2[0];
+	}
+		    /* Numeric sup-panel updates in topological order; there
+		       is no busy supernode between bcol = jcol and jcol. */
+		    pdgstrf_panel_bmod
+			(pnum, m, w, jcol, jcol, inv_perm_r, etree,
+			 nseg1, segrep[0], repfnz[0], panel_lsub[0], w_lsub_end,
+			 spa_marker, dense[0], tempv[0], pxgstrf_shared);
+
+		    /* Row subscripts of column jcol-1, to detect whether jcol
+		       belongs to the same supernode. */
+		    jcolm1 = jcol - 1;
+		    itemp = xlsub_end[jcolm1];
+		    for (k = xlsub[jcolm1]; k < itemp; ++k)
+			marker2[marker2_offset+lsub[k]] = jcolm1;
+	if (PREDICT_OPT) {
+		    pdiv = Gstat.procstat[pnum].fcops;
+	}
+		    /* Inner-factorization, using sup-col algorithm */
+		    for ( jj = jcol; jj < jcol + w; jj++) {
+			k = (jj - jcol) * m; /* index into w-wide arrays */
+			nseg[0] = nseg1[0]; /* begin after all the panel segments */
+	if (PROFILE) {
+			TIC(t);
+	}
+			/* Allocate storage for the current H-supernode. */
+			if ( Glu.dynamic_snode_bound != 0 && super_bnd[jj] != 0 ) {
+			    /* jj starts a supernode in H */
+			    pxgstrf_super_bnd_dfs
+				(pnum, m, n, jj, super_bnd[jj], A, perm_r,
+				 inv_perm_r, xprune, ispruned, marker1, marker1_offset, parent[0],
+				 xplore[0], pxgstrf_shared);
+			}
+
+			if ( (info[0] = pdgstrf_column_dfs
+				        (pnum, m, jj, jcol, perm_r, ispruned,
+					 panel_lsub[0], k, w_lsub_end[jj-jcol],
+					 super_bnd, nseg, segrep[0],
+					 repfnz[0], k, xprune, marker2, marker2_offset,
+					 parent[0], xplore[0], pxgstrf_shared)) != 0 )
+			    return null/*0*/;
+	if (PROFILE) {
+			TOC(t2, t[0]);
+			utime[DFS.ordinal()] += t2[0];
+	}
+			/* On return, the L supernode is gathered into the
+			   global storage. */
+			if ( (info[0] = pdgstrf_column_bmod
+				      (pnum, jj, jcol, (nseg[0] - nseg1[0]),
+				       segrep[0], nseg1[0], repfnz[0], k,
+				       dense[0], k, tempv[0], pxgstrf_shared, Gstat)) != 0 )
+			    return null/*0*/;
+
+			if ( (info[0] = pdgstrf_pivotL
+				        (pnum, jj, diag_pivot_thresh, usepr,
+					 perm_r, inv_perm_r, inv_perm_c,
+					 pivrow, Glu, Gstat)) != 0 )
+			    if ( singular == 0 || info[0] < singular )
+				singular = info[0];
+
+			/* copy the U-segments to ucol[*] */
+			if ( (info[0] = pdgstrf_copy_to_ucol
+				        (pnum,jj,nseg[0],segrep[0],repfnz[0], k,
+					 perm_r, dense[0], k, pxgstrf_shared)) != 0 )
+			    return null/*0*/;
+
+			/* Prune columns [0:jj-1] using column jj */
+			pxgstrf_pruneL(jj, perm_r, pivrow[0], nseg[0], segrep[0],
+				       repfnz[0], k, xprune, ispruned, Glu);
+
+			/* Reset repfnz[] for this column */
+			pxgstrf_resetrep_col (nseg[0], segrep[0], repfnz[0], k);
+
+	if ( DEBUGlevel>=2 ) {
+	  if ( jj==BADCOL ) {
+	    dprint_lu_col(pnum, "panel:", jcol, jj, w, pivrow[0], xprune, Glu);
+	    dcheck_zero_vec(pnum, "after pdgstrf_copy_to_ucol() dense_col[]", n, dense[0], k);
+	  }
+	}
+		    } /* for jj ... */
+
+	if (PREDICT_OPT) {
+		    pdiv = Gstat.procstat[pnum].fcops - pdiv;
+		    Gstat.cp_panel[jcol].pdiv = pdiv;
+	}
+		} /* else regular panel ... */
+
+		pxgstrf_shared.pan_status[jcol].state = DONE;
+
+		/* Hand the supernodes it completed to the writer. */
+		if ( pxgstrf_shared.ooc != null )
+		    ooc_panel_done(jcol, w, pxgstrf_shared);
+
+	if (PROFILE) {
+		double[] tx = new double[1];
+		TOC(tx, t1[0]);
+		Gstat.panstat[jcol].fctime = tx[0];
+		Gstat.panstat[jcol].flopcnt += Gstat.procstat[pnum].fcops - flopcnt;
+	}
+	    } /* for jcol ... */
+
+	    info[0] = singular;
+
+	if ( DEBUGlevel>=1 ) {
+	    printf("(%d) pdgstrf_sequential(): singular=%d\n", pnum, singular);
+	}
+
+	    /* Free work space and compress storage */
+	    pdgstrf_WorkFree(iwork[0], dwork[0], Glu);
+
+	if (PROFILE) {
+	    Gstat.procstat[pnum].fctime = SuperLU_timer_() - stime;
+	}
+
+	    return null/*0*/;
+	}
+
+}
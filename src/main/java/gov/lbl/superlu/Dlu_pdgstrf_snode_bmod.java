@@ -9,6 +9,8 @@ import static gov.lbl.superlu.Dlu.dtrsv;
 
 import static gov.lbl.superlu.Dlu_dmyblas2.dlsolve;
 import static gov.lbl.superlu.Dlu_dmyblas2.dmatvec;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup_off;
 
 
 public class Dlu_pdgstrf_snode_bmod {
@@ -51,18 +53,19 @@ public class Dlu_pdgstrf_snode_bmod {
 	    lsub       = Glu.lsub;
 	    xlsub      = Glu.xlsub;
 	    xlsub_end  = Glu.xlsub_end;
-	    lusup      = Glu.lusup;
 	    xlusup     = Glu.xlusup;
 	    xlusup_end = Glu.xlusup_end;
+	    lusup      = ooc_lusup(Glu, xlusup[jcol]); /* Glu.lusup unless paged */
 
 	    nextlu = xlusup[jcol];
+	    iptr = ooc_lusup_off(Glu, nextlu);
 
 	    /*
 	     *	Process the supernodal portion of L\U[*,j]
 	     */
 	    for (isub = xlsub[fsupc]; isub < xlsub_end[fsupc]; isub++) {
 	  	irow = lsub[isub];
-		lusup[nextlu] = dense[irow];
+		lusup[iptr++] = dense[irow];
 		dense[irow] = zero;
 		++nextlu;
 	    }
@@ -71,10 +74,10 @@ public class Dlu_pdgstrf_snode_bmod {
 
 	    if ( fsupc < jcol ) {
 
-		luptr = xlusup[fsupc];
+		luptr = ooc_lusup_off(Glu, xlusup[fsupc]);
 		nsupr = xlsub_end[fsupc] - xlsub[fsupc];
 		nsupc = jcol - fsupc;	/* Excluding jcol */
-		ufirst = xlusup[jcol];	/* Points to the beginning of column
+		ufirst = ooc_lusup_off(Glu, xlusup[jcol]); /* Points to the beginning of column
 					   jcol in supernode L\U(jsupno). */
 		nrow = nsupr - nsupc;
 
@@ -54,9 +54,7 @@ public class Dlu_pdgstrf_snode_dfs {
 	    supno                 = Glu.supno;
 	    xlsub                 = Glu.xlsub;
 	    xlsub_end             = Glu.xlsub_end;
-	    int[] nsuper_ = new int[1];
-	    nsuper = NewNsuper(pnum, pxgstrf_shared, nsuper_);
-	    Glu.nsuper = nsuper_[0];
+	    nsuper = NewNsuper(pnum, pxgstrf_shared, Glu);
 	    Glu.xsup[nsuper]     = jcol;
 	    Glu.xsup_end[nsuper] = kcol + 1;
 
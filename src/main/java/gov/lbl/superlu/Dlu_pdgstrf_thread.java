@@ -1,5 +1,6 @@
 package gov.lbl.superlu;
 
+import gov.lbl.superlu.Dlu_pdmemory.pdgstrf_work_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.pdgstrf_threadarg_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
@@ -8,9 +9,12 @@ import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
+import static gov.lbl.superlu.Dlu.DOMAINS;
 import static gov.lbl.superlu.Dlu.PROFILE;
 import static gov.lbl.superlu.Dlu.PREDICT_OPT;
 import static gov.lbl.superlu.Dlu.DEBUGlevel;
+import static gov.lbl.superlu.Dlu.PARK_IDLE;
+import static gov.lbl.superlu.Dlu.PARK_SPINS;
 import static gov.lbl.superlu.Dlu.printf;
 
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
@@ -35,6 +39,7 @@ import static gov.lbl.superlu.Dlu.fflush;
 import static gov.lbl.superlu.Dlu.stdout;
 
 import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_WorkInit;
+import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_WorkReuse;
 import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_memory_use;
 import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_SetRWork;
 import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_WorkFree;
@@ -42,8 +47,17 @@ import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_WorkFree;
 import static gov.lbl.superlu.Dlu_pmemory.pxgstrf_SetIWork;
 import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
 
+import static gov.lbl.superlu.Dlu_pdgsasync.pxgstrf_cancelled;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_panel_done;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_starved;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_yield;
+import static gov.lbl.superlu.Dlu_sp_colorder.sp_symbolic_wait;
 import static gov.lbl.superlu.Dlu_pxgstrf_scheduler.pxgstrf_scheduler;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_fail;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_park;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.lu_locks_t.SCHED_LOCK;
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.panel_t.RELAXED_SNODE;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.panel_t.TREE_DOMAIN;
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.pipe_state_t.DONE;
 import static gov.lbl.superlu.Dlu_pdgstrf_factor_snode.pdgstrf_factor_snode;
 import static gov.lbl.superlu.Dlu_pxgstrf_mark_busy_descends.pxgstrf_mark_busy_descends;
@@ -55,13 +69,31 @@ import static gov.lbl.superlu.Dlu_pdgstrf_column_bmod.pdgstrf_column_bmod;
 import static gov.lbl.superlu.Dlu_pdgstrf_pivotL.pdgstrf_pivotL;
 import static gov.lbl.superlu.Dlu_pdgstrf_copy_to_ucol.pdgstrf_copy_to_ucol;
 import static gov.lbl.superlu.Dlu_pxgstrf_pruneL.pxgstrf_pruneL;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_panel_done;
 
 
 public class Dlu_pdgstrf_thread {
 
+	/*
+	 * Runs pdgstrf_thread_loop(). If it throws, the exception is recorded
+	 * in pxgstrf_shared and the other threads are stopped (pxgstrf_fail);
+	 * pdgstrf() throws it again once all the threads are joined.
+	 */
 	static
 	Object[]
 	pdgstrf_thread(pdgstrf_threadarg_t arg)
+	{
+	    try {
+		return pdgstrf_thread_loop(arg);
+	    } catch (RuntimeException | Error e) {
+		pxgstrf_fail(arg.pxgstrf_shared, e);
+		return null;
+	    }
+	}
+
+	static
+	Object[]
+	pdgstrf_thread_loop(pdgstrf_threadarg_t arg)
 	{
 	/*
 	 * -- SuperLU MT routine (version 2.0) --
@@ -124,12 +156,16 @@ public class Dlu_pdgstrf_thread {
 	 * Scheduling algorithm (For each process ...)
 	 * ====================
 	 *     Shared task Q <-- { relaxed s-nodes (CANGO) };
+	 *     If DOMAINS: Shared task Q <-- { tree domains } first;
 	 *
 	 *     WHILE (not finished)
 	 *
 	 *         panel = Scheduler(Q); (see pxgstrf_scheduler.c for policy)
 	 *
-	 *         IF (panel == RELAXED_SNODE)
+	 *         IF (panel == TREE_DOMAIN)
+	 *             factor its panels in order, as below, with no busy
+	 *             descendants and no pipelining;
+	 *         ELSE IF (panel == RELAXED_SNODE)
 	 *             factor_relax_snode(panel);
 	 *         ELSE
 	 *             * pdgstrf_panel_dfs()
@@ -193,10 +229,12 @@ public class Dlu_pdgstrf_thread {
 	    int       spa_marker[]; /* size n-by-w */
 	    int       w_lsub_end[]; /* record the end of each column in panel_lsub */
 	    double    dense[][] = new double[1][], tempv[][] = new double[1][];
+	    pdgstrf_work_t work;
 	    int       lsub[], xlsub[], xlsub_end[];
 
 	    /* Local scalars */
 	    int m, n, k, jj, jcolm1, itemp, singular;
+	    int       idle = 0;   /* consecutive calls without a panel */
 	    int       pivrow[];   /* pivotal row number in the original matrix A */
 	    pivrow = new int[1];
 	    int       nseg1[];	/* no of segments in U-column above panel row jcol */
@@ -204,6 +242,8 @@ public class Dlu_pdgstrf_thread {
 	    int       nseg[];	/* no of segments in each U-column */
 	    nseg = new int[1];
 	    int       w, bcol[], jcol[];
+	    int       dom_root;   /* root of the domain being factored, or EMPTY */
+	    float     dom_fcops = 0, dom_flopcnt = 0;
 	    bcol = new int[1];
 	    jcol = new int[1];
 
@@ -221,29 +261,53 @@ public class Dlu_pdgstrf_thread {
 	    printf("(%d) thr_arg. pnum %d, info %d\n", pnum, thr_arg.pnum, thr_arg.info);
 	}
 
-	    singular   = 0;
+	    singular   = info[0];   /* 0, or found in an earlier turn (Dlu_pdgspool) */
 	    m          = A.nrow;
 	    n          = A.ncol;
 	    lsub       = Glu.lsub;
 	    xlsub      = Glu.xlsub;
 	    xlsub_end  = Glu.xlsub_end;
 
-	    /* Allocate and initialize the per-process working storage. */
-	    if ( (info[0] = pdgstrf_WorkInit(m, panel_size, iwork, dwork)) != 0 ) {
-		info[0] += pdgstrf_memory_use(Glu.nzlmax, Glu.nzumax, Glu.nzlumax);
-		return null/*0*/;
-	    }
-	    pxgstrf_SetIWork(m, panel_size, /*iwork, */segrep, parent, xplore,
-		     repfnz, panel_lsub, marker, lbusy);
-	    pdgstrf_SetRWork(m, panel_size, dwork[0], dense, tempv);
+	    /* Allocate and initialize the per-process working storage, or
+	       re-use that of the worker of a pool, or that of the caller if
+	       there is a single thread. */
+	    work = thr_arg.turn != null ? thr_arg.turn.work
+		: superlumt_options.nprocs == 1 ? superlumt_options.workspace : null;
+	    if ( work != null ) {
+		if ( (info[0] = pdgstrf_WorkReuse(m, panel_size, Glu.tuning, work)) != 0 ) {
+		    info[0] += pdgstrf_memory_use(Glu.nzlmax, Glu.nzumax, Glu.nzlumax);
+		    return null/*0*/;
+		}
+		segrep[0]     = work.segrep;
+		parent[0]     = work.parent;
+		xplore[0]     = work.xplore;
+		repfnz[0]     = work.repfnz;
+		panel_lsub[0] = work.panel_lsub;
+		marker[0]     = work.marker;
+		lbusy[0]      = work.lbusy;
+		dense[0]      = work.dense;
+		tempv[0]      = work.tempv;
+		spa_marker    = work.spa_marker;
+		w_lsub_end    = work.w_lsub_end;
+	    } else {
+		if ( (info[0] = pdgstrf_WorkInit(m, panel_size, Glu.tuning, iwork, dwork, Glu)) != 0 ) {
+		    info[0] += pdgstrf_memory_use(Glu.nzlmax, Glu.nzumax, Glu.nzlumax);
+		    return null/*0*/;
+		}
+		pxgstrf_SetIWork(m, panel_size, /*iwork, */segrep, parent, xplore,
+			 repfnz, panel_lsub, marker, lbusy);
+		pdgstrf_SetRWork(m, panel_size, Glu.tuning, dwork[0], dense, tempv);
 
-	    /* New data structures to facilitate parallel algorithm */
-	    spa_marker = intMalloc(m * panel_size);
-	    w_lsub_end = intMalloc(panel_size);
+		/* New data structures to facilitate parallel algorithm */
+		spa_marker = intMalloc(m * panel_size);
+		w_lsub_end = intMalloc(panel_size);
+	    }
 	    ifill (spa_marker, m * panel_size, EMPTY);
 	    ifill (marker[0], m * NO_MARKER, EMPTY);
 	    ifill (lbusy[0], m, EMPTY);
-	    jcol[0] = EMPTY;
+	    /* The panel finished when the last turn ended, if any: the scheduler
+	       has yet to count it done in its parent. */
+	    jcol[0] = thr_arg.jcol;
 	    marker1 = marker[0];
 	    marker1_offset = m;
 	    marker2 = marker[0];
@@ -258,6 +322,15 @@ public class Dlu_pdgstrf_thread {
 	       ------------------------- */
 	    while ( pxgstrf_shared.tasks_remain > 0 ) {
 
+		/* Stop between panels if asked to (see Dlu_pdgsasync). */
+		if ( superlumt_options.control != null &&
+		     pxgstrf_cancelled(pxgstrf_shared, superlumt_options.control) )
+		    break;
+
+		/* Leave the worker to another factorization (Dlu_pdgspool). */
+		if ( thr_arg.turn != null && pool_yield(thr_arg.turn) )
+		    break;
+
 	if (PROFILE) {
 		TIC(t);
 	}
@@ -278,7 +351,20 @@ public class Dlu_pdgstrf_thread {
 	}
 
 		if ( jcol[0] != EMPTY ) {
+		    idle = 0;
+		    dom_root = EMPTY;
+	if (DOMAINS) {
+		    if ( pxgstrf_shared.in_domain[jcol[0]] == TREE_DOMAIN.ordinal() ) {
+			/* A domain: factor its panels bcol..jcol one after the
+			   other; none of them is busy elsewhere. */
+			dom_root = jcol[0];
+			jcol[0] = bcol[0];
+			dom_fcops = Gstat.procstat[pnum].fcops;
+		    }
+	}
+		  for (;;) { /* each panel of the domain, or panel jcol alone */
 		    w = pxgstrf_shared.pan_status[jcol[0]].size;
+		    if ( dom_root != EMPTY ) bcol[0] = jcol[0];
 
 	if ( DEBUGlevel>=3 ) {
 		    printf("P%2d got panel %5d-%5d\ttime %.4f\tpanels_left %d\n",
@@ -314,12 +400,14 @@ public class Dlu_pdgstrf_thread {
 
 			/* Release the whole relaxed supernode */
 			for (jj = jcol[0]; jj < jcol[0] + w; ++jj)
-			    pxgstrf_shared.spin_locks[jj] = 0;
+			    pxgstrf_shared.spin_locks.set(jj, 0);
 	if (PREDICT_OPT) {
 			pdiv = Gstat.procstat[pnum].fcops - pdiv;
 			Gstat.cp_panel[jcol[0]].pdiv = pdiv;
 	}
 		    } else { /* Regular panel */
+			/* Needs super_bnd[] (PIPELINE_SYMBOLIC). */
+			sp_symbolic_wait(superlumt_options);
 	if (PROFILE) {
 			TIC(t);
 	}
@@ -386,9 +474,9 @@ public class Dlu_pdgstrf_thread {
 
 			    if ( (info[0] = pdgstrf_column_dfs
 				            (pnum, m, jj, jcol[0], perm_r, ispruned,
-					     panel_lsub[k],w_lsub_end[jj-jcol[0]],
+					     panel_lsub[0], k, w_lsub_end[jj-jcol[0]],
 					     super_bnd, nseg, segrep[0],
-					     repfnz[k], xprune, marker2, marker2_offset,
+					     repfnz[0], k, xprune, marker2, marker2_offset,
 					     parent[0], xplore[0], pxgstrf_shared)) != 0 )
 				return null/*0*/;
 	if (PROFILE) {
@@ -399,8 +487,8 @@ public class Dlu_pdgstrf_thread {
 			       global storage. */
 			    if ( (info[0] = pdgstrf_column_bmod
 				          (pnum, jj, jcol[0], (nseg[0] - nseg1[0]),
-					   segrep[nseg1[0]], repfnz[k],
-					   dense[k], tempv[0], pxgstrf_shared, Gstat)) != 0 )
+					   segrep[0], nseg1[0], repfnz[0], k,
+					   dense[0], k, tempv[0], pxgstrf_shared, Gstat)) != 0 )
 				return null/*0*/;
 
 			    if ( (info[0] = pdgstrf_pivotL
@@ -416,26 +504,26 @@ public class Dlu_pdgstrf_thread {
 
 	                    /* release column "jj", so that the other processes
 	                       waiting for this column can proceed */
-			    pxgstrf_shared.spin_locks[jj] = 0;
+			    pxgstrf_shared.spin_locks.set(jj, 0);
 
 			    /* copy the U-segments to ucol[*] */
 			    if ( (info[0] = pdgstrf_copy_to_ucol
-				            (pnum,jj,nseg[0],segrep[0],repfnz[k],
-					     perm_r, dense[k], pxgstrf_shared)) != 0 )
+				            (pnum,jj,nseg[0],segrep[0],repfnz[0], k,
+					     perm_r, dense[0], k, pxgstrf_shared)) != 0 )
 			      return null/*0*/;
 
 			    /* Prune columns [0:jj-1] using column jj */
 			    pxgstrf_pruneL(jj, perm_r, pivrow[0], nseg[0], segrep[0],
-					   repfnz[k], xprune, ispruned, Glu);
+					   repfnz[0], k, xprune, ispruned, Glu);
 
 			    /* Reset repfnz[] for this column */
-			    pxgstrf_resetrep_col (nseg[0], segrep[0], repfnz[k]);
+			    pxgstrf_resetrep_col (nseg[0], segrep[0], repfnz[0], k);
 
 	if ( DEBUGlevel>=2 ) {
 	/*  if (jj >= LOCOL && jj <= HICOL) {*/
 	  if ( jj==BADCOL ) {
 	    dprint_lu_col(pnum, "panel:", jcol[0], jj, w, pivrow[0], xprune, Glu);
-	    dcheck_zero_vec(pnum, "after pdgstrf_copy_to_ucol() dense_col[]", n, dense[k]);
+	    dcheck_zero_vec(pnum, "after pdgstrf_copy_to_ucol() dense_col[]", n, dense[0], k);
 	  }
 	}
 			} /* for jj ... */
@@ -449,6 +537,12 @@ public class Dlu_pdgstrf_thread {
 
 		    //STATE( jcol[0] ) = DONE; /* Release panel jcol. */
 		    pxgstrf_shared.pan_status[jcol[0]].state = DONE;
+		    if ( thr_arg.turn != null )
+			pool_panel_done(thr_arg.turn);
+
+		    /* Hand the supernodes it completed to the writer. */
+		    if ( pxgstrf_shared.ooc != null )
+			ooc_panel_done(jcol[0], w, pxgstrf_shared);
 
 	if (PROFILE) {
 			double[] tx = new double[1];
@@ -462,17 +556,46 @@ public class Dlu_pdgstrf_thread {
 		    } */
 	}
 
+		    if ( dom_root == EMPTY ) break;
+		    if ( jcol[0] + w > dom_root ) {
+			/* Release the domain. */
+			jcol[0] = dom_root;
+			pxgstrf_shared.pan_status[jcol[0]].state = DONE;
+			dom_flopcnt += Gstat.procstat[pnum].fcops - dom_fcops;
+			break;
+		    }
+		    jcol[0] += w;
+		  } /* for each panel */
+
 		} else {
 	if (PROFILE) {
 		/* No panel from the task queue - wait and try again */
 		Gstat.procstat[pnum].skedwaits++;
+	}
+		    /* Others of the pool may use the worker meanwhile. */
+		    if ( thr_arg.turn != null && pool_starved(thr_arg.turn) )
+			break;
+	if (PARK_IDLE) {
+		    /* Too little parallelism left for this thread: stop
+		       spinning until a panel is completed. */
+		    if ( ++idle >= PARK_SPINS ) {
+			pxgstrf_park(pnum, pxgstrf_shared);
+			idle = 0;
+		    }
 	}
 		}
 
 	    } /* while there are more panels */
 
+	    thr_arg.jcol = jcol[0];
 	    info[0] = singular;
 
+	if (DOMAINS) {
+	    synchronized ( pxgstrf_shared.lu_locks[SCHED_LOCK.ordinal()] ) {
+		Gstat.dom_flopcnt += dom_flopcnt;
+	    }
+	}
+
 	    /* Free work space and compress storage */
 	    pdgstrf_WorkFree(iwork[0], dwork[0], Glu);
 
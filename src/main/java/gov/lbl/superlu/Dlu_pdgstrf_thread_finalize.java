@@ -15,11 +15,25 @@ import static gov.lbl.superlu.Dlu_util.PrintGLGU;
 import static gov.lbl.superlu.Dlu_util.PrintInt10;
 
 import static gov.lbl.superlu.Dlu.COMPRESS_LUSUP;
+import static gov.lbl.superlu.Dlu.OFFHEAP_LU;
+import static gov.lbl.superlu.Dlu.COMPACT_LU;
+import static gov.lbl.superlu.Dlu.OFFHEAP_THRESHOLD;
+
+import static gov.lbl.superlu.Dlu_lustore.dLUMoveOffHeap;
+import static gov.lbl.superlu.Dlu_dcompact_lu.dCompact_LU;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_gather;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_finish;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_discard;
+
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.MemType.LUSUP;
+import static gov.lbl.superlu.Dlu_slu_mt_util.MemType.UCOL;
 
 import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.YES;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
 
 import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCP;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
 import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
 import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_TRLU;
 import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NCP;
@@ -106,8 +120,12 @@ public class Dlu_pdgstrf_thread_finalize {
 	    countnz(n, pxgstrf_shared.xprune, nnzL, nnzU, Glu);
 	    fixupL(n, perm_r, Glu);
 
+	    /* Bring the paged lusup[*] and ucol[*] back into flat arrays if
+	       they fit in the budget; ooc_gather() compacts lusup[*]. */
+	    if ( pxgstrf_shared.ooc != null ) ooc_gather(pxgstrf_shared.ooc, Glu);
+
 	if (COMPRESS_LUSUP) {
-	    compressSUP(n, pxgstrf_shared.Glu);
+	    if ( pxgstrf_shared.ooc == null ) compressSUP(n, pxgstrf_shared.Glu);
 	}
 
 	    if ( superlumt_options.refact == YES ) {
@@ -127,6 +145,49 @@ public class Dlu_pdgstrf_thread_finalize {
 					 SLU_NCP, SLU_D, SLU_TRU);
 	    }
 
+	    if ( pxgstrf_shared.ooc != null ) {
+		/* Leave the factor on disk if it exceeds the budget. */
+		ooc_finish(pxgstrf_shared.ooc, L, U, pxgstrf_shared.Gstat);
+		pxgstrf_shared.ooc = null;
+		Glu.lupages = Glu.upages = null;
+		if ( L.Stype == SLU_SCLU ) {
+		    Glu.lusup = null;
+		    Glu.ucol = null;
+		    Glu.expanders[LUSUP.ordinal()].mem = null;
+		    Glu.expanders[UCOL.ordinal()].mem = null;
+		}
+	    }
+
+	if (COMPACT_LU) {
+	    if ( superlumt_options.refact != YES && L.Stype == SLU_SCP ) {
+		/* Rewrite L and U into one solve-ordered SCLU matrix, which
+		   L and U then both refer to. */
+		SuperMatrix LU = new SuperMatrix();
+		dCompact_LU(L, U, LU, OFFHEAP_LU &&
+			    (long) nnzL[0] + nnzU[0] > OFFHEAP_THRESHOLD);
+		L.Stype = U.Stype = LU.Stype;
+		L.Store = U.Store = LU.Store;
+		Glu.lusup = null;
+		Glu.ucol = null;
+		Glu.expanders[LUSUP.ordinal()].mem = null;
+		Glu.expanders[UCOL.ordinal()].mem = null;
+	    }
+	}
+
+	if (OFFHEAP_LU) {
+	    if ( L.Stype == SLU_SCP && (long) nnzL[0] + nnzU[0] > OFFHEAP_THRESHOLD ) {
+		dLUMoveOffHeap(L, U);
+		/* Drop the remaining references to the on-heap values. */
+		Glu.lusup = null;
+		Glu.ucol = null;
+		Glu.expanders[LUSUP.ordinal()].mem = null;
+		Glu.expanders[UCOL.ordinal()].mem = null;
+	    }
+	}
+
+	    /* Expansions of the last factorization, for superlu_dQuerySpace(). */
+	    Dlu_pdmemory.no_expand = Glu.no_expand;
+
 	    /* Combine the INFO returned from individual threads. */
 	    iinfo = 0;
 	    nprocs = superlumt_options.nprocs;
@@ -140,7 +201,7 @@ public class Dlu_pdgstrf_thread_finalize {
 
 	if ( DEBUGlevel>=2 ) {
 	    printf("Last nsuper %d\n", Glu.nsuper);
-	    QueryQueue(pxgstrf_shared.taskq);
+	    if ( pxgstrf_shared.taskq != null ) QueryQueue(pxgstrf_shared.taskq);
 	    PrintGLGU(n, pxgstrf_shared.xprune, Glu);
 	    PrintInt10("perm_r", n, perm_r);
 	    PrintInt10("inv_perm_r", n, pxgstrf_shared.inv_perm_r);
@@ -159,4 +220,45 @@ public class Dlu_pdgstrf_thread_finalize {
 	}
 	}
 
+	static
+	void
+	pdgstrf_thread_cancelled(pdgstrf_threadarg_t pdgstrf_threadarg[],
+				 pxgstrf_shared_t pxgstrf_shared)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * pdgstrf_thread_cancelled() replaces pdgstrf_thread_finalize() when
+	 * the factorization was cancelled (see Dlu_pdgsasync): L and U are not
+	 * set up, the writer of the out-of-core factor is stopped and its file
+	 * discarded, and the storage of L, U and of the parallel scheduling
+	 * algorithm is dropped at once, rather than with the factors.
+	 *
+	 */
+	    GlobalLU_t Glu = pxgstrf_shared.Glu;
+	    int i;
+
+	    if ( pxgstrf_shared.ooc != null ) {
+		ooc_discard(pxgstrf_shared.ooc, Glu);
+		pxgstrf_shared.ooc = null;
+	    }
+
+	    Glu.lsub = Glu.usub = null;
+	    Glu.lusup = Glu.ucol = null;
+	    if ( Glu.expanders != null )
+		for (i = 0; i < Glu.expanders.length; ++i)
+		    if ( Glu.expanders[i] != null ) Glu.expanders[i].mem = null;
+
+	    ParallelFinalize(pxgstrf_shared);
+	    pxgstrf_shared.inv_perm_r = null;
+	    pxgstrf_shared.inv_perm_c = null;
+	    pxgstrf_shared.xprune = null;
+	    pxgstrf_shared.ispruned = null;
+
+	if ( DEBUGlevel>=1 ) {
+	    printf("** pdgstrf_thread_cancelled() called\n");
+	}
+	}
+
 }
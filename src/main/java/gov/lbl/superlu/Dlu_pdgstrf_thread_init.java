@@ -15,6 +15,7 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
 
 import static gov.lbl.superlu.Dlu.printf;
 import static gov.lbl.superlu.Dlu.DEBUGlevel;
+import static gov.lbl.superlu.Dlu.OOC_LU;
 
 import static gov.lbl.superlu.Dlu_util.ifill;
 
@@ -22,11 +23,16 @@ import static gov.lbl.superlu.Dlu_heap_relax_snode.heap_relax_snode;
 import static gov.lbl.superlu.Dlu_pxgstrf_relax_snode.pxgstrf_relax_snode;
 
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.ParallelInit;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.SequentialInit;
 
 import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
 import static gov.lbl.superlu.Dlu_pmemory.intCalloc;
 import static gov.lbl.superlu.Dlu_pdmemory.dPresetMap;
 import static gov.lbl.superlu.Dlu_pdmemory.pdgstrf_MemInit;
+import static gov.lbl.superlu.Dlu_sp_ienv.sp_tuning;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_begin;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_discard;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_layout;
 
 
 public class Dlu_pdgstrf_thread_init {
@@ -82,6 +88,8 @@ public class Dlu_pdgstrf_thread_init {
 	 *          The structure contains the shared task queue and the
 	 *          synchronization variables for parallel factorization.
 	 *          See pxgstrf_shared_t structure defined in pdsp_defs.h.
+	 *          If pxgstrf_shared.sequential is set on entry, only the
+	 *          panels are set up, for pdgstrf_sequential().
 	 *
 	 * Gstat    (output) Gstat_t*
 	 *          Record all the statistics about the factorization;
@@ -110,6 +118,16 @@ public class Dlu_pdgstrf_thread_init {
 	    int  ispruned[];/* flag to indicate whether column j is pruned */
 	    int   nzlumax;
 	    pxgstrf_relax_t pxgstrf_relax[];
+	    GlobalLU_t Glu;
+
+	    /* A new factorization gets its own Glu, so that independent
+	       matrices may be factored concurrently; a refactorization
+	       reuses the one of the last factorization. */
+	    synchronized (Dlu_pdgstrf_thread_init.class) {
+		if ( options.refact == NO || Dlu_pdgstrf_thread_init.Glu == null )
+		    Dlu_pdgstrf_thread_init.Glu = new GlobalLU_t();
+		Glu = Dlu_pdgstrf_thread_init.Glu;
+	    }
 
 	    nprocs     = options.nprocs;
 	    perm_c     = options.perm_c;
@@ -142,32 +160,51 @@ public class Dlu_pdgstrf_thread_init {
 	    Glu.nextl  = 0;
 	    Glu.nextu  = 0;
 	    Glu.nextlu = 0;
+	    Glu.tuning = sp_tuning(options);
 	    ifill(perm_r, n, EMPTY);
 
 	    /* Identify relaxed supernodes at the bottom of the etree. */
 	    pxgstrf_relax = new pxgstrf_relax_t[n+2];
+	    for (i = 0; i < n+2; ++i) pxgstrf_relax[i] = new pxgstrf_relax_t();
 	    if ( options.SymmetricMode == YES ) {
 	        heap_relax_snode(n, options, pxgstrf_relax);
 	    } else {
 	        pxgstrf_relax_snode(n, options, pxgstrf_relax);
 	    }
 
-	    /* Initialize mutex variables, task queue, determine panels. */
-	    ParallelInit(n, pxgstrf_relax, options, pxgstrf_shared);
+	    /* Initialize mutex variables, task queue, determine panels;
+	       only the panels for the sequential engine. */
+	    if ( pxgstrf_shared.sequential )
+		SequentialInit(n, pxgstrf_relax, options, pxgstrf_shared);
+	    else
+		ParallelInit(n, pxgstrf_relax, options, pxgstrf_shared);
 
 	    /* Set up memory image in lusup[*]. */
 	    nzlumax = dPresetMap(n, A, pxgstrf_relax, options, Glu);
 	    if ( options.refact == NO ) Glu.nzlumax = nzlumax;
 
-	    pxgstrf_relax = null;
+	    /* With OOC_LU, lusup[*] and ucol[*] are kept in pages, of which
+	       at most OOC_BUDGET bytes stay in memory. */
+	    pxgstrf_shared.ooc = null;
+	    Glu.lupages = Glu.upages = null;
+	if (OOC_LU) {
+	    if ( options.refact == NO ) pxgstrf_shared.ooc = ooc_begin(n, Glu);
+	}
 
 	    /* Allocate global storage common to all the factor routines */
 	    info[0] = (int) pdgstrf_MemInit(n, Astore.nnz, options, L, U, Glu);
-	    if ( info[0] != 0 ) return null;
+	    if ( info[0] != 0 ) {
+		if ( pxgstrf_shared.ooc != null ) ooc_discard(pxgstrf_shared.ooc, Glu);
+		return null;
+	    }
+	    if ( pxgstrf_shared.ooc != null ) ooc_layout(pxgstrf_shared.ooc, pxgstrf_relax, Glu);
+
+	    pxgstrf_relax = null;
 
 	    /* Prepare arguments to all threads. */
 	    pdgstrf_threadarg = new pdgstrf_threadarg_t[nprocs];
 	    for (i = 0; i < nprocs; ++i) {
+	        pdgstrf_threadarg[i] = new pdgstrf_threadarg_t();
 	        pdgstrf_threadarg[i].pnum = i;
 	        pdgstrf_threadarg[i].info[0] = 0;
 	        pdgstrf_threadarg[i].superlumt_options = options;
@@ -11,10 +11,12 @@ import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
 import gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_relax_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.ExpHeader;
 import gov.lbl.superlu.Dlu_slu_mt_util.MemType;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.superlu_memusage_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t;
 import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCLUformat;
 import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
@@ -40,13 +42,19 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.YES;
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
 
 import static gov.lbl.superlu.Dlu_util.ifill;
-import static gov.lbl.superlu.Dlu_sp_ienv.sp_ienv;
+import static gov.lbl.superlu.Dlu_sp_ienv.sp_tuning;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
 
 import static gov.lbl.superlu.Dlu_pdutil.dfill;
 
 import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
 import static gov.lbl.superlu.Dlu_pmemory.intCalloc;
 import static gov.lbl.superlu.Dlu_pmemory.copy_mem_int;
+import static gov.lbl.superlu.Dlu_pmemory.array_length;
+import static gov.lbl.superlu.Dlu_pmemory.MAX_ARRAY_LENGTH;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
 
 
 public class Dlu_pdmemory {
@@ -74,16 +82,16 @@ public class Dlu_pdmemory {
 	public enum stack_end_t {HEAD, TAIL}
 	public enum LU_space_t {SYSTEM, USER}
 
-	public static ExpHeader dexpanders[] = null; /* Array of pointers to 4 types of memory */
-
-	public static LU_stack_t stack;
+	/* The expanders, the stack, the number of expansions and the kind of
+	   space of a factorization are kept in its GlobalLU_t, so that
+	   independent matrices may be factored concurrently; no_expand is
+	   that of the last factorization finished, for superlu_dQuerySpace(). */
 	public static int        no_expand;
 	public static int        ndim;
-	public static LU_space_t whichspace; /* 0 - system malloc'd; 1 - user provided */
 
 	/* Macros to manipulate stack */
-	public static boolean StackFull(int x) {
-		return x + stack.used >= stack.size;
+	public static boolean StackFull(int x, GlobalLU_t Glu) {
+		return x + Glu.stack.used >= Glu.stack.size;
 	}
 //	static boolean NotDoubleAlign(int addr) ( (long int)addr & 7 )
 //	static boolean DoubleAlign(int addr)    ( ((long int)addr + 7) & ~7L )
@@ -92,9 +100,9 @@ public class Dlu_pdmemory {
 		return (alpha + 1) / 2;     /* i.e. (alpha-1)/2 + 1 */
 	}
 
-	/* temporary space used by BLAS calls */
+	/* temporary space used by BLAS calls; -1 if it does not fit in an array */
 	public static int NUM_TEMPV(int n,int w,int t,int b) {
-		return SUPERLU_MAX( 2*n, (t + b)*w );
+		return array_length( Math.max( 2L*n, (long) (t + b)*w ) );
 	}
 
 	/*
@@ -103,17 +111,18 @@ public class Dlu_pdmemory {
 	 *    lwork > 0: use user-supplied work[] space.
 	 */
 	public static
-	void pdgstrf_SetupSpace(double work[], int lwork)
+	void pdgstrf_SetupSpace(double work[], int lwork, GlobalLU_t Glu)
 	{
 	    if ( lwork == 0 ) {
-	        whichspace = LU_space_t.SYSTEM; /* malloc/free */
+	        Glu.whichspace = LU_space_t.SYSTEM; /* malloc/free */
 	    } else if ( lwork > 0 ) {
-	        whichspace = LU_space_t.USER;   /* user provided space */
-	        stack.size = lwork;
-	        stack.used = 0;
-	        stack.top1 = 0;
-	        stack.top2 = lwork;
-	        stack.array = (double []) work;
+	        Glu.whichspace = LU_space_t.USER;   /* user provided space */
+	        Glu.stack = new LU_stack_t();
+	        Glu.stack.size = lwork;
+	        Glu.stack.used = 0;
+	        Glu.stack.top1 = 0;
+	        Glu.stack.top2 = lwork;
+	        Glu.stack.array = (double []) work;
 	    }
 	}
 
@@ -139,38 +148,45 @@ public class Dlu_pdmemory {
 
 
 	public static
-	void duser_free(int bytes, int which_end)
+	void duser_free(int bytes, int which_end, GlobalLU_t Glu)
 	{
 	    if ( which_end == stack_end_t.HEAD.ordinal() ) {
-		stack.top1 -= bytes;
+		Glu.stack.top1 -= bytes;
 	    } else {
-		stack.top2 += bytes;
+		Glu.stack.top2 += bytes;
 	    }
-	    stack.used -= bytes;
+	    Glu.stack.used -= bytes;
 	}
 
 
 	/* Returns the working storage used during factorization */
 	public static
 	int superlu_dTempSpace(int n, int w, int p)
+	{
+	    return (int) Math.min(dTempSpace(n, w, p, SP_IENV_TUNING), Integer.MAX_VALUE);
+	}
+
+	/* The same in float, which does not overflow, under the given tuning */
+	static
+	float dTempSpace(int n, int w, int p, sp_tuning_t tuning)
 	{
 	    float tmp, ptmp;
 	    int iword = 32/*sizeof(int)*/, dword = 64/*sizeof(double)*/;
-	    int    maxsuper = sp_ienv(3),
-	           rowblk   = sp_ienv(4);
+	    int    maxsuper = tuning.maxsuper,
+	           rowblk   = tuning.rowblk;
 
 	    /* globally shared */
-	    tmp = 14 * n * iword;
+	    tmp = 14.f * n * iword;
 
 	    /* local to each processor */
-	    ptmp = (2 * w + 5 + NO_MARKER) * n * iword;
-	    ptmp += (n * w + NUM_TEMPV(n,w,maxsuper,rowblk)) * dword;
+	    ptmp = (2.f * w + 5 + NO_MARKER) * n * iword;
+	    ptmp += ((float) n * w + Math.max(2.f * n, (float) (maxsuper + rowblk) * w)) * dword;
 	if ( PRNTlevel>=1 ) {
 	    printf("Per-processor work[] %.0f MB\n", ptmp/1024/1024);
 	}
 	    ptmp *= p;
 
-	    return (int) (tmp + ptmp);
+	    return (tmp + ptmp);
 	}
 
 	/*
@@ -188,25 +204,41 @@ public class Dlu_pdmemory {
 	{
 	    SCPformat Lstore;
 	    NCPformat Ustore;
-	    int n, iword, dword, lwork;
+	    int n, iword, dword;
+	    float lwork;
 
-	    Lstore = (SCPformat) L.Store;
-	    Ustore = (NCPformat) U.Store;
 	    n = L.ncol;
 	    iword = 32/*sizeof(int)*/;
 	    dword = 64/*sizeof(double)*/;
 
+	    if ( L.Stype == SLU_SCLU ) {
+		/* L and U compacted together by dCompact_LU() */
+		SCLUformat LUstore = (SCLUformat) L.Store;
+		superlu_memusage.for_lu = (2.f*LUstore.nsuper + 4) * (iword + 2*iword);
+		if ( LUstore.ooc_file == null ) /* otherwise the records are on disk */
+		    superlu_memusage.for_lu +=
+			(float) LUstore.nzval_supptr[LUstore.nsuper+1] * dword
+			+ (float) LUstore.index_supptr[LUstore.nsuper+1] * iword;
+		lwork = dTempSpace(n, panel_size, P, SP_IENV_TUNING);
+		superlu_memusage.total_needed = superlu_memusage.for_lu + lwork;
+		superlu_memusage.expansions = --no_expand;
+		return 0;
+	    }
+
+	    Lstore = (SCPformat) L.Store;
+	    Ustore = (NCPformat) U.Store;
+
 	    /* L supernodes of type SCP */
-	    superlu_memusage.for_lu = (float) (7*n + 3) * iword
+	    superlu_memusage.for_lu = (7.f*n + 3) * iword
 	                             + (float) Lstore.nzval_colend[n-1] * dword
 	                             + (float) Lstore.rowind_colend[n-1] * iword;
 
 	    /* U columns of type NCP */
-	    superlu_memusage.for_lu += (2*n + 1) * iword
+	    superlu_memusage.for_lu += (2.f*n + 1) * iword
 	        + (float) Ustore.colend[n-1] * (dword + iword);
 
 	    /* Working storage to support factorization */
-	    lwork = superlu_dTempSpace(n, panel_size, P);
+	    lwork = dTempSpace(n, panel_size, P, SP_IENV_TUNING);
 	    superlu_memusage.total_needed = superlu_memusage.for_lu + lwork;
 
 	    superlu_memusage.expansions = --no_expand;
@@ -223,12 +255,23 @@ public class Dlu_pdmemory {
 	    iword   = 32/*sizeof(int)*/;
 	    dword   = 64/*sizeof(double)*/;
 
-	    t = 10.f * ndim * iword + nzlmax * iword + nzumax * (iword + dword)
-		+ nzlumax * dword;
+	    t = 10.f * ndim * iword + (float) nzlmax * iword + (float) nzumax * (iword + dword)
+		+ (float) nzlumax * dword;
 	    return t;
 	}
 
 
+	/*
+	 * Initial guess ratio*annz for the size of a factor array, computed
+	 * without overflow and limited to the largest array length.
+	 */
+	static
+	int fill_guess(int ratio, int annz)
+	{
+	    long len = (long) ratio * annz;
+	    return len > MAX_ARRAY_LENGTH ? MAX_ARRAY_LENGTH : (int) len;
+	}
+
 	/*
 	 * Allocate storage for the data structures common to all factor routines.
 	 * For those unpredictable size, make a guess as FILL * nnz(A).
@@ -257,43 +300,47 @@ public class Dlu_pdmemory {
 	    double   ucol[];
 	    int      usub[], xusub[], xusub_end[];
 	    int      nzlmax[] = new int[1], nzumax[] = new int[1], nzlumax[] = new int[1];
-	    int      FILL_LUSUP = sp_ienv(6); /* Guess the fill-in growth for LUSUP */
-	    int      FILL_UCOL = sp_ienv(7); /* Guess the fill-in growth for UCOL */
-	    int      FILL_LSUB = sp_ienv(8); /* Guess the fill-in growth for LSUB */
+	    sp_tuning_t tuning = sp_tuning(superlumt_options);
+	    int      FILL_LUSUP = tuning.fill_lusup; /* Guess the fill-in growth for LUSUP */
+	    int      FILL_UCOL = tuning.fill_ucol; /* Guess the fill-in growth for UCOL */
+	    int      FILL_LSUB = tuning.fill_lsub; /* Guess the fill-in growth for LSUB */
 
-	    no_expand = 0;
+	    Glu.no_expand = 0;
 	    ndim      = n;
 	    iword     = 32/*sizeof(int)*/;
 	    dword     = 64/*sizeof(double)*/;
 
-	    if ( dexpanders == null )
-	      dexpanders = new ExpHeader[NO_MEMTYPE];
+	    if ( Glu.expanders == null ) {
+	      Glu.expanders = new ExpHeader[NO_MEMTYPE];
+	      for (int i = 0; i < NO_MEMTYPE; ++i) Glu.expanders[i] = new ExpHeader();
+	    }
 
 	    if ( refact == NO ) {
 
 		/* Guess amount of storage needed by L\U factors. */
-	    if ( FILL_UCOL < 0 ) nzumax[0] = -FILL_UCOL * annz;
+	    if ( FILL_UCOL < 0 ) nzumax[0] = fill_guess(-FILL_UCOL, annz);
 		else nzumax[0] = FILL_UCOL;
-		if ( FILL_LSUB < 0 ) nzlmax[0] = -FILL_LSUB * annz;
+		if ( FILL_LSUB < 0 ) nzlmax[0] = fill_guess(-FILL_LSUB, annz);
 		else nzlmax[0] = FILL_LSUB;
 
 		if ( Glu.dynamic_snode_bound == YES.ordinal() ) {
-		    if ( FILL_LUSUP < 0 ) nzlumax[0] = -FILL_LUSUP * annz;
+		    if ( FILL_LUSUP < 0 ) nzlumax[0] = fill_guess(-FILL_LUSUP, annz);
 		    else nzlumax[0] = FILL_LUSUP; /* estimate an upper bound */
 		} else {
 		    nzlumax[0] = Glu.nzlumax; /* preset as static upper bound */
 		}
 
 		if ( lwork == -1 ) {
-		    return (GluIntArray(n) * iword +
-			    superlu_dTempSpace(n, panel_size, nprocs)
-			    + (nzlmax[0]+nzumax[0])*iword + (nzlumax[0]+nzumax[0])*dword);
+		    return ((float) GluIntArray(n) * iword +
+			    dTempSpace(n, panel_size, nprocs, tuning)
+			    + ((float) nzlmax[0]+nzumax[0])*iword
+			    + ((float) nzlumax[0]+nzumax[0])*dword);
 	        } else {
-		    pdgstrf_SetupSpace(work, lwork);
+		    pdgstrf_SetupSpace(work, lwork, Glu);
 		}
 
 		/* Integer pointers for L\U factors */
-		if ( whichspace == LU_space_t.SYSTEM ) {
+		if ( Glu.whichspace == LU_space_t.SYSTEM ) {
 		    xsup       = intMalloc(n+1);
 		    xsup_end   = intMalloc(n);
 		    supno      = intMalloc(n+1);
@@ -316,17 +363,21 @@ public class Dlu_pdmemory {
 //		    xusub_end  = (int [])duser_malloc((n) * iword, stack_end_t.HEAD.ordinal());
 		}
 
-		lusup = (double []) pdgstrf_expand( nzlumax, LUSUP, 0, 0, Glu );
-		ucol  = (double []) pdgstrf_expand( nzumax, UCOL, 0, 0, Glu );
+		/* lusup[*] and ucol[*] are not allocated if they are paged
+		   (see Dlu_pdooc). */
+		lusup = Glu.lupages != null ? null :
+			(double []) pdgstrf_expand( nzlumax, LUSUP, 0, 0, Glu );
+		ucol  = Glu.upages != null ? null :
+			(double []) pdgstrf_expand( nzumax, UCOL, 0, 0, Glu );
 		lsub  = (int [])    d2i( pdgstrf_expand( nzlmax, LSUB, 0, 0, Glu ) );
 		usub  = (int [])    d2i( pdgstrf_expand( nzumax, USUB, 0, 1, Glu ) );
 
-		while ( ucol == null || lsub == null || usub == null ) {
+		while ( (ucol == null && Glu.upages == null) || lsub == null || usub == null ) {
 		    /*SUPERLU_ABORT("Not enough core in LUMemInit()");*/
 	if (PRNTlevel==1) {
 		    printf(".. pdgstrf_MemInit(): #retries %d\n", ++retries);
 	}
-		    if ( whichspace == LU_space_t.SYSTEM ) {
+		    if ( Glu.whichspace == LU_space_t.SYSTEM ) {
 			ucol = null;
 			lsub = null;
 			usub = null;
@@ -340,12 +391,13 @@ public class Dlu_pdmemory {
 			printf("Not enough memory to perform factorization.\n");
 			return (pdgstrf_memory_use(nzlmax[0], nzumax[0], nzlumax[0]) + n);
 		    }
-		    ucol  = (double []) pdgstrf_expand( nzumax, UCOL, 0, 0, Glu );
+		    ucol  = Glu.upages != null ? null :
+			    (double []) pdgstrf_expand( nzumax, UCOL, 0, 0, Glu );
 		    lsub  = (int [])    d2i( pdgstrf_expand( nzlmax, LSUB, 0, 0, Glu ) );
 		    usub  = (int [])    d2i( pdgstrf_expand( nzumax, USUB, 0, 1, Glu ) );
 		}
 
-		if ( lusup == null )  {
+		if ( lusup == null && Glu.lupages == null )  {
 		    float t = pdgstrf_memory_use(nzlmax[0], nzumax[0], nzlumax[0]) + n;
 		    printf("Not enough memory to perform factorization .. " +
 			   "need %.1f GBytes\n", t*1e-9);
@@ -354,6 +406,10 @@ public class Dlu_pdmemory {
 		}
 
 	    } else { /* refact == YES */
+		if ( L.Stype == SLU_SCLU )
+		    SUPERLU_ABORT("Cannot refactor in the storage of compacted factors.");
+		/* The previous factor may have been moved off-heap. */
+		Dlu_lustore.dLUMoveOnHeap(L, U);
 		Lstore   = (SCPformat) L.Store;
 		Ustore   = (NCPformat) U.Store;
 		xsup     = Lstore.sup_to_colbeg;
@@ -370,25 +426,26 @@ public class Dlu_pdmemory {
 		nzlumax[0]  = Glu.nzlumax;
 
 		if ( lwork == -1 ) {
-		    return (GluIntArray(n) * iword + superlu_dTempSpace(n, panel_size, nprocs)
-			    + (nzlmax[0]+nzumax[0])*iword + (nzlumax[0]+nzumax[0])*dword);
+		    return ((float) GluIntArray(n) * iword + dTempSpace(n, panel_size, nprocs, tuning)
+			    + ((float) nzlmax[0]+nzumax[0])*iword
+			    + ((float) nzlumax[0]+nzumax[0])*dword);
 	        } else if ( lwork == 0 ) {
-		    whichspace = LU_space_t.SYSTEM;
+		    Glu.whichspace = LU_space_t.SYSTEM;
 		} else {
-		    whichspace = LU_space_t.USER;
-		    stack.size = lwork;
-		    stack.top2 = lwork;
+		    Glu.whichspace = LU_space_t.USER;
+		    Glu.stack.size = lwork;
+		    Glu.stack.top2 = lwork;
 		}
 
-		lsub  = Lstore.rowind = d2i( dexpanders[LSUB.ordinal()].mem );
-		lusup = dexpanders[LUSUP.ordinal()].mem = Lstore.nzval;
-		usub  = Ustore.rowind = d2i( dexpanders[USUB.ordinal()].mem );
-		ucol  = dexpanders[UCOL.ordinal()].mem  = Ustore.nzval;;
+		lsub  = Lstore.rowind = d2i( Glu.expanders[LSUB.ordinal()].mem );
+		lusup = Glu.expanders[LUSUP.ordinal()].mem = Lstore.nzval;
+		usub  = Ustore.rowind = d2i( Glu.expanders[USUB.ordinal()].mem );
+		ucol  = Glu.expanders[UCOL.ordinal()].mem  = Ustore.nzval;;
 
-		dexpanders[LSUB.ordinal()].size         = nzlmax[0];
-		dexpanders[LUSUP.ordinal()].size        = nzlumax[0];
-		dexpanders[USUB.ordinal()].size         = nzumax[0];
-		dexpanders[UCOL.ordinal()].size         = nzumax[0];
+		Glu.expanders[LSUB.ordinal()].size         = nzlmax[0];
+		Glu.expanders[LUSUP.ordinal()].size        = nzlumax[0];
+		Glu.expanders[USUB.ordinal()].size         = nzumax[0];
+		Glu.expanders[UCOL.ordinal()].size         = nzumax[0];
 	    }
 
 	    Glu.xsup       = xsup;
@@ -407,11 +464,11 @@ public class Dlu_pdmemory {
 	    Glu.nzlmax     = nzlmax[0];
 	    Glu.nzumax     = nzumax[0];
 	    Glu.nzlumax    = nzlumax[0];
-	    ++no_expand;
+	    ++Glu.no_expand;
 
 	if ( PRNTlevel>=1 ) {
 	    printf(".. pdgstrf_MemInit() refact %d, space? %d, nzlumax %d, nzumax %d, nzlmax %d\n",
-		refact, whichspace, nzlumax, nzumax, nzlmax);
+		refact, Glu.whichspace, nzlumax, nzumax, nzlmax);
 	    printf(".. pdgstrf_MemInit() FILL_LUSUP %d, FILL_UCOL %d, FILL_LSUB %d\n",
 		FILL_LUSUP, FILL_UCOL, FILL_LSUB);
 	    fflush(stdout);
@@ -427,29 +484,38 @@ public class Dlu_pdmemory {
 	 */
 	public static
 	int
-	pdgstrf_WorkInit(int n, int panel_size, int iworkptr[][], double dworkptr[][])
+	pdgstrf_WorkInit(int n, int panel_size, sp_tuning_t tuning,
+			 int iworkptr[][], double dworkptr[][], GlobalLU_t Glu)
 	{
-	    int  isize, dsize, extra;
+	    long isize, dsize;
+	    int  extra;
 	    double old_ptr[];
-	    int    maxsuper = sp_ienv(3),
-	           rowblk   = sp_ienv(4);
+	    int    maxsuper = tuning.maxsuper,
+	           rowblk   = tuning.rowblk;
 
-	    isize = (2*panel_size + 5 + NO_MARKER) * n/* * 32*//*sizeof(int)*/;
-	    dsize = (n * panel_size/* +
+	    isize = (2L*panel_size + 5 + NO_MARKER) * n/* * 32*//*sizeof(int)*/;
+	    dsize = ((long) n * panel_size/* +
 		     NUM_TEMPV(n,panel_size,maxsuper,rowblk)*/)/* * 64*//*sizeof(double)*/;
 
-	    if ( whichspace == LU_space_t.SYSTEM )
-		iworkptr[0] = (int []) intCalloc(isize/32/*sizeof(int)*/);
+	    if ( array_length(dsize) < 0 ||
+		 NUM_TEMPV(n,panel_size,maxsuper,rowblk) < 0 ) {
+		fprintf(stderr, "pdgstrf_WorkInit: n %d * panel_size %d exceeds the array limit\n",
+			n, panel_size);
+		return (int) Math.min(isize + dsize + n, Integer.MAX_VALUE);
+	    }
+
+	    if ( Glu.whichspace == LU_space_t.SYSTEM )
+		iworkptr[0] = (int []) intCalloc((int) (isize/32)/*sizeof(int)*/);
 	    else
 	    throw new UnsupportedOperationException();
 //		iworkptr[0] = (int []) duser_malloc(isize, stack_end_t.TAIL);
 	    if ( iworkptr[0] == null ) {
 		fprintf(stderr, "pdgstrf_WorkInit: malloc fails for local iworkptr[]\n");
-		return (isize + n);
+		return (int) Math.min(isize + n, Integer.MAX_VALUE);
 	    }
 
-	    if ( whichspace == LU_space_t.SYSTEM )
-		dworkptr[0] = new double [dsize];
+	    if ( Glu.whichspace == LU_space_t.SYSTEM )
+		dworkptr[0] = new double [(int) dsize];
 	    else {
 	    throw new UnsupportedOperationException();
 //		dworkptr[0] = (double []) duser_malloc(dsize, stack_end_t.TAIL);
@@ -467,25 +533,89 @@ public class Dlu_pdmemory {
 	    }
 	    if ( dworkptr[0] == null ) {
 		fprintf(stderr, "malloc fails for local dworkptr[].");
-		return (isize + dsize + n);
+		return (int) Math.min(isize + dsize + n, Integer.MAX_VALUE);
 	    }
 
 	    return 0;
 	}
 
 
+	/* The per-thread working storage of pdgstrf_thread(), kept by a
+	   caller that factors one matrix after another in the same thread. */
+	public static class pdgstrf_work_t {
+	    int    m;            /* rows and panel width it is allocated for */
+	    int    panel_size;
+	    int    ntempv;
+	    int    segrep[], parent[], xplore[], repfnz[], panel_lsub[];
+	    int    marker[], lbusy[], spa_marker[], w_lsub_end[];
+	    double dense[], tempv[];
+	}
+
+	/*
+	 * Set up the working storage of pdgstrf_thread() for m rows and panels
+	 * of panel_size columns in work, re-using its arrays when they are
+	 * large enough. Returns 0, or the number of bytes requested if tempv[]
+	 * exceeds the array limit.
+	 */
+	public static
+	int
+	pdgstrf_WorkReuse(int m, int panel_size, sp_tuning_t tuning, pdgstrf_work_t work)
+	{
+	    int ntempv = NUM_TEMPV(m, panel_size, tuning.maxsuper, tuning.rowblk);
+	    int w;
+
+	    if ( ntempv < 0 || array_length((long) m * panel_size) < 0 ) {
+		fprintf(stderr, "pdgstrf_WorkReuse: n %d * panel_size %d exceeds the array limit\n",
+			m, panel_size);
+		return Integer.MAX_VALUE;
+	    }
+
+	    if ( work.segrep == null || work.m < m || work.panel_size < panel_size ) {
+		work.m = m = SUPERLU_MAX(m, work.m);
+		work.panel_size = w = SUPERLU_MAX(panel_size, work.panel_size);
+		work.segrep     = new int[m];
+		work.parent     = new int[m];
+		work.xplore     = new int[2*m];
+		work.repfnz     = new int[w*m];
+		work.panel_lsub = new int[w*m];
+		work.marker     = new int[NO_MARKER*m];
+		work.lbusy      = new int[m];
+		work.spa_marker = new int[w*m];
+		work.w_lsub_end = new int[w];
+		work.dense      = new double[w*m];
+	    } else {
+		m = work.m;
+		w = work.panel_size;
+		ifill (work.segrep, m, 0);
+		ifill (work.parent, m, 0);
+		ifill (work.xplore, 2*m, 0);
+		ifill (work.panel_lsub, w*m, 0);
+		dfill (work.dense, w*m, 0.0);
+	    }
+	    if ( work.tempv == null || work.ntempv < ntempv ) {
+		work.ntempv = ntempv;
+		work.tempv = new double[ntempv];
+	    } else {
+		dfill (work.tempv, work.ntempv, 0.0);
+	    }
+	    ifill (work.repfnz, w*m, EMPTY);
+	    return 0;
+	}
+
 	/*
 	 * Set up pointers for real working arrays.
 	 */
 	public static
 	void
-	pdgstrf_SetRWork(int n, int panel_size, double dworkptr[],
+	pdgstrf_SetRWork(int n, int panel_size, sp_tuning_t tuning, double dworkptr[],
 			 double dense[][], double tempv[][])
 	{
 	    double zero = 0.0;
 
-	    int maxsuper = sp_ienv(3);
-	    int rowblk   = sp_ienv(4);
+	    int maxsuper = tuning.maxsuper;
+	    int rowblk   = tuning.rowblk;
+	    if ( NUM_TEMPV(n,panel_size,maxsuper,rowblk) < 0 )
+		SUPERLU_ABORT("tempv[] exceeds the array limit.");
 	    dense[0] = dworkptr;
 //	    tempv[0] = dense[0] + panel_size*n;
 	    tempv[0] = new double[NUM_TEMPV(n,panel_size,maxsuper,rowblk)];
@@ -499,12 +629,12 @@ public class Dlu_pdmemory {
 	public static
 	void pdgstrf_WorkFree(int iwork[], double dwork[], GlobalLU_t Glu)
 	{
-	    if ( whichspace == LU_space_t.SYSTEM ) {
+	    if ( Glu.whichspace == LU_space_t.SYSTEM ) {
 		iwork = null;
 		dwork = null;
 	    } else {
-		stack.used -= (stack.size - stack.top2);
-		stack.top2 = stack.size;
+		Glu.stack.used -= (Glu.stack.size - Glu.stack.top2);
+		Glu.stack.top2 = Glu.stack.size;
 	/*	pdgstrf_StackCompress(Glu);  */
 	    }
 	}
@@ -657,20 +787,22 @@ public class Dlu_pdmemory {
 	    double   new_mem[], old_mem[];
 	    int      new_len, tries, lword, extra, bytes_to_copy;
 
-	    if ( no_expand == 0 || keep_prev != 0 ) /* First time allocate requested */
+	    if ( Glu.no_expand == 0 || keep_prev != 0 ) /* First time allocate requested */
 	        new_len = prev_len[0];
 	    else {
-	        new_len = (int) (alpha * prev_len[0]);
+	        /* Do not let the new length wrap around past the array limit. */
+	        if ( prev_len[0] >= MAX_ARRAY_LENGTH ) return (null);
+	        new_len = (int) Math.min(alpha * prev_len[0], MAX_ARRAY_LENGTH);
 	    }
 
 //	    if ( type == LSUB || type == USUB ) lword = 32/*sizeof(int)*/;
 //	    else lword = 64/*sizeof(double)*/;
 
-	    if ( whichspace == LU_space_t.SYSTEM ) {
+	    if ( Glu.whichspace == LU_space_t.SYSTEM ) {
 //	        new_mem = (Object []) SUPERLU_MALLOC( (size_t) new_len * lword );
 	    	new_mem = new double[new_len];
 
-	        if ( no_expand != 0 ) {
+	        if ( Glu.no_expand != 0 ) {
 	            tries = 0;
 	            if ( keep_prev != 0 ) {
 	                if ( new_mem == null ) return (null);
@@ -678,24 +810,24 @@ public class Dlu_pdmemory {
 	                while ( new_mem == null ) {
 	                    if ( ++tries > 10 ) return (null);
 	                    alpha = Reduce(alpha);
-	                    new_len = (int) (alpha * prev_len[0]);
+	                    new_len = (int) Math.min(alpha * prev_len[0], MAX_ARRAY_LENGTH);
 //	                    new_mem = (Object []) SUPERLU_MALLOC((size_t) new_len * lword);
 	                    new_mem = new double[new_len];
 	                }
 	            }
 	            if ( type == LSUB || type == USUB ) {
 //	                copy_mem_int(len_to_copy, dexpanders[type.ordinal()].mem, new_mem);
-	                copy_mem_double(len_to_copy, dexpanders[type.ordinal()].mem, new_mem);
+	                copy_mem_double(len_to_copy, Glu.expanders[type.ordinal()].mem, new_mem);
 	            } else {
-	                copy_mem_double(len_to_copy, dexpanders[type.ordinal()].mem, new_mem);
+	                copy_mem_double(len_to_copy, Glu.expanders[type.ordinal()].mem, new_mem);
 	            }
-	            dexpanders[type.ordinal()].mem = null;
+	            Glu.expanders[type.ordinal()].mem = null;
 	        }
-	        dexpanders[type.ordinal()].mem = (double []) new_mem;
+	        Glu.expanders[type.ordinal()].mem = (double []) new_mem;
 
-	    } else { /* whichspace == USER */
+	    } else { /* Glu.whichspace == USER */
 	    	throw new UnsupportedOperationException();
-//	        if ( no_expand == 0 ) {
+//	        if ( Glu.no_expand == 0 ) {
 //	            new_mem = duser_malloc(new_len * lword, HEAD);
 //	            if ( NotDoubleAlign(new_mem) &&
 //	                (type == LUSUP || type == UCOL) ) {
@@ -756,11 +888,11 @@ public class Dlu_pdmemory {
 	if (DEBUG) {
 	    printf("pdgstrf_expand[type %d]\n", type.ordinal());
 	}
-	    dexpanders[type.ordinal()].size = new_len;
+	    Glu.expanders[type.ordinal()].size = new_len;
 	    prev_len[0] = new_len;
-	    if ( no_expand != 0 ) ++no_expand;
+	    if ( Glu.no_expand != 0 ) ++Glu.no_expand;
 
-	    return (double []) dexpanders[type.ordinal()].mem;
+	    return (double []) Glu.expanders[type.ordinal()].mem;
 
 	} /* expand */
 
@@ -864,6 +996,138 @@ public class Dlu_pdmemory {
 	    return (buf);
 	}
 
+	/*
+	 * dPresetMap() while the symbolic analysis runs (PIPELINE_SYMBOLIC).
+	 * The relaxed supernodes are stored at the beginning of lusup[*], each
+	 * with the rows of A in its columns, which is all they hold; the
+	 * supernodes of H are allocated dynamically. The columns of H that
+	 * dPresetMap() would let join a relaxed supernode depend on the counts
+	 * of H, so they are not given room: once the analysis is done,
+	 * dPresetMap_upper() makes them start a supernode of their own.
+	 *
+	 * Return value: number of nonzeros of the relaxed supernodes.
+	 */
+	static
+	int
+	dPresetMap_leaves(
+		  final int n,
+		  SuperMatrix A, /* original matrix permuted by columns */
+		  final pxgstrf_relax_t pxgstrf_relax[], /* relaxed supernodes */
+		  final superlumt_options_t superlumt_options, /* input */
+		  final GlobalLU_t Glu /* modified */
+		  )
+	{
+	    int i, j, k, w, rs, krow, rs_nrow, marker[], asub[], xa_begin[], xa_end[];
+	    int map_in_sup[];
+	    long nextpos;
+	    NCPformat Astore;
+
+	    Glu.dynamic_snode_bound = YES.ordinal();
+	    Astore   = (NCPformat) A.Store;
+	    asub     = Astore.rowind;
+	    xa_begin = Astore.colbeg;
+	    xa_end   = Astore.colend;
+	    marker   = intMalloc(n);
+	    ifill(marker, n, EMPTY);
+	    map_in_sup = Glu.map_in_sup = intCalloc(n+1);
+	    nextpos = 0;
+
+	    for (rs = 1; rs <= pxgstrf_relax[0].size; ++rs) {
+		j = pxgstrf_relax[rs].fcol;
+		w = pxgstrf_relax[rs].size;
+		map_in_sup[j] = (int) nextpos;
+		rs_nrow = 0;
+		for (i = j; i < j + w; ++i)
+		    for (k = xa_begin[i]; k < xa_end[i]; k++) {
+			krow = asub[k];
+			if ( marker[krow] != j ) { /* first time visit krow */
+			    marker[krow] = j;
+			    ++rs_nrow;
+			}
+		    }
+		nextpos += (long) w * rs_nrow;
+		for (i = 1; i < w; ++i) map_in_sup[j + i] = -i;
+	    }
+	    if ( array_length(nextpos) < 0 )
+		SUPERLU_ABORT("Relaxed supernodes exceed the array limit for lusup[].");
+	    Glu.nextlu = (int) nextpos;
+
+	    /* The rest once colcnt_h[] and part_super_h[] are known; the threads
+	       wait for it before their first panel that is not a relaxed
+	       supernode. */
+	    superlumt_options.symbolic = superlumt_options.symbolic.thenRun(new Runnable() {
+		public void run() {
+		    dPresetMap_upper(n, pxgstrf_relax, superlumt_options, Glu);
+		}
+	    });
+
+	if ( PRNTlevel>=1 ) {
+	    printf("** PresetMap() allocates %d reals to the relaxed supernodes, ahead of H\n",
+		   nextpos);
+	}
+	    return (int) nextpos;
+	}
+
+	/*
+	 * The supernodes of H after dPresetMap_leaves(): split them at maxsup
+	 * and at the last column of each relaxed supernode, and set the offsets
+	 * of their columns in map_in_sup[].
+	 */
+	static
+	void
+	dPresetMap_upper(
+		  final int n,
+		  pxgstrf_relax_t pxgstrf_relax[], /* relaxed supernodes */
+		  superlumt_options_t superlumt_options, /* input */
+		  GlobalLU_t Glu /* modified */
+		  )
+	{
+	    int i, j, k, w, rs, rs_lastcol, maxsup;
+	    int map_in_sup[] = Glu.map_in_sup;
+	    int super_bnd[] = superlumt_options.part_super_h;
+
+	    /* A supernode of H straddling the end of a relaxed supernode
+	       starts again after it. */
+	    for (rs = 1; rs <= pxgstrf_relax[0].size; ++rs) {
+		j = pxgstrf_relax[rs].fcol;
+		rs_lastcol = j + pxgstrf_relax[rs].size;
+		for (i = k = j; i < rs_lastcol; k = i, i += super_bnd[i]);
+		if ( i > rs_lastcol ) {
+		    super_bnd[k] = rs_lastcol - k;
+		    super_bnd[rs_lastcol] = i - rs_lastcol;
+		}
+	    }
+
+	    /* Split large supernode into smaller pieces */
+	    maxsup = sp_tuning(superlumt_options).maxsuper;
+	    for (j = 0; j < n; ) {
+		w = super_bnd[j];
+		k = j + w;
+		if ( w > maxsup ) {
+		    w = w % maxsup;
+		    if ( w == 0 ) w = maxsup;
+		    while ( j < k ) {
+			super_bnd[j] = w;
+			j += w;
+			w = maxsup;
+		    }
+		}
+		j = k;
+	    }
+
+	    /* Offsets (negative) to the leading column of each supernode in H;
+	       those of the relaxed supernodes are set. */
+	    rs = 1;
+	    for (j = 0; j < n; j += w) {
+		if ( rs <= pxgstrf_relax[0].size && pxgstrf_relax[rs].fcol == j ) {
+		    w = pxgstrf_relax[rs++].size;
+		    continue;
+		}
+		w = super_bnd[j];
+		for (i = 1; i < w; ++i) map_in_sup[j + i] = -i;
+	    }
+	}
+
 	/*
 	 * Set up memory image in lusup[*], using the supernode boundaries in
 	 * the Householder matrix.
@@ -874,6 +1138,10 @@ public class Dlu_pdmemory {
 	 * bound information from H. In the dynamic scheme, however, the memory
 	 * for the internal supernodes is not allocated by this routine.
 	 *
+	 * If the symbolic analysis is still running (PIPELINE_SYMBOLIC), the
+	 * dynamic scheme is used, and only the relaxed supernodes are laid
+	 * out here, from A alone: see dPresetMap_leaves().
+	 *
 	 * Return value
 	 *   o Static scheme: number of nonzeros of all the supernodes in H.
 	 *   o Dynamic scheme: number of nonzeros of the relaxed supernodes.
@@ -888,7 +1156,8 @@ public class Dlu_pdmemory {
 		  GlobalLU_t Glu /* modified */
 		  )
 	{
-	    int i, j, k = 0, w, rs, rs_lastcol, krow, kmark, maxsup, nextpos;
+	    int i, j, k = 0, w, rs, rs_lastcol, krow, kmark, maxsup;
+	    long nextpos;
 	    int rs_nrow; /* number of nonzero rows in a relaxed supernode */
 	    int          marker[], asub[], xa_begin[], xa_end[];
 	    NCPformat    Astore;
@@ -905,6 +1174,9 @@ public class Dlu_pdmemory {
 	}
 	    } else  Glu.dynamic_snode_bound = NO.ordinal();
 
+	    if ( superlumt_options.symbolic != null && !superlumt_options.symbolic.isDone() )
+		return dPresetMap_leaves(n, A, pxgstrf_relax, superlumt_options, Glu);
+
 	    Astore   = (NCPformat) A.Store;
 	    asub     = Astore.rowind;
 	    xa_begin = Astore.colbeg;
@@ -918,7 +1190,7 @@ public class Dlu_pdmemory {
 	    nextpos = 0;
 
 	    /* Split large supernode into smaller pieces */
-	    maxsup = sp_ienv(3);
+	    maxsup = sp_tuning(superlumt_options).maxsuper;
 	    for (j = 0; j < n; ) {
 		w = super_bnd[j];
 		k = j + w;
@@ -934,58 +1206,77 @@ public class Dlu_pdmemory {
 		j = k;
 	    }
 
-	    for (j = 0; j < n; j += w) {
-	        if ( Glu.dynamic_snode_bound == NO.ordinal() ) map_in_sup[j] = nextpos;
-
-		if ( pxgstrf_relax[rs].fcol == j ) {
-		    /* Column j starts a relaxed supernode. */
-		    map_in_sup[j] = nextpos;
-		    rs_nrow = 0;
-		    w = pxgstrf_relax[rs++].size;
-		    rs_lastcol = j + w;
-		    for (i = j; i < rs_lastcol; ++i) {
-			/* for each nonzero in A[*,i] */
-			for (k = xa_begin[i]; k < xa_end[i]; k++) {
-			    krow = asub[k];
-			    kmark = marker[krow];
-			    if ( kmark != j ) { /* first time visit krow */
-				marker[krow] = j;
-				++rs_nrow;
+	    for (;;) {
+		for (j = 0; j < n; j += w) {
+		    if ( Glu.dynamic_snode_bound == NO.ordinal() ) map_in_sup[j] = (int) nextpos;
+
+		    if ( pxgstrf_relax[rs].fcol == j ) {
+			/* Column j starts a relaxed supernode. */
+			map_in_sup[j] = (int) nextpos;
+			rs_nrow = 0;
+			w = pxgstrf_relax[rs++].size;
+			rs_lastcol = j + w;
+			for (i = j; i < rs_lastcol; ++i) {
+			    /* for each nonzero in A[*,i] */
+			    for (k = xa_begin[i]; k < xa_end[i]; k++) {
+				krow = asub[k];
+				kmark = marker[krow];
+				if ( kmark != j ) { /* first time visit krow */
+				    marker[krow] = j;
+				    ++rs_nrow;
+				}
 			    }
 			}
+			nextpos += (long) w * rs_nrow;
+
+			/* Find the next H-supernode, with leading column i, which is
+			   outside the relaxed supernode, rs. */
+			for (i = j; i < rs_lastcol; k = i, i += super_bnd[i]);
+			if ( i > rs_lastcol ) {
+			    /* The w columns [rs_lastcol, i) may join in the
+			       preceeding relaxed supernode; make sure we leave
+			       enough room for the combined supernode. */
+			    w = i - rs_lastcol;
+			    nextpos += (long) w * SUPERLU_MAX( rs_nrow, colcnt[k] );
+			}
+			w = i - j;
+		    } else { /* Column j starts a supernode in H */
+			w = super_bnd[j];
+			if ( Glu.dynamic_snode_bound == NO.ordinal() ) nextpos += (long) w * colcnt[j];
 		    }
-		    nextpos += w * rs_nrow;
-
-		    /* Find the next H-supernode, with leading column i, which is
-		       outside the relaxed supernode, rs. */
-		    for (i = j; i < rs_lastcol; k = i, i += super_bnd[i]);
-		    if ( i > rs_lastcol ) {
-			/* The w columns [rs_lastcol, i) may join in the
-			   preceeding relaxed supernode; make sure we leave
-			   enough room for the combined supernode. */
-			w = i - rs_lastcol;
-			nextpos += w * SUPERLU_MAX( rs_nrow, colcnt[k] );
-		    }
-		    w = i - j;
-		} else { /* Column j starts a supernode in H */
-		    w = super_bnd[j];
-		    if ( Glu.dynamic_snode_bound == NO.ordinal() ) nextpos += w * colcnt[j];
-		}
 
-		/* Set up the offset (negative) to the leading column j of a
-		   supernode in H */
-		for (i = 1; i < w; ++i) map_in_sup[j + i] = -i;
+		    /* Set up the offset (negative) to the leading column j of a
+		       supernode in H */
+		    for (i = 1; i < w; ++i) map_in_sup[j + i] = -i;
+
+		} /* for j ... */
 
-	    } /* for j ... */
+		if ( Glu.dynamic_snode_bound == YES.ordinal() ||
+		     array_length(nextpos) >= 0 ) break;
+
+		/* The static bound does not fit in lusup[]; allocate the
+		   storage for the supernodes in H dynamically instead. */
+	if ( PRNTlevel>=1 ) {
+		printf(".. PresetMap() bound %d exceeds the array limit; use dynamic alg.\n",
+		       nextpos);
+	}
+		Glu.dynamic_snode_bound = YES.ordinal();
+		ifill(map_in_sup, n+1, 0);
+		ifill(marker, n, EMPTY);
+		nextpos = 0;
+		rs = 1;
+	    }
+	    if ( array_length(nextpos) < 0 )
+		SUPERLU_ABORT("Relaxed supernodes exceed the array limit for lusup[].");
 
-	    if ( Glu.dynamic_snode_bound == YES.ordinal() ) Glu.nextlu = nextpos;
-	    else map_in_sup[n] = nextpos;
+	    if ( Glu.dynamic_snode_bound == YES.ordinal() ) Glu.nextlu = (int) nextpos;
+	    else map_in_sup[n] = (int) nextpos;
 
 	if ( PRNTlevel>=1 ) {
 	    printf("** PresetMap() allocates %d reals to lusup[*]....\n", nextpos);
 	}
 
-	    return nextpos;
+	    return (int) nextpos;
 	}
 
 }
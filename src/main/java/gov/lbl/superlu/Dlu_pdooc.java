@@ -0,0 +1,1326 @@
+/*
+ * Out-of-core storage of the factors.
+ *
+ * Purpose
+ * =======
+ *
+ * With Dlu.OOC_LU set, the values of the factors, lusup[*] and ucol[*],
+ * are kept in pages while pdgstrf runs, of which only about
+ * Dlu.OOC_BUDGET bytes stay in memory; the rest is on disk. A factor that
+ * fits in the budget ends up in memory as usual; a larger one is left on
+ * disk as an SLU_SCLU matrix (see Dlu_dcompact_lu) whose records are
+ * read back by the solve.
+ *
+ * Paging
+ * ======
+ *
+ * lusup[*] and ucol[*] keep their addresses (xlusup[*], xusub[*], ...),
+ * but are split in pages of 1 << shift values, held in
+ * GlobalLU_t.lupages and upages, and the arrays of Glu are null. The
+ * kernels ask ooc_lusup() and ooc_lusup_off() for the array and offset
+ * of a supernode, and copy_to_ucol() asks ooc_ucol() for those of the
+ * next U values. ooc_layout() and next_lu() place the regions that
+ * dPresetMap() and DynamicSetMap() set aside for the supernodes so that
+ * none crosses a page: a region larger than a page gets a run of pages
+ * of its own, held in one array. U columns may cross pages.
+ *
+ * A run no longer changes once all its columns are: for lusup[*], once
+ * the supernodes holding them are complete, that is once all the panels
+ * holding their columns, and the panel holding the column after them,
+ * are DONE (pivotL() swaps the rows of the current supernode);
+ * pdgstrf_thread() reports each finished panel to ooc_panel_done(). A
+ * page of ucol[*] is final once it is full. Once the runs in memory not
+ * yet written take more than half of the budget, final runs are written,
+ * oldest first, by a background writer thread to a swap file, which is
+ * deleted when it is closed; nothing is written while the factor fits.
+ * Written runs may be evicted, by the clock (second chance), while
+ * the runs in memory exceed the budget; they are read back on demand
+ * when a later bmod or the end of the factorization uses them. Runs
+ * still being computed are never evicted, so the budget is exceeded while
+ * they alone do not fit in it. The runs queued and not yet written are
+ * limited to a quarter of the budget, the factorization threads waiting
+ * for the writer beyond that.
+ *
+ * At the end, ooc_gather() copies the pages into flat arrays if nothing
+ * was evicted and the factor fits in the budget. Otherwise ooc_finish()
+ * writes the factor from the pages to a factor file, so that the values
+ * are written twice, and the swap file is deleted.
+ *
+ * File layout
+ * ===========
+ *
+ *   header     magic, n, nsuper, nnz, offset of the directory;
+ *   records    for each supernode, its SCLU values record (doubles) and
+ *              subscript record (ints), in the order they were written;
+ *   directory  sup_to_col[], nzval_supptr[], index_supptr[] of the
+ *              SCLUformat, and the file positions of the records.
+ *
+ * All numbers are little-endian. ooc_open() maps an existing file back
+ * into an SCLU matrix, so a factor can be persisted and solved with later.
+ *
+ * Streaming solve
+ * ===============
+ *
+ * The forward pass of the solve visits the supernodes in increasing order
+ * and the backward pass in decreasing order. ooc_stream_open() starts a
+ * pass in either direction; the records of the next Dlu.OOC_WINDOW
+ * supernodes (fewer if they do not fit in OOC_BUDGET) are read ahead by
+ * background reader threads into a ring of reusable buffers, and
+ * ooc_stream_next() hands them out in order. All the right-hand sides
+ * are updated with a block before the next one is taken, so each record
+ * is read once per pass however many there are. The bytes read and the
+ * time of the passes are added to Gstat.
+ *
+ */
+package gov.lbl.superlu;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
+import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
+import gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_relax_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCLUformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.OOC_BUDGET;
+import static gov.lbl.superlu.Dlu.OOC_DIR;
+import static gov.lbl.superlu.Dlu.OOC_WINDOW;
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
+import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_FST_SUPC;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_LAST_SUPC;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_SUB_START;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_SUB_END;
+import static gov.lbl.superlu.Dlu_slu_mt_util.L_NZ_START;
+import static gov.lbl.superlu.Dlu_slu_mt_util.U_NZ_START;
+import static gov.lbl.superlu.Dlu_slu_mt_util.U_NZ_END;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.MemType.LUSUP;
+import static gov.lbl.superlu.Dlu_slu_mt_util.MemType.UCOL;
+import static gov.lbl.superlu.Dlu_pmemory.MAX_ARRAY_LENGTH;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.YES;
+import static gov.lbl.superlu.Dlu_util.storage_order;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_TRLU;
+
+import static gov.lbl.superlu.Dlu_dcompact_lu.SCLU_HEADER;
+import gov.lbl.superlu.Dlu_dcompact_lu.sclu_block_t;
+
+import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
+
+
+public class Dlu_pdooc {
+
+	static final long OOC_MAGIC = 0x53434c554f4f4331L;  /* "SCLUOOC1" */
+	static final int  OOC_HEADER_BYTES = 32;
+
+	/* An open factor file. */
+	public static class ooc_file_t {
+		public String path;
+		FileChannel   channel;
+		long          vpos[];   /* file position of the values record of each
+					   supernode, EMPTY if not yet written */
+		long          ipos[];   /* file position of the subscript record */
+		boolean       delete_on_close;
+	}
+
+	/* Paged storage of lusup[*] or ucol[*] during a factorization. */
+	public static class ooc_pages_t {
+		ooc_t         ooc;
+		int           which;    /* index in ooc.pages[] */
+		int           shift;    /* a page holds 1 << shift values */
+		int           npages;
+		AtomicReferenceArray<double[]> page; /* page[h]: values of the run of
+					   pages starting at page h, null
+					   while they are not in memory */
+		int           head[];   /* head[p]: first page of the run holding p */
+		int           len[];    /* len[h]: number of pages of run h */
+		int           open[];   /* open[h]: columns (lusup) or values (ucol)
+					   of run h not finished yet */
+		long          fpos[];   /* fpos[h]: position of run h in the swap
+					   file, EMPTY until it is queued */
+		byte          ref[];    /* ref[h]: run h was used since the clock
+					   last passed it */
+		int           cursor;   /* run holding the next free position of
+					   lusup[*], EMPTY if there is none */
+	}
+
+	/* State of the paging during one factorization. */
+	static class ooc_t {
+		int           n;
+		long          budget;
+		File          dir;
+		ooc_pages_t   pages[];    /* of lusup[*] and ucol[*] */
+		FileChannel   swap;       /* finished runs; created when the first
+					     one is written */
+		long          swap_end;   /* next free position in the swap file */
+		long          resident;   /* bytes of the runs in memory */
+		long          peak;
+		long          pending;    /* bytes queued and not yet written */
+		ArrayDeque<Long> ready;   /* final runs not yet queued for
+					     writing: (which << 32) | h */
+		ArrayDeque<Long> clean;   /* written runs in memory, in the order
+					     of the clock */
+		long          clean_bytes; /* bytes of them */
+		ByteBuffer    rbuf;       /* for the reloads, under the lock */
+		ByteBuffer    wbuf;       /* for the writer thread */
+		boolean       pdone[];    /* pdone[j]: panel j is DONE */
+		boolean       sdone[];    /* sdone[s]: supernode s is complete */
+		boolean       spilling;   /* the factor is left on disk */
+		ooc_file_t    file;       /* the factor file, if spilling */
+		long          file_end;   /* next free position in it */
+		int           nwritten, nevicted, nreloaded;
+		long          bytes_written;
+		long          bytes_reloaded;
+		double        write_time; /* seconds */
+		IOException   error;
+		ExecutorService writer;
+	}
+
+	/* Values moved per read or write of a chunked transfer. */
+	static final int OOC_CHUNK = 1 << 16;
+
+	/*
+	 * Start the paging for a factorization of order n: lusup[*] and
+	 * ucol[*] of Glu are to be kept in pages, which pdgstrf_MemInit() does
+	 * not allocate. The pages are laid out by ooc_layout() once the sizes
+	 * of lusup[*] and ucol[*] are known.
+	 */
+	static
+	ooc_t
+	ooc_begin(int n, GlobalLU_t Glu)
+	{
+	    ooc_t ooc = new ooc_t();
+	    int   k;
+
+	    ooc.n = n;
+	    ooc.budget = Math.max(OOC_BUDGET, 0);
+	    ooc.dir = new File(OOC_DIR != null ? OOC_DIR : System.getProperty("java.io.tmpdir"));
+	    ooc.pdone = new boolean[n];
+	    ooc.sdone = new boolean[n];
+	    ooc.ready = new ArrayDeque<Long>();
+	    ooc.clean = new ArrayDeque<Long>();
+	    ooc.rbuf = ByteBuffer.allocateDirect(8 * OOC_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+	    ooc.wbuf = ByteBuffer.allocateDirect(8 * OOC_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+
+	    ooc.pages = new ooc_pages_t[2];
+	    for (k = 0; k < 2; ++k) {
+		ooc.pages[k] = new ooc_pages_t();
+		ooc.pages[k].ooc = ooc;
+		ooc.pages[k].which = k;
+	    }
+	    Glu.lupages = ooc.pages[0];
+	    Glu.upages = ooc.pages[1];
+	    ooc.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+		    Thread t = new Thread(r, "superlu-ooc-writer");
+		    t.setDaemon(true);
+		    return t;
+		}
+	    });
+	    return ooc;
+	}
+
+	/* Page tables for the addresses [0, limit), with open values each. */
+	static
+	void
+	ooc_pages_init(ooc_pages_t pg, long limit, int open)
+	{
+	    int p;
+
+	    pg.npages = (int) ((limit >> pg.shift) + 1);
+	    pg.page = new AtomicReferenceArray<double[]>(pg.npages);
+	    pg.head = new int[pg.npages];
+	    pg.len = new int[pg.npages];
+	    pg.open = new int[pg.npages];
+	    pg.fpos = new long[pg.npages];
+	    pg.ref = new byte[pg.npages];
+	    for (p = 0; p < pg.npages; ++p) {
+		pg.head[p] = p;
+		pg.len[p] = 1;
+		pg.open[p] = open;
+		pg.fpos[p] = EMPTY;
+	    }
+	    pg.cursor = EMPTY;
+	}
+
+	/*
+	 * Called by pdgstrf_thread_init() after dPresetMap() and
+	 * pdgstrf_MemInit(). Move the regions that dPresetMap() set aside in
+	 * lusup[*] so that none of them crosses a page: a region larger than a
+	 * page gets a run of pages of its own, held in one array, so that each
+	 * supernode stays contiguous as the kernels expect. The regions that
+	 * DynamicSetMap() adds later are placed by next_lu() the same way.
+	 * ucol[*] is not moved; its columns may cross pages.
+	 */
+	static
+	void
+	ooc_layout(ooc_t ooc, pxgstrf_relax_t pxgstrf_relax[], GlobalLU_t Glu)
+	{
+	    ooc_pages_t lp = Glu.lupages;
+	    boolean     dynamic = Glu.dynamic_snode_bound == YES.ordinal();
+	    int         n = ooc.n, map_in_sup[] = Glu.map_in_sup;
+	    int         j, k, shift, nlead = 0, lead[] = new int[n];
+	    long        end, limit, start, size, next;
+
+	    /* Pages of about 1/64 of the budget, or of lusup[*] and ucol[*]
+	       if they are smaller, from 32 KB to 32 MB. */
+	    size = 8L * ((dynamic ? Glu.nzlumax : map_in_sup[n]) + (long) Glu.nzumax);
+	    size = Math.min(size, ooc.budget) / 64;
+	    for (shift = 12; shift < 22 && (8L << shift) < size; ++shift) ;
+	    lp.shift = Glu.upages.shift = shift;
+
+	    /* The regions in the order of their addresses, and their end. */
+	    if ( dynamic ) {
+		for (k = 1; k <= pxgstrf_relax[0].size; ++k)
+		    lead[nlead++] = pxgstrf_relax[k].fcol;
+		end = Glu.nextlu;
+		/* A region wastes less than its size at the end of a page. */
+		limit = Math.min(2L * Glu.nzlumax + (2L << shift), MAX_ARRAY_LENGTH);
+	    } else {
+		for (j = 0; j < n; ++j)
+		    if ( map_in_sup[j] >= 0 ) lead[nlead++] = j;
+		end = map_in_sup[n];
+		limit = Math.min(2L * end + (2L << shift), MAX_ARRAY_LENGTH);
+	    }
+	    ooc_pages_init(lp, limit, 0);
+	    ooc_pages_init(Glu.upages, Glu.nzumax, 1 << Glu.upages.shift);
+	    lp.open[0] = 1;
+	    lp.cursor = 0;
+
+	    for (k = 0, next = 0; k < nlead; ++k) {
+		j = lead[k];
+		size = (k + 1 < nlead ? map_in_sup[lead[k + 1]] : end) - map_in_sup[j];
+		start = ooc_place(lp, next, size, ooc_region_ncols(j, map_in_sup));
+		map_in_sup[j] = (int) start;
+		next = start + size;
+	    }
+	    if ( next > limit )
+		SUPERLU_ABORT("ooc_layout: lusup[] exceeds the array limit once paged.");
+
+	    if ( dynamic ) {
+		Glu.nextlu = (int) next;
+		Glu.nzlumax = (int) limit;
+	    } else {
+		/* No region is added later. */
+		synchronized (ooc) {
+		    ooc_run_close(lp, lp.cursor);
+		}
+		lp.cursor = EMPTY;
+		map_in_sup[n] = (int) next;
+		Glu.nzlumax = (int) next;
+	    }
+
+	if ( PRNTlevel>=1 ) {
+	    printf(".. ooc: pages of %d values, lusup[] addresses up to %d, budget %d bytes\n",
+		   1 << lp.shift, Glu.nzlumax, ooc.budget);
+	}
+	}
+
+	/* Number of columns of the region of lusup[*] led by column j. */
+	static
+	int
+	ooc_region_ncols(int j, int map_in_sup[])
+	{
+	    int w;
+	    for (w = 1; j + w < map_in_sup.length - 1 && map_in_sup[j + w] == -w; ++w) ;
+	    return w;
+	}
+
+	/*
+	 * Place a region of size values holding ncols columns of L at the
+	 * first address from next at which it does not cross a page, or at
+	 * the next page if it is larger than one, and return that address.
+	 * An address past the page tables is returned as is, for the caller
+	 * to report.
+	 */
+	static
+	long
+	ooc_place(ooc_pages_t pg, long next, long size, int ncols)
+	{
+	    long ps = 1L << pg.shift, start = next, end;
+	    int  h, p, last, c;
+
+	    if ( size > ps - (next & (ps - 1)) )
+		start = (next + ps - 1) & -ps;
+	    end = start + size;
+	    if ( (end >> pg.shift) >= pg.npages ) return start;
+
+	    synchronized (pg.ooc) {
+		h = pg.head[(int) (start >> pg.shift)];
+		last = (int) ((end - 1) >> pg.shift);
+		if ( size > 0 && last > (int) (start >> pg.shift) ) {
+		    /* A run of its own, starting at a page. */
+		    h = (int) (start >> pg.shift);
+		    for (p = h + 1; p <= last; ++p) pg.head[p] = h;
+		    pg.len[h] = last - h + 1;
+		}
+		pg.open[h] += ncols;
+
+		/* The run holding the next free position is kept open. */
+		c = pg.head[(int) (end >> pg.shift)];
+		if ( c != pg.cursor ) {
+		    ++pg.open[c];
+		    if ( pg.cursor != EMPTY ) ooc_run_close(pg, pg.cursor);
+		    pg.cursor = c;
+		}
+	    }
+	    return start;
+	}
+
+	/*
+	 * The values of lusup[*] from address a on, within its supernode:
+	 * ooc_lusup(Glu, a)[ooc_lusup_off(Glu, a) + k] is lusup[a + k].
+	 */
+	static
+	double[]
+	ooc_lusup(GlobalLU_t Glu, int a)
+	{
+	    ooc_pages_t pg = Glu.lupages;
+	    if ( pg == null ) return Glu.lusup;
+	    return ooc_page(pg, pg.head[a >> pg.shift]);
+	}
+
+	static
+	int
+	ooc_lusup_off(GlobalLU_t Glu, int a)
+	{
+	    ooc_pages_t pg = Glu.lupages;
+	    if ( pg == null ) return a;
+	    return a - (pg.head[a >> pg.shift] << pg.shift);
+	}
+
+	/*
+	 * The values of ucol[*] from address a on, up to the end of the page
+	 * (the end of the array if ucol[*] is not paged).
+	 */
+	static
+	double[]
+	ooc_ucol(GlobalLU_t Glu, int a)
+	{
+	    ooc_pages_t pg = Glu.upages;
+	    if ( pg == null ) return Glu.ucol;
+	    return ooc_page(pg, a >> pg.shift);
+	}
+
+	static
+	int
+	ooc_ucol_off(GlobalLU_t Glu, int a)
+	{
+	    ooc_pages_t pg = Glu.upages;
+	    if ( pg == null ) return a;
+	    return a & ((1 << pg.shift) - 1);
+	}
+
+	/* The values of run h, read back if they were evicted. */
+	static
+	double[]
+	ooc_page(ooc_pages_t pg, int h)
+	{
+	    double val[] = pg.page.get(h);
+	    if ( val == null ) val = ooc_page_in(pg, h);
+	    pg.ref[h] = 1;
+	    return val;
+	}
+
+	/*
+	 * Bring run h into memory: zeros the first time it is used, the
+	 * values written to the swap file if it was evicted. Other runs are
+	 * evicted if the budget is exceeded.
+	 */
+	static
+	double[]
+	ooc_page_in(ooc_pages_t pg, int h)
+	{
+	    ooc_t  ooc = pg.ooc;
+	    double val[];
+
+	    synchronized (ooc) {
+		if ( (val = pg.page.get(h)) != null ) return val;
+		val = new double[pg.len[h] << pg.shift];
+		if ( pg.fpos[h] != EMPTY ) {
+		    try {
+			ooc_get(ooc.swap, val, 0, val.length, pg.fpos[h], ooc.rbuf);
+		    } catch (IOException e) {
+			SUPERLU_ABORT("Out-of-core read failed: " + e);
+		    }
+		    ooc.bytes_reloaded += 8L * val.length;
+		    ++ooc.nreloaded;
+		    ooc.clean.add(((long) pg.which << 32) | h);
+		    ooc.clean_bytes += 8L * val.length;
+		}
+		pg.ref[h] = 1;
+		pg.page.set(h, val);
+		ooc.resident += 8L * val.length;
+		ooc.peak = Math.max(ooc.peak, ooc.resident);
+		ooc_spill(ooc);
+		ooc_evict(ooc);
+		return val;
+	    }
+	}
+
+	/*
+	 * Drop written runs from memory, by the clock, until the resident
+	 * runs fit in the budget again. Runs still open are never evicted, so
+	 * the budget may be exceeded while they do not fit. The caller holds
+	 * the lock on ooc.
+	 */
+	static
+	void
+	ooc_evict(ooc_t ooc)
+	{
+	    int         tries = 2 * ooc.clean.size(), h;
+	    long        key;
+	    ooc_pages_t pg;
+
+	    while ( ooc.resident > ooc.budget && tries-- > 0 && !ooc.clean.isEmpty() ) {
+		key = ooc.clean.poll();
+		pg = ooc.pages[(int) (key >>> 32)];
+		h = (int) key;
+		if ( pg.ref[h] != 0 ) {
+		    /* Used since the last pass: a second chance. */
+		    pg.ref[h] = 0;
+		    ooc.clean.add(key);
+		    continue;
+		}
+		pg.page.set(h, null);
+		ooc.resident -= 8L * pg.len[h] << pg.shift;
+		ooc.clean_bytes -= 8L * pg.len[h] << pg.shift;
+		++ooc.nevicted;
+	    }
+	}
+
+	/*
+	 * One column or value of run h is finished; once all of them are,
+	 * the run may be written. The caller holds the lock on ooc.
+	 */
+	static
+	void
+	ooc_run_close(ooc_pages_t pg, int h)
+	{
+	    if ( --pg.open[h] == 0 && pg.page.get(h) != null ) {
+		pg.ooc.ready.add(((long) pg.which << 32) | h);
+		ooc_spill(pg.ooc);
+	    }
+	}
+
+	/*
+	 * Queue final runs for writing, oldest first, while the runs in memory
+	 * that are neither written nor being written take more than half of
+	 * the budget, so that there are runs to evict when it is exceeded.
+	 * Nothing is written while the factor fits. The caller holds the lock
+	 * on ooc.
+	 */
+	static
+	void
+	ooc_spill(ooc_t ooc)
+	{
+	    long key;
+	    while ( !ooc.ready.isEmpty()
+		    && ooc.resident - ooc.pending - ooc.clean_bytes > ooc.budget / 2 ) {
+		key = ooc.ready.poll();
+		ooc_queue(ooc.pages[(int) (key >>> 32)], (int) key);
+	    }
+	}
+
+	/*
+	 * Called by pdgstrf_copy_to_ucol() once ucol[beg:end-1] is written.
+	 */
+	static
+	void
+	ooc_ucol_written(GlobalLU_t Glu, int beg, int end)
+	{
+	    ooc_pages_t pg = Glu.upages;
+	    int         a, e, p;
+
+	    if ( pg == null || beg == end ) return;
+	    synchronized (pg.ooc) {
+		for (a = beg; a < end; a = e) {
+		    p = a >> pg.shift;
+		    e = (int) Math.min(end, (long) (p + 1) << pg.shift);
+		    pg.open[p] -= e - a - 1;
+		    ooc_run_close(pg, p);
+		}
+	    }
+	}
+
+	/* First column of the panel holding column j. */
+	static
+	int
+	panel_lead(int j, pxgstrf_shared_t pxgstrf_shared)
+	{
+	    int size = pxgstrf_shared.pan_status[j].size;
+	    return size > 0 ? j : j + size;
+	}
+
+	/*
+	 * Return the last column of the supernode holding column c if the
+	 * supernode is complete, EMPTY otherwise. The panel holding c is DONE.
+	 */
+	static
+	int
+	ooc_snode_complete(ooc_t ooc, int c, pxgstrf_shared_t pxgstrf_shared)
+	{
+	    GlobalLU_t Glu = pxgstrf_shared.Glu;
+	    int        n = ooc.n;
+	    int        s = Glu.supno[c], fsupc = Glu.xsup[s];
+	    int        j, k, next;
+
+	    /* Walk the panels from the one holding fsupc until the column
+	       after the supernode is found in a finished panel. */
+	    for (j = panel_lead(fsupc, pxgstrf_shared); ; j = next) {
+		if ( !ooc.pdone[j] ) return EMPTY;
+		next = j + pxgstrf_shared.pan_status[j].size;
+		for (k = SUPERLU_MAX(j, fsupc + 1); k < next && k < n; ++k)
+		    if ( Glu.supno[k] != s ) return k - 1;
+		if ( next >= n ) return n - 1;
+	    }
+	}
+
+	/*
+	 * Called by pdgstrf_thread() when panel jcol of width w is DONE.
+	 * The columns of the supernodes it completes no longer change: close
+	 * them in their runs of lusup[*], which are written to the swap file
+	 * once all their columns are closed.
+	 */
+	static
+	void
+	ooc_panel_done(int jcol, int w, pxgstrf_shared_t pxgstrf_shared)
+	{
+	    ooc_t       ooc = pxgstrf_shared.ooc;
+	    GlobalLU_t  Glu = pxgstrf_shared.Glu;
+	    ooc_pages_t lp = Glu.lupages;
+	    int         c, j, s, lsupc;
+
+	    synchronized (ooc) {
+		ooc.pdone[jcol] = true;
+
+		/* The panel may complete the supernode ending just before it,
+		   and the supernodes it holds. */
+		c = jcol;
+		if ( jcol > 0 && ooc.pdone[panel_lead(jcol - 1, pxgstrf_shared)] ) c = jcol - 1;
+		for ( ; c < jcol + w; c = lsupc + 1) {
+		    s = Glu.supno[c];
+		    lsupc = ooc_snode_complete(ooc, c, pxgstrf_shared);
+		    if ( lsupc == EMPTY ) {
+			/* Not yet; skip its columns in the panel. */
+			for (lsupc = c; lsupc + 1 < jcol + w && Glu.supno[lsupc + 1] == s; ++lsupc) ;
+			continue;
+		    }
+		    if ( ooc.sdone[s] ) continue;
+		    ooc.sdone[s] = true;
+		    for (j = Glu.xsup[s]; j <= lsupc; ++j)
+			ooc_run_close(lp, lp.head[Glu.xlusup[j] >> lp.shift]);
+		}
+	    }
+	}
+
+	/*
+	 * Queue run h, which no longer changes, for writing to the swap file;
+	 * once written it may be evicted. The caller holds the lock on ooc.
+	 */
+	static
+	void
+	ooc_queue(final ooc_pages_t pg, final int h)
+	{
+	    final ooc_t  ooc = pg.ooc;
+	    final double val[] = pg.page.get(h);
+	    final long   pos, bytes;
+
+	    if ( val == null ) return; /* never used */
+	    if ( ooc.swap == null ) ooc_swap_open(ooc);
+	    bytes = 8L * val.length;
+	    pos = ooc.swap_end;
+	    ooc.swap_end += bytes;
+	    pg.fpos[h] = pos;
+
+	    /* Throttle the producers when the writer falls behind. */
+	    while ( ooc.pending > 0 && ooc.pending + bytes > ooc.budget / 4 && ooc.error == null ) {
+		try {
+		    ooc.wait();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    break;
+		}
+	    }
+	    ooc.pending += bytes;
+
+	    ooc.writer.execute(new Runnable() {
+		public void run() {
+		    double t = SuperLU_timer_();
+		    IOException err = null;
+		    try {
+			ooc_put(ooc.swap, val, 0, val.length, pos, ooc.wbuf);
+		    } catch (IOException e) {
+			err = e;
+		    }
+		    t = (SuperLU_timer_() - t) * 1e-9; /* timer is in ns */
+		    synchronized (ooc) {
+			if ( err != null && ooc.error == null ) ooc.error = err;
+			ooc.pending -= bytes;
+			ooc.bytes_written += bytes;
+			ooc.write_time += t;
+			++ooc.nwritten;
+			if ( err == null ) {
+			    ooc.clean.add(((long) pg.which << 32) | h);
+			    ooc.clean_bytes += bytes;
+			    ooc_evict(ooc);
+			}
+			ooc.notifyAll();
+		    }
+		}
+	    });
+	}
+
+	/* Create the swap file; it is deleted when it is closed. */
+	static
+	void
+	ooc_swap_open(ooc_t ooc)
+	{
+	    try {
+		Path f = Files.createTempFile(ooc.dir.toPath(), "superlu", ".swp");
+		ooc.swap = FileChannel.open(f, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					    StandardOpenOption.DELETE_ON_CLOSE);
+	    } catch (IOException e) {
+		SUPERLU_ABORT("Cannot create the out-of-core file in " + ooc.dir + ": " + e);
+	    }
+	}
+
+	static
+	void
+	ooc_swap_close(ooc_t ooc)
+	{
+	    if ( ooc.swap == null ) return;
+	    try {
+		ooc.swap.close();
+	    } catch (IOException e) {
+		/* nothing to do */
+	    }
+	    ooc.swap = null;
+	}
+
+	static
+	void
+	ooc_write_fully(FileChannel ch, ByteBuffer buf, long pos) throws IOException
+	{
+	    while ( buf.hasRemaining() )
+		pos += ch.write(buf, pos);
+	}
+
+	static
+	void
+	ooc_read_fully(FileChannel ch, ByteBuffer buf, long pos) throws IOException
+	{
+	    int k;
+	    while ( buf.hasRemaining() ) {
+		if ( (k = ch.read(buf, pos)) < 0 )
+		    throw new IOException("Unexpected end of the factor file");
+		pos += k;
+	    }
+	}
+
+	/* Write val[off:off+len-1] at pos, through buf. */
+	static
+	void
+	ooc_put(FileChannel ch, double val[], int off, int len, long pos, ByteBuffer buf)
+	    throws IOException
+	{
+	    int k;
+	    while ( len > 0 ) {
+		k = SUPERLU_MIN(len, buf.capacity() / 8);
+		buf.clear();
+		buf.asDoubleBuffer().put(val, off, k);
+		buf.limit(8 * k);
+		ooc_write_fully(ch, buf, pos);
+		off += k;
+		len -= k;
+		pos += 8L * k;
+	    }
+	}
+
+	/* Read val[off:off+len-1] from pos, through buf. */
+	static
+	void
+	ooc_get(FileChannel ch, double val[], int off, int len, long pos, ByteBuffer buf)
+	    throws IOException
+	{
+	    int k;
+	    while ( len > 0 ) {
+		k = SUPERLU_MIN(len, buf.capacity() / 8);
+		buf.clear().limit(8 * k);
+		ooc_read_fully(ch, buf, pos);
+		buf.flip();
+		buf.asDoubleBuffer().get(val, off, k);
+		off += k;
+		len -= k;
+		pos += 8L * k;
+	    }
+	}
+
+	/*
+	 * Wait until the writer has emptied its queue.
+	 */
+	static
+	void
+	ooc_drain(ooc_t ooc)
+	{
+	    ooc.writer.shutdown();
+	    try {
+		while ( !ooc.writer.awaitTermination(1, TimeUnit.SECONDS) ) ;
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    if ( ooc.error != null )
+		SUPERLU_ABORT("Out-of-core write failed: " + ooc.error);
+	}
+
+	/*
+	 * Called from pdgstrf_thread_finalize() after fixupL(). If no run was
+	 * evicted and the values of L and U fit in the budget, copy them into
+	 * flat lusup[*] and ucol[*] of Glu, compacting lusup[*] as
+	 * compressSUP() does, and drop the pages: the factor stays in memory
+	 * as usual. Otherwise ooc.spilling is set, and ooc_finish() leaves the
+	 * factor on disk.
+	 */
+	static
+	void
+	ooc_gather(ooc_t ooc, GlobalLU_t Glu)
+	{
+	    ooc_pages_t lp = ooc.pages[0], up = ooc.pages[1];
+	    int         n = ooc.n, xlusup[] = Glu.xlusup, xlusup_end[] = Glu.xlusup_end;
+	    int         order[], j, k, h, prev, len, p, nextlu;
+	    long        lnz = 0;
+	    double      lusup[], ucol[], val[];
+
+	    ooc_drain(ooc);
+	    for (j = 0; j < n; ++j) lnz += xlusup_end[j] - xlusup[j];
+	    if ( ooc.nevicted > 0 || 8 * (lnz + Glu.nextu) > ooc.budget ) {
+		ooc.spilling = true;
+		return;
+	    }
+
+	    /* In the order of the addresses, each run is done with before the
+	       next is used, and is dropped then. */
+	    lusup = new double[(int) lnz];
+	    order = storage_order(n, xlusup);
+	    nextlu = 0;
+	    prev = EMPTY;
+	    for (k = 0; k < n; ++k) {
+		j = order[k];
+		len = xlusup_end[j] - xlusup[j];
+		if ( len == 0 ) {
+		    xlusup[j] = xlusup_end[j] = nextlu;
+		    continue;
+		}
+		h = lp.head[xlusup[j] >> lp.shift];
+		if ( h != prev && prev != EMPTY ) lp.page.set(prev, null);
+		prev = h;
+		val = ooc_page(lp, h);
+		System.arraycopy(val, xlusup[j] - (h << lp.shift), lusup, nextlu, len);
+		xlusup[j] = nextlu;
+		nextlu += len;
+		xlusup_end[j] = nextlu;
+	    }
+	    xlusup[n] = nextlu;
+
+	    ucol = new double[Glu.nextu];
+	    for (p = 0; (long) p << up.shift < Glu.nextu; ++p) {
+		val = up.page.get(p);
+		len = (int) Math.min(1 << up.shift, Glu.nextu - ((long) p << up.shift));
+		if ( val != null ) System.arraycopy(val, 0, ucol, p << up.shift, len);
+		up.page.set(p, null);
+	    }
+
+	    Glu.lusup = Glu.expanders[LUSUP.ordinal()].mem = lusup;
+	    Glu.ucol = Glu.expanders[UCOL.ordinal()].mem = ucol;
+	    Glu.lupages = Glu.upages = null;
+	    ooc_swap_close(ooc);
+	}
+
+	/*
+	 * Called from pdgstrf_thread_finalize() once L (SCP) and U (NCP) are
+	 * set up. If ooc_gather() left the factor in the pages, write it, with
+	 * its subscripts and the directory, to a new factor file, and make L
+	 * and U refer to the on-disk SCLU matrix. The swap file is deleted.
+	 */
+	static
+	void
+	ooc_finish(ooc_t ooc, SuperMatrix L, SuperMatrix U, Gstat_t Gstat)
+	{
+	    SCPformat   Lstore = (SCPformat) L.Store;
+	    NCPformat   Ustore = (NCPformat) U.Store;
+	    SCLUformat  LUstore;
+	    ooc_file_t  file;
+	    ooc_pages_t lp = ooc.pages[0], up = ooc.pages[1];
+	    int         n = L.ncol, nsuper = Lstore.nsuper;
+	    int         s, j, k, a, h, fsupc, nsupc, nsupr, istart, unz, len;
+	    long        vtot, itot, dir, pos;
+	    ByteBuffer  buf;
+	    double      t, val[];
+
+	    if ( ooc.spilling ) {
+	    t = SuperLU_timer_();
+	    file = ooc.file = new ooc_file_t();
+	    file.vpos = new long[nsuper + 1];
+	    file.ipos = new long[nsuper + 1];
+	    ooc.file_end = OOC_HEADER_BYTES;
+	    LUstore = new SCLUformat();
+	    LUstore.nnz = Lstore.nnz + Ustore.nnz;
+	    LUstore.nsuper = nsuper;
+	    LUstore.sup_to_col = new int[nsuper + 2];
+	    LUstore.nzval_supptr = new long[nsuper + 2];
+	    LUstore.index_supptr = new long[nsuper + 2];
+	    vtot = itot = 0;
+	    try {
+		Path f = Files.createTempFile(ooc.dir.toPath(), "superlu", ".lu");
+		file.path = f.toString();
+		file.delete_on_close = true;
+		file.channel = FileChannel.open(f, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		for (s = 0; s <= nsuper; ++s) {
+		    fsupc = L_FST_SUPC(Lstore, s);
+		    nsupc = L_LAST_SUPC(Lstore, s) - fsupc;
+		    istart = L_SUB_START(Lstore, fsupc);
+		    nsupr = L_SUB_END(Lstore, fsupc) - istart;
+		    for (j = fsupc, unz = 0; j < fsupc + nsupc; ++j)
+			unz += U_NZ_END(Ustore, j) - U_NZ_START(Ustore, j);
+		    LUstore.sup_to_col[s] = fsupc;
+		    LUstore.nzval_supptr[s] = vtot;
+		    LUstore.index_supptr[s] = itot;
+		    vtot += (long) nsupr * nsupc + unz;
+		    itot += SCLU_HEADER + nsupr + nsupc + 1 + unz;
+
+		    /* The subscript record. */
+		    len = SCLU_HEADER + nsupr + nsupc + 1 + unz;
+		    buf = ByteBuffer.allocate(4 * len).order(ByteOrder.LITTLE_ENDIAN);
+		    buf.putInt(nsupr).putInt(nsupc);
+		    for (k = istart; k < istart + nsupr; ++k) buf.putInt(Lstore.rowind[k]);
+		    buf.putInt(0);
+		    for (j = fsupc, unz = 0; j < fsupc + nsupc; ++j) {
+			unz += U_NZ_END(Ustore, j) - U_NZ_START(Ustore, j);
+			buf.putInt(unz);
+		    }
+		    for (j = fsupc; j < fsupc + nsupc; ++j)
+			for (k = U_NZ_START(Ustore, j); k < U_NZ_END(Ustore, j); ++k)
+			    buf.putInt(Ustore.rowind[k]);
+		    buf.flip();
+		    file.ipos[s] = ooc.file_end;
+		    ooc_write_fully(file.channel, buf, ooc.file_end);
+		    ooc.file_end += 4L * len;
+
+		    /* The values record: the L block, then the U columns,
+		       which may cross pages. */
+		    pos = file.vpos[s] = ooc.file_end;
+		    a = L_NZ_START(Lstore, fsupc);
+		    h = lp.head[a >> lp.shift];
+		    val = ooc_page(lp, h);
+		    ooc_put(file.channel, val, a - (h << lp.shift), nsupr * nsupc, pos, ooc.wbuf);
+		    pos += 8L * nsupr * nsupc;
+		    for (j = fsupc; j < fsupc + nsupc; ++j)
+			for (a = U_NZ_START(Ustore, j); a < U_NZ_END(Ustore, j); a += k) {
+			    h = a >> up.shift;
+			    k = (int) Math.min(U_NZ_END(Ustore, j), (long) (h + 1) << up.shift) - a;
+			    val = ooc_page(up, h);
+			    ooc_put(file.channel, val, a - (h << up.shift), k, pos, ooc.wbuf);
+			    pos += 8L * k;
+			}
+		    ooc.file_end = pos;
+		}
+		LUstore.sup_to_col[nsuper + 1] = n;
+		LUstore.nzval_supptr[nsuper + 1] = vtot;
+		LUstore.index_supptr[nsuper + 1] = itot;
+
+		/* The directory, then the header pointing to it. */
+		dir = ooc.file_end;
+		buf = ByteBuffer.allocate(4 * (nsuper + 2) + 8 * (4 * nsuper + 6))
+		    .order(ByteOrder.LITTLE_ENDIAN);
+		for (s = 0; s <= nsuper + 1; ++s) buf.putInt(LUstore.sup_to_col[s]);
+		for (s = 0; s <= nsuper + 1; ++s) buf.putLong(LUstore.nzval_supptr[s]);
+		for (s = 0; s <= nsuper + 1; ++s) buf.putLong(LUstore.index_supptr[s]);
+		for (s = 0; s <= nsuper; ++s) buf.putLong(file.vpos[s]);
+		for (s = 0; s <= nsuper; ++s) buf.putLong(file.ipos[s]);
+		buf.flip();
+		ooc.file_end += buf.remaining();
+		ooc_write_fully(file.channel, buf, dir);
+
+		buf = ByteBuffer.allocate(OOC_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putLong(OOC_MAGIC).putInt(n).putInt(nsuper).putInt(LUstore.nnz).putLong(dir);
+		buf.putInt(0);
+		buf.flip();
+		ooc_write_fully(file.channel, buf, 0);
+	    } catch (IOException e) {
+		ooc_close(file);
+		SUPERLU_ABORT("Out-of-core write failed: " + e);
+	    }
+	    ooc.bytes_written += ooc.file_end;
+	    ooc.write_time += (SuperLU_timer_() - t) * 1e-9; /* timer is in ns */
+
+	    LUstore.ooc_file = file;
+	    L.Stype = U.Stype = SLU_SCLU;
+	    L.Dtype = U.Dtype = SLU_D;
+	    L.Mtype = U.Mtype = SLU_TRLU;
+	    L.Store = U.Store = LUstore;
+	    }
+
+	    ooc_swap_close(ooc);
+	    ooc.pages = null;
+	    Gstat.ooc_bytes_written += ooc.bytes_written;
+	    Gstat.ooc_write_time += ooc.write_time;
+	    Gstat.ooc_bytes_reloaded += ooc.bytes_reloaded;
+	    Gstat.ooc_peak_resident = Math.max(Gstat.ooc_peak_resident, ooc.peak);
+
+	if ( PRNTlevel>=1 ) {
+	    printf(".. ooc: peak %.1f MB in pages, %d runs written, %d evicted, %d reloaded\n",
+		   ooc.peak * 1e-6, ooc.nwritten, ooc.nevicted, ooc.nreloaded);
+	    if ( ooc.spilling )
+		printf(".. ooc: factor left on disk, %.1f MB in %s\n",
+		       ooc.file_end * 1e-6, ooc.file.path);
+	}
+	}
+
+	/*
+	 * Stop the paging of a factorization that was cancelled or failed:
+	 * the writer is stopped and the files are deleted.
+	 */
+	static
+	void
+	ooc_discard(ooc_t ooc, GlobalLU_t Glu)
+	{
+	    ooc.writer.shutdownNow();
+	    try {
+		ooc.writer.awaitTermination(10, TimeUnit.SECONDS);
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    ooc_swap_close(ooc);
+	    ooc_close(ooc.file);
+	    ooc.pages = null;
+	    Glu.lupages = Glu.upages = null;
+	}
+
+	/*
+	 * Open a factor file written by ooc_finish() as an SLU_SCLU matrix LU
+	 * of order n. The file is kept when LU is released.
+	 */
+	public static
+	void
+	ooc_open(String path, SuperMatrix LU)
+	{
+	    SCLUformat LUstore = new SCLUformat();
+	    ooc_file_t file = new ooc_file_t();
+	    ByteBuffer buf;
+	    int        n, nsuper, s;
+	    long       dir;
+
+	    file.path = path;
+	    try {
+		file.channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ);
+		buf = ByteBuffer.allocate(OOC_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		ooc_read_fully(file.channel, buf, 0);
+		buf.flip();
+		if ( buf.getLong() != OOC_MAGIC )
+		    SUPERLU_ABORT("Not a factor file: " + path);
+		n = buf.getInt();
+		nsuper = buf.getInt();
+		LUstore.nnz = buf.getInt();
+		dir = buf.getLong();
+
+		buf = ByteBuffer.allocate(4 * (nsuper + 2) + 8 * (4 * nsuper + 6))
+		    .order(ByteOrder.LITTLE_ENDIAN);
+		ooc_read_fully(file.channel, buf, dir);
+		buf.flip();
+		LUstore.nsuper = nsuper;
+		LUstore.sup_to_col = new int[nsuper + 2];
+		LUstore.nzval_supptr = new long[nsuper + 2];
+		LUstore.index_supptr = new long[nsuper + 2];
+		file.vpos = new long[nsuper + 1];
+		file.ipos = new long[nsuper + 1];
+		for (s = 0; s <= nsuper + 1; ++s) LUstore.sup_to_col[s] = buf.getInt();
+		for (s = 0; s <= nsuper + 1; ++s) LUstore.nzval_supptr[s] = buf.getLong();
+		for (s = 0; s <= nsuper + 1; ++s) LUstore.index_supptr[s] = buf.getLong();
+		for (s = 0; s <= nsuper; ++s) file.vpos[s] = buf.getLong();
+		for (s = 0; s <= nsuper; ++s) file.ipos[s] = buf.getLong();
+	    } catch (IOException e) {
+		SUPERLU_ABORT("Cannot read the factor file " + path + ": " + e);
+		return;
+	    }
+
+	    LUstore.ooc_file = file;
+	    LU.Stype = SLU_SCLU;
+	    LU.Dtype = SLU_D;
+	    LU.Mtype = SLU_TRLU;
+	    LU.nrow = LU.ncol = n;
+	    LU.Store = LUstore;
+	}
+
+	/*
+	 * Keep the file of an on-disk factor at path after it is closed, so
+	 * that it can be opened again with ooc_open().
+	 */
+	public static
+	void
+	ooc_persist(SuperMatrix LU, String path)
+	{
+	    ooc_file_t file = ((SCLUformat) LU.Store).ooc_file;
+	    File       dst = new File(path);
+
+	    if ( file == null ) SUPERLU_ABORT("The factor is not on disk.");
+	    if ( !file.path.equals(dst.getPath()) ) {
+		if ( !new File(file.path).renameTo(dst) )
+		    SUPERLU_ABORT("Cannot move the factor file to " + path);
+		file.path = dst.getPath();
+	    }
+	    file.delete_on_close = false;
+	}
+
+	/*
+	 * Read the values and subscript records of supernode s into val[]
+	 * and idx[], which must be large enough.
+	 */
+	static
+	void
+	ooc_read_block(SCLUformat LUstore, int s, double val[], int idx[]) throws IOException
+	{
+	    ooc_file_t file = LUstore.ooc_file;
+	    int        vlen = (int) (LUstore.nzval_supptr[s+1] - LUstore.nzval_supptr[s]);
+	    int        ilen = (int) (LUstore.index_supptr[s+1] - LUstore.index_supptr[s]);
+	    ByteBuffer buf;
+
+	    buf = ByteBuffer.allocate(8 * vlen).order(ByteOrder.LITTLE_ENDIAN);
+	    ooc_read_fully(file.channel, buf, file.vpos[s]);
+	    buf.flip();
+	    buf.asDoubleBuffer().get(val, 0, vlen);
+	    buf = ByteBuffer.allocate(4 * ilen).order(ByteOrder.LITTLE_ENDIAN);
+	    ooc_read_fully(file.channel, buf, file.ipos[s]);
+	    buf.flip();
+	    buf.asIntBuffer().get(idx, 0, ilen);
+	}
+
+	/* One buffer of the read-ahead window. */
+	static class ooc_slot_t {
+		int         s = EMPTY;  /* supernode held or being read */
+		double      val[];
+		int         idx[];
+		ByteBuffer  vbb, ibb;
+		Future<?>   read;
+	}
+
+	/* A pass over the supernodes of an on-disk factor. */
+	public static class ooc_stream_t {
+		SCLUformat   LUstore;
+		int          step;      /* +1 forward, -1 backward */
+		int          next_read; /* next supernode to be read ahead */
+		int          end;       /* one step past the last supernode */
+		ooc_slot_t   slot[];
+		long         bytes;
+		double       time, stall;
+	}
+
+	/* Reader threads shared by all streams. */
+	static ExecutorService ooc_readers;
+
+	static synchronized
+	ExecutorService
+	ooc_reader_pool()
+	{
+	    if ( ooc_readers == null )
+		ooc_readers = Executors.newFixedThreadPool(2, new ThreadFactory() {
+		    public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "superlu-ooc-reader");
+			t.setDaemon(true);
+			return t;
+		    }
+		});
+	    return ooc_readers;
+	}
+
+	/* Read the records of supernode s into the slot. */
+	static
+	void
+	ooc_slot_read(ooc_file_t file, SCLUformat LUstore, ooc_slot_t sl, int s) throws IOException
+	{
+	    int vlen = (int) (LUstore.nzval_supptr[s+1] - LUstore.nzval_supptr[s]);
+	    int ilen = (int) (LUstore.index_supptr[s+1] - LUstore.index_supptr[s]);
+
+	    if ( sl.vbb == null || sl.vbb.capacity() < 8 * vlen ) {
+		sl.vbb = ByteBuffer.allocateDirect(8 * vlen).order(ByteOrder.LITTLE_ENDIAN);
+		sl.val = new double[vlen];
+	    }
+	    if ( sl.ibb == null || sl.ibb.capacity() < 4 * ilen ) {
+		sl.ibb = ByteBuffer.allocateDirect(4 * ilen).order(ByteOrder.LITTLE_ENDIAN);
+		sl.idx = new int[ilen];
+	    }
+	    sl.vbb.clear().limit(8 * vlen);
+	    ooc_read_fully(file.channel, sl.vbb, file.vpos[s]);
+	    sl.vbb.flip();
+	    sl.vbb.asDoubleBuffer().get(sl.val, 0, vlen);
+	    sl.ibb.clear().limit(4 * ilen);
+	    ooc_read_fully(file.channel, sl.ibb, file.ipos[s]);
+	    sl.ibb.flip();
+	    sl.ibb.asIntBuffer().get(sl.idx, 0, ilen);
+	}
+
+	/* Start reading the next supernode of the pass into slot sl. */
+	static
+	void
+	ooc_stream_fill(final ooc_stream_t st, final ooc_slot_t sl)
+	{
+	    final int s = st.next_read;
+
+	    sl.s = s;
+	    st.next_read += st.step;
+	    st.bytes += 8 * (st.LUstore.nzval_supptr[s+1] - st.LUstore.nzval_supptr[s])
+		      + 4 * (st.LUstore.index_supptr[s+1] - st.LUstore.index_supptr[s]);
+	    sl.read = ooc_reader_pool().submit(new java.util.concurrent.Callable<Void>() {
+		public Void call() throws IOException {
+		    ooc_slot_read(st.LUstore.ooc_file, st.LUstore, sl, s);
+		    return null;
+		}
+	    });
+	}
+
+	/*
+	 * Open a pass over the supernodes of the on-disk factor LUstore, in
+	 * increasing order if forward is true, in decreasing order otherwise.
+	 */
+	public static
+	ooc_stream_t
+	ooc_stream_open(SCLUformat LUstore, boolean forward)
+	{
+	    ooc_stream_t st = new ooc_stream_t();
+	    int  nsuper = LUstore.nsuper, w, s;
+	    long rec, maxrec = 1;
+
+	    /* As many records as fit in the budget, within OOC_WINDOW. */
+	    for (s = 0; s <= nsuper; ++s) {
+		rec = 8 * (LUstore.nzval_supptr[s+1] - LUstore.nzval_supptr[s])
+		    + 4 * (LUstore.index_supptr[s+1] - LUstore.index_supptr[s]);
+		maxrec = Math.max(maxrec, rec);
+	    }
+	    w = (int) Math.min(OOC_WINDOW, Math.max(OOC_BUDGET / maxrec, 2));
+	    w = SUPERLU_MAX(SUPERLU_MIN(w, nsuper + 1), 1);
+
+	    st.LUstore = LUstore;
+	    st.step = forward ? 1 : -1;
+	    st.next_read = forward ? 0 : nsuper;
+	    st.end = forward ? nsuper + 1 : -1;
+	    st.slot = new ooc_slot_t[w];
+	    st.time = SuperLU_timer_();
+	    for (s = 0; s < w; ++s) {
+		st.slot[s] = new ooc_slot_t();
+		ooc_stream_fill(st, st.slot[s]);
+	    }
+	    return st;
+	}
+
+	/*
+	 * Set b to the next supernode s of the pass; the block given out by the
+	 * previous call is released for read-ahead.
+	 */
+	public static
+	void
+	ooc_stream_next(ooc_stream_t st, int s, sclu_block_t b)
+	{
+	    int        w = st.slot.length;
+	    int        k = (st.step > 0 ? s : st.LUstore.nsuper - s) % w;
+	    ooc_slot_t sl = st.slot[k], prev = st.slot[(k + w - 1) % w];
+	    double     t;
+
+	    /* Refill the slot of the block used last. */
+	    if ( prev != sl && prev.s == s - st.step && st.next_read != st.end )
+		ooc_stream_fill(st, prev);
+
+	    if ( sl.s != s ) SUPERLU_ABORT("ooc_stream_next: supernodes out of order.");
+	    t = SuperLU_timer_();
+	    try {
+		sl.read.get();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		SUPERLU_ABORT("Interrupted while reading the factor file.");
+	    } catch (ExecutionException e) {
+		SUPERLU_ABORT("Cannot read the factor file: " + e.getCause());
+	    }
+	    st.stall += SuperLU_timer_() - t;
+
+	    b.fsupc = st.LUstore.sup_to_col[s];
+	    b.val = sl.val;
+	    b.voff = 0;
+	    b.idx = sl.idx;
+	    b.ioff = 0;
+	    b.nsupr = sl.idx[0];
+	    b.nsupc = sl.idx[1];
+
+	    /* With a window of one, read the next record now. */
+	    if ( w == 1 && st.next_read != st.end ) {
+		sl.s = EMPTY;
+		b.val = sl.val.clone();
+		b.idx = sl.idx.clone();
+		ooc_stream_fill(st, sl);
+	    }
+	}
+
+	/*
+	 * End a pass, waiting for the reads still in flight, and add its
+	 * statistics to Gstat.
+	 */
+	public static
+	void
+	ooc_stream_close(ooc_stream_t st, Gstat_t Gstat)
+	{
+	    for (ooc_slot_t sl : st.slot) {
+		try {
+		    if ( sl.read != null ) sl.read.get();
+		} catch (Exception e) {
+		    /* a failed read-ahead past the last block is harmless */
+		}
+	    }
+	    st.time = SuperLU_timer_() - st.time;
+	    Gstat.ooc_bytes_read += st.bytes;
+	    Gstat.ooc_read_time += st.time * 1e-9; /* timer is in ns */
+	    Gstat.ooc_read_stall += st.stall * 1e-9;
+	}
+
+	/*
+	 * Close the file of an on-disk factor, deleting it unless it has
+	 * been persisted.
+	 */
+	public static
+	void
+	ooc_close(ooc_file_t file)
+	{
+	    if ( file == null || file.channel == null ) return;
+	    try {
+		file.channel.close();
+	    } catch (IOException e) {
+		/* nothing to do */
+	    }
+	    file.channel = null;
+	    if ( file.delete_on_close ) new File(file.path).delete();
+	}
+
+}
@@ -9,10 +9,21 @@
  */
 package gov.lbl.superlu;
 
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import gov.lbl.superlu.Dlu_pdmemory.LU_space_t;
+import gov.lbl.superlu.Dlu_pdmemory.LU_stack_t;
+import gov.lbl.superlu.Dlu_pdgspool.pool_turn_t;
+import gov.lbl.superlu.Dlu_pdooc.ooc_pages_t;
+import gov.lbl.superlu.Dlu_pdooc.ooc_t;
 import gov.lbl.superlu.Dlu_pxgstrf_synch.pan_status_t;
 import gov.lbl.superlu.Dlu_pxgstrf_synch.queue_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.ExpHeader;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
 
@@ -108,6 +119,11 @@ public class Dlu_pdsp_defs {
 	 *                   ucol/usub[].
 	 *	Storage: new row subscripts; that is indexed intp PA.
 	 *
+	 *   (lupages, upages):
+	 *      during an out-of-core factorization (Dlu.OOC_LU) lusup[*] and
+	 *      ucol[*] are null and their values are kept in pages instead,
+	 *      addressed by the same xlusup[*] and xusub[*]; see Dlu_pdooc.
+	 *
 	 */
 	static class GlobalLU_t {
 	    int     xsup[];    /* supernode and column mapping */
@@ -123,6 +139,8 @@ public class Dlu_pdsp_defs {
 	    int     usub[];
 	    int	    xusub[];
 	    int     xusub_end[];
+	    ooc_pages_t lupages; /* pages of lusup[*], if it is paged */
+	    ooc_pages_t upages;  /* pages of ucol[*], if it is paged */
 	    int     nsuper;   /* current supernode number */
 	    int     nextl;    /* next position in lsub[] */
 	    int     nextu;    /* next position in usub[]/ucol[] */
@@ -144,6 +162,14 @@ public class Dlu_pdsp_defs {
 				*/
 	    int  dynamic_snode_bound;
 	    /* --------------------------------------------------------------- */
+	    sp_tuning_t tuning; /* the tuning parameters of the factorization */
+	    /* ---------------------------------------------------------------
+	     *  State of the memory expansions (see Dlu_pdmemory)
+	     */
+	    ExpHeader  expanders[]; /* the 4 types of memory */
+	    int        no_expand;
+	    LU_space_t whichspace;  /* system malloc'd or user provided */
+	    LU_stack_t stack;
 	}
 
 
@@ -158,13 +184,27 @@ public class Dlu_pdsp_defs {
 	    /* ----------------------------------------------------------------
 	     * Global variables introduced in parallel code for synchronization.
 	     */
+	    boolean      sequential;   /* factored by pdgstrf_sequential():
+					  no locks, no task queue */
 	    volatile int tasks_remain; /* number of untaken panels */
 	    int          num_splits;   /* number of panels split at the top */
 	    queue_t      taskq;        /* size ncol - shared work queue */
+	    queue_t      deques[];     /* size nprocs - the work-stealing deques,
+					  if WORK_STEALING is set */
 	    Object       lu_locks[];    /* 5 named mutual exclusive locks */
-	    volatile int spin_locks[];  /* size ncol - mark every busy column */
+	    Object       park;          /* idle threads wait here, if PARK_IDLE
+					   is set */
+	    volatile int nparked;       /* number of threads waiting on park */
+	    volatile Throwable failure; /* first exception thrown by a thread */
+	    AtomicIntegerArray spin_locks; /* size ncol - mark every busy column;
+					      released with set(), so that
+					      the column is seen complete */
 	    pan_status_t pan_status[];  /* size ncol - panel status */
 	    int          fb_cols[];     /* size ncol - mark farthest busy column */
+	    int          in_domain[];   /* size ncol - panel_t of each column,
+					   if DOMAINS is set */
+	    AtomicIntegerArray taken;   /* size ncol - times each panel was
+					   taken, if CHK_SCHED is set */
 	    /* ---------------------------------------------------------------- */
 	    int        inv_perm_c[];
 	    int        inv_perm_r[];
@@ -174,6 +214,7 @@ public class Dlu_pdsp_defs {
 	    GlobalLU_t Glu;
 	    Gstat_t    Gstat;
 	    int        info;
+	    ooc_t      ooc;     /* paging state if Dlu.OOC_LU is set */
 	}
 
 	/* Arguments passed to each thread. */
@@ -182,6 +223,9 @@ public class Dlu_pdsp_defs {
 	    int[]  info = new int[1]; /* error code returned from each thread */
 	    superlumt_options_t superlumt_options;
 	    pxgstrf_shared_t  pxgstrf_shared; /* shared for LU factorization */
+	    pool_turn_t turn; /* set while a worker of a pool runs it */
+	    int  jcol = EMPTY; /* panel finished at the end of a turn, not yet
+				  passed to the scheduler (Dlu_pdgspool) */
 	}
 
 }
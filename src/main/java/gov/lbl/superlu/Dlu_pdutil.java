@@ -24,6 +24,10 @@ import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 import static gov.lbl.superlu.Dlu_slu_mt_util.FALSE;
 import static gov.lbl.superlu.Dlu_slu_mt_util.TRUE;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_lusup_off;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_ucol;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_ucol_off;
 import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
 import static gov.lbl.superlu.Dlu_slu_mt_util.PhaseType.FACT;
@@ -311,9 +315,9 @@ public class Dlu_pdutil {
 	    lsub    = Glu.lsub;
 	    xlsub   = Glu.xlsub;
 	    xlsub_end = Glu.xlsub_end;
-	    lusup   = Glu.lusup;
 	    xlusup  = Glu.xlusup;
 	    xlusup_end = Glu.xlusup_end;
+	    lusup   = ooc_lusup(Glu, xlusup[jcol]); /* Glu.lusup unless paged */
 
 	    printf("(%d)%s fstcol %d,col %d,w %d: pivrow %d, supno %d, xprune %d\n",
 		   pnum, msg, pcol, jcol, w, pivrow, supno[jcol], xprune[jcol]);
@@ -321,9 +325,10 @@ public class Dlu_pdutil {
 	    printf("(%d)\tU-col: xusub %d - %d\n",
 		   pnum, Glu.xusub[jcol], Glu.xusub_end[jcol]);
 	    for (i = Glu.xusub[jcol]; i < Glu.xusub_end[jcol]; i++)
-		printf("(%d)\t%d\t%8e\n", pnum, Glu.usub[i], Glu.ucol[i]);
+		printf("(%d)\t%d\t%8e\n", pnum, Glu.usub[i],
+		       ooc_ucol(Glu, i)[ooc_ucol_off(Glu, i)]);
 	    fsupc = xsup[supno[jcol]];
-	    k = xlusup[jcol];
+	    k = ooc_lusup_off(Glu, xlusup[jcol]);
 	    printf("(%d)\tL-col in s-node: xlsub %d - %d, xlusup %d - %d\n",
 		   pnum, xlsub[fsupc],xlsub_end[fsupc],xlusup[jcol],xlusup_end[jcol]);
 	    for (i = xlsub[fsupc]; i < xlsub_end[fsupc]; ++i)
@@ -341,15 +346,15 @@ public class Dlu_pdutil {
 	 */
 	public static
 	void
-	dcheck_zero_vec(int pnum, String msg, int n, double vec[])
+	dcheck_zero_vec(int pnum, String msg, int n, double vec[], int vec_offset)
 	{
 	    int i, nonzero;
 
 	    nonzero = FALSE;
 	    for (i = 0; i < n; ++i) {
-	        if (vec[i] != 0.0) {
+	        if (vec[vec_offset+i] != 0.0) {
 	            printf("(%d) vec[%d] = %.10e; should be zero!\n",
-	                   pnum, i, vec[i]);
+	                   pnum, i, vec[vec_offset+i]);
 	            nonzero = TRUE;
 	        }
 	    }
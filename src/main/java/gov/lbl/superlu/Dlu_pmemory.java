@@ -11,6 +11,8 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
 import static gov.lbl.superlu.Dlu_util.ifill;
 import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_place;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_region_ncols;
 
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.lu_locks_t.ULOCK;
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.lu_locks_t.LLOCK;
@@ -29,12 +31,40 @@ import static gov.lbl.superlu.Dlu.exit;
 
 public class Dlu_pmemory {
 
+	/*
+	 * Thrown by XPAND_HINT() when lusup[], ucol[]/usub[] or lsub[] is full:
+	 * the storage is not expanded, and pdgstrf() returns info = A.ncol plus
+	 * the bytes asked for instead of throwing it again.
+	 */
+	public static class mem_error_t extends RuntimeException {
+	    public final long bytes;    /* bytes of the storage asked for */
+
+	    mem_error_t(String msg, long bytes) {
+		super(msg);
+		this.bytes = bytes;
+	    }
+	}
+
 	public static void
-	XPAND_HINT(String memtype, int new_next, int jcol, int param) {
+	XPAND_HINT(String memtype, int new_next, int jcol, int param, int esize) {
 		fprintf(stderr, "Storage for %12s exceeded; Current column %d; Need at least %d;\n",
 		memtype, jcol, new_next);
-		fprintf(stderr, "You may set it by the %d-th parameter in routine sp_ienv().\n", param);
-		SUPERLU_ABORT("Memory allocation failed");
+		fprintf(stderr, "You may set it by the %d-th parameter of sp_tuning_t (sp_ienv()).\n", param);
+		throw new mem_error_t("Storage for " + memtype + " exceeded at column " + jcol,
+				      (long) new_next * esize);
+	}
+
+	/* Largest length the VM allows for an array. */
+	public static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/*
+	 * Return len as an array length, or -1 if it does not fit in a Java
+	 * array. Sizes are computed in long arithmetic by the callers so that
+	 * they cannot wrap around silently.
+	 */
+	public static int array_length(long len)
+	{
+	    return ( len < 0 || len > MAX_ARRAY_LENGTH ) ? -1 : (int) len;
 	}
 
 	/*
@@ -116,10 +146,59 @@ public class Dlu_pmemory {
 	    return (buf);
 	}
 
+	/*
+	 * Bump the next free positions of ucol[*]/usub[*], lsub[*] and lusup[*]
+	 * by num, and return their values before the allocation. The callers
+	 * hold the corresponding lock, unless the factorization is sequential.
+	 */
+	static
+	int
+	next_u(final int jcol, final int num, GlobalLU_t Glu)
+	{
+	    int nextu = Glu.nextu;
+	    int new_next = nextu + num;
+	    if ( new_next > Glu.nzumax ) {
+	        XPAND_HINT("U columns", new_next, jcol, 7, 8);
+	    }
+	    Glu.nextu = new_next;
+	    return nextu;
+	}
+
+	static
+	int
+	next_l(final int jcol, final int num, GlobalLU_t Glu)
+	{
+	    int nextl = Glu.nextl;
+	    int new_next = nextl + num;
+	    if ( new_next > Glu.nzlmax ) {
+	        XPAND_HINT("L subscripts", new_next, jcol, 8, 4);
+	    }
+	    Glu.nextl = new_next;
+	    return nextl;
+	}
+
+	static
+	int
+	next_lu(final int jcol, final int num, GlobalLU_t Glu)
+	{
+	    int nextlu = Glu.nextlu;
+	    if ( Glu.lupages != null ) /* keep the region within a page */
+		nextlu = (int) Math.min(ooc_place(Glu.lupages, nextlu, num,
+						  ooc_region_ncols(jcol, Glu.map_in_sup)),
+					Glu.nzlumax);
+	    int new_next = nextlu + num;
+	    if ( new_next > Glu.nzlumax ) {
+	        XPAND_HINT("L supernodes", new_next, jcol, 6, 8);
+	    }
+	    Glu.nextlu = new_next;
+	    return nextlu;
+	}
+
 	/*
 	 * Allocate n elements storage from a global array.
 	 * It uses lock for mutually exclusive access to the next position, so that
-	 * more than one processors can call aalloc on the same array correctly.
+	 * more than one processors can call aalloc on the same array correctly;
+	 * the sequential engine (pxgstrf_shared.sequential) takes no lock.
 	 * Return value: 0 - success
 	 *              >0 - number of bytes allocated when run out of space
 	 */
@@ -136,7 +215,7 @@ public class Dlu_pmemory {
 	{
 	    GlobalLU_t Glu = pxgstrf_shared.Glu;
 	    Gstat_t    Gstat = pxgstrf_shared.Gstat;
-	    int fsupc, nextl, nextu, new_next;
+	    int fsupc;
 	    double   t = 0;
 
 	    switch ( mem_type ) {
@@ -185,15 +264,11 @@ public class Dlu_pmemory {
 		t = SuperLU_timer_();
 	}
 
-		synchronized ( pxgstrf_shared.lu_locks[ULOCK.ordinal()] )
+		if ( pxgstrf_shared.sequential ) {
+		    prev_next[0] = next_u(jcol, num, Glu);
+		} else synchronized ( pxgstrf_shared.lu_locks[ULOCK.ordinal()] )
 		{
-		    nextu = Glu.nextu;
-		    new_next = nextu + num;
-		    if ( new_next > Glu.nzumax ) {
-		        XPAND_HINT("U columns", new_next, jcol, 7);
-		    }
-		    prev_next[0] = nextu;
-		    Glu.nextu = new_next;
+		    prev_next[0] = next_u(jcol, num, Glu);
 
 		} /* end of critical region */
 
@@ -210,15 +285,11 @@ public class Dlu_pmemory {
 		t = SuperLU_timer_();
 	}
 
-	    synchronized( pxgstrf_shared.lu_locks[LLOCK.ordinal()] )
+		if ( pxgstrf_shared.sequential ) {
+		  prev_next[0] = next_l(jcol, num, Glu);
+		} else synchronized( pxgstrf_shared.lu_locks[LLOCK.ordinal()] )
 		{
-		  nextl = Glu.nextl;
-		  new_next = nextl + num;
-		  if ( new_next > Glu.nzlmax ) {
-		      XPAND_HINT("L subscripts", new_next, jcol, 8);
-		  }
-		  prev_next[0] = nextl;
-		  Glu.nextl = new_next;
+		  prev_next[0] = next_l(jcol, num, Glu);
 
 		} /* end of #pragama critical lock() */
 
@@ -249,22 +320,17 @@ public class Dlu_pmemory {
 		double t = 0;
 	    GlobalLU_t Glu = pxgstrf_shared.Glu;
 	    Gstat_t    Gstat = pxgstrf_shared.Gstat;
-	    int nextlu, new_next;
 	    int map_in_sup[] = Glu.map_in_sup; /* modified; memory mapping function */
 
 	if (PROFILE) {
 	    t = SuperLU_timer_();
 	}
 
-		synchronized ( pxgstrf_shared.lu_locks[LULOCK.ordinal()] )
+	    if ( pxgstrf_shared.sequential ) {
+		map_in_sup[jcol] = next_lu(jcol, num, Glu);
+	    } else synchronized ( pxgstrf_shared.lu_locks[LULOCK.ordinal()] )
 	    {
-		nextlu = Glu.nextlu;
-		map_in_sup[jcol] = nextlu;
-		new_next = nextlu + num;
-		if ( new_next > Glu.nzlumax ) {
-		    XPAND_HINT("L supernodes", new_next, jcol, 6);
-		}
-		Glu.nextlu = new_next;
+		map_in_sup[jcol] = next_lu(jcol, num, Glu);
 	    } /* end of critical region */
 
 	if (PROFILE) {
@@ -0,0 +1,161 @@
+package gov.lbl.superlu;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
+import gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_relax_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.Branch;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+
+import static gov.lbl.superlu.Dlu_sp_colorder.sp_colcnt_h;
+import static gov.lbl.superlu.Dlu.DOMAIN_IMBALANCE;
+import static gov.lbl.superlu.Dlu.PRNTlevel;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.panel_t.REGULAR_PANEL;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.panel_t.RELAXED_SNODE;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.panel_t.TREE_DOMAIN;
+import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.YES;
+
+
+public class Dlu_pxgstrf_domains {
+
+	static
+	Branch
+	pxgstrf_find_domains(final int n, pxgstrf_relax_t pxgstrf_relax[],
+			     superlumt_options_t superlumt_options,
+			     pxgstrf_shared_t pxgstrf_shared)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * pxgstrf_find_domains() chooses the tree domains: disjoint subtrees
+	 * of the column etree, each factored from its first descendant to its
+	 * root by a single process, without pipelining and without the
+	 * spin_locks[] of its columns. The columns above the domains are
+	 * factored by the usual pipelined panel algorithm.
+	 *
+	 * The flops of column j are estimated from the column count of H as
+	 * colcnt_h[j]^2, and summed over subtrees. Starting from the roots of
+	 * the etree, the heaviest subtree is replaced by its children until
+	 * it weighs at most DOMAIN_IMBALANCE times the average load of the
+	 * nprocs processes, so that a greedy assignment of the subtrees,
+	 * heaviest first, balances the loads to within that fraction. Relaxed
+	 * supernodes are not split; a subtree that is a relaxed supernode is
+	 * left as such rather than made a domain.
+	 *
+	 * On return, pxgstrf_shared.in_domain[j] is the panel_t ordinal of
+	 * column j: TREE_DOMAIN, RELAXED_SNODE or REGULAR_PANEL. The domains
+	 * are returned heaviest first, with which_bin the process they are
+	 * expected to go to. The etree must be postordered (SymmetricMode =
+	 * NO); otherwise no domain is chosen.
+	 *
+	 */
+	    int etree[] = superlumt_options.etree;
+	    int colcnt_h[] = sp_colcnt_h(superlumt_options);
+	    int nprocs = superlumt_options.nprocs;
+	    int in_domain[], desc[], firstkid[], nextkid[];
+	    int i, j, k, r, rs, ncand, ndom = 0;
+	    boolean atomic[];
+	    final double sw[];
+	    double total, sum, load[], domwt = 0.0;
+	    Integer cand[];
+	    PriorityQueue<Integer> heap;
+	    Branch list_head = null, tail = null, b;
+
+	    in_domain = pxgstrf_shared.in_domain = new int[n];
+	    Arrays.fill(in_domain, REGULAR_PANEL.ordinal());
+	    for (rs = 1; rs <= pxgstrf_relax[0].size; ++rs)
+		for (j = pxgstrf_relax[rs].fcol; j < pxgstrf_relax[rs].fcol + pxgstrf_relax[rs].size; ++j)
+		    in_domain[j] = RELAXED_SNODE.ordinal();
+	    if ( superlumt_options.SymmetricMode == YES || n == 0 ) return null;
+
+	    /* Subtree weights and sizes; children lists. */
+	    sw = new double[n];
+	    desc = new int[n];
+	    firstkid = new int[n];
+	    nextkid = new int[n];
+	    atomic = new boolean[n];
+	    Arrays.fill(firstkid, EMPTY);
+	    for (j = 0; j < n; ++j) {
+		sw[j] += (double) colcnt_h[j] * colcnt_h[j];
+		if ( (k = etree[j]) < n ) {
+		    sw[k] += sw[j];
+		    desc[k] += desc[j] + 1;
+		}
+	    }
+	    for (j = n-1; j >= 0; --j)
+		if ( (k = etree[j]) < n ) {
+		    nextkid[j] = firstkid[k];
+		    firstkid[k] = j;
+		}
+	    for (rs = 1; rs <= pxgstrf_relax[0].size; ++rs)
+		atomic[pxgstrf_relax[rs].fcol + pxgstrf_relax[rs].size - 1] = true;
+
+	    /* Split the heaviest subtree until it is light enough. */
+	    heap = new PriorityQueue<Integer>(64, new Comparator<Integer>() {
+		public int compare(Integer a, Integer c) {
+		    return Double.compare(sw[c], sw[a]);
+		}
+	    });
+	    sum = 0.0;
+	    for (j = 0; j < n; ++j)
+		if ( etree[j] == n ) {
+		    heap.add(j);
+		    sum += sw[j];
+		}
+	    total = sum;
+	    if ( nprocs > 1 ) {
+		while ( !heap.isEmpty() ) {
+		    r = heap.peek();
+		    if ( sw[r] <= DOMAIN_IMBALANCE * sum / nprocs ) break;
+		    if ( atomic[r] || firstkid[r] == EMPTY ) break;
+		    heap.poll();
+		    sum -= sw[r];
+		    for (k = firstkid[r]; k != EMPTY; k = nextkid[k]) {
+			heap.add(k);
+			sum += sw[k];
+		    }
+		}
+	    }
+
+	    /* Assign the subtrees, heaviest first, to the least loaded process. */
+	    cand = heap.toArray(new Integer[heap.size()]);
+	    Arrays.sort(cand, heap.comparator());
+	    ncand = cand.length;
+	    load = new double[nprocs];
+	    for (i = 0; i < ncand; ++i) {
+		r = cand[i];
+		for (k = 0, j = 1; j < nprocs; ++j)
+		    if ( load[j] < load[k] ) k = j;
+		load[k] += sw[r];
+		if ( atomic[r] ) continue;  /* a relaxed supernode */
+
+		b = new Branch();
+		b.root = r;
+		b.first_desc = r - desc[r];
+		b.which_bin = k;
+		if ( tail == null ) list_head = b;
+		else tail.next = b;
+		tail = b;
+		for (j = b.first_desc; j <= r; ++j) in_domain[j] = TREE_DOMAIN.ordinal();
+		domwt += sw[r];
+		++ndom;
+	    }
+
+	if ( PRNTlevel>=1 ) {
+	    double lmax = 0.0;
+	    for (k = 0; k < nprocs; ++k) lmax = Math.max(lmax, load[k]);
+	    printf(".. pxgstrf_find_domains(): %d domains, %.2f of the estimated flops; "
+		   + "max/avg load %.2f\n", ndom, total > 0 ? domwt / total : 0.0,
+		   sum > 0 ? lmax * nprocs / sum : 1.0);
+	}
+
+	    return list_head;
+	}
+
+}
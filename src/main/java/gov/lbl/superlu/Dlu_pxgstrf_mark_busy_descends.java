@@ -87,8 +87,8 @@ public class Dlu_pxgstrf_mark_busy_descends {
 		    /* Find leading column "fsupc" in the supernode that
 		       contains column "bcol-1" */
 	if (false) {
-		    if ( pxgstrf_shared.spin_locks[bcol_reg] != 0 ) /* WORSE PERFORMANCE!! */
-			await( pxgstrf_shared.spin_locks[bcol_reg] );
+		    if ( pxgstrf_shared.spin_locks.get(bcol_reg) != 0 ) /* WORSE PERFORMANCE!! */
+			await(pxgstrf_shared, bcol_reg);
 	}
 		    xsup = Glu.xsup;
 		    fsupc = SUPER_FSUPC( xsup, Glu.supno[bcol_reg-1] );
@@ -24,6 +24,7 @@ public class Dlu_pxgstrf_pruneL {
 		       final int  nseg,      /* number of U-segments */
 		       final int  segrep[],   /* in */
 		       final int  repfnz[],   /* in */
+		       final int  repfnz_offset,
 		       int        xprune[],   /* modified */
 		       int        ispruned[], /* modified */
 		       GlobalLU_t Glu /* modified - global LU data structures */
@@ -64,7 +65,7 @@ public class Dlu_pxgstrf_pruneL {
 		irep1 = irep + 1;
 
 		/* Don't prune with a zero U-segment */
-	 	if ( repfnz[irep] == EMPTY ) continue;
+	 	if ( repfnz[repfnz_offset+irep] == EMPTY ) continue;
 
 	     	/* If a supernode overlaps with the next panel, then the U-segment
 	   	 * is fragmented into two parts - irep and irep1. We should let
@@ -79,7 +80,7 @@ public class Dlu_pxgstrf_pruneL {
 		do_prune = FALSE;
 		if ( isupno != jsupno ) {
 		    if ( ispruned[irep] == 0 ) {
-			kmin = SINGLETON( xsup_end, xsup_end, isupno ) ? xlsub_end[irep] : xlsub[irep];
+			kmin = SINGLETON( xsup_end, xsup, isupno ) ? xlsub_end[irep] : xlsub[irep];
 			kmax = xprune[irep] - 1;
 			for (krow = kmin; krow <= kmax; krow++)
 			    if ( lsub[krow] == pivrow ) {
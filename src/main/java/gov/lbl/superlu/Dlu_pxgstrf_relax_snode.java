@@ -3,7 +3,6 @@ package gov.lbl.superlu;
 import gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_relax_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
 
-import static gov.lbl.superlu.Dlu.DOMAINS;
 import static gov.lbl.superlu.Dlu.PRNTlevel;
 import static gov.lbl.superlu.Dlu.printf;
 
@@ -61,10 +60,6 @@ public class Dlu_pxgstrf_relax_snode {
 		/* found a supernode with j being the last column. */
 		pxgstrf_relax[rs].fcol = fcol;
 		pxgstrf_relax[rs].size = j - fcol + 1;
-	if (DOMAINS) {
-		throw new UnsupportedOperationException();
-//		for (i = fcol; i <= j; ++i) in_domain[i] = RELAXED_SNODE;
-	}
 		j++;    rs++;
 		/* Search for a new leaf */
 		while ( desc[j] != 0 && j < n ) j++;
@@ -1,9 +1,13 @@
 package gov.lbl.superlu;
 
 import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
+import gov.lbl.superlu.Dlu_pxgstrf_synch.pan_status_t;
 import gov.lbl.superlu.Dlu_pxgstrf_synch.queue_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
 import static gov.lbl.superlu.Dlu_slu_mt_util.STATE;
 import static gov.lbl.superlu.Dlu_slu_mt_util.DADPANEL;
@@ -13,6 +17,12 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.how_selected_t.DADPAN;
 import static gov.lbl.superlu.Dlu_slu_mt_util.how_selected_t.PIPE;
 import static gov.lbl.superlu.Dlu_slu_mt_util.how_selected_t.NOPIPE;
 
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.Dequeue;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.Enqueue;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.PushLocal;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.PopLocal;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.StealHead;
+import static gov.lbl.superlu.Dlu_pxgstrf_synch.pxgstrf_unpark;
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.lu_locks_t.SCHED_LOCK;
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.pipe_state_t.BUSY;
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.pipe_state_t.CANGO;
@@ -21,9 +31,11 @@ import static gov.lbl.superlu.Dlu_pxgstrf_synch.pipe_state_t.DONE;
 import static gov.lbl.superlu.Dlu_pxgstrf_synch.panel_t.TREE_DOMAIN;
 
 import static gov.lbl.superlu.Dlu.DOMAINS;
+import static gov.lbl.superlu.Dlu.WORK_STEALING;
+import static gov.lbl.superlu.Dlu.PARK_IDLE;
 import static gov.lbl.superlu.Dlu.PROFILE;
 import static gov.lbl.superlu.Dlu.DEBUG;
-import static gov.lbl.superlu.Dlu.POSTORDER;
+import static gov.lbl.superlu.Dlu.CHK_SCHED;
 import static gov.lbl.superlu.Dlu.printf;
 
 import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
@@ -52,6 +64,12 @@ public class Dlu_pxgstrf_scheduler {
 	 *       ("CANGO" status)
 	 *   (3) any other panel in the queue that can be done with pipelining
 	 *       ("CANPIPE" status)
+	 * The queue is first-in first-out, or, if POSTORDER is set and the
+	 * etree is postordered, ordered by column: the panels are then taken
+	 * in postorder, next to the ones just finished, whose L supernodes
+	 * they update from. If CPATH_PRIORITY is set, the queue is ordered by
+	 * decreasing bottom level instead (see BottomLevels()): the panels on
+	 * the longest remaining path to the root are taken first.
 	 *
 	 * Arguments
 	 * =========
@@ -92,6 +110,11 @@ public class Dlu_pxgstrf_scheduler {
 	 *       if ukids[REP] = 0, then the panel becomes a leaf (CANGO)
 	 *       if ukids[REP] = 1 && ukids[firstcol] = 1, then the panel can
 	 *                       be taken with pipelining (CANPIPE)
+	 *     The busy kid must then be the panel just before it, ending at
+	 *     firstcol-1: a panel may extend the supernode of its previous
+	 *     column, which must stay on the path of the busy descendants.
+	 *     In first-in first-out postorder this is nearly always the case;
+	 *     with CPATH_PRIORITY, WORK_STEALING or DOMAINS it often is not.
 	 *
 	 * NOTES
 	 * =====
@@ -102,20 +125,25 @@ public class Dlu_pxgstrf_scheduler {
 	 *
 	 */
 
-	    int dad = 0, dad_ukids, jcol, w, j = 0;
+	    int dad = 0, dad_ukids, jcol, w, j = 0, item[] = new int[1];
+	    boolean wake = false; /* a panel became ready for the others */
 	    int fb_cols[] = pxgstrf_shared.fb_cols;
 	    queue_t taskq = pxgstrf_shared.taskq;
 	    Gstat_t Gstat = pxgstrf_shared.Gstat;
 	    double[] t = new double[1];
 
+	    if (WORK_STEALING) {
+		pxgstrf_steal_scheduler(pnum, n, etree, cur_pan, bcol, pxgstrf_shared);
+		return;
+	    }
+
 	    jcol = cur_pan[0];
 	    if ( jcol != EMPTY ) {
 	if (DOMAINS) {
-		throw new UnsupportedOperationException();
-//		if ( in_domain[jcol] == TREE_DOMAIN )
-//		    dad = etree[jcol];
-//		else
-//			dad = DADPANEL(etree, pxgstrf_shared, jcol);
+		if ( pxgstrf_shared.in_domain[jcol] == TREE_DOMAIN.ordinal() )
+		    dad = etree[jcol]; /* jcol is the root of a domain */
+		else
+		    dad = DADPANEL(etree, pxgstrf_shared, jcol);
 	} else {
 		dad = DADPANEL(etree, pxgstrf_shared, jcol);
 	}
@@ -155,13 +183,11 @@ public class Dlu_pxgstrf_scheduler {
 		} else {
 		    /* Try to get a panel from the task Q. */
 		    while ( true ) {
-			/*>>if ( (j = Dequeue(taskq, &item)) == EMPTY ) {*/
-			if ( taskq.count <= 0 ) {
+			if ( (j = Dequeue(taskq, item)) == EMPTY ) {
 			    jcol = EMPTY;
 			    break;
 			} else {
-			    jcol = taskq.queue[taskq.head++];
-			    --taskq.count;
+			    jcol = item[0];
 			    if ( STATE(pxgstrf_shared, jcol) >= CANGO.ordinal() ) { /* CANGO or CANPIPE */
 	if (DEBUG) {
 				printf("(%d) Dequeue[1] Got %d, STATE %d, Qcount %d\n",
@@ -181,13 +207,11 @@ public class Dlu_pxgstrf_scheduler {
 		 * jcol was EMPTY; Try to get a panel from the task Q.
 		 */
 	    	while ( true ) {
-	    	    /*>>if ( (j = Dequeue(taskq, &item)) == EMPTY ) {*/
-		    if ( taskq.count <= 0 ) {
+		    if ( (j = Dequeue(taskq, item)) == EMPTY ) {
 			jcol = EMPTY;
 			break;
 		    } else {
-			jcol = taskq.queue[taskq.head++];
-			--taskq.count;
+			jcol = item[0];
 			if ( STATE(pxgstrf_shared, jcol) >= CANGO.ordinal() ) { /* CANGO or CANPIPE */
 	if (DEBUG) {
 			    printf("(%d) Dequeue[2] Got %d, STATE %d, Qcount %d\n",
@@ -207,33 +231,41 @@ public class Dlu_pxgstrf_scheduler {
 	     * Update the status of the new panel "jcol" and its parent "dad".
 	     */
 	    if ( jcol != EMPTY ) {
-		    --pxgstrf_shared.tasks_remain;
-	if (DOMAINS) {
-		throw new UnsupportedOperationException();
-//		if ( in_domain[jcol] == TREE_DOMAIN ) {
-//		    /* Dequeue the first descendant of this domain */
-//		    bcol[0] = taskq.queue[taskq.head++];
-//		    --taskq.count;
-//		} else
-	}
-//		{
+		    if ( --pxgstrf_shared.tasks_remain == 0 ) wake = true;
+		if ( DOMAINS && pxgstrf_shared.in_domain[jcol] == TREE_DOMAIN.ordinal() ) {
+		    /* Dequeue the first descendant of this domain. The domain
+		       is not pipelined: its parent waits until it is done, so
+		       that its columns need no spin_locks[]. */
+		    if ( taskq.ordered ) {
+			bcol[0] = fb_cols[jcol]; /* see EnqueueDomains() */
+		    } else {
+			bcol[0] = taskq.queue[taskq.head++];
+			--taskq.count;
+		    }
+		    pxgstrf_shared.pan_status[jcol].state = BUSY;
+	if (PROFILE) {
+		    Gstat.procstat[pnum].panels++;
+	}
+		} else {
 		    //STATE(pxgstrf_shared, jcol) = BUSY;
 		    pxgstrf_shared.pan_status[jcol].state = BUSY;
 		    w = pxgstrf_shared.pan_status[jcol].size;
 
-		    for (j = jcol; j < jcol+w; ++j) pxgstrf_shared.spin_locks[j] = 1;
+		    for (j = jcol; j < jcol+w; ++j) pxgstrf_shared.spin_locks.set(j, 1);
 		    dad = DADPANEL(etree, pxgstrf_shared, jcol);
-		    if ( dad < n && pxgstrf_shared.pan_status[dad].ukids == 1 ) {
+		    /* dad is pipelined only on the panel just before it: its
+		       other kids are done, and the supernode ending at dad-1,
+		       which dad may extend, is busy with jcol. */
+		    if ( dad < n && pxgstrf_shared.pan_status[dad].ukids == 1 && jcol + w == dad ) {
 			//STATE( dad ) = CANPIPE;
 			pxgstrf_shared.pan_status[dad].state = CANPIPE;
-			/*>> j = Enqueue(taskq, dad);*/
-			taskq.queue[taskq.tail++] = dad;
-			++taskq.count;
+			j = Enqueue(taskq, dad);
+			wake = true;
 	if (DEBUG) {
 			printf("(%d) Enqueue() %d's dad %d .CANPIPE, Qcount %d\n",
 			       pnum, jcol, dad, j);
 	}
-//		    }
+		    }
 
 	if (PROFILE) {
 		    Gstat.procstat[pnum].panels++;
@@ -251,6 +283,10 @@ public class Dlu_pxgstrf_scheduler {
 
 		} /* else regular_panel */
 
+	if (CHK_SCHED) {
+		pxgstrf_check_take(pnum, jcol, bcol[0], n, etree, pxgstrf_shared);
+	}
+
 	    } /* if jcol != empty */
 
 	    cur_pan[0] = jcol;
@@ -262,6 +298,12 @@ public class Dlu_pxgstrf_scheduler {
 
 	} /* ---- END CRITICAL SECTION ---- */
 
+	if (PARK_IDLE) {
+	    /* Wake the parked threads: there is a panel to take, or none is
+	       left and they are to exit. */
+	    if ( wake ) pxgstrf_unpark(pxgstrf_shared);
+	}
+
 	if (PROFILE) {
 	    Gstat.procstat[pnum].cs_time += SuperLU_timer_() - t[0];
 	}
@@ -270,6 +312,238 @@ public class Dlu_pxgstrf_scheduler {
 	}
 
 
+	private static final AtomicIntegerFieldUpdater<pxgstrf_shared_t> TASKS_REMAIN =
+	    AtomicIntegerFieldUpdater.newUpdater(pxgstrf_shared_t.class, "tasks_remain");
+
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * pxgstrf_steal_scheduler() is pxgstrf_scheduler() with WORK_STEALING:
+	 * the same panels are taken in the same states, but from per-processor
+	 * deques rather than the shared queue, without the global SCHED_LOCK.
+	 *   (1) the current panel's parent, if it can be done without pipelining
+	 *   (2) the last panel pushed on this processor's deque: a parent made
+	 *       CANPIPE by this processor, or else its next seeded subtree
+	 *   (3) the oldest panel of another processor's deque, the victims being
+	 *       tried in turn from a random one
+	 * The state of a panel, and the count of its unfinished kids, are
+	 * changed under the lock of its pan_status[]; a deque under its own
+	 * lock. A panel may be found in a deque after it was taken as a parent
+	 * in (1); it is then skipped, as in the shared queue.
+	 *
+	 */
+	static
+	void
+	pxgstrf_steal_scheduler(final int pnum, final int n, final int etree[],
+				int cur_pan[], int bcol[], pxgstrf_shared_t pxgstrf_shared)
+	{
+	    int dad = 0, jcol, w, j, k, r, P, item[] = new int[1];
+	    int fb_cols[] = pxgstrf_shared.fb_cols;
+	    queue_t deques[] = pxgstrf_shared.deques, q;
+	    Gstat_t Gstat = pxgstrf_shared.Gstat;
+	    pan_status_t dad_status;
+	    boolean wake = false; /* a panel became ready for the others */
+	    double[] t = new double[1];
+
+	    P = deques.length;
+	    jcol = cur_pan[0];
+	    if ( jcol != EMPTY ) {
+	if (DOMAINS) {
+		if ( pxgstrf_shared.in_domain[jcol] == TREE_DOMAIN.ordinal() )
+		    dad = etree[jcol]; /* jcol is the root of a domain */
+		else
+		    dad = DADPANEL(etree, pxgstrf_shared, jcol);
+	} else {
+		dad = DADPANEL(etree, pxgstrf_shared, jcol);
+	}
+	    }
+
+	if (PROFILE) {
+	    TIC(t);
+	}
+
+	    /* (1) If all siblings are done, and dad is not busy, take dad. */
+	    if ( jcol != EMPTY ) {
+		dad_status = pxgstrf_shared.pan_status[dad];
+		synchronized (dad_status) {
+		    if ( --dad_status.ukids == 0 && dad < n
+			 && dad_status.state.ordinal() > BUSY.ordinal() ) {
+			dad_status.state = BUSY;
+		    } else {
+			dad = EMPTY;
+		    }
+		}
+		jcol = dad;
+	if (PROFILE) {
+		if ( jcol != EMPTY ) synchronized (Gstat.panhows) { ++(Gstat.panhows[DADPAN.ordinal()]); }
+	}
+	    }
+
+	    /* (2) Own deque. */
+	    while ( jcol == EMPTY && PopLocal(deques[pnum], item) != EMPTY )
+		if ( TryTake(pxgstrf_shared, item[0]) ) jcol = item[0];
+
+	    /* (3) Steal from the others, in turn from a random one. */
+	    if ( jcol == EMPTY && P > 1 ) {
+		r = ThreadLocalRandom.current().nextInt(P - 1);
+		for (k = 0; jcol == EMPTY && k < P - 1; ++k) {
+		    q = deques[(pnum + 1 + (r + k) % (P - 1)) % P];
+		    while ( jcol == EMPTY && StealHead(q, item) != EMPTY )
+			if ( TryTake(pxgstrf_shared, item[0]) ) jcol = item[0];
+		}
+		if ( jcol != EMPTY ) Gstat.procstat[pnum].steals++;
+	    }
+
+	    /*
+	     * Update the status of the new panel "jcol" and its parent "dad".
+	     */
+	    if ( jcol != EMPTY ) {
+		if ( TASKS_REMAIN.decrementAndGet(pxgstrf_shared) == 0 ) wake = true;
+		if ( DOMAINS && pxgstrf_shared.in_domain[jcol] == TREE_DOMAIN.ordinal() ) {
+		    bcol[0] = fb_cols[jcol]; /* see EnqueueLocal() */
+		} else {
+		    w = pxgstrf_shared.pan_status[jcol].size;
+		    for (j = jcol; j < jcol+w; ++j) pxgstrf_shared.spin_locks.set(j, 1);
+		    dad = DADPANEL(etree, pxgstrf_shared, jcol);
+
+		    /* Find the farthest busy descendant of the new panel
+		       and its parent.*/
+		    bcol[0] = fb_cols[jcol];
+		    while ( STATE(pxgstrf_shared, bcol[0]) == DONE.ordinal() ) bcol[0] = DADPANEL(etree, pxgstrf_shared, bcol[0]);
+
+		    /* dad is pipelined only on the panel just before it (see
+		       pxgstrf_scheduler()). */
+		    dad_status = pxgstrf_shared.pan_status[dad];
+		    synchronized (dad_status) {
+			fb_cols[dad] = bcol[0];
+			if ( dad < n && dad_status.ukids == 1 && jcol + w == dad ) {
+			    dad_status.state = CANPIPE;
+			    PushLocal(deques[pnum], dad);
+			    wake = true;
+			}
+		    }
+		}
+	if (CHK_SCHED) {
+		pxgstrf_check_take(pnum, jcol, bcol[0], n, etree, pxgstrf_shared);
+	}
+	if (PROFILE) {
+		Gstat.procstat[pnum].panels++;
+	}
+	    }
+
+	    cur_pan[0] = jcol;
+
+	if (PARK_IDLE) {
+	    if ( wake ) pxgstrf_unpark(pxgstrf_shared);
+	}
+
+	if (PROFILE) {
+	    Gstat.procstat[pnum].cs_time += SuperLU_timer_() - t[0];
+	}
+	}
+
+	/* Take panel j if it is CANGO or CANPIPE, making it BUSY. */
+	private static
+	boolean
+	TryTake(pxgstrf_shared_t pxgstrf_shared, int j)
+	{
+	    pan_status_t status = pxgstrf_shared.pan_status[j];
+	    Gstat_t Gstat = pxgstrf_shared.Gstat;
+
+	    synchronized (status) {
+		if ( status.state.ordinal() < CANGO.ordinal() ) return false;
+	if (PROFILE) {
+		synchronized (Gstat.panhows) {
+		    if ( status.state == CANGO ) ++(Gstat.panhows[NOPIPE.ordinal()]);
+		    else ++(Gstat.panhows[PIPE.ordinal()]);
+		}
+	}
+		status.state = BUSY;
+		return true;
+	    }
+	}
+
+	/*
+	 * Purpose
+	 * =======
+	 *   With CHK_SCHED set, check that panel jcol, just taken by process
+	 *   pnum with farthest busy descendant bcol, was not taken before, and
+	 *   that each of its kids was taken before it; all the kids are done,
+	 *   but for at most one still BUSY when jcol is taken for pipelining.
+	 *   Its descendants still busy must all be on the path from bcol to
+	 *   jcol, each being the panel just before its parent: the supernode
+	 *   ending at column k-1 may be extended by the panel k, so it is
+	 *   finished only if the panel k is (see pxgstrf_mark_busy_descends).
+	 *   A domain jcol, with first descendant bcol, must be a subtree whose
+	 *   panels were never taken.
+	 */
+	static
+	void
+	pxgstrf_check_take(final int pnum, final int jcol, final int bcol, final int n,
+			   final int etree[], pxgstrf_shared_t pxgstrf_shared)
+	{
+	    pan_status_t pan_status[] = pxgstrf_shared.pan_status;
+	    boolean onpath[];
+	    int k, a, busy = 0;
+
+	    if ( DOMAINS && pxgstrf_shared.in_domain[jcol] == TREE_DOMAIN.ordinal() ) {
+		for (k = bcol; k <= jcol; k += pan_status[k].size)
+		    if ( pxgstrf_shared.taken.getAndIncrement(k) != 0 )
+			throw new IllegalStateException(String.format(
+			    "(%d) panel %d of domain %d is taken twice", pnum, k, jcol));
+		for (k = 0; k < bcol; k += pan_status[k].size) {
+		    a = DADPANEL(etree, pxgstrf_shared, k);
+		    if ( a >= bcol && a <= jcol )
+			throw new IllegalStateException(String.format(
+			    "(%d) domain %d-%d has a kid %d outside", pnum, bcol, jcol, k));
+		}
+		return;
+	    }
+
+	    if ( pxgstrf_shared.taken.getAndIncrement(jcol) != 0 )
+		throw new IllegalStateException(String.format(
+		    "(%d) panel %d is taken twice", pnum, jcol));
+	    for (k = 0; k < n; k += pan_status[k].size) {
+		if ( DADPANEL(etree, pxgstrf_shared, k) != jcol ) continue;
+		if ( pxgstrf_shared.taken.get(k) == 0 )
+		    throw new IllegalStateException(String.format(
+			"(%d) panel %d is taken before its kid %d", pnum, jcol, k));
+		if ( pan_status[k].state != DONE ) ++busy;
+	    }
+	    if ( busy > 1 )
+		throw new IllegalStateException(String.format(
+		    "(%d) panel %d is taken with %d kids not done", pnum, jcol, busy));
+
+	    onpath = new boolean[n];
+	    for (k = bcol; k < jcol; k = a) {
+		onpath[k] = true;
+		a = DADPANEL(etree, pxgstrf_shared, k);
+		if ( a < jcol && k + pan_status[k].size != a && !released(a, pxgstrf_shared) )
+		    throw new IllegalStateException(String.format(
+			"(%d) panel %d is pipelined on %d, not the panel before it",
+			pnum, a, k));
+	    }
+	    for (k = 0; k < jcol; k += pan_status[k].size) {
+		if ( onpath[k] || released(k, pxgstrf_shared) ) continue;
+		for (a = k; a < jcol; a = DADPANEL(etree, pxgstrf_shared, a)) ;
+		if ( a == jcol )
+		    throw new IllegalStateException(String.format(
+			"(%d) panel %d is taken with %d busy, off the path from %d",
+			pnum, jcol, k, bcol));
+	    }
+	}
+
+	/* Whether all the columns of panel k are released (spin_locks[]);
+	   it is DONE a little later. */
+	private static
+	boolean
+	released(int k, pxgstrf_shared_t pxgstrf_shared)
+	{
+	    return pxgstrf_shared.spin_locks.get(k + pxgstrf_shared.pan_status[k].size - 1) == 0
+		   && pxgstrf_shared.pan_status[k].state.ordinal() < CANGO.ordinal();
+	}
+
 	/* Fix the order of the panels to be taken. */
 	static
 	void
@@ -277,10 +551,9 @@ public class Dlu_pxgstrf_scheduler {
 	         queue_t taskq, int fb_cols[], int bcol[],
 		 pxgstrf_shared_t pxgstrf_shared)
 	{
-	    int w, dad, dad_ukids;
+	    int w, dad, dad_ukids, item[] = new int[1];
 
-	POSTORDER = false;
-	if (POSTORDER) {
+	if ( taskq.ordered && taskq.prio == null ) { /* POSTORDER, on a postordered etree */
 	    if ( cur_pan[0] == EMPTY ) {
 		cur_pan[0] = 0;
 	    } else {
@@ -291,13 +564,10 @@ public class Dlu_pxgstrf_scheduler {
 	    if ( cur_pan[0] != EMPTY ) {
 		dad = DADPANEL(etree, pxgstrf_shared, cur_pan[0]);
 		dad_ukids = --pxgstrf_shared.pan_status[dad].ukids;
-		if ( dad_ukids == 0 ) {
-		    taskq.queue[taskq.tail++] = dad;
-		    ++taskq.count;
-		}
+		if ( dad_ukids == 0 ) Enqueue(taskq, dad);
 	    }
-	    cur_pan[0] = taskq.queue[taskq.head++];
-	    --taskq.count;
+	    Dequeue(taskq, item);
+	    cur_pan[0] = item[0];
 	}
 	    --pxgstrf_shared.tasks_remain;
 	    bcol[0] = cur_pan[0];
@@ -102,12 +102,12 @@ public class Dlu_pxgstrf_super_bnd_dfs {
 			  marker[marker_offset+invp_rep] = found;
 			  parent[krep] = EMPTY;
 			  if ( ispruned[krep] != 0 ) {
-			      if ( SINGLETON( xsup_end, xsup_end, supno[krep] ) )
+			      if ( SINGLETON( xsup_end, xsup, supno[krep] ) )
 				  xdfs = xlsub_end[krep];
 			      else xdfs = xlsub[krep];
 			      maxdfs = xprune[krep];
 			  } else {
-			      fsupc = SUPER_FSUPC( xsup_end, supno[krep] );
+			      fsupc = SUPER_FSUPC(xsup, supno[krep] );
 			      xdfs = xlsub[fsupc] + krep-fsupc+1;
 			      maxdfs = xlsub_end[fsupc];
 			  }
@@ -141,12 +141,12 @@ public class Dlu_pxgstrf_super_bnd_dfs {
 					      xdfs = xlsub[krep];
 					      maxdfs = xprune[krep];
 					      if ( ispruned[krep] != 0 ) {
-						  if ( SINGLETON( xsup_end, xsup_end, supno[krep] ) )
+						  if ( SINGLETON( xsup_end, xsup, supno[krep] ) )
 						      xdfs = xlsub_end[krep];
 						  else xdfs = xlsub[krep];
 						  maxdfs = xprune[krep];
 					      } else {
-						  fsupc = SUPER_FSUPC(xsup_end, supno[krep]);
+						  fsupc = SUPER_FSUPC(xsup, supno[krep]);
 						  xdfs = xlsub[fsupc] + krep-fsupc+1;
 						  maxdfs = xlsub_end[fsupc];
 					      }
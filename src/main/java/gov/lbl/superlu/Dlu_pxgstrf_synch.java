@@ -7,14 +7,20 @@
  */
 package gov.lbl.superlu;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+import static gov.lbl.superlu.Dlu_sp_colorder.sp_colcnt_h;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MAX;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_MIN;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.EMPTY;
 import static gov.lbl.superlu.Dlu_slu_mt_util.Branch;
+import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
 
 import static gov.lbl.superlu.Dlu.printf;
 import static gov.lbl.superlu.Dlu.PRNTlevel;
@@ -25,10 +31,15 @@ import static gov.lbl.superlu.Dlu.DOMAINS;
 import static gov.lbl.superlu.Dlu.stdout;
 import static gov.lbl.superlu.Dlu.fflush;
 import static gov.lbl.superlu.Dlu.PREDICT_OPT;
+import static gov.lbl.superlu.Dlu.POSTORDER;
+import static gov.lbl.superlu.Dlu.CPATH_PRIORITY;
+import static gov.lbl.superlu.Dlu.WORK_STEALING;
+import static gov.lbl.superlu.Dlu.PARK_MILLIS;
+import static gov.lbl.superlu.Dlu.CHK_SCHED;
 
 import static gov.lbl.superlu.Dlu_superlu_timer.SuperLU_timer_;
+import static gov.lbl.superlu.Dlu_pxgstrf_domains.pxgstrf_find_domains;
 
-import static gov.lbl.superlu.Dlu_pmemory.intCalloc;
 import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
 
 
@@ -39,6 +50,9 @@ public class Dlu_pxgstrf_synch {
 	static class queue_t {
 	    int       head, tail, count;
 	    int       queue[];
+	    boolean   ordered;  /* a heap keyed by column, i.e. by postorder */
+	    double    prio[];   /* if not null, the heap is keyed by
+				   decreasing prio[] instead (CPATH_PRIORITY) */
 	}
 
 	enum lu_locks_t {
@@ -100,21 +114,29 @@ public class Dlu_pxgstrf_synch {
 	    int      etree[] = superlumt_options.etree;
 	    int w, dad, ukids, i, j, k, rs, panel_size, relax;
 	    int P, w_top, do_split = 0;
+	    boolean postordered;
 	    panel_t panel_type;
 	    int      panel_histo[] = pxgstrf_shared.Gstat.panel_histo;
 	    int info;
 	    Gstat_t Gstat = pxgstrf_shared.Gstat;
+	    Branch list_head = null;
 
 	    pxgstrf_shared.lu_locks = new Object[lu_locks_t.NO_GLU_LOCKS.ordinal()];
 	    for (i = 0; i < lu_locks_t.NO_GLU_LOCKS.ordinal(); ++i)
 		pxgstrf_shared.lu_locks[i] = new Object();
+	    pxgstrf_shared.park = new Object();
+	    pxgstrf_shared.nparked = 0;
 
 	if ( PRNTlevel==1 ) {
 	    printf(".. ParallelInit() ... nprocs %2d\n", superlumt_options.nprocs);
 	}
 
-	    pxgstrf_shared.spin_locks = intCalloc(n);
+	    pxgstrf_shared.spin_locks = new AtomicIntegerArray(n);
+	if (CHK_SCHED) {
+	    pxgstrf_shared.taken = new AtomicIntegerArray(n);
+	}
 	    pxgstrf_shared.pan_status = new pan_status_t[n+1];
+	    for (i = 0; i <= n; ++i) pxgstrf_shared.pan_status[i] = new pan_status_t();
 	    pxgstrf_shared.fb_cols    = intMalloc(n+1);
 
 	    panel_size = superlumt_options.panel_size;
@@ -123,10 +145,14 @@ public class Dlu_pxgstrf_synch {
 	    for (i = 0; i < w; ++i) panel_histo[i] = 0;
 	    pxgstrf_shared.num_splits = 0;
 
+	    if ( pxgstrf_shared.taskq == null ) pxgstrf_shared.taskq = new queue_t();
 	    if ( (info = queue_init(pxgstrf_shared.taskq, n)) != 0 ) {
 		fprintf(stderr, "ParallelInit(): %d\n", info);
 		SUPERLU_ABORT("queue_init fails.");
 	    }
+	    /* Panels are taken in postorder only if the etree is postordered. */
+	    postordered = superlumt_options.SymmetricMode == NO;
+	    pxgstrf_shared.taskq.ordered = (POSTORDER && postordered) || CPATH_PRIORITY;
 
 	    /* Count children of each node in the etree. */
 	    for (i = 0; i <= n; ++i) pxgstrf_shared.pan_status[i].ukids = 0;
@@ -136,6 +162,12 @@ public class Dlu_pxgstrf_synch {
 	    }
 
 
+	if (DOMAINS) {
+	    /* Choose the subtrees that are factored each by one process. */
+	    list_head = pxgstrf_find_domains(n, pxgstrf_relax, superlumt_options,
+					     pxgstrf_shared);
+	}
+
 	    /* Find the panel partitions and initialize each panel's status */
 
 	if (PROFILE) {
@@ -156,18 +188,18 @@ public class Dlu_pxgstrf_synch {
 		} else {
 		    /* Adjust panel_size so that a panel won't overlap with
 		       the next relaxed snode.     */
-	if (false) {
-		    /* Only works when etree is postordered. */
-		    w = SUPERLU_MIN(panel_size, pxgstrf_relax[rs].fcol - i);
-	} else {
-		    w = panel_size;
-		    for (k = i + 1; k < SUPERLU_MIN(i + panel_size, n); ++k)
-			if ( k == pxgstrf_relax[rs].fcol ) {
-			    w = k - i;  /* panel stops at column k-1 */
-			    break;
-			}
-		    if ( k == n ) w = n - i;
-	}
+		    if ( postordered ) {
+			/* Only works when etree is postordered. */
+			w = SUPERLU_MIN(panel_size, pxgstrf_relax[rs].fcol - i);
+		    } else {
+			w = panel_size;
+			for (k = i + 1; k < SUPERLU_MIN(i + panel_size, n); ++k)
+			    if ( k == pxgstrf_relax[rs].fcol ) {
+				w = k - i;  /* panel stops at column k-1 */
+				break;
+			    }
+			if ( k == n ) w = n - i;
+		    }
 
 	if (SPLIT_TOP) {
 		    if ( do_split == 0 ) {
@@ -178,15 +210,20 @@ public class Dlu_pxgstrf_synch {
 		    	++pxgstrf_shared.num_splits;
 		    }
 	}
-		    for (j = i+1; j < i + w; ++j)
+		    for (j = i+1; j < i + w; ++j) {
 			/* Do not allow panel to cross a branch point in the etree. */
 			if ( pxgstrf_shared.pan_status[j].ukids > 1 ) break;
+	if (DOMAINS) {
+			/* Nor the boundary of a domain. */
+			if ( pxgstrf_shared.in_domain[j] != pxgstrf_shared.in_domain[i] ) break;
+	}
+		    }
 		    w = j - i;    /* j should start a new panel */
 		    panel_type = panel_t.REGULAR_PANEL;
 		    pxgstrf_shared.pan_status[i].state = pipe_state_t.UNREADY;
 	if (DOMAINS) {
-			throw new UnsupportedOperationException();
-//		    if ( in_domain[i] == TREE_DOMAIN ) panel_type = TREE_DOMAIN;
+		    if ( pxgstrf_shared.in_domain[i] == panel_t.TREE_DOMAIN.ordinal() )
+			panel_type = panel_t.TREE_DOMAIN;
 	}
 		}
 
@@ -224,10 +261,17 @@ public class Dlu_pxgstrf_synch {
 	if ( PRNTlevel==1 ) {
 	    printf(".. Split: P %d, #nondomain panels %d\n", P, pxgstrf_shared.tasks_remain);
 	}
-	if (DOMAINS) {
-		throw new UnsupportedOperationException();
-//	    EnqueueDomains(&pxgstrf_shared.taskq, list_head, pxgstrf_shared);
+	if (CPATH_PRIORITY) {
+	    pxgstrf_shared.taskq.prio = BottomLevels(n, pxgstrf_relax, list_head,
+						     superlumt_options, pxgstrf_shared);
+	}
+	if (WORK_STEALING) {
+	    EnqueueLocal(superlumt_options.nprocs, n, pxgstrf_relax, list_head,
+			 superlumt_options, pxgstrf_shared);
 	} else {
+	if (DOMAINS) {
+	    EnqueueDomains(pxgstrf_shared.taskq, list_head, pxgstrf_shared);
+	}
 	    EnqueueRelaxSnode(pxgstrf_shared.taskq, n, pxgstrf_relax, pxgstrf_shared);
 	}
 	if ( PRNTlevel==1 ) {
@@ -249,23 +293,208 @@ public class Dlu_pxgstrf_synch {
 	} /* ParallelInit */
 
 
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * SequentialInit() replaces ParallelInit() for the sequential engine,
+	 * pdgstrf_sequential(). The panels are partitioned as in ParallelInit(),
+	 * but there are no domains and no split panels, and neither the locks,
+	 * the spin locks nor the task queue are set up: the panels are factored
+	 * one after the other in column order by a single thread, so every
+	 * descendant of a panel is done when the panel begins.
+	 *
+	 * tasks_remain counts all the panels and relaxed supernodes.
+	 *
+	 */
+	static
+	int
+	SequentialInit(int n, pxgstrf_relax_t pxgstrf_relax[],
+		       superlumt_options_t superlumt_options,
+		       pxgstrf_shared_t pxgstrf_shared)
+	{
+	    int      etree[] = superlumt_options.etree;
+	    int w, ukids, i, j, k, rs, panel_size, relax;
+	    boolean postordered;
+	    panel_t panel_type;
+	    int      panel_histo[] = pxgstrf_shared.Gstat.panel_histo;
+	    Gstat_t Gstat = pxgstrf_shared.Gstat;
+
+	if ( PRNTlevel==1 ) {
+	    printf(".. SequentialInit() ... nprocs %2d\n", superlumt_options.nprocs);
+	}
+
+	    pxgstrf_shared.sequential = true;
+	    pxgstrf_shared.lu_locks   = null;
+	    pxgstrf_shared.spin_locks = null;
+	    pxgstrf_shared.pan_status = new pan_status_t[n+1];
+	    for (i = 0; i <= n; ++i) pxgstrf_shared.pan_status[i] = new pan_status_t();
+	    pxgstrf_shared.fb_cols    = null;
+
+	    panel_size = superlumt_options.panel_size;
+	    relax = superlumt_options.relax;
+	    w = SUPERLU_MAX(panel_size, relax) + 1;
+	    for (i = 0; i < w; ++i) panel_histo[i] = 0;
+	    pxgstrf_shared.num_splits = 0;
+	    postordered = superlumt_options.SymmetricMode == NO;
+
+	    /* Count children of each node in the etree. */
+	    for (i = 0; i <= n; ++i) pxgstrf_shared.pan_status[i].ukids = 0;
+	    for (i = 0; i < n; ++i) ++pxgstrf_shared.pan_status[etree[i]].ukids;
+
+	if (PROFILE) {
+	    Gstat.num_panels = 0;
+	}
+
+	    pxgstrf_shared.tasks_remain = 0;
+	    rs = 1;   /* index for the next relaxed s-node */
+
+	    for (i = 0; i < n; ) {
+		if ( pxgstrf_relax[rs].fcol == i ) {
+		    w = pxgstrf_relax[rs++].size;
+		    panel_type = panel_t.RELAXED_SNODE;
+		} else {
+		    if ( postordered ) {
+			w = SUPERLU_MIN(panel_size, pxgstrf_relax[rs].fcol - i);
+		    } else {
+			w = panel_size;
+			for (k = i + 1; k < SUPERLU_MIN(i + panel_size, n); ++k)
+			    if ( k == pxgstrf_relax[rs].fcol ) {
+				w = k - i;  /* panel stops at column k-1 */
+				break;
+			    }
+			if ( k == n ) w = n - i;
+		    }
+		    for (j = i+1; j < i + w; ++j)
+			/* Do not allow panel to cross a branch point in the etree. */
+			if ( pxgstrf_shared.pan_status[j].ukids > 1 ) break;
+		    w = j - i;    /* j should start a new panel */
+		    panel_type = panel_t.REGULAR_PANEL;
+		}
+		++pxgstrf_shared.tasks_remain;
+
+		ukids = k = 0;
+		for (j = i; j < i + w; ++j) {
+		    pxgstrf_shared.pan_status[j].size = k--;
+		    pxgstrf_shared.pan_status[j].type = panel_type;
+		    pxgstrf_shared.pan_status[j].state = pipe_state_t.UNREADY;
+		    ukids += pxgstrf_shared.pan_status[j].ukids;
+		}
+		pxgstrf_shared.pan_status[i].size = w; /* leading column */
+		pxgstrf_shared.pan_status[i].ukids = ukids - (w-1);
+		panel_histo[w]++;
+
+	if (PROFILE) {
+		Gstat.panstat[i].size = w;
+		++Gstat.num_panels;
+	}
+
+		i += w;    /* move to the next panel */
+
+	    } /* for i ... */
+
+	    /* Dummy root */
+	    pxgstrf_shared.pan_status[n].size = 1;
+	    pxgstrf_shared.pan_status[n].state = pipe_state_t.UNREADY;
+
+	if ( PRNTlevel==1 ) {
+	    printf(".. # tasks %d\n", pxgstrf_shared.tasks_remain);
+	    fflush(stdout);
+	}
+
+	if (PREDICT_OPT) {
+	    /* Set up structure describing children */
+	    for (i = 0; i <= n; Gstat.cp_firstkid[i++] = EMPTY);
+	    for (i = n-1; i >= 0; i--) {
+		j = etree[i];
+		Gstat.cp_nextkid[i] = Gstat.cp_firstkid[j];
+		Gstat.cp_firstkid[j] = i;
+	    }
+	}
+
+	    return 0;
+	} /* SequentialInit */
+
+
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * BottomLevels() computes the priority of each task for CPATH_PRIORITY:
+	 * its bottom level, i.e. the estimated work on the longest path from the
+	 * task up to the root of the etree, the task included. The work of
+	 * column j is estimated before factorization as colcnt_h[j]^2, as for
+	 * the domains. A panel or relaxed supernode weighs the sum over its
+	 * columns and a domain the sum over its subtree, and it is followed by
+	 * the path from its parent to the root. The tasks on the critical path
+	 * are then taken first, so that fewer processors wait idle for the top
+	 * of the etree at the end of the factorization.
+	 *
+	 * The priority of a task is stored at its leading column, the one that
+	 * is enqueued; for a domain, that is its root.
+	 *
+	 */
+	static
+	double[] BottomLevels(int n, pxgstrf_relax_t pxgstrf_relax[], Branch list_head,
+			      superlumt_options_t superlumt_options,
+			      pxgstrf_shared_t pxgstrf_shared)
+	{
+	    int etree[] = superlumt_options.etree;
+	    int colcnt_h[] = sp_colcnt_h(superlumt_options);
+	    double bl[] = new double[n+1], cw[] = new double[n+1];
+	    int i, j, rs, w;
+	    Branch b;
+
+	    /* cw[j] = work in columns 0:j-1; bl[j] = bottom level of column j. */
+	    for (j = 0; j < n; ++j)
+		cw[j+1] = cw[j] + (double) colcnt_h[j] * colcnt_h[j];
+	    bl[n] = 0.0;
+	    for (j = n-1; j >= 0; --j)   /* etree[j] > j */
+		bl[j] = cw[j+1] - cw[j] + bl[etree[j]];
+
+	    /* A panel is a chain of columns, so bl[] of its leading column is
+	       its bottom level; not so for a relaxed supernode or a domain. */
+	    for (rs = 1; rs <= pxgstrf_relax[0].size; ++rs) {
+		i = pxgstrf_relax[rs].fcol;
+		w = pxgstrf_relax[rs].size;
+		bl[i] = cw[i+w] - cw[i] + bl[etree[i+w-1]];
+	    }
+	    for (b = list_head; b != null; b = b.next)
+		bl[b.root] = cw[b.root+1] - cw[b.first_desc] + bl[etree[b.root]];
+
+	if ( PRNTlevel==1 ) {
+	    for (j = 0, i = 0; j < n; ++j) if ( bl[j] > bl[i] ) i = j;
+	    printf(".. BottomLevels(): critical path %.4e from column %d, total %.4e\n",
+		   bl[i], i, cw[n]);
+	}
+	    return bl;
+	}
+
 	/*
 	 * Free the storage used by the parallel scheduling algorithm.
 	 */
 	static
 	int ParallelFinalize(pxgstrf_shared_t pxgstrf_shared)
 	{
-	    /* Destroy mutexes */
+	    /* Destroy mutexes (none if SequentialInit() was used) */
 	    int i;
-	    for (i = 0; i < lu_locks_t.NO_GLU_LOCKS.ordinal(); ++i)
-	        pxgstrf_shared.lu_locks[i] = null;
+	    if ( pxgstrf_shared.lu_locks != null )
+		for (i = 0; i < lu_locks_t.NO_GLU_LOCKS.ordinal(); ++i)
+		    pxgstrf_shared.lu_locks[i] = null;
 
 	    pxgstrf_shared.lu_locks = null;
+	    pxgstrf_shared.park = null;
 	    pxgstrf_shared.spin_locks = null;
 	    pxgstrf_shared.pan_status = null;
 	    pxgstrf_shared.fb_cols = null;
 	    pxgstrf_shared.Glu.map_in_sup = null;
-	    queue_destroy(pxgstrf_shared.taskq);
+	    if ( pxgstrf_shared.taskq != null )
+		queue_destroy(pxgstrf_shared.taskq);
+	    if ( pxgstrf_shared.deques != null ) {
+		for (i = 0; i < pxgstrf_shared.deques.length; ++i)
+		    queue_destroy(pxgstrf_shared.deques[i]);
+		pxgstrf_shared.deques = null;
+	    }
 
 	if ( PRNTlevel==1 ) {
 	    printf(".. # panel splittings %d\n", pxgstrf_shared.num_splits);
@@ -283,6 +512,8 @@ public class Dlu_pxgstrf_synch {
 	    q.count = 0;
 	    q.head = 0;
 	    q.tail = 0;
+	    q.ordered = false;
+	    q.prio = null;
 
 	    return 0;
 	}
@@ -291,15 +522,37 @@ public class Dlu_pxgstrf_synch {
 	int queue_destroy(queue_t q)
 	{
 	    q.queue = null;
+	    q.prio = null;
 	    return 0;
 	}
 
+	/* Whether item a comes before item b in the heap queue. */
+	static
+	boolean Qbefore(queue_t q, int a, int b)
+	{
+	    if ( q.prio == null || q.prio[a] == q.prio[b] ) return a < b;
+	    return q.prio[a] > q.prio[b];
+	}
+
 	/*
 	 * Return value: number of items in the queue
 	 */
 	static
 	int Enqueue(queue_t q, int item)
 	{
+	    int i, p;
+
+	    if ( q.ordered ) {
+		/* Sift the item up the heap queue[0:count]. */
+		for (i = q.count++; i > 0; i = p) {
+		    p = (i - 1) / 2;
+		    if ( !Qbefore(q, item, q.queue[p]) ) break;
+		    q.queue[i] = q.queue[p];
+		}
+		q.queue[i] = item;
+		q.tail = q.count;
+		return (q.count);
+	    }
 	    q.queue[q.tail++] = item;
 	    ++q.count;
 	    return (q.count);
@@ -312,8 +565,23 @@ public class Dlu_pxgstrf_synch {
 	static
 	int Dequeue(queue_t q, int[] item)
 	{
+	    int i, c, last;
+
 	    if ( q.count <= 0 ) return EMPTY;
 
+	    if ( q.ordered ) {
+		/* Take the first item; sift the last item down. */
+		item[0] = q.queue[0];
+		last = q.queue[--q.count];
+		for (i = 0; (c = 2*i + 1) < q.count; i = c) {
+		    if ( c + 1 < q.count && Qbefore(q, q.queue[c+1], q.queue[c]) ) ++c;
+		    if ( !Qbefore(q, q.queue[c], last) ) break;
+		    q.queue[i] = q.queue[c];
+		}
+		q.queue[i] = last;
+		q.tail = q.count;
+		return (q.count);
+	    }
 	    item[0] = q.queue[q.head++];
 	    --q.count;
 	    return (q.count);
@@ -339,8 +607,11 @@ public class Dlu_pxgstrf_synch {
 	    m = pxgstrf_relax[0].size;
 	    for (rs = 1; rs <= m; ++rs) {
 		j = pxgstrf_relax[rs].fcol;
-		q.queue[q.tail++] = j;
-		q.count++;
+	if (DOMAINS) {
+		/* factored as part of its domain */
+		if ( pxgstrf_shared.in_domain[j] == panel_t.TREE_DOMAIN.ordinal() ) continue;
+	}
+		Enqueue(q, j);
 		++pxgstrf_shared.tasks_remain;
 	    }
 	if ( PRNTlevel==1 ) {
@@ -364,33 +635,246 @@ public class Dlu_pxgstrf_synch {
 		for (b = proc_domains_h[pnum]; b != NULL; ) {*/
 	    b = list_head;
 	    while ( b != null ) {
-		q.queue[q.tail++] = b.root;
-		q.queue[q.tail++] = b.first_desc;
-		q.count = q.count + 2;
+		if ( q.ordered ) {
+		    /* The pair would not stay together in the heap; keep the
+		       first descendant in fb_cols[root], unused for a domain. */
+		    Enqueue(q, b.root);
+		    pxgstrf_shared.fb_cols[b.root] = b.first_desc;
+		} else {
+		    q.queue[q.tail++] = b.root;
+		    q.queue[q.tail++] = b.first_desc;
+		    q.count = q.count + 2;
+		}
 //		STATE ( b.root ) = CANGO;
 		pxgstrf_shared.pan_status[b.root].state = pipe_state_t.CANGO;
 		++pxgstrf_shared.tasks_remain;
 		b = b.next;
 	    }
-	    printf("EnqueueDomains(): count %d\n", q.count);
+	if ( PRNTlevel==1 ) {
+	    printf(".. EnqueueDomains(): count %d\n", q.count);
+	}
+	    return 0;
+	}
+
+	/*
+	 * Seed the work-stealing deques (WORK_STEALING) with the initial
+	 * tasks, the relaxed supernodes and the domains. Taken in column
+	 * order, the tasks are cut into P blocks of about the same estimated
+	 * work, colcnt_h[j]^2 per column, and block p goes to processor p; on
+	 * a postordered etree, the tasks of a block are neighbouring subtrees.
+	 * Each deque is filled so that its owner takes its tasks in increasing
+	 * column order, and the thieves from the other end of its block.
+	 */
+	static
+	int EnqueueLocal(int P, int n, pxgstrf_relax_t pxgstrf_relax[],
+			 Branch list_head, superlumt_options_t superlumt_options,
+			 pxgstrf_shared_t pxgstrf_shared)
+	{
+	    int colcnt_h[] = sp_colcnt_h(superlumt_options);
+	    int seed[] = new int[n], last[] = new int[n];
+	    double tw[] = new double[n], cw = 0, total = 0;
+	    int rs, i, j, p;
+	    Branch b;
+
+	    pxgstrf_shared.deques = new queue_t[P];
+	    for (p = 0; p < P; ++p) {
+		pxgstrf_shared.deques[p] = new queue_t();
+		queue_init(pxgstrf_shared.deques[p], SUPERLU_MAX(1, n / P));
+	    }
+
+	    /* seed[j] = the task whose columns start at column j, or EMPTY,
+	       and last[j] its last column. */
+	    for (j = 0; j < n; ++j) seed[j] = EMPTY;
+	    for (rs = 1; rs <= pxgstrf_relax[0].size; ++rs) {
+		j = pxgstrf_relax[rs].fcol;
+	if (DOMAINS) {
+		/* factored as part of its domain */
+		if ( pxgstrf_shared.in_domain[j] == panel_t.TREE_DOMAIN.ordinal() ) continue;
+	}
+		seed[j] = j;
+		last[j] = j + pxgstrf_relax[rs].size - 1;
+	    }
+	    for (b = list_head; b != null; b = b.next) {
+		/* The first descendant is kept in fb_cols[root], unused for a
+		   domain, as in an ordered queue (see EnqueueDomains()). */
+		seed[b.first_desc] = b.root;
+		last[b.first_desc] = b.root;
+		pxgstrf_shared.fb_cols[b.root] = b.first_desc;
+		pxgstrf_shared.pan_status[b.root].state = pipe_state_t.CANGO;
+	    }
+
+	    for (j = 0; j < n; ++j) {
+		if ( seed[j] == EMPTY ) continue;
+		for (i = j; i <= last[j]; ++i) tw[j] += (double) colcnt_h[i] * colcnt_h[i];
+		total += tw[j];
+	    }
+	    /* The owner pops at the tail, so push in decreasing column order. */
+	    cw = total;
+	    for (j = n-1; j >= 0; --j) {
+		if ( seed[j] == EMPTY ) continue;
+		cw -= tw[j];
+		p = total == 0 ? 0 : SUPERLU_MIN(P - 1, (int) (P * cw / total));
+		PushLocal(pxgstrf_shared.deques[p], seed[j]);
+		++pxgstrf_shared.tasks_remain;
+	    }
+	if ( PRNTlevel==1 ) {
+	    for (p = 0; p < P; ++p)
+		printf(".. EnqueueLocal(): deque %d, count %d\n", p, pxgstrf_shared.deques[p].count);
+	}
 	    return 0;
 	}
 
+	/*
+	 * The work-stealing deques: the owner pushes and pops at the tail, the
+	 * others steal at the head. A deque is circular, grows when it is full,
+	 * and is locked on itself.
+	 *
+	 * Return value: number of items in the deque
+	 */
+	static
+	int PushLocal(queue_t q, int item)
+	{
+	    int queue[], i;
+
+	    synchronized (q) {
+		if ( q.count == q.queue.length ) {
+		    queue = new int[2 * q.queue.length];
+		    for (i = 0; i < q.count; ++i)
+			queue[i] = q.queue[(q.head + i) % q.queue.length];
+		    q.queue = queue;
+		    q.head = 0;
+		    q.tail = q.count;
+		}
+		q.queue[q.tail] = item;
+		q.tail = (q.tail + 1) % q.queue.length;
+		return (++q.count);
+	    }
+	}
+
+	/*
+	 * Return value: >= 0 number of items in the deque
+	 *               = -1 deque is empty
+	 */
+	static
+	int PopLocal(queue_t q, int[] item)
+	{
+	    synchronized (q) {
+		if ( q.count <= 0 ) return EMPTY;
+		q.tail = (q.tail + q.queue.length - 1) % q.queue.length;
+		item[0] = q.queue[q.tail];
+		return (--q.count);
+	    }
+	}
+
+	/*
+	 * Return value: >= 0 number of items in the deque
+	 *               = -1 deque is empty
+	 */
+	static
+	int StealHead(queue_t q, int[] item)
+	{
+	    synchronized (q) {
+		if ( q.count <= 0 ) return EMPTY;
+		item[0] = q.queue[q.head];
+		q.head = (q.head + 1) % q.queue.length;
+		return (--q.count);
+	    }
+	}
+
+	/*
+	 * Wait, for at most PARK_MILLIS, until pxgstrf_unpark() is called:
+	 * a thread that got no panel from the scheduler for a while leaves
+	 * the processor to the others instead of spinning.
+	 */
+	static
+	void pxgstrf_park(final int pnum, pxgstrf_shared_t pxgstrf_shared)
+	{
+	    Object park = pxgstrf_shared.park;
+
+	    if ( park == null ) return;
+	    synchronized (park) {
+		if ( pxgstrf_shared.tasks_remain <= 0 ) return;
+		++pxgstrf_shared.nparked;
+		try {
+		    park.wait(PARK_MILLIS);
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		} finally {
+		    --pxgstrf_shared.nparked;
+		}
+	    }
+	if (PROFILE) {
+	    pxgstrf_shared.Gstat.procstat[pnum].parks++;
+	}
+	}
+
+	/*
+	 * Wake the threads parked by pxgstrf_park(), if any. Called by the
+	 * scheduler once a panel has been queued as ready, or the last one
+	 * taken. nparked is volatile and only changed under park; a thread
+	 * that is just parking when it reads 0 waits PARK_MILLIS at most.
+	 */
+	static
+	void pxgstrf_unpark(pxgstrf_shared_t pxgstrf_shared)
+	{
+	    Object park = pxgstrf_shared.park;
+
+	    if ( park == null || pxgstrf_shared.nparked == 0 ) return;
+	    synchronized (park) {
+		park.notifyAll();
+	    }
+	}
+
+	/*
+	 * Record the first exception thrown by a thread and stop the others:
+	 * no more panels are handed out, parked threads wake up, and threads
+	 * waiting on a busy column give up (await()).
+	 */
+	static
+	void pxgstrf_fail(pxgstrf_shared_t pxgstrf_shared, Throwable e)
+	{
+	    synchronized (pxgstrf_shared) {
+		if ( pxgstrf_shared.failure == null ) pxgstrf_shared.failure = e;
+		pxgstrf_shared.tasks_remain = 0;
+	    }
+	    pxgstrf_unpark(pxgstrf_shared);
+	}
+
+	/*
+	 * Throw again, in the caller of pdgstrf(), the exception recorded by
+	 * pxgstrf_fail(); that of the symbolic stage (PIPELINE_SYMBOLIC)
+	 * comes out of its CompletionException.
+	 */
 	static
-	int NewNsuper(final int pnum, pxgstrf_shared_t pxgstrf_shared, int data[])
+	void pxgstrf_rethrow(pxgstrf_shared_t pxgstrf_shared)
+	{
+	    Throwable e = pxgstrf_shared.failure;
+
+	    if ( e instanceof CompletionException && e.getCause() != null )
+		e = e.getCause();
+	    if ( e instanceof Error ) throw (Error) e;
+	    if ( e instanceof RuntimeException ) throw (RuntimeException) e;
+	    throw new CompletionException(e);
+	}
+
+	static
+	int NewNsuper(final int pnum, pxgstrf_shared_t pxgstrf_shared, GlobalLU_t Glu)
 	{
 	    int i;
 	    double t = 0;
-	    Object lock = pxgstrf_shared.lu_locks[lu_locks_t.NSUPER_LOCK.ordinal()];
+	    Object lock;
 	    Gstat_t Gstat = pxgstrf_shared.Gstat;
 
+	    if ( pxgstrf_shared.sequential ) return ++(Glu.nsuper);
+	    lock = pxgstrf_shared.lu_locks[lu_locks_t.NSUPER_LOCK.ordinal()];
+
 	if (PROFILE) {
 	    t = SuperLU_timer_();
 	}
 
 	    synchronized (lock)
 	    {
-	      i = ++(data[0]);
+	      i = ++(Glu.nsuper);
 	    }
 
 	if (PROFILE) {
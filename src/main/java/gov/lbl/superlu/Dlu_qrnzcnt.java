@@ -13,7 +13,6 @@ import static gov.lbl.superlu.Dlu_pmemory.intCalloc;
 public class Dlu_qrnzcnt {
 
 	private static final int EMPTY = (-1);
-	private static int ROOT;  /* dummy root of the e-tree */
 
 	static
 	int
@@ -21,7 +20,22 @@ public class Dlu_qrnzcnt {
 		int perm[], int invp[], int etpar[], int colcnt_h[],
 		int nlnz[], int part_super_ata[], int part_super_h[])
 	{
-	ROOT = neqns;
+	    return qrnzcnt(neqns, adjlen, xadj, adjncy, zfdperm, perm, invp, etpar,
+			   colcnt_h, nlnz, part_super_ata, part_super_h, null);
+	}
+
+	/*
+	 * As above; if colcnt_r is not null, the column counts of the Cholesky
+	 * factor of A'A (the row counts of R) are also returned in it.
+	 */
+	static
+	int
+	qrnzcnt(int neqns, int adjlen, int xadj[], int adjncy[], int zfdperm[],
+		int perm[], int invp[], int etpar[], int colcnt_h[],
+		int nlnz[], int part_super_ata[], int part_super_h[],
+		int colcnt_r[])
+	{
+	final int ROOT = neqns;  /* dummy root of the e-tree */
 	/*
 	     o 5/20/95 Xiaoye S. Li:
 	         Translated from fcnthn.f using f2c;
@@ -411,6 +425,7 @@ public class Dlu_qrnzcnt {
 		}
 	    }
 	    part_super_ata[xsup] = neqns - xsup;
+	    if ( colcnt_r != null ) System.arraycopy(colcnt, 0, colcnt_r, 0, neqns);
 
 	    /* Fix the supernode partition in H. */
 
@@ -7,6 +7,13 @@
  */
 package gov.lbl.superlu;
 
+import java.util.concurrent.CompletableFuture;
+
+import gov.lbl.superlu.Dlu_autotune.autotune_t;
+import gov.lbl.superlu.Dlu_auto_nprocs.auto_nprocs_t;
+import gov.lbl.superlu.Dlu_pdgsasync.factor_control_t;
+import gov.lbl.superlu.Dlu_pdgspool.pool_job_t;
+import gov.lbl.superlu.Dlu_pdmemory.pdgstrf_work_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
 import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
 import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
@@ -142,6 +149,8 @@ public class Dlu_slu_mt_util {
 	public static final int EMPTY =	(-1);
 	public static final int FALSE =	0;
 	public static final int TRUE =	1;
+	public static final int CANCELLED = Integer.MIN_VALUE; /* info of a cancelled
+								   factorization */
 
 	/**********************
 	  Enumerated constants
@@ -150,7 +159,9 @@ public class Dlu_slu_mt_util {
 	public enum trans_t {NOTRANS, TRANS, CONJ}
 	public enum fact_t {DOFACT, EQUILIBRATE, FACTORED}
 	public enum colperm_t {NATURAL, MMD_ATA, MMD_AT_PLUS_A, COLAMD,
-		      METIS_AT_PLUS_A, PARMETIS, MY_PERMC}
+		      METIS_AT_PLUS_A, PARMETIS, MY_PERMC, ND_ATA, ND_AT_PLUS_A,
+		      AMD_AT_PLUS_A, AUTO}
+	public enum order_criterion_t {FLOPS, MEMORY, CRITICAL_PATH}
 	public enum equed_t {NOEQUIL, ROW, COL, BOTH}
 	public enum MemType {LUSUP, UCOL, LSUB, USUB}
 
@@ -326,6 +337,85 @@ public class Dlu_slu_mt_util {
 		public int  etree[];
 		public int  colcnt_h[];
 		public int  part_super_h[];
+
+	    /* The tuning parameters of this factorization; those of sp_ienv()
+	       if null. */
+		public sp_tuning_t tuning;
+
+	    /* Working storage of pdgstrf_thread() kept by the caller across
+	       factorizations, used if nprocs = 1; allocated per call if null. */
+		public pdgstrf_work_t workspace;
+
+	    /* Factor with the sequential engine whatever Dlu.SEQUENTIAL and
+	       nprocs; see Dlu_pdgstrf_sequential. */
+		public boolean sequential;
+
+	    /* Cancellation, deadline and progress reports of this
+	       factorization; none if null. See Dlu_pdgsasync. */
+		public factor_control_t control;
+
+	    /* The symbolic analysis still running when sp_colorder() returns,
+	       if PIPELINE_SYMBOLIC is set: colcnt_h[] and part_super_h[] may
+	       be read only after sp_symbolic_wait(). Null otherwise. */
+		public CompletableFuture<Void> symbolic;
+
+	    /* The pool that runs the panels of pdgstrf(), with the weight and
+	       priority of this factorization; the pool of pdgspool() if null
+	       and SHARED_POOL is set. See Dlu_pdgspool. */
+		public pool_job_t pool_job;
+	}
+
+	/* The tuning parameters of a factorization, one for each ISPEC of
+	   sp_ienv(); see sp_ienv() for their meaning. A factorization reads
+	   them from its own superlumt_options, so that concurrent ones may use
+	   different values. */
+	public static final class sp_tuning_t {
+		public final int panel_size; /* ISPEC = 1 */
+		public final int relax;      /* 2 */
+		public final int maxsuper;   /* 3 */
+		public final int rowblk;     /* 4 */
+		public final int colblk;     /* 5 */
+		public final int fill_lusup; /* 6 */
+		public final int fill_ucol;  /* 7 */
+		public final int fill_lsub;  /* 8 */
+
+		public sp_tuning_t(int panel_size, int relax, int maxsuper,
+				   int rowblk, int colblk, int fill_lusup,
+				   int fill_ucol, int fill_lsub) {
+			this.panel_size = panel_size;
+			this.relax = relax;
+			this.maxsuper = maxsuper;
+			this.rowblk = rowblk;
+			this.colblk = colblk;
+			this.fill_lusup = fill_lusup;
+			this.fill_ucol = fill_ucol;
+			this.fill_lsub = fill_lsub;
+		}
+
+		/* The value of parameter ISPEC, as sp_ienv(ispec). */
+		public int sp_ienv(int ispec) {
+			switch (ispec) {
+			case 1: return panel_size;
+			case 2: return relax;
+			case 3: return maxsuper;
+			case 4: return rowblk;
+			case 5: return colblk;
+			case 6: return fill_lusup;
+			case 7: return fill_ucol;
+			case 8: return fill_lsub;
+			}
+			return 0;
+		}
+
+		/* The position of the first invalid parameter, or 0. */
+		public int check() {
+			int ispec;
+			for (ispec = 1; ispec <= 5; ++ispec)
+				if ( sp_ienv(ispec) < 1 ) return ispec;
+			for (ispec = 6; ispec <= 8; ++ispec)
+				if ( sp_ienv(ispec) == 0 ) return ispec;
+			return 0;
+		}
 	}
 
 	/* ----------------------------------------------
@@ -343,6 +433,9 @@ public class Dlu_slu_mt_util {
 		public double  spintime;  /* spin-wait time */
 		public int     pruned;
 		public int     unpruned;
+		public int     offdiag_pivots; /* pivots off the diagonal of Pc'*A*Pc */
+		public int     steals;    /* panels taken from another processor's deque */
+		public int     parks;     /* times parked waiting for a panel (PARK_IDLE) */
 	}
 
 
@@ -426,6 +519,17 @@ public class Dlu_slu_mt_util {
 		public int        cp_firstkid[], cp_nextkid[]; /* linked list of children */
 		public int        height[];
 		public float      flops_by_height[];
+		public long       ooc_bytes_written; /* factor bytes written to disk */
+		public double     ooc_write_time;    /* seconds */
+		public long       ooc_bytes_reloaded; /* paged values read back by
+					      the factorization */
+		public long       ooc_peak_resident; /* largest bytes of pages in
+					      memory during it */
+		public long       ooc_bytes_read;    /* factor bytes read by the solve */
+		public double     ooc_read_time;     /* seconds in the streamed passes */
+		public double     ooc_read_stall;    /* part of it waiting for reads */
+		public autotune_t autotune;          /* choice of sp_autotune(), or null */
+		public auto_nprocs_t auto_nprocs;    /* choice of sp_auto_nprocs(), or null */
 	}
 
 	public static class Branch {
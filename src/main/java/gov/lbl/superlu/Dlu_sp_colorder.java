@@ -2,6 +2,11 @@ package gov.lbl.superlu;
 
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t;
@@ -10,11 +15,13 @@ import gov.lbl.superlu.Dlu_supermatrix.NCformat;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
 import static gov.lbl.superlu.Dlu.CHK_COLORDER;
+import static gov.lbl.superlu.Dlu.PIPELINE_SYMBOLIC;
 import static gov.lbl.superlu.Dlu.ZFD_PERM;
 import static gov.lbl.superlu.Dlu.exit;
 import static gov.lbl.superlu.Dlu.fclose;
 import static gov.lbl.superlu.Dlu.fprintf;
 import static gov.lbl.superlu.Dlu.printf;
+import static gov.lbl.superlu.Dlu_dldperm.maxtrans;
 import static gov.lbl.superlu.Dlu_qrnzcnt.qrnzcnt;
 import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
 import static gov.lbl.superlu.Dlu_slu_mt_util.yes_no_t.NO;
@@ -26,6 +33,12 @@ import static gov.lbl.superlu.Dlu_util.print_int_vec;
 import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
 import static gov.lbl.superlu.Dlu_pmemory.intCalloc;
 
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache;
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache_get_analysis;
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache_put_analysis;
+
+import gov.lbl.superlu.Dlu_symbolic_cache.symbolic_entry_t;
+
 
 public class Dlu_sp_colorder {
 
@@ -59,6 +72,11 @@ public class Dlu_sp_colorder {
 	 *       (5) Allocate storage, and compute the column count (colcnt_h) and the
 	 *           supernode partition (part_super_h) for the Householder matrix H.
 	 *
+	 *    If a symbolic cache is installed (see Dlu_symbolic_cache) and
+	 *    options.SymmetricMode = NO, the results of step 2 are looked up by
+	 *    the nonzero pattern of A and the input perm_c[], and stored after
+	 *    they are computed.
+	 *
 	 * Arguments
 	 * =========
 	 *
@@ -95,6 +113,8 @@ public class Dlu_sp_colorder {
 	    int iwork[], post[], iperm[];
 	    int invp[];
 	    int part_super_ata[];
+	    int perm_in[] = null;
+	    symbolic_entry_t cached;
 
 	    n     = A.ncol;
 	    iwork = intMalloc(n+1);
@@ -126,8 +146,30 @@ public class Dlu_sp_colorder {
 		ACstore.colend[perm_c[i]] = Astore.colptr[i+1];
 	    }
 
+	    if ( refact == NO && options.SymmetricMode == NO && symbolic_cache != null ) {
+		cached = symbolic_cache_get_analysis(symbolic_cache, A, perm_c);
+		if ( cached != null ) {
+		    /* Re-use the postordered perm_c and the structures of H. */
+		    options.etree = intMalloc(n);
+		    options.colcnt_h = intMalloc(n);
+		    options.part_super_h = intMalloc(n);
+		    System.arraycopy(cached.etree, 0, options.etree, 0, n);
+		    System.arraycopy(cached.colcnt_h, 0, options.colcnt_h, 0, n);
+		    System.arraycopy(cached.part_super_h, 0, options.part_super_h, 0, n);
+		    System.arraycopy(cached.perm_c, 0, perm_c, 0, n);
+		    for (i = 0; i < n; i++) {
+			ACstore.colbeg[perm_c[i]] = Astore.colptr[i];
+			ACstore.colend[perm_c[i]] = Astore.colptr[i+1];
+		    }
+		    return;
+		}
+		perm_in = new int[n];
+		System.arraycopy(perm_c, 0, perm_in, 0, n);
+	    }
+
 	    if ( refact == NO ) {
 
+		options.symbolic = null;
 		options.etree = etree = intMalloc(n);
 		options.colcnt_h = colcnt_h = intMalloc(n);
 		options.part_super_h = part_super_h = intMalloc(n);
@@ -171,52 +213,127 @@ public class Dlu_sp_colorder {
 		    for (i = 0; i < n; ++i) perm_c[i] = iwork[i];
 		    for (i = 0; i < n; ++i) invp[perm_c[i]] = i; /* inverse of perm_c*/
 
-		    iperm = post;
+		    if ( PIPELINE_SYMBOLIC ) {
+			/* Let the numeric factorization of the leaves start
+			   while the counts are computed. */
+			final int fn = n, fnnz = nnz, fpost[] = post, finvp[] = invp;
+			final int fperm_c[] = perm_c, fetree[] = etree, fcolcnt_h[] = colcnt_h;
+			final int fpart_super_ata[] = part_super_ata, fpart_super_h[] = part_super_h;
+			final int fperm_in[] = perm_in, fiwork[] = iwork;
+			final SuperMatrix fA = A;
+			options.symbolic = CompletableFuture.runAsync(new Runnable() {
+			    public void run() {
+				sp_colorder_counts(fA, fn, fnnz, fpost, finvp, fperm_c, fetree,
+						   fcolcnt_h, fpart_super_ata, fpart_super_h,
+						   fperm_in, fiwork);
+			    }
+			}, symbolic_executor());
+		    } else {
+			sp_colorder_counts(A, n, nnz, post, invp, perm_c, etree, colcnt_h,
+					   part_super_ata, part_super_h, perm_in, iwork);
+		    }
+
+		}
+
+	    } /* if refact == NO */
+
+	}
+
+	/*
+	 * Step 2 (5) of sp_colorder(): the row and column counts of H and its
+	 * supernode partition, stored in colcnt_h[] and part_super_h[], and
+	 * in the symbolic cache if perm_in is not null.
+	 */
+	static
+	void
+	sp_colorder_counts(SuperMatrix A, int n, int nnz, int post[], int invp[],
+			   int perm_c[], int etree[], int colcnt_h[],
+			   int part_super_ata[], int part_super_h[], int perm_in[],
+			   int iwork[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int i, iperm[], nlnz[] = new int[1];
+
+	    iperm = post;
 
 	if (ZFD_PERM) {
-		    /* Permute the rows of AC to have zero-free diagonal. */
-		    printf("** Permute the rows to have zero-free diagonal....\n");
-		    for (i = 0; i < n; ++i)
-			iwork[i] = ACstore.colend[i] - ACstore.colbeg[i];
-		    throw new UnsupportedOperationException();
-//		    zfdperm(n, nnz, ACstore.rowind, ACstore.colbeg, iwork, iperm);
+	    /* Permute the rows of AC to have zero-free diagonal. */
+	    printf("** Permute the rows to have zero-free diagonal....\n");
+	    /* iperm[i] is the column of A matched to row i. */
+	    if ( maxtrans(n, n, Astore.colptr, null, Astore.rowind, iwork,
+			  iperm) < n )
+		for (i = 0; i < n; ++i) iperm[i] = i;  /* structurally singular */
 	} else {
-		    for (i = 0; i < n; ++i) iperm[i] = i;
+	    for (i = 0; i < n; ++i) iperm[i] = i;
 	}
 
-		    /* NOTE: iperm is returned as column permutation so that
-		     * the diagonal is nonzero. Since a symmetric permutation
-		     * preserves the diagonal, we can do the following:
-		     *     P'(AP')P = P'A
-		     * That is, we apply the inverse of iperm to rows of A
-		     * to get zero-free diagonal. But since iperm is defined
-		     * in MC21A inversely as our definition of permutation,
-		     * so it is indeed an inverse for our purpose. We can
-		     * apply it directly.
-		     */
-
-		    /* Determine the row and column counts in the QR factor. */
-		    qrnzcnt(n, nnz, Astore.colptr, Astore.rowind, iperm,
-			    invp, perm_c, etree, colcnt_h, nlnz,
-			    part_super_ata, part_super_h);
-
-	if (false) {
-		    dCheckZeroDiagonal(n, ACstore.rowind, ACstore.colbeg,
-				       ACstore.colend, iperm);
-		    dPrintSuperPart("Hpart", n, part_super_h);
-		    exit(0);
-		    print_int_vec("iperm", n, iperm);
-	}
+	    /* NOTE: iperm is returned as column permutation so that
+	     * the diagonal is nonzero. Since a symmetric permutation
+	     * preserves the diagonal, we can do the following:
+	     *     P'(AP')P = P'A
+	     * That is, we apply the inverse of iperm to rows of A
+	     * to get zero-free diagonal. But since iperm is defined
+	     * in MC21A inversely as our definition of permutation,
+	     * so it is indeed an inverse for our purpose. We can
+	     * apply it directly.
+	     */
+
+	    /* Determine the row and column counts in the QR factor. */
+	    qrnzcnt(n, nnz, Astore.colptr, Astore.rowind, iperm,
+		    invp, perm_c, etree, colcnt_h, nlnz,
+		    part_super_ata, part_super_h);
 
 	if (CHK_COLORDER) {
-		    print_int_vec("Pc*post:", n, perm_c);
-		    dcheck_perm("final perm_c", n, perm_c);
+	    print_int_vec("Pc*post:", n, perm_c);
+	    dcheck_perm("final perm_c", n, perm_c);
 	}
 
-		}
+	    if ( perm_in != null )
+		symbolic_cache_put_analysis(symbolic_cache, A, perm_in, perm_c,
+					    etree, colcnt_h, part_super_h);
 
-	    } /* if refact == NO */
+	}
+
+	/* Threads of the symbolic analysis run ahead of the numeric
+	   factorization (PIPELINE_SYMBOLIC). */
+	static ExecutorService symbolic_executor;
+
+	static synchronized
+	Executor
+	symbolic_executor()
+	{
+	    if ( symbolic_executor == null )
+		symbolic_executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		    public Thread newThread(Runnable r) {
+			Thread thr = new Thread(r, "superlu-symbolic");
+			thr.setDaemon(true);
+			return thr;
+		    }
+		});
+	    return symbolic_executor;
+	}
 
+	/*
+	 * Wait for the symbolic analysis started by sp_colorder() with
+	 * PIPELINE_SYMBOLIC, if any: colcnt_h[] and part_super_h[] are then
+	 * set, and so is the layout of lusup[] for the supernodes of H (see
+	 * dPresetMap()). Returns at once when the analysis is done.
+	 */
+	public static
+	void
+	sp_symbolic_wait(superlumt_options_t options)
+	{
+	    CompletableFuture<Void> symbolic = options.symbolic;
+	    if ( symbolic != null ) symbolic.join();
+	}
+
+	/* colcnt_h[], once computed. */
+	static
+	int[]
+	sp_colcnt_h(superlumt_options_t options)
+	{
+	    sp_symbolic_wait(options);
+	    return options.colcnt_h;
 	}
 
 	static
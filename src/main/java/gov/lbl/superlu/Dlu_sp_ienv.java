@@ -1,5 +1,8 @@
 package gov.lbl.superlu;
 
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.superlumt_options_t;
+
 import static gov.lbl.superlu.Dlu_xerbla_.xerbla_;
 
 
@@ -84,4 +87,19 @@ public class Dlu_sp_ienv {
 
 	} /* sp_ienv_ */
 
+	/* The parameters of sp_ienv(), the default tuning. */
+	public static final sp_tuning_t SP_IENV_TUNING =
+		new sp_tuning_t(sp_ienv(1), sp_ienv(2), sp_ienv(3), sp_ienv(4),
+				sp_ienv(5), sp_ienv(6), sp_ienv(7), sp_ienv(8));
+
+	/* The tuning of a factorization: that of its options, or the default. */
+	public static
+	sp_tuning_t
+	sp_tuning(superlumt_options_t superlumt_options)
+	{
+	    if ( superlumt_options == null || superlumt_options.tuning == null )
+		return SP_IENV_TUNING;
+	    return superlumt_options.tuning;
+	}
+
 }
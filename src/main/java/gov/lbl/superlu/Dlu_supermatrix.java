@@ -1,5 +1,9 @@
 package gov.lbl.superlu;
 
+import gov.lbl.superlu.Dlu_lustore.dstore_t;
+import gov.lbl.superlu.Dlu_lustore.istore_t;
+import gov.lbl.superlu.Dlu_pdooc.ooc_file_t;
+
 public class Dlu_supermatrix {
 
 	/********************************************
@@ -15,7 +19,8 @@ public class Dlu_supermatrix {
 	    SLU_SCP,   /* supernode, column-wise, permuted */
 	    SLU_SR,    /* row-wise, supernode */
 	    SLU_DN,     /* Fortran style column-wise storage for dense matrix */
-	    SLU_NR_loc  /* distributed compressed row format  */
+	    SLU_NR_loc, /* distributed compressed row format  */
+	    SLU_SCLU    /* supernode, L and U packed together in solve order */
 	}
 
 	public enum Dtype_t {
@@ -133,6 +138,8 @@ public class Dlu_supermatrix {
 			        nzval_colptr[], rowind_colptr[], col_to_sup and
 			        sup_to_col[] have ncol+1 entries, the last one
 			        pointing beyond the last column.         */
+		public dstore_t nzval_store;  /* if not null, the values live off-heap
+				   here and nzval[] is null; see Dlu_lustore */
 	}
 
 	/* Stype == SLU_NCP */
@@ -150,6 +157,33 @@ public class Dlu_supermatrix {
 			     The consecutive columns of the nonzeros may not be
 			     contiguous in storage, because the matrix has been
 			     postmultiplied by a column permutation matrix. */
+		public dstore_t nzval_store;/* if not null, the values live off-heap
+			     here and nzval[] is null; see Dlu_lustore */
+	}
+
+	/* Stype == SLU_SCLU */
+	public static class SCLUformat {
+		public int    nnz;	     /* number of nonzeros in L and U */
+		public int    nsuper;     /* number of supernodes, minus 1 */
+		public int    sup_to_col[];/* sup_to_col[s] is the first column of the s-th
+				supernode; nsuper+2 entries */
+		public long   nzval_supptr[];/* nzval_supptr[s] points to the values of the
+				s-th supernode in nzval[]; nsuper+2 entries */
+		public long   index_supptr[];/* index_supptr[s] points to the subscripts of
+				the s-th supernode in index[]; nsuper+2 entries */
+		public double nzval[];    /* values, supernode by supernode:
+				   the dense nsupr-by-nsupc L block (including the
+				   diagonal block of U), followed by the U entries
+				   of the supernode's columns, column by column */
+		public int    index[];    /* subscripts, supernode by supernode:
+				   nsupr, nsupc, the nsupr row subscripts of L,
+				   nsupc+1 pointers to the U columns relative to
+				   the U values of the supernode, and the row
+				   subscripts of those U entries */
+		public dstore_t nzval_store; /* if not null, nzval[] is null and */
+		public istore_t index_store; /* the arrays live off-heap here */
+		public ooc_file_t ooc_file;  /* if not null, the records are on disk;
+				   see Dlu_pdooc */
 	}
 
 	/* Stype == SLU_DN */
@@ -0,0 +1,450 @@
+/*
+ * Cache of the symbolic analysis keyed by the sparsity pattern of A.
+ *
+ * Purpose
+ * =======
+ *
+ * The column ordering computed by get_perm_c() and the symbolic analysis
+ * performed by sp_colorder() (column etree, postorder and qrnzcnt()) depend
+ * only on the nonzero structure of A. When matrices with the same pattern
+ * are factored repeatedly, possibly in different runs, these results can
+ * be re-used.
+ *
+ * A symbolic_cache_t (the "SymbolicCache") holds two kinds of entries,
+ * both keyed by a fingerprint of (n, colptr, rowind):
+ *
+ *    1. ordering entries, additionally keyed by ispec and the settings
+ *       that change the result of get_perm_c() (ZFD_PERM, DENSE_ROW_RATIO,
+ *       ND_LEAF_SIZE, AMD_DENSE, AMD_AGGRESSIVE and, for ispec 7, the
+ *       AUTO_ORDER_* choices), which hold the perm_c[] it returned;
+ *    2. analysis entries, additionally keyed by the input perm_c[] of
+ *       sp_colorder() and ZFD_PERM, which hold the postordered perm_c[],
+ *       etree[], colcnt_h[] and part_super_h[].
+ *
+ * Entries are kept in memory with LRU eviction. If a spill directory is
+ * given, every entry is also written there, and entries that are not in
+ * memory are looked up on disk before reporting a miss. An entry read
+ * from disk is used only if its sizes and fingerprint are those of A and
+ * its vectors hold valid permutations, tree and counts of order n.
+ *
+ * The cache is enabled by installing it in the static field
+ * symbolic_cache, e.g.
+ *
+ *     Dlu_symbolic_cache.symbolic_cache =
+ *         symbolic_cache_create(16, "/var/tmp/slu_symbolic");
+ *
+ */
+package gov.lbl.superlu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.AMD_AGGRESSIVE;
+import static gov.lbl.superlu.Dlu.AMD_DENSE;
+import static gov.lbl.superlu.Dlu.AUTO_ORDER_CRITERION;
+import static gov.lbl.superlu.Dlu.AUTO_ORDER_SPECS;
+import static gov.lbl.superlu.Dlu.DENSE_ROW_RATIO;
+import static gov.lbl.superlu.Dlu.ND_LEAF_SIZE;
+import static gov.lbl.superlu.Dlu.ZFD_PERM;
+import static gov.lbl.superlu.Dlu.fprintf;
+import static gov.lbl.superlu.Dlu.printf;
+import static gov.lbl.superlu.Dlu.stderr;
+
+
+public class Dlu_symbolic_cache {
+
+	/* Magic number at the head of a spilled entry. */
+	static final int SYMBOLIC_MAGIC = 0x534c5553;
+
+	/* The process-wide cache; caching is disabled while it is null. */
+	public static symbolic_cache_t symbolic_cache = null;
+
+	public static class symbolic_entry_t {
+		int  n;
+		int  nnz;
+		long fp1;          /* two independent hashes of the pattern */
+		long fp2;
+		int  perm_in[];    /* analysis entries: perm_c[] on input */
+		public int  perm_c[];
+		public int  etree[];
+		public int  colcnt_h[];
+		public int  part_super_h[];
+	}
+
+	public static class symbolic_cache_t {
+		int    capacity;
+		File   spill_dir;
+		LinkedHashMap<String, symbolic_entry_t> lru;
+		public int hits;
+		public int misses;
+		public int disk_hits;
+	}
+
+	public static
+	symbolic_cache_t
+	symbolic_cache_create(final int capacity, String spill_dir)
+	{
+	/*
+	 * Purpose
+	 * =======
+	 *
+	 * symbolic_cache_create() allocates a cache holding at most capacity
+	 * entries in memory. If spill_dir is not null, entries are also
+	 * written to that directory, which is created if necessary.
+	 *
+	 */
+	    symbolic_cache_t cache = new symbolic_cache_t();
+
+	    cache.capacity = capacity < 1 ? 1 : capacity;
+	    cache.lru = new LinkedHashMap<String, symbolic_entry_t>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, symbolic_entry_t> eldest) {
+		    return size() > capacity;
+		}
+	    };
+	    if ( spill_dir != null ) {
+		cache.spill_dir = new File(spill_dir);
+		if ( !cache.spill_dir.isDirectory() && !cache.spill_dir.mkdirs() ) {
+		    fprintf(stderr, "symbolic cache: cannot create %s; spilling disabled.\n",
+			    spill_dir);
+		    cache.spill_dir = null;
+		}
+	    }
+	    return cache;
+	}
+
+	/*
+	 * Compute two independent 64-bit hashes of the pattern (n, colptr, rowind).
+	 */
+	public static
+	void
+	symbolic_fingerprint(int n, int nnz, int colptr[], int rowind[], long fp[])
+	{
+	    long h1 = 0xcbf29ce484222325L, h2 = n;
+	    int i, v;
+
+	    for (i = 0; i <= n + nnz; ++i) {
+		v = i <= n ? colptr[i] : rowind[i - n - 1];
+		h1 = (h1 ^ v) * 0x100000001b3L;
+		h2 += (v + 1) * 0x9e3779b97f4a7c15L;
+		h2 = Long.rotateLeft(h2, 31) * 0xbf58476d1ce4e5b9L;
+	    }
+	    fp[0] = h1 ^ nnz;
+	    fp[1] = h2 ^ (h2 >>> 29);
+	}
+
+	static
+	long
+	perm_hash(int n, int perm[])
+	{
+	    long h = 0xcbf29ce484222325L;
+	    for (int i = 0; i < n; ++i) h = (h ^ perm[i]) * 0x100000001b3L;
+	    return h;
+	}
+
+	/* Hash of ispec and of the settings that change get_perm_c(ispec). */
+	static
+	long
+	order_hash(int ispec)
+	{
+	    long h = 0xcbf29ce484222325L;
+	    int i;
+
+	    h = (h ^ ispec) * 0x100000001b3L;
+	    h = (h ^ (ZFD_PERM ? 1 : 0)) * 0x100000001b3L;
+	    h = (h ^ Double.doubleToLongBits(DENSE_ROW_RATIO)) * 0x100000001b3L;
+	    h = (h ^ ND_LEAF_SIZE) * 0x100000001b3L;
+	    h = (h ^ Double.doubleToLongBits(AMD_DENSE)) * 0x100000001b3L;
+	    h = (h ^ (AMD_AGGRESSIVE ? 1 : 0)) * 0x100000001b3L;
+	    if ( ispec == 7 ) {
+		for (i = 0; i < AUTO_ORDER_SPECS.length; ++i)
+		    h = (h ^ AUTO_ORDER_SPECS[i]) * 0x100000001b3L;
+		h = (h ^ AUTO_ORDER_CRITERION.ordinal()) * 0x100000001b3L;
+	    }
+	    return h;
+	}
+
+	/* Hash of the input perm_c[] of sp_colorder() and ZFD_PERM. */
+	static
+	long
+	analysis_hash(int n, int perm[])
+	{
+	    return (perm_hash(n, perm) ^ (ZFD_PERM ? 1 : 0)) * 0x100000001b3L;
+	}
+
+	static
+	String
+	symbolic_key(long fp[], char kind, long sub)
+	{
+	    return String.format("%016x%016x%c%016x", fp[0], fp[1], kind, sub);
+	}
+
+	/*
+	 * Return the cached ordering of A for ordering ispec, or null.
+	 */
+	public static
+	int[]
+	symbolic_cache_get_perm(symbolic_cache_t cache, int ispec, SuperMatrix A)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    long fp[] = new long[2];
+	    symbolic_entry_t e;
+
+	    symbolic_fingerprint(A.ncol, Astore.nnz, Astore.colptr, Astore.rowind, fp);
+	    e = symbolic_cache_lookup(cache, symbolic_key(fp, 'o', order_hash(ispec)),
+				      A.ncol, Astore.nnz, fp);
+	    return e == null ? null : e.perm_c;
+	}
+
+	public static
+	void
+	symbolic_cache_put_perm(symbolic_cache_t cache, int ispec, SuperMatrix A,
+				int perm_c[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    long fp[] = new long[2];
+	    symbolic_entry_t e = new symbolic_entry_t();
+
+	    symbolic_fingerprint(A.ncol, Astore.nnz, Astore.colptr, Astore.rowind, fp);
+	    e.n = A.ncol;
+	    e.nnz = Astore.nnz;
+	    e.fp1 = fp[0];
+	    e.fp2 = fp[1];
+	    e.perm_c = Arrays.copyOf(perm_c, A.ncol);
+	    symbolic_cache_insert(cache, symbolic_key(fp, 'o', order_hash(ispec)), e);
+	}
+
+	/*
+	 * Return the cached result of sp_colorder() for A and the input
+	 * ordering perm_c[], or null.
+	 */
+	public static
+	symbolic_entry_t
+	symbolic_cache_get_analysis(symbolic_cache_t cache, SuperMatrix A, int perm_c[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    long fp[] = new long[2];
+	    symbolic_entry_t e;
+
+	    symbolic_fingerprint(A.ncol, Astore.nnz, Astore.colptr, Astore.rowind, fp);
+	    e = symbolic_cache_lookup(cache, symbolic_key(fp, 'a', analysis_hash(A.ncol, perm_c)),
+				      A.ncol, Astore.nnz, fp);
+	    if ( e != null && !Arrays.equals(e.perm_in, perm_c) ) {
+		synchronized (cache) {
+		    --cache.hits;
+		    ++cache.misses;
+		}
+		return null;
+	    }
+	    return e;
+	}
+
+	public static
+	void
+	symbolic_cache_put_analysis(symbolic_cache_t cache, SuperMatrix A,
+				    int perm_in[], int perm_c[], int etree[],
+				    int colcnt_h[], int part_super_h[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol;
+	    long fp[] = new long[2];
+	    symbolic_entry_t e = new symbolic_entry_t();
+
+	    symbolic_fingerprint(n, Astore.nnz, Astore.colptr, Astore.rowind, fp);
+	    e.n = n;
+	    e.nnz = Astore.nnz;
+	    e.fp1 = fp[0];
+	    e.fp2 = fp[1];
+	    e.perm_in = Arrays.copyOf(perm_in, n);
+	    e.perm_c = Arrays.copyOf(perm_c, n);
+	    e.etree = Arrays.copyOf(etree, n);
+	    e.colcnt_h = Arrays.copyOf(colcnt_h, n);
+	    e.part_super_h = Arrays.copyOf(part_super_h, n);
+	    symbolic_cache_insert(cache, symbolic_key(fp, 'a', analysis_hash(n, perm_in)), e);
+	}
+
+	static
+	symbolic_entry_t
+	symbolic_cache_lookup(symbolic_cache_t cache, String key, int n, int nnz,
+			      long fp[])
+	{
+	    symbolic_entry_t e;
+
+	    synchronized (cache) {
+		e = cache.lru.get(key);
+	    }
+	    if ( e == null && cache.spill_dir != null ) {
+		e = symbolic_cache_read(new File(cache.spill_dir, key + ".sym"), n, nnz);
+		if ( e != null ) {
+		    synchronized (cache) {
+			cache.lru.put(key, e);
+			++cache.disk_hits;
+		    }
+		}
+	    }
+	    synchronized (cache) {
+		if ( e == null || e.n != n || e.nnz != nnz
+		     || e.fp1 != fp[0] || e.fp2 != fp[1] ) {
+		    ++cache.misses;
+		    return null;
+		}
+		++cache.hits;
+	    }
+	    return e;
+	}
+
+	static
+	void
+	symbolic_cache_insert(symbolic_cache_t cache, String key, symbolic_entry_t e)
+	{
+	    synchronized (cache) {
+		cache.lru.put(key, e);
+	    }
+	    if ( cache.spill_dir != null )
+		symbolic_cache_write(new File(cache.spill_dir, key + ".sym"), e);
+	}
+
+	static
+	void
+	symbolic_cache_write(File f, symbolic_entry_t e)
+	{
+	    File tmp = new File(f.getPath() + ".tmp");
+	    DataOutputStream out = null;
+
+	    try {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		out.writeInt(SYMBOLIC_MAGIC);
+		out.writeInt(e.n);
+		out.writeInt(e.nnz);
+		out.writeLong(e.fp1);
+		out.writeLong(e.fp2);
+		write_int_vec(out, e.perm_in);
+		write_int_vec(out, e.perm_c);
+		write_int_vec(out, e.etree);
+		write_int_vec(out, e.colcnt_h);
+		write_int_vec(out, e.part_super_h);
+		out.close();
+		out = null;
+		/* Rename so that concurrent readers never see a partial entry. */
+		if ( !tmp.renameTo(f) ) tmp.delete();
+	    } catch (IOException ex) {
+		fprintf(stderr, "symbolic cache: cannot write %s: %s\n", f, ex.getMessage());
+		tmp.delete();
+	    } finally {
+		if ( out != null ) try { out.close(); } catch (IOException ex) { }
+	    }
+	}
+
+	/*
+	 * Read the entry spilled to f for a matrix of order n with nnz
+	 * nonzeros; null if there is none or it is not valid for such a
+	 * matrix.
+	 */
+	static
+	symbolic_entry_t
+	symbolic_cache_read(File f, int n, int nnz)
+	{
+	    symbolic_entry_t e;
+	    DataInputStream in = null;
+
+	    if ( !f.isFile() ) return null;
+	    try {
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+		if ( in.readInt() != SYMBOLIC_MAGIC ) return null;
+		e = new symbolic_entry_t();
+		e.n = in.readInt();
+		e.nnz = in.readInt();
+		if ( e.n != n || e.nnz != nnz ) return null;
+		e.fp1 = in.readLong();
+		e.fp2 = in.readLong();
+		e.perm_in = read_int_vec(in, n, 0, n-1);
+		e.perm_c = read_int_vec(in, n, 0, n-1);
+		e.etree = read_int_vec(in, n, 0, n);
+		e.colcnt_h = read_int_vec(in, n, 0, n);
+		e.part_super_h = read_int_vec(in, n, 0, n);
+		if ( e.perm_c == null || !is_perm(n, e.perm_c)
+		     || (e.perm_in != null && !is_perm(n, e.perm_in)) )
+		    throw new IOException("not a permutation");
+		if ( e.perm_in != null
+		     && (e.etree == null || e.colcnt_h == null || e.part_super_h == null) )
+		    throw new IOException("incomplete analysis");
+		return e;
+	    } catch (IOException ex) {
+		fprintf(stderr, "symbolic cache: cannot read %s: %s\n", f, ex.getMessage());
+		return null;
+	    } finally {
+		if ( in != null ) try { in.close(); } catch (IOException ex) { }
+	    }
+	}
+
+	static
+	void
+	write_int_vec(DataOutputStream out, int vec[]) throws IOException
+	{
+	    if ( vec == null ) {
+		out.writeInt(-1);
+		return;
+	    }
+	    out.writeInt(vec.length);
+	    for (int i = 0; i < vec.length; ++i) out.writeInt(vec[i]);
+	}
+
+	/* Read a vector written by write_int_vec(): null, or n entries in
+	   lo:hi; anything else is an IOException. */
+	static
+	int[]
+	read_int_vec(DataInputStream in, int n, int lo, int hi) throws IOException
+	{
+	    int i, len = in.readInt();
+	    int vec[];
+
+	    if ( len == -1 ) return null;
+	    if ( len != n ) throw new IOException("vector of length " + len + ", not " + n);
+	    vec = new int[len];
+	    for (i = 0; i < len; ++i) {
+		vec[i] = in.readInt();
+		if ( vec[i] < lo || vec[i] > hi )
+		    throw new IOException("entry " + vec[i] + " out of " + lo + ":" + hi);
+	    }
+	    return vec;
+	}
+
+	/* Whether perm[0:n-1], with entries in 0:n-1, is a permutation. */
+	static
+	boolean
+	is_perm(int n, int perm[])
+	{
+	    boolean seen[] = new boolean[n];
+
+	    for (int i = 0; i < n; ++i) {
+		if ( seen[perm[i]] ) return false;
+		seen[perm[i]] = true;
+	    }
+	    return true;
+	}
+
+	public static
+	void
+	symbolic_cache_print(symbolic_cache_t cache)
+	{
+	    synchronized (cache) {
+		printf("Symbolic cache: %d entries, %d hits (%d from disk), %d misses\n",
+		       cache.lru.size(), cache.hits, cache.disk_hits, cache.misses);
+	    }
+	}
+
+}
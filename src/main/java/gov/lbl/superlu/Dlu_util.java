@@ -7,6 +7,8 @@
  */
 package gov.lbl.superlu;
 
+import java.util.Arrays;
+
 import gov.lbl.superlu.Dlu_pdsp_defs.GlobalLU_t;
 import gov.lbl.superlu.Dlu_pdsp_defs.pxgstrf_shared_t;
 import gov.lbl.superlu.Dlu_slu_mt_util.Gstat_t;
@@ -17,18 +19,19 @@ import gov.lbl.superlu.Dlu_slu_mt_util.procstat_t;
 import gov.lbl.superlu.Dlu_supermatrix.DNformat;
 import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
 import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCLUformat;
 import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
 import gov.lbl.superlu.Dlu_supermatrix.SCformat;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
 import static gov.lbl.superlu.Dlu.DEBUGlevel;
+import static gov.lbl.superlu.Dlu.DOMAINS;
 import static gov.lbl.superlu.Dlu.GEMV2;
 import static gov.lbl.superlu.Dlu.PREDICT_OPT;
 import static gov.lbl.superlu.Dlu.PRNTlevel;
 import static gov.lbl.superlu.Dlu.PROFILE;
 import static gov.lbl.superlu.Dlu.SCATTER_FOUND;
 import static gov.lbl.superlu.Dlu.USE_VENDOR_BLAS;
-import static gov.lbl.superlu.Dlu.exit;
 import static gov.lbl.superlu.Dlu.fflush;
 import static gov.lbl.superlu.Dlu.fprintf;
 import static gov.lbl.superlu.Dlu.printf;
@@ -50,17 +53,23 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.how_selected_t.PIPE;
 import static gov.lbl.superlu.Dlu_pmemory.intCalloc;
 import static gov.lbl.superlu.Dlu_pmemory.intMalloc;
 import static gov.lbl.superlu.Dlu_pdmemory.doubleMalloc;
+import static gov.lbl.superlu.Dlu_pdooc.ooc_close;
 
 
 
 
 public class Dlu_util {
 
+	/*
+	 * Print msg and throw. The C library ends the process here, but the
+	 * VM is the caller's: an abort in a thread of pdgstrf() is thrown again
+	 * in the caller of pdgstrf() (pxgstrf_fail()).
+	 */
 	static
 	void superlu_abort_and_exit(String msg)
 	{
 	    fprintf(stderr, msg);
-	    exit (-1);
+	    throw new IllegalStateException(msg.trim());
 	}
 
 	/* Deallocate the structure pointing to the actual storage of the matrix. */
@@ -116,6 +125,30 @@ public class Dlu_util {
 	}
 	}
 
+	/*
+	 * A is of type Stype==SCLU. If its values are in a factor file, the
+	 * file is closed, and deleted unless it was persisted (ooc_persist).
+	 */
+	public static
+	void
+	Destroy_SuperNode_SCLU(SuperMatrix A)
+	{
+	    SCLUformat Astore = (SCLUformat) A.Store;
+	    if ( Astore.ooc_file != null ) ooc_close(Astore.ooc_file);
+	    Astore.ooc_file = null;
+	    Astore.nzval = null;
+	    Astore.index = null;
+	    Astore.nzval_store = null;
+	    Astore.index_store = null;
+	    Astore.nzval_supptr = null;
+	    Astore.index_supptr = null;
+	    Astore.sup_to_col = null;
+	    A.Store = null;
+	if ( PRNTlevel==1 ) {
+	    printf(".. Destroy_SuperNode_SCLU ...\n");
+	}
+	}
+
 	/* A is of type Stype==SC */
 	static
 	void
@@ -158,13 +191,14 @@ public class Dlu_util {
 	 */
 	static
 	void
-	pxgstrf_resetrep_col(final int nseg, final int segrep[], int repfnz[])
+	pxgstrf_resetrep_col(final int nseg, final int segrep[], int repfnz[],
+			     int repfnz_offset)
 	{
 	    int i, irep;
 
 	    for (i = 0; i < nseg; ++i) {
 		irep = segrep[i];
-		repfnz[irep] = EMPTY;
+		repfnz[repfnz_offset+irep] = EMPTY;
 	    }
 	}
 
@@ -207,7 +241,7 @@ public class Dlu_util {
 		    jlen--;
 		}
 		irep = SUPER_REP(xsup_end, i);
-		if ( SINGLETON(xsup_end, xsup_end, supno[irep]) )
+		if ( SINGLETON( xsup_end, xsup, supno[irep]) )
 		    nnzL0 += xprune[irep] - xlsub_end[irep];
 		else
 		    nnzL0 += xprune[irep] - xlsub[irep];
@@ -236,8 +270,8 @@ public class Dlu_util {
 	void
 	fixupL(final int n, final int perm_r[], GlobalLU_t Glu)
 	{
-	    int nsuper, fsupc, nextl, i, j, jstrt;
-	    int[] xsup, lsub, xlsub, xlsub_end;
+	    int nsuper, fsupc, nextl, i, k, j, jstrt;
+	    int[] xsup, lsub, xlsub, xlsub_end, order;
 
 	    if ( n <= 1 ) return;
 
@@ -248,10 +282,18 @@ public class Dlu_util {
 	    nsuper    = Glu.supno[n];
 	    nextl     = 0;
 
+	    /* The threads number the supernodes and allocate their subscripts
+	       under different locks, so that lsub[*] need not follow the
+	       supernode numbers: move them in the order they are stored. */
+	    order = new int[nsuper+1];
+	    for (i = 0; i <= nsuper; i++) order[i] = xlsub[xsup[i]];
+	    order = storage_order(nsuper+1, order);
+
 	    /*
 	     * For each supernode ...
 	     */
-	    for (i = 0; i <= nsuper; i++) {
+	    for (k = 0; k <= nsuper; k++) {
+		i = order[k];
 		fsupc = xsup[i];
 		jstrt = xlsub[fsupc];
 		xlsub[fsupc] = nextl;
@@ -309,8 +351,8 @@ public class Dlu_util {
 	void
 	compressSUP(final int n, GlobalLU_t Glu)
 	{
-	    int nextlu, i, j, jstrt;
-	    int xlusup[], xlusup_end[];
+	    int nextlu, i, j, k, jstrt;
+	    int xlusup[], xlusup_end[], order[];
 	    double lusup[];
 
 	    if ( n <= 1 ) return;
@@ -320,7 +362,11 @@ public class Dlu_util {
 	    xlusup_end= Glu.xlusup_end;
 	    nextlu     = 0;
 
-	    for (j = 0; j < n; ++j) {
+	    /* Supernodes mapped by DynamicSetMap() are not in column order. */
+	    order = storage_order(n, xlusup);
+
+	    for (k = 0; k < n; ++k) {
+		j = order[k];
 		jstrt = xlusup[j];
 		xlusup[j] = nextlu;
 		for (i = jstrt; i < xlusup_end[j]; ++i, ++nextlu)
@@ -331,6 +377,23 @@ public class Dlu_util {
 	    printf("\tcompressSUP() nextlu %d\n", nextlu);
 	}
 
+	/*
+	 * Return the indices 0..m-1 sorted by increasing start[], the beginning
+	 * of their storage: compacted in this order, an item is never moved
+	 * over one that is yet to be moved.
+	 */
+	static
+	int[] storage_order(final int m, final int start[])
+	{
+	    long key[] = new long[m];
+	    int order[] = new int[m], i;
+
+	    for (i = 0; i < m; ++i) key[i] = ((long) start[i] << 32) | i;
+	    Arrays.sort(key);
+	    for (i = 0; i < m; ++i) order[i] = (int) key[i];
+	    return order;
+	}
+
 	static
 	int check_mem_leak(String where)
 	{
@@ -365,7 +428,7 @@ public class Dlu_util {
 	StatAlloc(final int n, final int nprocs, final int panel_size,
 			final int relax, Gstat_t Gstat)
 	{
-	    int w;
+	    int i, w;
 
 	    w = SUPERLU_MAX( panel_size, relax ) + 1;
 	    Gstat.panel_histo = intCalloc(w);
@@ -374,6 +437,7 @@ public class Dlu_util {
 
 	    if ( (Gstat.procstat = new procstat_t[nprocs]) == null )
 		SUPERLU_ABORT( "SUPERLU_MALLOC failed for procstat[]" );
+	    for (i = 0; i < nprocs; ++i) Gstat.procstat[i] = new procstat_t();
 
 	if (PRNTlevel==1) {
 	    printf(".. StatAlloc(): n %d, nprocs %d, panel_size %d, relax %d\n",
@@ -382,6 +446,7 @@ public class Dlu_util {
 	if (PROFILE) {
 	    if ( (Gstat.panstat = new panstat_t[n]) == null )
 		SUPERLU_ABORT( "SUPERLU_MALLOC failed for panstat[]" );
+	    for (i = 0; i < n; ++i) Gstat.panstat[i] = new panstat_t();
 	    Gstat.panhows = intCalloc(3);
 	    Gstat.height = intCalloc(n+1);
 	    if ( (Gstat.flops_by_height = new float[n]) == null )
@@ -391,8 +456,10 @@ public class Dlu_util {
 	if (PREDICT_OPT) {
 	    if ( (Gstat.cp_panel = new cp_panel_t[n]) == null )
 		SUPERLU_ABORT( "SUPERLU_MALLOC failed for cp_panel[]" );
+	    for (i = 0; i < n; ++i) Gstat.cp_panel[i] = new cp_panel_t();
 	    if ( (Gstat.desc_eft = new desc_eft_t[n]) == null )
 		SUPERLU_ABORT( "SUPERLU_MALLOC failed for desc_eft[]" );
+	    for (i = 0; i < n; ++i) Gstat.desc_eft[i] = new desc_eft_t();
 	    Gstat.cp_firstkid = intMalloc(n+1);
 	    Gstat.cp_nextkid = intMalloc(n+1);
 	}
@@ -412,6 +479,14 @@ public class Dlu_util {
 		Gstat.utime[i] = 0;
 		Gstat.ops[i] = 0;
 	    }
+	    Gstat.ooc_bytes_written = 0;
+	    Gstat.ooc_write_time = 0;
+	    Gstat.ooc_bytes_reloaded = 0;
+	    Gstat.ooc_peak_resident = 0;
+	    Gstat.ooc_bytes_read = 0;
+	    Gstat.ooc_read_time = 0;
+	    Gstat.ooc_read_stall = 0;
+	    Gstat.dom_flopcnt = 0.f;
 
 	    for (i = 0; i < nprocs; ++i) {
 		Gstat.procstat[i].panels = 0;
@@ -422,6 +497,9 @@ public class Dlu_util {
 		Gstat.procstat[i].spintime = 0.0;
 		Gstat.procstat[i].pruned = 0;
 		Gstat.procstat[i].unpruned = 0;
+		Gstat.procstat[i].offdiag_pivots = 0;
+		Gstat.procstat[i].steals = 0;
+		Gstat.procstat[i].parks = 0;
 	    }
 
 	if (PROFILE) {
@@ -433,7 +511,6 @@ public class Dlu_util {
 		Gstat.flops_by_height[i] = 0.0f;
 	    }
 	    for (i = 0; i < 3; ++i) Gstat.panhows[i] = 0;
-	    Gstat.dom_flopcnt = 0.f;
 	    Gstat.flops_last_P_panels = 0;
 	}
 
@@ -458,16 +535,65 @@ public class Dlu_util {
 
 	    utime = Gstat.utime;
 	    ops   = Gstat.ops;
+	    if ( Gstat.autotune != null ) {
+	      printf("Autotuned    = w %d, relax %d, maxsuper %d",
+		     Gstat.autotune.tuning.panel_size, Gstat.autotune.tuning.relax,
+		     Gstat.autotune.tuning.maxsuper);
+	      if ( Gstat.autotune.speedup > 0 )
+		printf("\ttrial speedup %.2f", Gstat.autotune.speedup);
+	      else
+		printf("\ttrial failed, not measured");
+	      printf("%s\n", Gstat.autotune.cached ? " (cached)" : "");
+	    }
+	    if ( Gstat.auto_nprocs != null )
+	      printf("Workers      = %d of %d\tparallelism %.2f, modelled speedup %.2f\n",
+		     Gstat.auto_nprocs.nprocs, Gstat.auto_nprocs.maxprocs,
+		     Gstat.auto_nprocs.parallelism, Gstat.auto_nprocs.speedup);
 	    printf("Factor time  = %8.2f\n", utime[FACT.ordinal()]);
 	    if ( utime[FACT.ordinal()] != 0.0 )
 	      printf("Factor flops = %e\tMflops = %8.2f\n", ops[FACT.ordinal()],
 		     ops[FACT.ordinal()]*1e-6/utime[FACT.ordinal()]);
 
+	    if ( Gstat.procstat != null ) {
+		int i, offdiag = 0, steals = 0, parks = 0;
+		for (i = 0; i < Gstat.procstat.length; ++i) {
+		    offdiag += Gstat.procstat[i].offdiag_pivots;
+		    steals += Gstat.procstat[i].steals;
+		    parks += Gstat.procstat[i].parks;
+		}
+		printf("Off-diagonal pivots = %d\n", offdiag);
+		if ( steals != 0 ) printf("Stolen panels = %d\n", steals);
+		if ( parks != 0 ) printf("Parked waits = %d\n", parks);
+	    }
+
+	if (DOMAINS) {
+	    if ( ops[FACT.ordinal()] != 0.0 )
+	      printf("Domain flops = %e (%.2f)\tnondomain flops = %e\n", Gstat.dom_flopcnt,
+		     Gstat.dom_flopcnt/ops[FACT.ordinal()], ops[FACT.ordinal()] - Gstat.dom_flopcnt);
+	}
+
 	    printf("Solve time   = %8.2f\n", utime[SOLVE.ordinal()]);
 	    if ( utime[SOLVE.ordinal()] != 0.0 )
 	      printf("Solve flops = %e\tMflops = %8.2f\n", ops[SOLVE.ordinal()],
 		     ops[SOLVE.ordinal()]*1e-6/utime[SOLVE.ordinal()]);
 
+	    if ( Gstat.ooc_bytes_written != 0 ) {
+	      printf("OOC written  = %8.2f MB", Gstat.ooc_bytes_written*1e-6);
+	      if ( Gstat.ooc_write_time != 0.0 )
+		printf("\tMB/s = %8.2f", Gstat.ooc_bytes_written*1e-6/Gstat.ooc_write_time);
+	      printf("\n");
+	    }
+	    if ( Gstat.ooc_peak_resident != 0 )
+	      printf("OOC paged    = %8.2f MB peak\treloaded %8.2f MB\n",
+		     Gstat.ooc_peak_resident*1e-6, Gstat.ooc_bytes_reloaded*1e-6);
+	    if ( Gstat.ooc_bytes_read != 0 ) {
+	      printf("OOC read     = %8.2f MB", Gstat.ooc_bytes_read*1e-6);
+	      if ( Gstat.ooc_read_time != 0.0 )
+		printf("\tMB/s = %8.2f\tstalled %8.2f", Gstat.ooc_bytes_read*1e-6/Gstat.ooc_read_time,
+		       Gstat.ooc_read_stall);
+	      printf("\n");
+	    }
+
 	}
 
 	static
@@ -0,0 +1,194 @@
+package gov.lbl.superlu.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Compares the A'+A orderings of get_perm_c(): MMD (permc_spec 2), AMD
+ * (6) and nested dissection (5), by ordering time and by the number of
+ * nonzeros in the Cholesky factor of the permuted A'+A.
+ *
+ * Usage: Dlu_amd_bench [2-D grid size [3-D grid size [reps]]]
+ */
+public class Dlu_amd_bench {
+
+	static final int specs[] = { 2, 6, 5 };
+	static final String names[] = { "MMD", "AMD", "ND" };
+
+	/* Build an n-by-n matrix with the given columns (diagonal added). */
+	static SuperMatrix matrix(int n, int xa[], int asub[], int nnz)
+	{
+	    SuperMatrix A = new SuperMatrix();
+	    double a[] = new double[nnz];
+
+	    Arrays.fill(a, 1.0);
+	    dCreate_CompCol_Matrix(A, n, n, nnz, a, asub, xa, SLU_NC, SLU_D, SLU_GE);
+	    return A;
+	}
+
+	/* Sort, remove duplicates and compact the columns of asub. */
+	static SuperMatrix compact(int n, int xa[], int asub[], int cnt[])
+	{
+	    int j, i, p, nnz = 0, ya[] = new int[n+1], bsub[] = new int[asub.length];
+
+	    for (j = 0; j < n; ++j) {
+		ya[j] = nnz;
+		Arrays.sort(asub, xa[j], xa[j] + cnt[j]);
+		for (i = xa[j]; i < xa[j] + cnt[j]; ++i)
+		    if ( nnz == ya[j] || asub[i] != bsub[nnz-1] ) bsub[nnz++] = asub[i];
+	    }
+	    ya[n] = nnz;
+	    return matrix(n, ya, Arrays.copyOf(bsub, nnz), nnz);
+	}
+
+	/* Structurally symmetric matrix with deg random off-diagonal pairs
+	   per column and ndense nodes coupled to every 7th node. */
+	static SuperMatrix random_sym(int n, int deg, int ndense, long seed)
+	{
+	    Random r = new Random(seed);
+	    int xa[] = new int[n+1], cnt[] = new int[n], asub[], i, j, k, h;
+	    int rows[] = new int[n * (deg + 1)], cols[] = new int[n * (deg + 1)], ne = 0;
+	    int dense[] = new int[ndense];
+
+	    for (j = 0; j < n; ++j) {
+		for (k = 0; k < deg; ++k) {
+		    rows[ne] = r.nextInt(n);
+		    cols[ne++] = j;
+		}
+	    }
+	    for (k = 0; k < ndense; ++k) dense[k] = r.nextInt(n);
+
+	    /* Column counts: each pair (i, j) goes in columns i and j. */
+	    for (k = 0; k < ne; ++k) {
+		++xa[rows[k]];
+		++xa[cols[k]];
+	    }
+	    for (k = 0; k < ndense; ++k) {
+		h = dense[k];
+		for (j = 0; j < n; j += 7) {
+		    ++xa[h];
+		    ++xa[j];
+		}
+	    }
+	    i = 0;
+	    for (j = 0; j < n; ++j) {
+		int c = xa[j] + 1;
+		xa[j] = i;
+		i += c;
+	    }
+	    xa[n] = i;
+	    asub = new int[i];
+	    for (j = 0; j < n; ++j) asub[xa[j] + cnt[j]++] = j;
+	    for (k = 0; k < ne; ++k) {
+		asub[xa[rows[k]] + cnt[rows[k]]++] = cols[k];
+		asub[xa[cols[k]] + cnt[cols[k]]++] = rows[k];
+	    }
+	    for (k = 0; k < ndense; ++k) {
+		h = dense[k];
+		for (j = 0; j < n; j += 7) {
+		    asub[xa[h] + cnt[h]++] = j;
+		    asub[xa[j] + cnt[j]++] = h;
+		}
+	    }
+	    return compact(n, xa, asub, cnt);
+	}
+
+	/* nnz in the Cholesky factor of P(A'+A)P', by row subtrees of the
+	   elimination tree. */
+	static long chol_nnz(SuperMatrix A, int perm_c[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, xa[] = Astore.colptr, asub[] = Astore.rowind;
+	    int inv[] = new int[n], parent[] = new int[n], anc[] = new int[n];
+	    int mark[] = new int[n], tcnt[] = new int[n + 1], tsub[], k, p, i, o, nx;
+	    long cnt = n;
+
+	    /* Both triangles: column k of the permuted A and of its transpose. */
+	    for (p = 0; p < xa[n]; ++p) ++tcnt[asub[p] + 1];
+	    for (k = 0; k < n; ++k) tcnt[k+1] += tcnt[k];
+	    tsub = new int[xa[n]];
+	    for (k = 0; k < n; ++k)
+		for (p = xa[k]; p < xa[k+1]; ++p) tsub[tcnt[asub[p]]++] = k;
+	    for (k = n; k > 0; --k) tcnt[k] = tcnt[k-1];
+	    tcnt[0] = 0;
+
+	    for (k = 0; k < n; ++k) inv[perm_c[k]] = k;
+	    for (k = 0; k < n; ++k) {
+		parent[k] = anc[k] = -1;
+		o = inv[k];
+		for (p = xa[o]; p < xa[o+1] + (tcnt[o+1] - tcnt[o]); ++p) {
+		    i = p < xa[o+1] ? perm_c[asub[p]] : perm_c[tsub[tcnt[o] + p - xa[o+1]]];
+		    while ( i != -1 && i < k ) {
+			nx = anc[i];
+			anc[i] = k;
+			if ( nx == -1 ) parent[i] = k;
+			i = nx;
+		    }
+		}
+	    }
+	    for (k = 0; k < n; ++k) {
+		mark[k] = k;
+		o = inv[k];
+		for (p = xa[o]; p < xa[o+1] + (tcnt[o+1] - tcnt[o]); ++p) {
+		    i = p < xa[o+1] ? perm_c[asub[p]] : perm_c[tsub[tcnt[o] + p - xa[o+1]]];
+		    if ( i > k ) continue;
+		    while ( mark[i] != k ) {
+			mark[i] = k;
+			++cnt;
+			i = parent[i];
+		    }
+		}
+	    }
+	    return cnt;
+	}
+
+	static void run(String name, SuperMatrix A, int reps)
+	{
+	    int n = A.ncol, perm_c[] = new int[n], s, r;
+	    long t, best;
+
+	    printf("%s: n %d, nnz %d\n", name, n,
+		   ((NCformat) A.Store).nnz);
+	    for (s = 0; s < specs.length; ++s) {
+		best = Long.MAX_VALUE;
+		try {
+		    for (r = 0; r < reps; ++r) {
+			t = System.nanoTime();
+			get_perm_c(specs[s], A, perm_c);
+			best = Math.min(best, System.nanoTime() - t);
+		    }
+		} catch (Throwable e) {
+		    printf("  %-4s failed (%s)\n", names[s], e.getClass().getSimpleName());
+		    continue;
+		}
+		printf("  %-4s  time %8.3f s   nnz(chol(A'+A)) %12d\n",
+		       names[s], best * 1e-9, chol_nnz(A, perm_c));
+	    }
+	}
+
+	public static void main(String args[])
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+	    int reps = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+	    run("2-D grid", Dlu_grid.grid(g2, 2), reps);
+	    run("3-D grid", Dlu_grid.grid(g3, 3), reps);
+	    run("random symmetric, degree 4", random_sym(g2 * g2 / 4, 2, 0, 1), reps);
+	    run("random symmetric, degree 2, 5 dense rows", random_sym(g2 * g2 / 4, 1, 5, 2), reps);
+	}
+
+}
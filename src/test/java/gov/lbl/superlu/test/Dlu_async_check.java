@@ -0,0 +1,138 @@
+package gov.lbl.superlu.test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_pdgsasync.factor_control_t;
+import gov.lbl.superlu.Dlu_pdgsasync.factors_t;
+import gov.lbl.superlu.Dlu_pdgsasync.progress_listener_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgsfree;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgstrf_async;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+
+
+/*
+ * Factors a 2-D grid through pdgstrf_async(), with 2 threads and with
+ * the sequential engine (Dlu.SEQUENTIAL, 1 thread), and checks how the
+ * future completes:
+ *
+ *    o cancelled by the listener after the first panels: with a
+ *      CancellationException;
+ *    o a deadline already passed: with a TimeoutException, before any
+ *      panel is taken;
+ *    o a deadline set to pass by the listener after the first panels:
+ *      with a TimeoutException;
+ *    o a tuning whose guess of the fill of U is far too small: normally,
+ *      with factors_t.info > n, and the process still running;
+ *    o no control: normally, with factors_t.info = 0.
+ *
+ * Usage: Dlu_async_check [2-D grid size [seconds]]
+ */
+public class Dlu_async_check {
+
+	public static void main(String args[]) throws InterruptedException
+	{
+	    int g = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+	    long limit = args.length > 1 ? Long.parseLong(args[1]) : 60;
+	    SuperMatrix A = Dlu_grid.grid(g, 2);
+	    int n = A.ncol, perm_c[] = new int[n], P;
+	    final sp_tuning_t d = SP_IENV_TUNING;
+	    sp_tuning_t small = new sp_tuning_t(d.panel_size, d.relax, d.maxsuper,
+						d.rowblk, d.colblk, d.fill_lusup,
+						n, d.fill_lsub);
+	    factor_control_t ctl;
+	    final int reports[] = new int[1];
+	    Object r;
+	    boolean ok = true;
+
+	    get_perm_c(6, A, perm_c);
+	    for (P = 2; P >= 1; --P) {
+		Dlu.SEQUENTIAL = P == 1;
+
+		/* Cancelled after the first panels. */
+		final factor_control_t c1 = ctl = new factor_control_t();
+		ctl.interval = 0;
+		ctl.listener = new progress_listener_t() {
+		    public void progress(int panels_done, int npanels, double flops) {
+			if ( panels_done > 0 ) c1.cancel();
+		    }
+		};
+		r = outcome(pdgstrf_async(P, A, perm_c, null, ctl, null), limit);
+		ok &= expect(P, "cancel", r, r instanceof CancellationException);
+
+		/* Deadline passed before the start. */
+		reports[0] = 0;
+		ctl = new factor_control_t();
+		ctl.set_timeout(-1);
+		ctl.interval = 0;
+		ctl.listener = new progress_listener_t() {
+		    public void progress(int panels_done, int npanels, double flops) {
+			++reports[0];
+		    }
+		};
+		r = outcome(pdgstrf_async(P, A, perm_c, null, ctl, null), limit);
+		ok &= expect(P, "deadline passed", r,
+			     r instanceof TimeoutException && reports[0] == 0 && ctl.is_expired());
+
+		/* Deadline passing after the first panels. */
+		final factor_control_t c3 = ctl = new factor_control_t();
+		ctl.interval = 0;
+		ctl.listener = new progress_listener_t() {
+		    public void progress(int panels_done, int npanels, double flops) {
+			if ( panels_done > 0 && c3.deadline == 0 )
+			    c3.set_timeout(0);
+		    }
+		};
+		r = outcome(pdgstrf_async(P, A, perm_c, null, ctl, null), limit);
+		ok &= expect(P, "deadline", r, r instanceof TimeoutException && ctl.is_expired());
+
+		/* Storage of U exceeded. */
+		r = outcome(pdgstrf_async(P, A, perm_c, small, null, null), limit);
+		ok &= expect(P, "small fill", r,
+			     r instanceof factors_t && ((factors_t) r).info > n);
+		if ( r instanceof factors_t ) pdgsfree((factors_t) r);
+
+		/* Not controlled. */
+		r = outcome(pdgstrf_async(P, A, perm_c, null, null, null), limit);
+		ok &= expect(P, "plain", r, r instanceof factors_t && ((factors_t) r).info == 0);
+		if ( r instanceof factors_t ) pdgsfree((factors_t) r);
+	    }
+	    Dlu.SEQUENTIAL = false;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	/* The factors, or the exception the future completed with. */
+	static Object outcome(CompletableFuture<factors_t> future, long limit)
+	    throws InterruptedException
+	{
+	    try {
+		return future.get(limit, TimeUnit.SECONDS);
+	    } catch (CancellationException e) {
+		return e;
+	    } catch (ExecutionException e) {
+		return e.getCause();
+	    } catch (TimeoutException e) {
+		return "not done after " + limit + " s";
+	    }
+	}
+
+	static boolean expect(int P, String test, Object r, boolean ok)
+	{
+	    String what = r instanceof factors_t ? "info " + ((factors_t) r).info
+					      : String.valueOf(r);
+	    printf("  P %d %-16s %-6s %s\n", P, test, ok ? "ok" : "WRONG", what);
+	    return ok;
+	}
+
+}
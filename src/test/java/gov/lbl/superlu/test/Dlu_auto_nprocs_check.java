@@ -0,0 +1,145 @@
+package gov.lbl.superlu.test;
+
+import java.util.Arrays;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_auto_nprocs.auto_nprocs_t;
+import gov.lbl.superlu.Dlu_pdexplain.explain_plan_t;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_auto_nprocs.sp_auto_nprocs;
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdexplain.pdgstrf_explain;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Chooses the number of threads by sp_auto_nprocs() for a tridiagonal
+ * matrix in its natural order, whose etree is a chain, and for 2-D and
+ * 3-D grids, for at most 1, 2, 4, 8 and 16 threads, and checks the
+ * choice:
+ *
+ *    o it is between 1 and maxprocs, 1 if maxprocs is 1 (or below), and
+ *      the result holds it and maxprocs;
+ *    o it does not decrease as maxprocs grows, since the best modelled
+ *      time over more threads can only be lower;
+ *    o the parallelism is flops / ppath of pdgstrf_explain(), and the
+ *      predicted speedup is at least 1 / (1 + AUTO_NPROCS_SLACK);
+ *    o it is at most the parallelism, rounded up, so that for the chain,
+ *      whose panels only overlap in the pipeline, it is small, and no
+ *      more than for any grid;
+ *    o b = A * ones is solved to max |x - 1| < 1e-10 by pdgssv() with
+ *      Dlu.AUTO_NPROCS set and 16 threads.
+ *
+ * Usage: Dlu_auto_nprocs_check [2-D grid size [3-D grid size]]
+ */
+public class Dlu_auto_nprocs_check {
+
+	static final int MAXPROCS = 16;
+
+	public static void main(String args[])
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+	    SuperMatrix grids[] = {
+		Dlu_grid.grid(g2, 2), Dlu_grid.grid(g3, 3), Dlu_grid.grid(g2 / 2, 2, 2, 19)
+	    };
+	    SuperMatrix T = tridiagonal(g2 * g2);
+	    int perm_c[] = new int[T.ncol], chain[], d, j;
+	    boolean ok;
+
+	    for (j = 0; j < T.ncol; ++j) perm_c[j] = j;
+	    chain = choices(T, perm_c);
+	    ok = check("chain", T, perm_c, chain, null);
+	    for (d = 0; d < grids.length; ++d) {
+		perm_c = new int[grids[d].ncol];
+		get_perm_c(6, grids[d], perm_c);
+		ok &= check("grid", grids[d], perm_c, choices(grids[d], perm_c), chain);
+	    }
+	    Dlu.AUTO_NPROCS = false;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	/* The choices for maxprocs = 0, 1, 2, 4, ..., MAXPROCS. */
+	static int[] choices(SuperMatrix A, int perm_c[])
+	{
+	    int c[] = new int[Integer.numberOfTrailingZeros(MAXPROCS) + 2], k, m;
+
+	    c[0] = sp_auto_nprocs(0, SP_IENV_TUNING, A, perm_c, null);
+	    for (k = 1, m = 1; m <= MAXPROCS; ++k, m *= 2)
+		c[k] = sp_auto_nprocs(m, SP_IENV_TUNING, A, perm_c, null);
+	    return c;
+	}
+
+	static boolean check(String test, SuperMatrix A, int perm_c[], int c[], int chain[])
+	{
+	    int n = A.ncol, perm[] = perm_c.clone(), info[] = new int[1], k, m, nprocs;
+	    auto_nprocs_t r = new auto_nprocs_t();
+	    explain_plan_t plan = new explain_plan_t();
+	    String wrong = null;
+	    double parallelism, err;
+
+	    nprocs = sp_auto_nprocs(MAXPROCS, SP_IENV_TUNING, A, perm_c, r);
+	    pdgstrf_explain(MAXPROCS, SP_IENV_TUNING, A, perm_c, plan);
+	    parallelism = plan.ppath > 0 ? plan.flops / plan.ppath : 1.0;
+
+	    Dlu.AUTO_NPROCS = true;
+	    err = Dlu_autotune_check.solve(A, perm_c, MAXPROCS, null, info);
+	    Dlu.AUTO_NPROCS = false;
+
+	    for (k = 1, m = 1; k < c.length; ++k, m *= 2)
+		if ( c[k] < 1 || c[k] > m || c[k] < c[k-1] ) break;
+
+	    if ( k < c.length )
+		wrong = "choice " + c[k] + " of " + m + " after " + c[k-1];
+	    else if ( c[0] != 1 || c[1] != 1 )
+		wrong = "more than 1 thread of 1";
+	    else if ( !Arrays.equals(perm, perm_c) )
+		wrong = "perm_c[] modified";
+	    else if ( nprocs != c[c.length-1] || r.nprocs != nprocs || r.maxprocs != MAXPROCS )
+		wrong = "result " + r.nprocs + " of " + r.maxprocs;
+	    else if ( Math.abs(r.parallelism - parallelism) > 1e-12 * parallelism )
+		wrong = "parallelism " + r.parallelism + ", not " + parallelism;
+	    else if ( !(r.speedup >= 1.0 / (1.0 + Dlu.AUTO_NPROCS_SLACK) - 1e-12) )
+		wrong = "speedup " + r.speedup;
+	    else if ( nprocs > Math.max(1.0, Math.ceil(parallelism)) )
+		wrong = "more threads than the parallelism";
+	    else if ( chain != null && nprocs < chain[chain.length-1] )
+		wrong = "fewer threads than for a chain";
+	    else if ( info[0] != 0 || !(err < 1e-10) )
+		wrong = "AUTO_NPROCS: info " + info[0] + ", max|x-1| " + err;
+
+	    printf("  %-5s n %6d %-6s choices", test, n, wrong == null ? "ok" : "WRONG");
+	    for (k = 1; k < c.length; ++k) printf(" %d", c[k]);
+	    printf(", parallelism %.2f, speedup %.2f%s\n", r.parallelism, r.speedup,
+		   wrong == null ? "" : ": " + wrong);
+	    return wrong == null;
+	}
+
+	/* The tridiagonal matrix of order n: 3 on the diagonal, -1 beside. */
+	static SuperMatrix tridiagonal(int n)
+	{
+	    int xa[] = new int[n+1], asub[] = new int[3*n], nnz = 0, j;
+	    double a[] = new double[3*n];
+	    SuperMatrix A = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j) {
+		xa[j] = nnz;
+		if ( j > 0 ) { asub[nnz] = j-1; a[nnz++] = -1.0; }
+		asub[nnz] = j; a[nnz++] = 3.0;
+		if ( j < n-1 ) { asub[nnz] = j+1; a[nnz++] = -1.0; }
+	    }
+	    xa[n] = nnz;
+	    dCreate_CompCol_Matrix(A, n, n, nnz, a, asub, xa, SLU_NC, SLU_D, SLU_GE);
+	    return A;
+	}
+
+}
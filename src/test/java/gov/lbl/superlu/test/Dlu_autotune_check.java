@@ -0,0 +1,144 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_autotune.autotune_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_autotune.sp_autotune;
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Tunes 2-D and 3-D grids with sp_autotune() for 1 and 4 threads, one
+ * of them larger than Dlu.AUTOTUNE_SAMPLE so that the trial subproblem
+ * is a part of it, and checks the choice:
+ *
+ *    o it is a valid tuning, with relax <= maxsuper, explained on a
+ *      trial subproblem of min(n, AUTOTUNE_SAMPLE) columns;
+ *    o it is the default tuning with speedup 1, or another one whose
+ *      measured speedup on the trial subproblem is above 1 / 0.95, the
+ *      margin of the autotuner (or 0 if the trial factorization failed);
+ *    o a second call finds it in the cache, the same; another number of
+ *      threads does not;
+ *    o b = A * ones is solved to max |x - 1| < 1e-10 by pdgssv() with
+ *      Dlu.AUTOTUNE set.
+ *
+ * The time of pdgssv() on the whole grid with the choice and with the
+ * default tuning (best of reps) is printed; it is not checked, as the
+ * choice is only measured on the trial subproblem.
+ *
+ * Usage: Dlu_autotune_check [2-D grid size [3-D grid size [reps]]]
+ */
+public class Dlu_autotune_check {
+
+	public static void main(String args[])
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 14;
+	    int reps = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+	    SuperMatrix grids[] = {
+		Dlu_grid.grid(g2, 2), Dlu_grid.grid(g3, 3), Dlu_grid.grid(g2 / 2, 2, 1, 17)
+	    };
+	    int sample = Dlu.AUTOTUNE_SAMPLE, d, P;
+	    boolean ok = true;
+
+	    /* The first grid is tuned on a part of it. */
+	    Dlu.AUTOTUNE_SAMPLE = grids[0].ncol / 4;
+	    for (d = 0; d < grids.length; ++d)
+		for (P = 1; P <= 4; P *= 4)
+		    ok &= check(grids[d], P, reps);
+	    Dlu.AUTOTUNE_SAMPLE = sample;
+	    Dlu.AUTOTUNE = false;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	static boolean check(SuperMatrix A, int P, int reps)
+	{
+	    int n = A.ncol, perm_c[] = new int[n], info[] = new int[1];
+	    autotune_t r = new autotune_t(), again = new autotune_t(), other = new autotune_t();
+	    sp_tuning_t t, d = SP_IENV_TUNING;
+	    String wrong = null;
+	    double err, ttuned, tdef;
+
+	    get_perm_c(6, A, perm_c);
+	    t = sp_autotune(P, A, perm_c, r);
+	    sp_autotune(P, A, perm_c, again);
+	    sp_autotune(P + 1, A, perm_c, other);
+
+	    Dlu.AUTOTUNE = true;
+	    err = solve(A, perm_c, P, null, info);
+	    Dlu.AUTOTUNE = false;
+
+	    if ( t == null || t != r.tuning || t.check() != 0 || t.relax > t.maxsuper )
+		wrong = "not a valid tuning";
+	    else if ( t.rowblk != d.rowblk || t.colblk != d.colblk || t.fill_lusup != d.fill_lusup
+		      || t.fill_ucol != d.fill_ucol || t.fill_lsub != d.fill_lsub )
+		wrong = "other values than panel_size, relax, maxsuper changed";
+	    else if ( r.sample_n != Math.min(n, Dlu.AUTOTUNE_SAMPLE) || r.ncandidates < 1 )
+		wrong = "trial subproblem of " + r.sample_n + " columns, "
+			+ r.ncandidates + " candidates";
+	    else if ( t == d ? r.speedup != 1.0 : !(r.speedup > 1 / 0.95 || r.speedup == 0) )
+		wrong = "speedup " + r.speedup;
+	    else if ( r.cached || !again.cached || again.tuning != t || other.cached )
+		wrong = "cache";
+	    else if ( info[0] != 0 || !(err < 1e-10) )
+		wrong = "AUTOTUNE: info " + info[0] + ", max|x-1| " + err;
+
+	    ttuned = tdef = Double.MAX_VALUE;
+	    if ( wrong == null && t != d ) {
+		/* Alternately, each first every other time. */
+		for (int k = 0; k < 2 * reps; ++k) {
+		    if ( k % 2 == 0 ) ttuned = Math.min(ttuned, time(A, perm_c, P, t));
+		    tdef = Math.min(tdef, time(A, perm_c, P, d));
+		    if ( k % 2 == 1 ) ttuned = Math.min(ttuned, time(A, perm_c, P, t));
+		}
+	    }
+	    printf("  n %6d P %d %-6s w %2d relax %2d maxsuper %3d, %d candidates on %d columns,"
+		   + " speedup %.2f%s\n", n, P, wrong == null ? "ok" : "WRONG",
+		   t.panel_size, t.relax, t.maxsuper, r.ncandidates, r.sample_n, r.speedup,
+		   wrong != null ? ": " + wrong
+		   : t == d ? "" : String.format(", whole grid %.2f", tdef / ttuned));
+	    return wrong == null;
+	}
+
+	/* Seconds to solve b = A * ones with tuning. */
+	static double time(SuperMatrix A, int perm_c[], int P, sp_tuning_t tuning)
+	{
+	    int info[] = new int[1];
+	    long t0 = System.nanoTime();
+
+	    solve(A, perm_c, P, tuning, info);
+	    return (System.nanoTime() - t0) * 1e-9;
+	}
+
+	/* Solve b = A * ones by pdgssv() with tuning; max |x - 1|. */
+	static double solve(SuperMatrix A, int perm_c[], int P, sp_tuning_t tuning, int info[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, j, p;
+	    double b[] = new double[n], err = 0;
+	    SuperMatrix B = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    pdgssv(P, A, perm_c.clone(), new int[n], new SuperMatrix(), new SuperMatrix(),
+		   B, info, tuning);
+	    for (j = 0; j < n; ++j) err = Math.max(err, Math.abs(b[j] - 1.0));
+	    return err;
+	}
+
+}
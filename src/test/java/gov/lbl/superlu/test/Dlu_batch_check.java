@@ -0,0 +1,123 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_pdgsbatch.batch_stat_t;
+import gov.lbl.superlu.Dlu_supermatrix.DNformat;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_pdgsbatch.pdgssv_batch;
+import static gov.lbl.superlu.Dlu_pdgsbatch.print_batch_stat;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Solves a batch of small 2-D and 3-D grids, some with random extra
+ * entries, through pdgssv_batch() on 1 and 4 workers, with AUTOTUNE off
+ * and on, and with Dlu.SEQUENTIAL off, which the batch must not depend
+ * on. b = A * ones must be solved to max |x - 1| < 1e-10 with info = 0
+ * for every system. The systems/s of each batch are printed, and those
+ * of the same systems solved one by one by Dlu_scheduler_check.solve()
+ * (pdgssv() with 1 thread, ordered each time).
+ *
+ * Usage: Dlu_batch_check [systems [reps]]
+ */
+public class Dlu_batch_check {
+
+	public static void main(String args[])
+	{
+	    int nsys = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+	    int reps = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+	    SuperMatrix A[] = new SuperMatrix[nsys], B[] = new SuperMatrix[nsys];
+	    int info[] = new int[nsys], k, r, t, nworkers;
+	    batch_stat_t stat = new batch_stat_t();
+	    double err, best;
+	    long t0;
+	    boolean ok = true;
+
+	    for (k = 0; k < nsys; ++k)
+		A[k] = k % 5 == 4 ? Dlu_grid.grid(4 + k % 4, 3)
+		     : k % 2 == 0 ? Dlu_grid.grid(10 + k % 31, 2)
+				  : Dlu_grid.grid(10 + k % 31, 2, 1, k);
+
+	    /* One by one. */
+	    best = Double.MAX_VALUE;
+	    for (r = 0; r < reps; ++r) {
+		t0 = System.nanoTime();
+		for (k = 0; k < nsys; ++k) {
+		    err = Dlu_scheduler_check.solve(A[k], 6, 1, info);
+		    if ( info[0] != 0 || !(err < 1e-10) ) {
+			printf("  one by one, system %d n %d: info %d, max|x-1| %.1e\n",
+			       k, A[k].ncol, info[0], err);
+			ok = false;
+		    }
+		}
+		best = Math.min(best, (System.nanoTime() - t0) * 1e-9);
+	    }
+	    printf("  %-26s systems/s %10.1f\n", "one by one", nsys / best);
+
+	    Dlu.SEQUENTIAL = false;
+	    for (t = 0; t < 2; ++t) {
+		Dlu.AUTOTUNE = t == 1;
+		for (nworkers = 1; nworkers <= 4; nworkers *= 4) {
+		    best = 0;
+		    for (r = 0; r < reps; ++r) {
+			for (k = 0; k < nsys; ++k) B[k] = ones_rhs(A[k]);
+			pdgssv_batch(nworkers, 6, A, B, info, stat);
+			for (k = 0; k < nsys; ++k) {
+			    err = error(B[k]);
+			    if ( info[k] != 0 || !(err < 1e-10) ) {
+				printf("  batch, system %d n %d: info %d, max|x-1| %.1e\n",
+				       k, A[k].ncol, info[k], err);
+				ok = false;
+			    }
+			}
+			if ( stat.nsolved != nsys ) {
+			    print_batch_stat(stat);
+			    ok = false;
+			}
+			best = Math.max(best, stat.systems_per_sec);
+		    }
+		    printf("  %-26s systems/s %10.1f\n",
+			   "batch, " + nworkers + " worker" + (nworkers > 1 ? "s" : "")
+			   + (Dlu.AUTOTUNE ? ", autotune" : ""), best);
+		}
+	    }
+	    Dlu.AUTOTUNE = false;
+	    Dlu.SEQUENTIAL = true;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	/* b = A * ones. */
+	static SuperMatrix ones_rhs(SuperMatrix A)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, j, p;
+	    double b[] = new double[n];
+	    SuperMatrix B = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    return B;
+	}
+
+	/* max |x - 1|. */
+	static double error(SuperMatrix X)
+	{
+	    double x[] = ((DNformat) X.Store).nzval, err = 0;
+	    int j;
+
+	    for (j = 0; j < X.nrow; ++j) err = Math.max(err, Math.abs(x[j] - 1.0));
+	    return err;
+	}
+
+}
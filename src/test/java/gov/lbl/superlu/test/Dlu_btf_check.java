@@ -0,0 +1,235 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu_pdgsbtf.btf_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import java.util.Random;
+
+import static gov.lbl.superlu.Dlu.BTF_DENSE;
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_pdgsbtf.btf_order;
+import static gov.lbl.superlu.Dlu_pdgsbtf.pdgssv_btf;
+import static gov.lbl.superlu.Dlu_pdgsbtf.pdgssv_singletons;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Builds block upper triangular matrices from irreducible diagonal blocks
+ * (1-by-1, cycles on either side of Dlu.BTF_DENSE columns, 2-D grids),
+ * with random entries above the diagonal blocks, and shuffles their rows
+ * and columns. btf_order() must find the same blocks, each made of the
+ * rows and columns of one of those built, in an order that makes A(p,q)
+ * block upper triangular. pdgssv_btf() and pdgssv_singletons() must then
+ * solve b = A * ones to max |x - 1| < 1e-10 on 1 and 4 threads, as they
+ * must for irreducible matrices too small or too large to split. The
+ * tuning given to pdgssv_btf() must reach the factorizations of the
+ * blocks: a guess of the fill of U far too small must make them run
+ * out of storage.
+ *
+ * Usage: Dlu_btf_check [trials]
+ */
+public class Dlu_btf_check {
+
+	/* Block sizes; a negative size -g is a g-by-g grid. */
+	static final int shapes[][] = {
+	    { 1, 3, 1, -5, 8, 1, 2, -10, 6, 1, 1, 12 },
+	    { -8, -8, 1, 1, 1, 4 },
+	    { 1 },
+	    { 6 },
+	    { -10 },
+	};
+
+	public static void main(String args[])
+	{
+	    int trials = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	    Random random = new Random(1);
+	    int s, t, fails = 0;
+
+	    for (s = 0; s < shapes.length; ++s)
+		for (t = 0; t < trials; ++t)
+		    if ( !check(shapes[s], random) ) ++fails;
+	    printf("  %d matrices, %d failed\n", shapes.length * trials, fails);
+	    printf("%s\n", fails == 0 ? "PASSED" : "FAILED");
+	    System.exit(fails == 0 ? 0 : 1);
+	}
+
+	/* One shuffled block triangular matrix with the given blocks. */
+	static boolean check(int shape[], Random random)
+	{
+	    int nb = shape.length, n = 0, fst[] = new int[nb+1], k, g, i, j, m, sz;
+	    int block[], rperm[], cperm[], rblk[], cblk[], t, b0;
+	    double a[][];
+	    boolean ok = true;
+	    btf_t btf = new btf_t();
+	    SuperMatrix A;
+
+	    for (k = 0; k < nb; ++k) {
+		fst[k] = n;
+		n += shape[k] < 0 ? shape[k] * shape[k] : shape[k];
+	    }
+	    fst[nb] = n;
+	    a = new double[n][n];
+	    block = new int[n];
+	    for (k = 0; k < nb; ++k) {
+		sz = fst[k+1] - fst[k];
+		for (i = fst[k]; i < fst[k+1]; ++i) {
+		    block[i] = k;
+		    a[i][i] = 4 + random.nextDouble();
+		}
+		if ( shape[k] < 0 ) {
+		    g = -shape[k];
+		    for (i = 0; i < g; ++i)
+			for (j = 0; j < g; ++j) {
+			    m = fst[k] + i*g + j;
+			    if ( i > 0 ) a[m][m-g] = a[m-g][m] = -1;
+			    if ( j > 0 ) a[m][m-1] = a[m-1][m] = -1;
+			}
+		} else if ( sz > 1 ) {
+		    for (i = 0; i < sz; ++i)
+			a[fst[k] + i][fst[k] + (i+1) % sz] = -1;
+		}
+		/* Entries above the diagonal block. */
+		if ( k > 0 )
+		    for (t = 0; t < 2 * sz; ++t)
+			a[random.nextInt(fst[k])][fst[k] + random.nextInt(sz)]
+			    = 2 * random.nextDouble() - 1;
+	    }
+
+	    rperm = shuffle(n, random);
+	    cperm = shuffle(n, random);
+	    A = matrix(a, rperm, cperm);
+
+	    /* Column j of A is column cperm[j] of the built matrix. */
+	    btf_order(A, btf);
+	    if ( btf.rank != n || btf.nblocks != nb ) {
+		printf("  n %d: rank %d, %d blocks of %d\n", n, btf.rank, btf.nblocks, nb);
+		return false;
+	    }
+	    rblk = new int[n];
+	    cblk = new int[n];
+	    for (k = 0; k < nb; ++k) {
+		b0 = block[cperm[btf.q[btf.r[k]]]];
+		if ( btf.r[k+1] - btf.r[k] != fst[b0+1] - fst[b0] ) ok = false;
+		for (i = btf.r[k]; i < btf.r[k+1]; ++i) {
+		    if ( block[cperm[btf.q[i]]] != b0 || block[rperm[btf.p[i]]] != b0 )
+			ok = false;
+		    cblk[btf.q[i]] = rblk[btf.p[i]] = k;
+		}
+	    }
+	    for (i = 0; i < n; ++i)
+		for (j = 0; j < n; ++j)
+		    if ( a[rperm[i]][cperm[j]] != 0 && rblk[i] > cblk[j] ) ok = false;
+	    if ( !ok ) {
+		printf("  n %d: the blocks found are not those built\n", n);
+		return false;
+	    }
+
+	    for (k = 0, sz = 0; k < nb; ++k) sz = Math.max(sz, fst[k+1] - fst[k]);
+	    return solve(A, 1, false) & solve(A, 4, false)
+		   & solve(A, 1, true) & solve(A, 4, true)
+		   & (sz <= BTF_DENSE || tuned(A));
+	}
+
+	/* A(i,j) = a[rperm[i]][cperm[j]], in NC format. */
+	static SuperMatrix matrix(double a[][], int rperm[], int cperm[])
+	{
+	    int n = a.length, colptr[] = new int[n+1], i, j, nnz = 0;
+	    int rowind[];
+	    double nzval[];
+	    SuperMatrix A = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (i = 0; i < n; ++i) if ( a[rperm[i]][cperm[j]] != 0 ) ++nnz;
+	    rowind = new int[nnz];
+	    nzval = new double[nnz];
+	    nnz = 0;
+	    for (j = 0; j < n; ++j) {
+		colptr[j] = nnz;
+		for (i = 0; i < n; ++i)
+		    if ( a[rperm[i]][cperm[j]] != 0 ) {
+			rowind[nnz] = i;
+			nzval[nnz++] = a[rperm[i]][cperm[j]];
+		    }
+	    }
+	    colptr[n] = nnz;
+	    dCreate_CompCol_Matrix(A, n, n, nnz, nzval, rowind, colptr,
+				   SLU_NC, SLU_D, SLU_GE);
+	    return A;
+	}
+
+	static int[] shuffle(int n, Random random)
+	{
+	    int perm[] = new int[n], i, j, t;
+
+	    for (i = 0; i < n; ++i) perm[i] = i;
+	    for (i = n - 1; i > 0; --i) {
+		j = random.nextInt(i + 1);
+		t = perm[i]; perm[i] = perm[j]; perm[j] = t;
+	    }
+	    return perm;
+	}
+
+	/* pdgssv_btf() on b = A * ones, with a block factored by pdgstrf(),
+	   must use the tuning it is given: one whose guess of the fill of U
+	   is far too small makes it run out of storage (info > n), and an
+	   invalid one is rejected (info = -7). */
+	static boolean tuned(SuperMatrix A)
+	{
+	    int n = A.ncol, info[] = new int[1], bad;
+	    sp_tuning_t d = SP_IENV_TUNING;
+	    sp_tuning_t small = new sp_tuning_t(d.panel_size, d.relax, d.maxsuper,
+						d.rowblk, d.colblk, d.fill_lusup,
+						1, d.fill_lsub);
+	    sp_tuning_t invalid = new sp_tuning_t(0, d.relax, d.maxsuper,
+						  d.rowblk, d.colblk, d.fill_lusup,
+						  d.fill_ucol, d.fill_lsub);
+	    SuperMatrix B = new SuperMatrix();
+
+	    dCreate_Dense_Matrix(B, n, 1, new double[n], n, SLU_DN, SLU_D, SLU_GE);
+	    pdgssv_btf(1, 6, A, B, null, info, small);
+	    bad = info[0];
+	    pdgssv_btf(1, 6, A, B, null, info, invalid);
+	    if ( !(bad > n) || info[0] != -7 ) {
+		printf("  n %d btf tuned: info %d with a small fill of U, %d with panel size 0\n",
+		       n, bad, info[0]);
+		return false;
+	    }
+	    return true;
+	}
+
+	/* pdgssv_btf() or pdgssv_singletons() on b = A * ones. */
+	static boolean solve(SuperMatrix A, int nprocs, boolean singletons)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, info[] = new int[1], j, p;
+	    double b[] = new double[n], err = 0;
+	    SuperMatrix B = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    if ( singletons )
+		pdgssv_singletons(nprocs, 6, A, B, null, info);
+	    else
+		pdgssv_btf(nprocs, 6, A, B, null, info);
+	    for (j = 0; j < n; ++j) err = Math.max(err, Math.abs(b[j] - 1.0));
+	    if ( info[0] != 0 || !(err < 1e-10) ) {
+		printf("  n %d %s P %d: info %d, max|x-1| %.1e\n", n,
+		       singletons ? "singletons" : "btf", nprocs, info[0], err);
+		return false;
+	    }
+	    return true;
+	}
+
+}
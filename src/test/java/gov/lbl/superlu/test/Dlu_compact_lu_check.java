@@ -0,0 +1,206 @@
+package gov.lbl.superlu.test;
+
+import java.util.concurrent.ExecutionException;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_dcompact_lu.sclu_block_t;
+import gov.lbl.superlu.Dlu_pdgsasync.factors_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCLUformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_dcompact_lu.dCompact_LU;
+import static gov.lbl.superlu.Dlu_dcompact_lu.dsclu_get_block;
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgsfree;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgstrf_async;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgstrs_async;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.TRANS;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Factors a 2-D and a 3-D grid with 1 and 2 threads as L (SCP) and U
+ * (NCP), compacts them with dCompact_LU(), and checks the SCLU matrix
+ * against L and U:
+ *
+ *    o it has the supernodes of L;
+ *    o the records of the supernodes follow one another with no gap,
+ *      and fill nzval[] and index[] exactly;
+ *    o the record of each supernode holds nsupr and nsupc, the row
+ *      subscripts of L, then the U column pointers and subscripts, and
+ *      its values hold the dense L block, column by column, then the U
+ *      entries of its columns, as in L and U.
+ *
+ * The grids are factored again with Dlu.COMPACT_LU set, where L and U
+ * must both refer to one SCLU matrix. A * x = A * ones and
+ * A' * x = A' * ones must be solved with either form to
+ * max |x - 1| < 1e-10. (With 2 threads the supernodes may differ from
+ * one factorization to the next, hence the explicit compaction.)
+ *
+ * Usage: Dlu_compact_lu_check [2-D grid size [3-D grid size]]
+ */
+public class Dlu_compact_lu_check {
+
+	public static void main(String args[]) throws Exception
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+	    SuperMatrix grids[] = {
+		Dlu_grid.grid(g2, 2), Dlu_grid.grid(g3, 3, 1, 5)
+	    };
+	    int d, P;
+	    boolean ok = true;
+
+	    for (d = 0; d < grids.length; ++d)
+		for (P = 1; P <= 2; ++P)
+		    ok &= check(grids[d], P);
+	    Dlu.COMPACT_LU = false;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	static boolean check(SuperMatrix A, int P) throws Exception
+	{
+	    int n = A.ncol, perm_c[] = new int[n];
+	    factors_t F, C;
+	    SuperMatrix LU = new SuperMatrix();
+	    String layout;
+	    double err[] = new double[4];
+	    boolean ok;
+
+	    get_perm_c(6, A, perm_c);
+	    Dlu.COMPACT_LU = false;
+	    F = pdgstrf_async(P, A, perm_c, null, null, null).get();
+	    Dlu.COMPACT_LU = true;
+	    C = pdgstrf_async(P, A, perm_c, null, null, null).get();
+
+	    if ( F.info != 0 || C.info != 0 ) {
+		layout = "info " + F.info + " " + C.info;
+	    } else if ( C.L.Stype != SLU_SCLU || C.U.Stype != SLU_SCLU
+			|| C.L.Store != C.U.Store ) {
+		layout = "COMPACT_LU: L and U are not one SCLU matrix";
+	    } else {
+		dCompact_LU(F.L, F.U, LU, false);
+		layout = layout(F.L, F.U, LU);
+	    }
+	    if ( layout == null ) {
+		err[0] = solve(F, A, false);
+		err[1] = solve(F, A, true);
+		err[2] = solve(C, A, false);
+		err[3] = solve(C, A, true);
+	    }
+	    ok = layout == null && err[0] < 1e-10 && err[1] < 1e-10
+		 && err[2] < 1e-10 && err[3] < 1e-10;
+	    printf("  n %6d P %d %-6s %s\n", n, P, ok ? "ok" : "WRONG",
+		   layout != null ? layout
+		   : String.format("%d supernodes, max|x-1| %.1e %.1e, SCLU %.1e %.1e",
+				   ((SCLUformat) LU.Store).nsuper + 1,
+				   err[0], err[1], err[2], err[3]));
+	    pdgsfree(F);
+	    pdgsfree(C);
+	    return ok;
+	}
+
+	/*
+	 * null if LU (SCLU) holds the factors L (SCP) and U (NCP) in the
+	 * layout of SCLUformat, else what is wrong.
+	 */
+	static String layout(SuperMatrix L, SuperMatrix U, SuperMatrix LU)
+	{
+	    SCPformat Lstore = (SCPformat) L.Store;
+	    NCPformat Ustore = (NCPformat) U.Store;
+	    SCLUformat LUstore;
+	    sclu_block_t b = new sclu_block_t();
+	    int s, j, k, i, fsupc, nsupc, nsupr, u, ulen, uptr, usub, uval;
+	    long vnext = 0, inext = 0;
+
+	    if ( LU.Stype != SLU_SCLU ) return "not an SCLU matrix";
+	    LUstore = (SCLUformat) LU.Store;
+	    if ( LUstore.nzval == null || LUstore.index == null )
+		return "values not in nzval[] and index[]";
+	    if ( LUstore.nsuper != Lstore.nsuper ) return "other supernodes";
+
+	    for (s = 0; s <= LUstore.nsuper; ++s) {
+		fsupc = Lstore.sup_to_colbeg[s];
+		nsupc = Lstore.sup_to_colend[s] - fsupc;
+		nsupr = Lstore.rowind_colend[fsupc] - Lstore.rowind_colbeg[fsupc];
+		if ( LUstore.sup_to_col[s] != fsupc || LUstore.sup_to_col[s+1]
+		     != (s < LUstore.nsuper ? Lstore.sup_to_colbeg[s+1] : L.ncol) )
+		    return "supernode " + s + ": other columns";
+		if ( LUstore.nzval_supptr[s] != vnext || LUstore.index_supptr[s] != inext )
+		    return "supernode " + s + ": gap before its record";
+		dsclu_get_block(LUstore, s, b);
+		if ( b.fsupc != fsupc || b.nsupc != nsupc || b.nsupr != nsupr )
+		    return "supernode " + s + ": other nsupr, nsupc";
+
+		/* L: row subscripts, then the dense block by column. */
+		for (i = 0; i < nsupr; ++i)
+		    if ( b.idx[b.ioff + 2 + i] != Lstore.rowind[Lstore.rowind_colbeg[fsupc] + i] )
+			return "supernode " + s + ": other L subscripts";
+		for (k = 0; k < nsupc; ++k)
+		    for (i = 0; i < nsupr; ++i)
+			if ( b.val[b.voff + k * nsupr + i]
+			     != Lstore.nzval[Lstore.nzval_colbeg[fsupc + k] + i] )
+			    return "supernode " + s + ": other L values";
+
+		/* U: column pointers, subscripts and values. */
+		uptr = b.ioff + 2 + nsupr;
+		usub = uptr + nsupc + 1;
+		uval = b.voff + nsupr * nsupc;
+		if ( b.idx[uptr] != 0 ) return "supernode " + s + ": U pointers";
+		for (k = 0, u = 0; k < nsupc; ++k) {
+		    j = fsupc + k;
+		    ulen = Ustore.colend[j] - Ustore.colbeg[j];
+		    if ( b.idx[uptr + k + 1] != u + ulen )
+			return "supernode " + s + ": U pointers";
+		    for (i = 0; i < ulen; ++i, ++u)
+			if ( b.idx[usub + u] != Ustore.rowind[Ustore.colbeg[j] + i]
+			     || b.val[uval + u] != Ustore.nzval[Ustore.colbeg[j] + i] )
+			    return "supernode " + s + ": other U column " + j;
+		}
+		vnext += (long) nsupr * nsupc + u;
+		inext += 2 + nsupr + nsupc + 1 + u;
+	    }
+	    if ( LUstore.nzval_supptr[LUstore.nsuper + 1] != vnext || vnext != LUstore.nzval.length
+		 || LUstore.index_supptr[LUstore.nsuper + 1] != inext || inext != LUstore.index.length )
+		return "records do not fill nzval[] and index[]";
+	    return null;
+	}
+
+	/* Solve A * x = A * ones, or A' * x = A' * ones; max |x - 1|. */
+	static double solve(factors_t F, SuperMatrix A, boolean transposed)
+	    throws InterruptedException
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, j, p;
+	    double b[] = new double[n], err = 0;
+	    SuperMatrix B = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    if ( transposed ) b[j] += Astore.nzval[p];
+		    else b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    F.trans = transposed ? TRANS : NOTRANS;
+	    try {
+		pdgstrs_async(F, B, null).get();
+	    } catch (ExecutionException e) {
+		printf("  %s\n", e.getCause());
+		return Double.NaN;
+	    }
+	    for (j = 0; j < n; ++j) err = Math.max(err, Math.abs(b[j] - 1.0));
+	    return err;
+	}
+
+}
@@ -0,0 +1,173 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu_pdgssv.zfd_scale_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import java.util.Random;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_dldperm.dldperm;
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.equed_t.BOTH;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Checks dldperm() against a brute-force search over all the row
+ * permutations of random sparse matrices of order 1 to 7, with entries
+ * spread over 6 decades: job 1 must match all the columns exactly when
+ * some permutation has a zero-free diagonal, and job 5 must then reach
+ * the largest product of the diagonal magnitudes, with scalings R and C
+ * for which Pr*R*A*C has a unit diagonal and no entry above 1.
+ *
+ * Then pdgssv() with a zfd_scale_t solves b = A * ones, for a 2-D grid
+ * with its rows shuffled and scaled, to max |x - 1| < 1e-8.
+ *
+ * Usage: Dlu_dldperm_check [trials [2-D grid size]]
+ */
+public class Dlu_dldperm_check {
+
+	public static void main(String args[])
+	{
+	    int trials = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+	    int g = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+	    Random random = new Random(1);
+	    int t, fails = 0;
+
+	    for (t = 0; t < trials; ++t) {
+		int n = 1 + random.nextInt(7);
+		double density = 0.25 + 0.75 * random.nextDouble();
+		if ( !check(n, density, random) ) ++fails;
+	    }
+	    printf("  %d random matrices, %d failed\n", trials, fails);
+
+	    if ( !solve(g, random) ) ++fails;
+	    printf("%s\n", fails == 0 ? "PASSED" : "FAILED");
+	    System.exit(fails == 0 ? 0 : 1);
+	}
+
+	/* One random n-by-n matrix against the brute-force search. */
+	static boolean check(int n, double density, Random random)
+	{
+	    double a[][] = new double[n][n], R[] = new double[n], C[] = new double[n];
+	    int colptr[] = new int[n+1], rowind[] = new int[n*n], perm[] = new int[n];
+	    double nzval[] = new double[n*n], best, prod = 0, s;
+	    int i, j, p, nnz = 0, rank;
+
+	    for (j = 0; j < n; ++j) {
+		colptr[j] = nnz;
+		for (i = 0; i < n; ++i)
+		    if ( random.nextDouble() < density ) {
+			a[i][j] = Math.pow(10, 6 * random.nextDouble() - 3)
+				  * (random.nextBoolean() ? 1 : -1);
+			rowind[nnz] = i;
+			nzval[nnz++] = a[i][j];
+		    }
+	    }
+	    colptr[n] = nnz;
+	    best = maxlogprod(a, 0, new boolean[n]);
+
+	    rank = dldperm(1, n, colptr, rowind, nzval, perm, null, null);
+	    if ( (rank == n) != (best > Double.NEGATIVE_INFINITY) ) {
+		printf("  n %d: job 1 matched %d, brute force %s\n", n, rank,
+		       best > Double.NEGATIVE_INFINITY ? "full" : "singular");
+		return false;
+	    }
+	    rank = dldperm(5, n, colptr, rowind, nzval, perm, R, C);
+	    if ( best == Double.NEGATIVE_INFINITY ) {
+		if ( rank == n ) printf("  n %d: job 5 matched a singular matrix\n", n);
+		return rank < n;
+	    }
+	    if ( rank < n ) {
+		printf("  n %d: job 5 matched %d\n", n, rank);
+		return false;
+	    }
+
+	    /* Row i of A is row perm[i] of Pr*A. */
+	    for (i = 0; i < n; ++i) prod += Math.log(Math.abs(a[i][perm[i]]));
+	    if ( Math.abs(prod - best) > 1e-10 * (1 + Math.abs(best)) ) {
+		printf("  n %d: job 5 log product %.12f, best %.12f\n", n, prod, best);
+		return false;
+	    }
+	    for (j = 0; j < n; ++j)
+		for (p = colptr[j]; p < colptr[j+1]; ++p) {
+		    i = rowind[p];
+		    s = Math.abs(R[i] * nzval[p] * C[j]);
+		    if ( s > 1 + 1e-10 || (perm[i] == j && Math.abs(s - 1) > 1e-10) ) {
+			printf("  n %d: scaled entry (%d,%d) %.3e\n", n, i, j, s);
+			return false;
+		    }
+		}
+	    return true;
+	}
+
+	/* Largest sum of log |a(i,j)| over the matchings of rows i.. to the
+	   unused columns; -infinity if there is none. */
+	static double maxlogprod(double a[][], int i, boolean used[])
+	{
+	    double best = Double.NEGATIVE_INFINITY;
+	    int j;
+
+	    if ( i == a.length ) return 0;
+	    for (j = 0; j < a.length; ++j) {
+		if ( used[j] || a[i][j] == 0 ) continue;
+		used[j] = true;
+		best = Math.max(best, Math.log(Math.abs(a[i][j]))
+				      + maxlogprod(a, i + 1, used));
+		used[j] = false;
+	    }
+	    return best;
+	}
+
+	/* pdgssv() with ZFD scaling on a grid with shuffled, scaled rows. */
+	static boolean solve(int g, Random random)
+	{
+	    SuperMatrix G = Dlu_grid.grid(g, 2), A = new SuperMatrix();
+	    NCformat Gstore = (NCformat) G.Store;
+	    int n = G.ncol, nnz = Gstore.nnz, shuffle[] = new int[n];
+	    int rowind[] = new int[nnz], perm_c[] = new int[n], perm_r[] = new int[n];
+	    double nzval[] = new double[nnz], scale[] = new double[n], b[] = new double[n];
+	    double err = 0;
+	    zfd_scale_t zfd = new zfd_scale_t();
+	    SuperMatrix B = new SuperMatrix();
+	    int info[] = new int[1], i, j, p, t;
+
+	    for (i = 0; i < n; ++i) {
+		shuffle[i] = i;
+		scale[i] = Math.pow(10, 6 * random.nextDouble() - 3);
+	    }
+	    for (i = n - 1; i > 0; --i) {
+		j = random.nextInt(i + 1);
+		t = shuffle[i]; shuffle[i] = shuffle[j]; shuffle[j] = t;
+	    }
+	    for (j = 0; j < n; ++j)
+		for (p = Gstore.colptr[j]; p < Gstore.colptr[j+1]; ++p) {
+		    i = shuffle[Gstore.rowind[p]];
+		    rowind[p] = i;
+		    nzval[p] = scale[i] * Gstore.nzval[p];
+		    b[i] += nzval[p];
+		}
+	    dCreate_CompCol_Matrix(A, n, n, nnz, nzval, rowind, Gstore.colptr,
+				   SLU_NC, SLU_D, SLU_GE);
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    get_perm_c(6, A, perm_c);
+	    zfd.diag_pivot_thresh = 0.01;
+	    pdgssv(4, A, perm_c, perm_r, new SuperMatrix(), new SuperMatrix(),
+		   B, info, null, zfd);
+	    for (i = 0; i < n; ++i) err = Math.max(err, Math.abs(b[i] - 1.0));
+	    printf("  grid n %d: info %d, equed %s, max|x-1| %.1e\n",
+		   n, info[0], zfd.equed, err);
+	    return info[0] == 0 && zfd.equed == BOTH && zfd.R != null
+		   && zfd.C != null && zfd.zperm != null && err < 1e-8;
+	}
+
+}
@@ -0,0 +1,139 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu_pdexplain.explain_plan_t;
+import gov.lbl.superlu.Dlu_pdgsasync.factors_t;
+import gov.lbl.superlu.Dlu_pdmemory;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import java.util.Arrays;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdexplain.pdgstrf_explain;
+import static gov.lbl.superlu.Dlu_pdexplain.print_explain_plan;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgsfree;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgstrf_async;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Explains the factorization of 2-D and 3-D grids, some with random
+ * extra entries, by pdgstrf_explain(), then factors them by pdgstrf()
+ * with the same ordering, and checks the numbers of the plan:
+ *
+ *    o nnz(L), nnz(U) and the flops of the factorization are within the
+ *      bounds of the plan;
+ *    o the critical paths are at most the flops, the pipelined one at
+ *      most the other, and the etree has at most n levels;
+ *    o the supernode and panel histograms each add up to n columns, and
+ *      the panels are those pdgstrf() scheduled (Gstat.panel_histo);
+ *    o if pdgstrf() did not expand its arrays, lusup[] has the length
+ *      nzlumax of the plan;
+ *    o the plan is the same when the values of A are all NaN, as none is
+ *      read.
+ *
+ * Usage: Dlu_explain_check [2-D grid size [3-D grid size]]
+ */
+public class Dlu_explain_check {
+
+	public static void main(String args[]) throws Exception
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+	    SuperMatrix grids[] = {
+		Dlu_grid.grid(g2, 2), Dlu_grid.grid(g2, 2, 2, 11),
+		Dlu_grid.grid(g3, 3), Dlu_grid.grid(g3, 3, 1, 13)
+	    };
+	    int d, P;
+	    boolean ok = true;
+
+	    for (d = 0; d < grids.length; ++d)
+		for (P = 1; P <= 4; P *= 4)
+		    ok &= check(grids[d], P);
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	static boolean check(SuperMatrix A, int P) throws Exception
+	{
+	    int n = A.ncol, perm_c[] = new int[n], i, nsup = 0, npan = 0;
+	    explain_plan_t plan = new explain_plan_t(), blind = new explain_plan_t();
+	    factors_t F;
+	    SCPformat Lstore;
+	    NCPformat Ustore;
+	    String wrong = null;
+	    int expanded;
+
+	    get_perm_c(6, A, perm_c);
+	    pdgstrf_explain(P, SP_IENV_TUNING, A, perm_c, plan);
+	    pdgstrf_explain(P, SP_IENV_TUNING, nan(A), perm_c, blind);
+	    F = pdgstrf_async(P, A, perm_c, null, null, null).get();
+	    expanded = Dlu_pdmemory.no_expand - 1;  /* the allocation counts as one */
+	    Lstore = (SCPformat) F.L.Store;
+	    Ustore = (NCPformat) F.U.Store;
+
+	    for (i = 0; i < plan.super_histo.length; ++i) nsup += i * plan.super_histo[i];
+	    for (i = 0; i < plan.panel_histo.length; ++i) npan += i * plan.panel_histo[i];
+
+	    if ( F.info != 0 )
+		wrong = "info " + F.info;
+	    else if ( Lstore.nnz > plan.nnz_l || Ustore.nnz > plan.nnz_u )
+		wrong = "nnz(L), nnz(U) above the bounds";
+	    else if ( F.flops > plan.flops * (1 + 1e-12) )
+		wrong = "flops above the bound";
+	    else if ( !(plan.cpath <= plan.flops && plan.ppath <= plan.cpath
+			&& plan.ppath > 0 && plan.height >= 1 && plan.height <= n
+			&& plan.nleaves >= 1) )
+		wrong = "critical paths or etree";
+	    else if ( nsup != n || npan != n )
+		wrong = "histograms of " + nsup + ", " + npan + " columns";
+	    else if ( !Arrays.equals(plan.panel_histo, F.Gstat.panel_histo) )
+		wrong = "other panels than pdgstrf()";
+	    else if ( expanded == 0 && Lstore.nzval.length != plan.nzlumax )
+		wrong = "lusup[] of " + Lstore.nzval.length + ", not " + plan.nzlumax;
+	    else if ( !same(plan, blind) )
+		wrong = "another plan with NaN values";
+
+	    printf("  n %6d P %d %-6s nnz(L) %d <= %d, nnz(U) %d <= %d, flops %.3e <= %.3e, lusup %s%s\n",
+		   n, P, wrong == null ? "ok" : "WRONG", Lstore.nnz, plan.nnz_l,
+		   Ustore.nnz, plan.nnz_u, F.flops, plan.flops,
+		   expanded == 0 ? "as planned" : "expanded",
+		   wrong == null ? "" : ": " + wrong);
+	    if ( wrong != null ) print_explain_plan(plan);
+	    pdgsfree(F);
+	    return wrong == null;
+	}
+
+	/* A with all its values NaN. */
+	static SuperMatrix nan(SuperMatrix A)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    SuperMatrix An = new SuperMatrix();
+	    double nzval[] = new double[Astore.nnz];
+
+	    Arrays.fill(nzval, Double.NaN);
+	    dCreate_CompCol_Matrix(An, A.nrow, A.ncol, Astore.nnz, nzval,
+				   Astore.rowind, Astore.colptr, SLU_NC, SLU_D, SLU_GE);
+	    return An;
+	}
+
+	static boolean same(explain_plan_t a, explain_plan_t b)
+	{
+	    return Arrays.equals(a.perm_c, b.perm_c) && a.nnz_l == b.nnz_l
+		&& a.nnz_u == b.nnz_u && a.flops == b.flops && a.cpath == b.cpath
+		&& a.ppath == b.ppath && a.nsuper == b.nsuper && a.nrelax == b.nrelax
+		&& Arrays.equals(a.super_histo, b.super_histo)
+		&& Arrays.equals(a.panel_histo, b.panel_histo)
+		&& a.total_bytes == b.total_bytes;
+	}
+
+}
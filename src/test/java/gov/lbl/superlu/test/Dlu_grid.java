@@ -0,0 +1,64 @@
+package gov.lbl.superlu.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * The grid matrices of the drivers: the 5-point (d = 2) or 7-point
+ * (d = 3) operator on a grid of side g, with nextra random unsymmetric
+ * couplings per column, columns sorted. The diagonal is 2*d + 1 + nextra
+ * and every other entry -1, so that A is diagonally dominant by columns.
+ */
+public class Dlu_grid {
+
+	/* The grid alone. */
+	static SuperMatrix grid(int g, int d)
+	{
+	    return grid(g, d, 0, 0);
+	}
+
+	/* The grid with nextra random couplings per column, drawn from seed. */
+	static SuperMatrix grid(int g, int d, int nextra, long seed)
+	{
+	    Random r = new Random(seed);
+	    int n = d == 2 ? g * g : g * g * g, nnz = 0, j, i, k, c, p;
+	    int xa[] = new int[n+1], asub[] = new int[(2*d + 1 + nextra) * n];
+	    int stride[] = { 1, g, g * g };
+	    double a[];
+	    SuperMatrix A = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j) {
+		xa[j] = nnz;
+		asub[nnz++] = j;
+		for (k = 0; k < d; ++k) {
+		    c = (j / stride[k]) % g;
+		    if ( c > 0 ) asub[nnz++] = j - stride[k];
+		    if ( c < g-1 ) asub[nnz++] = j + stride[k];
+		}
+		for (k = 0; k < nextra; ++k) asub[nnz++] = r.nextInt(n);
+		Arrays.sort(asub, xa[j], nnz);
+		p = xa[j];
+		for (i = xa[j] + 1; i < nnz; ++i)
+		    if ( asub[i] != asub[p] ) asub[++p] = asub[i];
+		nnz = p + 1;
+	    }
+	    xa[n] = nnz;
+	    a = new double[nnz];
+	    for (j = 0; j < n; ++j)
+		for (i = xa[j]; i < xa[j+1]; ++i)
+		    a[i] = asub[i] == j ? 2*d + 1 + nextra : -1.0;
+	    dCreate_CompCol_Matrix(A, n, n, nnz, a, Arrays.copyOf(asub, nnz), xa,
+				   SLU_NC, SLU_D, SLU_GE);
+	    return A;
+	}
+
+}
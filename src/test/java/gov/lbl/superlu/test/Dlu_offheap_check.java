@@ -0,0 +1,127 @@
+package gov.lbl.superlu.test;
+
+import java.util.concurrent.ExecutionException;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_pdgsasync.factors_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCLUformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgsfree;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgstrf_async;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgstrs_async;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.NOTRANS;
+import static gov.lbl.superlu.Dlu_slu_mt_util.trans_t.TRANS;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Factors a 2-D and a 3-D grid with Dlu.OFFHEAP_LU set and
+ * Dlu.OFFHEAP_THRESHOLD = 1, so that every factor is moved off the heap,
+ * with 1 and 2 threads, both as L (SCP) and U (NCP) and with COMPACT_LU
+ * as one SCLU matrix. The values must have left their arrays for an
+ * off-heap store, and A * x = A * ones and A' * x = A' * ones must be
+ * solved to max |x - 1| < 1e-10 from the store, whose supernodes the
+ * solves gather. Each case is run again with OFFHEAP_LU off, where the
+ * values must stay on-heap, as a reference.
+ *
+ * Usage: Dlu_offheap_check [2-D grid size [3-D grid size]]
+ */
+public class Dlu_offheap_check {
+
+	public static void main(String args[]) throws Exception
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+	    SuperMatrix grids[] = {
+		Dlu_grid.grid(g2, 2), Dlu_grid.grid(g3, 3, 1, 7)
+	    };
+	    int d, c, o, P;
+	    boolean ok = true;
+
+	    Dlu.OFFHEAP_THRESHOLD = 1;
+	    for (d = 0; d < grids.length; ++d)
+	    for (c = 0; c < 2; ++c) {
+		Dlu.COMPACT_LU = c == 1;
+		for (o = 1; o >= 0; --o) {
+		    Dlu.OFFHEAP_LU = o == 1;
+		    for (P = 1; P <= 2; ++P)
+			ok &= check(grids[d], P);
+		}
+	    }
+	    Dlu.OFFHEAP_LU = false;
+	    Dlu.COMPACT_LU = false;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	static boolean check(SuperMatrix A, int P) throws Exception
+	{
+	    int n = A.ncol, perm_c[] = new int[n];
+	    factors_t F;
+	    boolean offheap, ok;
+	    double err, errt;
+
+	    get_perm_c(6, A, perm_c);
+	    F = pdgstrf_async(P, A, perm_c, null, null, null).get();
+	    offheap = is_offheap(F.L, F.U);
+	    err = solve(F, A, false);
+	    errt = solve(F, A, true);
+	    ok = F.info == 0 && offheap == Dlu.OFFHEAP_LU && err < 1e-10 && errt < 1e-10;
+	    printf("  n %6d P %d %-5s %-8s %-6s info %d, max|x-1| %.1e, transposed %.1e\n",
+		   n, P, Dlu.COMPACT_LU ? "SCLU" : "SCP", offheap ? "off-heap" : "on-heap",
+		   ok ? "ok" : "WRONG", F.info, err, errt);
+	    pdgsfree(F);
+	    return ok;
+	}
+
+	/* Whether the values of L and U are in an off-heap store, not in
+	   their arrays. */
+	static boolean is_offheap(SuperMatrix L, SuperMatrix U)
+	{
+	    if ( L.Store instanceof SCLUformat ) {
+		SCLUformat LUstore = (SCLUformat) L.Store;
+		return LUstore.nzval_store != null && LUstore.nzval == null;
+	    }
+	    SCPformat Lstore = (SCPformat) L.Store;
+	    NCPformat Ustore = (NCPformat) U.Store;
+	    return Lstore.nzval_store != null && Lstore.nzval == null &&
+		   Ustore.nzval_store != null && Ustore.nzval == null;
+	}
+
+	/* Solve A * x = A * ones, or A' * x = A' * ones; max |x - 1|. */
+	static double solve(factors_t F, SuperMatrix A, boolean transposed)
+	    throws InterruptedException
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, j, p;
+	    double b[] = new double[n], err = 0;
+	    SuperMatrix B = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    if ( transposed ) b[j] += Astore.nzval[p];
+		    else b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    F.trans = transposed ? TRANS : NOTRANS;
+	    try {
+		pdgstrs_async(F, B, null).get();
+	    } catch (ExecutionException e) {
+		printf("  %s\n", e.getCause());
+		return Double.NaN;
+	    }
+	    for (j = 0; j < n; ++j) err = Math.max(err, Math.abs(b[j] - 1.0));
+	    return err;
+	}
+
+}
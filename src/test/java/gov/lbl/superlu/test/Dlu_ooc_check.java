@@ -0,0 +1,85 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Factors 2-D and 3-D grids out of core (Dlu.OOC_LU) with both engines,
+ * on 1 and 4 threads, under a budget far below the size of the factor,
+ * so that pages are evicted and read back during the factorization and
+ * the factor is left on disk, and under a budget that holds it, so that
+ * it ends up in memory. b = A * ones must be solved to max |x - 1| <
+ * 1e-10 in every case. The statistics printed by pdgssv() show the peak
+ * of the pages in memory and the bytes read back.
+ *
+ * Usage: Dlu_ooc_check [2-D grid size [3-D grid size [small budget]]]
+ */
+public class Dlu_ooc_check {
+
+	public static void main(String args[])
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+	    long small = args.length > 2 ? Long.parseLong(args[2]) : 1L << 16;
+	    SuperMatrix grids[] = {
+		Dlu_grid.grid(g2, 2), Dlu_grid.grid(g3, 3)
+	    };
+	    long budgets[] = { small, 1L << 30 };
+	    boolean saved = Dlu.SEQUENTIAL, ok = true, ondisk[] = new boolean[1];
+	    int info[] = new int[1], d, e, P, k;
+	    double err;
+
+	    Dlu.OOC_LU = true;
+	    for (d = 0; d < grids.length; ++d)
+		for (e = 0; e < 2; ++e)
+		    for (P = 1; P <= 4; P *= 4)
+			for (k = 0; k < budgets.length; ++k) {
+			    Dlu.SEQUENTIAL = e == 0;
+			    Dlu.OOC_BUDGET = budgets[k];
+			    err = solve(grids[d], P, info, ondisk);
+			    printf("  n %6d %-10s P %d budget %10d: info %d, %s, max|x-1| %.1e\n",
+				   grids[d].ncol, e == 0 ? "sequential" : "parallel", P,
+				   budgets[k], info[0], ondisk[0] ? "on disk" : "in memory", err);
+			    if ( info[0] != 0 || !(err < 1e-10) || ondisk[0] != (k == 0) )
+				ok = false;
+			}
+	    Dlu.SEQUENTIAL = saved;
+	    Dlu.OOC_LU = false;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	/* Solve with nprocs threads; max |x - 1| for b = A * ones. ondisk[0]
+	   tells whether the factor was left on disk. */
+	static double solve(SuperMatrix A, int nprocs, int info[], boolean ondisk[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, perm_c[] = new int[n], perm_r[] = new int[n], j, p;
+	    double b[] = new double[n], err = 0;
+	    SuperMatrix L = new SuperMatrix(), U = new SuperMatrix(), B = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    get_perm_c(6, A, perm_c);
+	    pdgssv(nprocs, A, perm_c, perm_r, L, U, B, info);
+	    ondisk[0] = L.Stype == SLU_SCLU;
+	    for (j = 0; j < n; ++j) err = Math.max(err, Math.abs(b[j] - 1.0));
+	    return err;
+	}
+
+}
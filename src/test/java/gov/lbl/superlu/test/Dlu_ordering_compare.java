@@ -0,0 +1,99 @@
+package gov.lbl.superlu.test;
+
+import java.util.Arrays;
+
+import gov.lbl.superlu.Dlu_ordering_stats.ordering_stats_t;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_ordering_stats.ordering_stats;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Compares the column orderings of get_perm_c() on generated matrices:
+ * ordering time, the nnz(L), nnz(U) and flop bounds of the factorization,
+ * the critical path of the column etree (and so the speedup it allows on
+ * 8 and 32 threads), and the wall time of pdgssv() on 8 and 32 threads.
+ * Orderings or factorizations that fail are reported as such.
+ *
+ * Usage: Dlu_ordering_compare [2-D grid size [3-D grid size]]
+ */
+public class Dlu_ordering_compare {
+
+	static final int specs[] = { 0, 1, 2, 3, 4, 5, 6, 7 };
+	static final String names[] = { "natural", "MMD A'A", "MMD A'+A", "COLAMD",
+					"ND A'A", "ND A'+A", "AMD A'+A", "auto" };
+	static final int threads[] = { 8, 32 };
+
+	static String factor_time(SuperMatrix A, int perm_c[], int nprocs)
+	{
+	    int n = A.ncol, info[] = new int[1];
+	    double rhs[] = new double[n];
+	    SuperMatrix B = new SuperMatrix();
+	    long t;
+
+	    Arrays.fill(rhs, 1.0);
+	    dCreate_Dense_Matrix(B, n, 1, rhs, n, SLU_DN, SLU_D, SLU_GE);
+	    try {
+		t = System.nanoTime();
+		pdgssv(nprocs, A, perm_c.clone(), new int[n], new SuperMatrix(),
+		       new SuperMatrix(), B, info);
+		t = System.nanoTime() - t;
+		if ( info[0] != 0 ) return "info " + info[0];
+		return String.format("%.3f s", t * 1e-9);
+	    } catch (Throwable e) {
+		return "failed (" + e.getClass().getSimpleName() + ")";
+	    }
+	}
+
+	static void run(String name, SuperMatrix A)
+	{
+	    int n = A.ncol, s, k;
+	    int perm_c[] = new int[n];
+	    ordering_stats_t st = new ordering_stats_t();
+	    long t;
+
+	    printf("%s: n %d\n", name, n);
+	    printf("  %-9s %8s %11s %11s %10s %9s %7s %7s  %-16s %-16s\n",
+		   "ordering", "time", "nnz(L)", "nnz(U)", "flops", "height",
+		   "P=8", "P=32", "pdgssv P=8", "pdgssv P=32");
+	    for (s = 0; s < specs.length; ++s) {
+		try {
+		    t = System.nanoTime();
+		    get_perm_c(specs[s], A, perm_c);
+		    t = System.nanoTime() - t;
+		} catch (Throwable e) {
+		    printf("  %-9s failed (%s)\n", names[s], e.getClass().getSimpleName());
+		    continue;
+		}
+		ordering_stats(A, perm_c, st);
+		printf("  %-9s %8.3f %11d %11d %10.3e %9d %7.2f %7.2f",
+		       names[s], t * 1e-9, st.nnz_l, st.nnz_u, st.flops, st.height,
+		       Math.min(threads[0], st.flops / st.cpath),
+		       Math.min(threads[1], st.flops / st.cpath));
+		for (k = 0; k < threads.length; ++k)
+		    printf("  %-16s", factor_time(A, perm_c, threads[k]));
+		printf("\n");
+	    }
+	}
+
+	public static void main(String args[])
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+	    printf("P=8, P=32: speedup allowed by the column etree, min(P, flops / critical path)\n");
+	    run("2-D grid", Dlu_grid.grid(g2, 2, 0, 1));
+	    run("3-D grid", Dlu_grid.grid(g3, 3, 0, 2));
+	    run("2-D grid + 2 random couplings per column", Dlu_grid.grid(g2, 2, 2, 3));
+	}
+
+}
@@ -0,0 +1,129 @@
+package gov.lbl.superlu.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.getata;
+import static gov.lbl.superlu.Dlu_get_perm_c.getata_par;
+import static gov.lbl.superlu.Dlu_get_perm_c.at_plus_a;
+import static gov.lbl.superlu.Dlu_get_perm_c.at_plus_a_par;
+
+
+/*
+ * Times the construction of the A'*A and A'+A graphs by getata() and
+ * at_plus_a() against the parallel getata_par() and at_plus_a_par(),
+ * and checks that they agree.
+ *
+ * Usage: Dlu_ordering_graph_bench [grid size [threads [reps]]]
+ */
+public class Dlu_ordering_graph_bench {
+
+	/* The pattern of the 2-D grid of Dlu_grid, with a few random couplings. */
+	static int[][] grid(int g, int extra, long seed)
+	{
+	    NCformat Astore = (NCformat) Dlu_grid.grid(g, 2, extra, seed).Store;
+
+	    return new int[][] { Astore.colptr, Astore.rowind };
+	}
+
+	/* Add ndense rows, each with an entry in every 10th column. */
+	static int[][] add_dense_rows(int n, int xa[], int asub[], int ndense, long seed)
+	{
+	    Random r = new Random(seed);
+	    int rows[] = new int[ndense];
+	    int xb[] = new int[n+1], bsub[] = new int[xa[n] + ndense * n];
+	    int j, i, k, nnz = 0;
+
+	    for (k = 0; k < ndense; ++k) rows[k] = r.nextInt(n);
+	    for (j = 0; j < n; ++j) {
+		xb[j] = nnz;
+		for (i = xa[j]; i < xa[j+1]; ++i) bsub[nnz++] = asub[i];
+		if ( j % 10 == 0 )
+		    for (k = 0; k < ndense; ++k) bsub[nnz++] = rows[k];
+		Arrays.sort(bsub, xb[j], nnz);
+		int p = xb[j];
+		for (i = xb[j] + 1; i < nnz; ++i)
+		    if ( bsub[i] != bsub[p] ) bsub[++p] = bsub[i];
+		nnz = p + 1;
+	    }
+	    xb[n] = nnz;
+	    return new int[][] { xb, Arrays.copyOf(bsub, nnz) };
+	}
+
+	static void run(String name, int n, int xa[], int asub[], int nthreads, int reps)
+	{
+	    int nz = xa[n], i;
+	    int bnz[] = new int[1], pnz[] = new int[1], ndense[] = new int[1];
+	    int b_colptr[][] = new int[1][], b_rowind[][] = new int[1][];
+	    int p_colptr[][] = new int[1][], p_rowind[][] = new int[1][];
+	    boolean dense[] = new boolean[n];
+	    long t, tseq, tpar, tdense;
+
+	    printf("%s: n %d, nnz %d\n", name, n, nz);
+
+	    /* A'*A */
+	    tseq = tpar = tdense = Long.MAX_VALUE;
+	    for (i = 0; i < reps; ++i) {
+		t = System.nanoTime();
+		getata(n, n, nz, xa, asub, bnz, b_colptr, b_rowind);
+		tseq = Math.min(tseq, System.nanoTime() - t);
+		t = System.nanoTime();
+		getata_par(n, n, nz, xa, asub, 0, nthreads, pnz, p_colptr, p_rowind, ndense);
+		tpar = Math.min(tpar, System.nanoTime() - t);
+	    }
+	    check("A'*A", n, bnz[0], b_colptr[0], b_rowind[0], pnz[0], p_colptr[0], p_rowind[0]);
+	    printf("  A'*A  nnz %10d  getata %8.3f s  getata_par(%d) %8.3f s  speedup %5.2f\n",
+		   bnz[0], tseq*1e-9, nthreads, tpar*1e-9, (double) tseq / tpar);
+	    for (i = 0; i < reps; ++i) {
+		t = System.nanoTime();
+		getata_par(n, n, nz, xa, asub, (int) Math.max(16, 10 * Math.sqrt(n)), nthreads,
+			   pnz, p_colptr, p_rowind, ndense);
+		tdense = Math.min(tdense, System.nanoTime() - t);
+	    }
+	    printf("  A'*A  nnz %10d  without %d dense rows  %8.3f s\n", pnz[0], ndense[0], tdense*1e-9);
+
+	    /* A'+A */
+	    tseq = tpar = Long.MAX_VALUE;
+	    for (i = 0; i < reps; ++i) {
+		t = System.nanoTime();
+		at_plus_a(n, nz, xa, asub, bnz, b_colptr, b_rowind);
+		tseq = Math.min(tseq, System.nanoTime() - t);
+		t = System.nanoTime();
+		at_plus_a_par(n, nz, xa, asub, 0, nthreads, pnz, p_colptr, p_rowind, dense);
+		tpar = Math.min(tpar, System.nanoTime() - t);
+	    }
+	    check("A'+A", n, bnz[0], b_colptr[0], b_rowind[0], pnz[0], p_colptr[0], p_rowind[0]);
+	    printf("  A'+A  nnz %10d  at_plus_a %8.3f s  at_plus_a_par(%d) %8.3f s  speedup %5.2f\n",
+		   bnz[0], tseq*1e-9, nthreads, tpar*1e-9, (double) tseq / tpar);
+	}
+
+	static void check(String what, int n, int bnz, int b_colptr[], int b_rowind[],
+			  int pnz, int p_colptr[], int p_rowind[])
+	{
+	    if ( bnz != pnz || !Arrays.equals(b_colptr, p_colptr)
+		 || !Arrays.equals(Arrays.copyOf(b_rowind, bnz), Arrays.copyOf(p_rowind, pnz)) )
+		throw new IllegalStateException(what + ": parallel result differs");
+	}
+
+	public static void main(String args[])
+	{
+	    int g = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+	    int nthreads = args.length > 1 ? Integer.parseInt(args[1])
+		: Runtime.getRuntime().availableProcessors();
+	    int reps = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+	    int n = g * g;
+	    int a[][];
+
+	    a = grid(g, 0, 1);
+	    run("5-point grid", n, a[0], a[1], nthreads, reps);
+	    a = grid(g, 3, 2);
+	    run("grid + random couplings", n, a[0], a[1], nthreads, reps);
+	    a = add_dense_rows(n, a[0], a[1], 4, 3);
+	    run("grid + random couplings + 4 dense rows", n, a[0], a[1], nthreads, reps);
+	}
+
+}
@@ -2,6 +2,7 @@ package gov.lbl.superlu.test;
 
 import gov.lbl.superlu.Dlu_supermatrix.NCPformat;
 import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SCLUformat;
 import gov.lbl.superlu.Dlu_supermatrix.SCPformat;
 import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
 
@@ -15,6 +16,7 @@ import static gov.lbl.superlu.Dlu_slu_mt_util.SUPERLU_ABORT;
 
 import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
 import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_SCLU;
 import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
 import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
 
@@ -87,6 +89,10 @@ public class Dlu_pdlinsol {
 	     *   permc_spec = 1: minimum degree ordering on structure of A'*A
 	     *   permc_spec = 2: minimum degree ordering on structure of A'+A
 	     *   permc_spec = 3: approximate minimum degree for unsymmetric matrices
+	     *   permc_spec = 4: nested dissection on structure of A'*A
+	     *   permc_spec = 5: nested dissection on structure of A'+A
+	     *   permc_spec = 6: approximate minimum degree on structure of A'+A
+	     *   permc_spec = 7: best of several orderings (see Dlu_auto_order)
 	     */
 	    permc_spec = 1;
 	    get_perm_c(permc_spec, A, perm_c);
@@ -96,11 +102,16 @@ public class Dlu_pdlinsol {
 	    if ( info[0] == 0 ) {
 		dinf_norm_error(nrhs, B, xact); /* Inf. norm of the error */
 
-		Lstore = (SCPformat) L.Store;
-		Ustore = (NCPformat) U.Store;
-	    	printf("#NZ in factor L = %d\n", Lstore.nnz);
-	    	printf("#NZ in factor U = %d\n", Ustore.nnz);
-	    	printf("#NZ in L+U = %d\n", Lstore.nnz + Ustore.nnz - L.ncol);
+		if ( L.Stype == SLU_SCLU ) {
+		    /* L and U compacted together (Dlu.COMPACT_LU, Dlu.OOC_LU) */
+		    printf("#NZ in L+U = %d\n", ((SCLUformat) L.Store).nnz - L.ncol);
+		} else {
+		    Lstore = (SCPformat) L.Store;
+		    Ustore = (NCPformat) U.Store;
+		    printf("#NZ in factor L = %d\n", Lstore.nnz);
+		    printf("#NZ in factor U = %d\n", Ustore.nnz);
+		    printf("#NZ in L+U = %d\n", Lstore.nnz + Ustore.nnz - L.ncol);
+		}
 
 		superlu_dQuerySpace(nprocs, L, U, panel_size, superlu_memusage);
 		printf("L\\U MB %.3f\ttotal MB needed %.3f\texpansions %d\n",
@@ -0,0 +1,63 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+
+/*
+ * Factors 2-D and 3-D grids, plain and with random couplings, with
+ * Dlu.PIPELINE_SYMBOLIC set, so that the upper supernodes are stored by
+ * the dynamic scheme, with 2 to 8 threads under the task queue,
+ * CPATH_PRIORITY, WORK_STEALING and DOMAINS, ordered by AMD (permc_spec
+ * 6) and by nested dissection (4, 5). b = A * ones must be solved to
+ * max |x - 1| < 1e-10 every time.
+ *
+ * Usage: Dlu_pipeline_check [2-D grid size [3-D grid size [reps]]]
+ */
+public class Dlu_pipeline_check {
+
+	static final String scheds[] = { "fifo", "cpath", "steal", "domains" };
+	static final int orders[] = { 6, 4, 5 };
+
+	public static void main(String args[])
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+	    int reps = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+	    SuperMatrix grids[] = {
+		Dlu_grid.grid(g2, 2), Dlu_grid.grid(g2, 2, 1, 1),
+		Dlu_grid.grid(g3, 3)
+	    };
+	    int info[] = new int[1], s, o, d, P, r;
+	    double err;
+	    boolean ok = true;
+
+	    Dlu.PIPELINE_SYMBOLIC = true;
+	    Dlu.SEQUENTIAL = false;     /* the threads even for the small grids */
+	    for (s = 0; s < scheds.length; ++s) {
+		Dlu.CPATH_PRIORITY = s == 1;
+		Dlu.WORK_STEALING = s == 2;
+		Dlu.DOMAINS = s == 3;
+		for (o = 0; o < orders.length; ++o)
+		for (d = 0; d < grids.length; ++d)
+		for (P = 2; P <= 8; P *= 2)
+		for (r = 0; r < reps; ++r) {
+		    err = Dlu_scheduler_check.solve(grids[d], orders[o], P, info);
+		    if ( info[0] != 0 || !(err < 1e-10) ) {
+			printf("  %-8s order %d n %6d P %d: info %d, max|x-1| %.1e\n",
+			       scheds[s], orders[o], grids[d].ncol, P, info[0], err);
+			ok = false;
+		    }
+		}
+		printf("  %-8s done\n", scheds[s]);
+	    }
+	    Dlu.PIPELINE_SYMBOLIC = false;
+	    Dlu.SEQUENTIAL = true;
+	    Dlu.DOMAINS = false;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+}
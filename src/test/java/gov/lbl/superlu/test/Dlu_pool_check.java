@@ -0,0 +1,231 @@
+package gov.lbl.superlu.test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import gov.lbl.superlu.Dlu_pdgsasync.factor_control_t;
+import gov.lbl.superlu.Dlu_pdgsasync.factors_t;
+import gov.lbl.superlu.Dlu_pdgsasync.progress_listener_t;
+import gov.lbl.superlu.Dlu_pdgspool.pool_job_t;
+import gov.lbl.superlu.Dlu_pdgspool.pool_t;
+import gov.lbl.superlu.Dlu_slu_mt_util.sp_tuning_t;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgsfree;
+import static gov.lbl.superlu.Dlu_pdgsasync.pdgstrf_async;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_create;
+import static gov.lbl.superlu.Dlu_pdgspool.pool_shutdown;
+import static gov.lbl.superlu.Dlu_pdgspool.print_pool_stat;
+import static gov.lbl.superlu.Dlu_sp_ienv.SP_IENV_TUNING;
+
+
+/*
+ * Factors a 2-D grid several times at once on pools of one worker, with
+ * 2 slots each, through pdgstrf_async(), and checks the policies of
+ * Dlu_pdgspool:
+ *
+ *    o weight shares: two factorizations of weight 3 and 1 start
+ *      together; the first must be done in about 2/3 of the time of the
+ *      second, and in about the same time with weights 1 and 1;
+ *    o strict priority: a factorization of priority 1 started while one
+ *      of priority 0 runs must be done before the other takes another
+ *      panel;
+ *    o admission: with max_bytes = 1, only one factorization is admitted
+ *      at a time, even when one of them runs out of storage (info > n),
+ *      and all are done; with no limit, they are admitted together.
+ *
+ * Usage: Dlu_pool_check [2-D grid size]
+ */
+public class Dlu_pool_check {
+
+	/* Panels of a factorization taken so far, from its listener, and
+	   those of another one when it was about to take its last. */
+	static class panels_t implements progress_listener_t {
+	    volatile int panels = -1, other_at_last = -1;
+	    panels_t other;
+	    public void progress(int panels_done, int npanels, double flops) {
+		panels = panels_done;
+		if ( other != null && panels_done == npanels - 1 )
+		    other_at_last = other.panels;
+	    }
+	}
+
+	/* Holds the worker, in the first turn, until released. */
+	static class hold_t implements progress_listener_t {
+	    final CountDownLatch go = new CountDownLatch(1);
+	    final CountDownLatch held = new CountDownLatch(1);
+	    public void progress(int panels_done, int npanels, double flops) {
+		if ( panels_done == 0 ) return;
+		held.countDown();
+		try {
+		    go.await();
+		} catch (InterruptedException e) {
+		}
+	    }
+	}
+
+	static SuperMatrix A;
+	static int perm_c[];
+
+	public static void main(String args[]) throws Exception
+	{
+	    int g = args.length > 0 ? Integer.parseInt(args[0]) : 80;
+	    double ratio;
+	    int panels;
+	    boolean ok = true;
+
+	    A = Dlu_grid.grid(g, 2);
+	    perm_c = new int[A.ncol];
+	    get_perm_c(6, A, perm_c);
+	    done(start(null, 1, 0, null, null));
+
+	    ratio = median_share(3.0);
+	    ok &= expect("weights 3:1", ratio, ratio > 0.5 && ratio < 0.85);
+	    ratio = median_share(1.0);
+	    ok &= expect("weights 1:1", ratio, ratio > 0.85);
+
+	    panels = priority();
+	    ok &= expect("priority", panels, panels <= 2);
+
+	    ok &= admission(1, 1);
+	    ok &= admission(0, 3);
+
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	/* The median of 3 share(w): the last panels, which take most of the
+	   time, make a single one uneven. */
+	static double median_share(double w) throws Exception
+	{
+	    double r[] = { share(w), share(w), share(w) };
+	    Arrays.sort(r);
+	    return r[1];
+	}
+
+	/*
+	 * Of two factorizations of weight w and 1, the time the first took
+	 * over the time the second took: 2/3 for w = 3, 1 for w = 1. Both are
+	 * set up while another one holds the only worker, so that they start
+	 * together; that one is cancelled then.
+	 */
+	static double share(double w) throws Exception
+	{
+	    pool_t pool = pool_create(1, 0);
+	    hold_t hold = new hold_t();
+	    CompletableFuture<factors_t> j0, j1, j2;
+	    long t0, t1, t2;
+
+	    pool.quantum = 1e6;
+	    j0 = start(pool, 1.0, 0, hold, null);
+	    hold.held.await();
+	    j1 = start(pool, w, 0, null, null);
+	    j2 = start(pool, 1.0, 0, null, null);
+	    while ( njobs(pool) < 3 ) Thread.sleep(1);
+	    j0.cancel(true);
+	    t0 = System.nanoTime();
+	    hold.go.countDown();
+	    done(j1);
+	    t1 = System.nanoTime();
+	    done(j2);
+	    t2 = System.nanoTime();
+	    pool_shutdown(pool);
+	    return (double) (t1 - t0) / (t2 - t0);
+	}
+
+	/*
+	 * The panels a factorization of priority 0 took while one of priority
+	 * 1, started once it had begun, took all its panels: but for the one
+	 * it was in and the one it was about to take, none.
+	 */
+	static int priority() throws Exception
+	{
+	    pool_t pool = pool_create(1, 0);
+	    panels_t lo = new panels_t(), hi = new panels_t();
+	    CompletableFuture<factors_t> jlo, jhi;
+	    int from, to;
+
+	    pool.quantum = 1e6;
+	    jlo = start(pool, 1.0, 0, lo, null);
+	    while ( lo.panels <= 0 ) Thread.sleep(1);
+	    hi.other = lo;
+	    jhi = start(pool, 1.0, 1, hi, null);
+	    while ( hi.panels <= 0 ) Thread.sleep(1);
+	    from = lo.panels;
+	    done(jhi);
+	    to = hi.other_at_last;
+	    done(jlo);
+	    pool_shutdown(pool);
+	    return to - from;
+	}
+
+	/*
+	 * Start 3 factorizations at once on a pool admitting max_bytes, the
+	 * second with a tuning too small for its U; all must be done, with
+	 * at most (at least if no limit) max_admitted admitted together.
+	 */
+	static boolean admission(long max_bytes, int max_admitted) throws Exception
+	{
+	    pool_t pool = pool_create(1, max_bytes);
+	    sp_tuning_t d = SP_IENV_TUNING;
+	    sp_tuning_t small = new sp_tuning_t(d.panel_size, d.relax, d.maxsuper,
+						d.rowblk, d.colblk, d.fill_lusup,
+						A.ncol, d.fill_lsub);
+	    @SuppressWarnings("unchecked")
+	    CompletableFuture<factors_t> j[] = new CompletableFuture[3];
+	    int k, info[] = new int[3];
+	    boolean ok;
+
+	    for (k = 0; k < 3; ++k)
+		j[k] = start(pool, 1.0, 0, null, k == 1 ? small : null);
+	    for (k = 0; k < 3; ++k)
+		info[k] = done(j[k]).info;
+	    ok = info[0] == 0 && info[1] > A.ncol && info[2] == 0 &&
+		( max_bytes > 0 ? pool.max_admitted == max_admitted
+				: pool.max_admitted >= max_admitted );
+	    printf("  max_bytes %-10d %-6s info %d %d %d, max admitted %d\n",
+		   max_bytes, ok ? "ok" : "WRONG", info[0], info[1], info[2],
+		   pool.max_admitted);
+	    if ( !ok ) print_pool_stat(pool);
+	    pool_shutdown(pool);
+	    return ok;
+	}
+
+	static CompletableFuture<factors_t>
+	start(pool_t pool, double weight, int priority, progress_listener_t listener,
+	      sp_tuning_t tuning)
+	{
+	    factor_control_t ctl = new factor_control_t();
+	    ctl.interval = 0;
+	    ctl.listener = listener;
+	    return pdgstrf_async(2, A, perm_c, tuning, ctl,
+				 pool != null ? new pool_job_t(pool, weight, priority) : null,
+				 null);
+	}
+
+	static long njobs(pool_t pool)
+	{
+	    synchronized (pool) {
+		return pool.njobs;
+	    }
+	}
+
+	/* The factors of a future, released but for info and flops. */
+	static factors_t done(CompletableFuture<factors_t> future) throws Exception
+	{
+	    factors_t F = future.get();
+	    pdgsfree(F);
+	    return F;
+	}
+
+	static boolean expect(String test, double value, boolean ok)
+	{
+	    printf("  %-22s %-6s %.3f\n", test, ok ? "ok" : "WRONG", value);
+	    return ok;
+	}
+
+}
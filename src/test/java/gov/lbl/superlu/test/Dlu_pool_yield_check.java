@@ -0,0 +1,100 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgspool.pdgspool;
+import static gov.lbl.superlu.Dlu_pdgspool.print_pool_stat;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Runs several pdgssv() at once through the shared pool (Dlu.SHARED_POOL)
+ * with a quantum of 1 ns and fewer workers than threads asked for, so
+ * that nearly every panel ends a turn (pool_yield) and the slots of each
+ * factorization are resumed by other workers. Each solve must finish
+ * within the time limit, with b = A * ones solved to max |x - 1| < 1e-10.
+ *
+ * Usage: Dlu_pool_yield_check [factorizations [2-D grid size [seconds]]]
+ */
+public class Dlu_pool_yield_check {
+
+	public static void main(String args[]) throws InterruptedException
+	{
+	    int njobs = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+	    int g = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+	    long limit = args.length > 2 ? Long.parseLong(args[2]) : 60;
+	    final double err[] = new double[njobs];
+	    final int info[][] = new int[njobs][1];
+	    Thread jobs[] = new Thread[njobs];
+	    boolean ok = true;
+	    long deadline;
+	    int k;
+
+	    Dlu.SHARED_POOL = true;
+	    Dlu.POOL_NPROCS = 2;
+	    Dlu.POOL_QUANTUM = 1;
+
+	    for (k = 0; k < njobs; ++k) {
+		final int job = k;
+		final SuperMatrix A = Dlu_grid.grid(g + 5*k, 2);
+		err[k] = Double.NaN;
+		jobs[k] = new Thread() {
+		    public void run() {
+			err[job] = solve(A, info[job]);
+		    }
+		};
+		jobs[k].setDaemon(true);
+		jobs[k].start();
+	    }
+
+	    deadline = System.currentTimeMillis() + 1000 * limit;
+	    for (k = 0; k < njobs; ++k) {
+		jobs[k].join(Math.max(1, deadline - System.currentTimeMillis()));
+		if ( jobs[k].isAlive() ) {
+		    printf("  job %d: not done after %d s\n", k, limit);
+		    ok = false;
+		} else {
+		    printf("  job %d: info %d, max|x-1| %.1e\n", k, info[k][0], err[k]);
+		    if ( info[k][0] != 0 || !(err[k] < 1e-10) ) ok = false;
+		}
+	    }
+	    print_pool_stat(pdgspool());
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	/* Solve with 4 threads; max |x - 1| for b = A * ones. */
+	static double solve(SuperMatrix A, int info[])
+	{
+	    return solve(A, 4, info);
+	}
+
+	/* Solve with nprocs threads; max |x - 1| for b = A * ones. */
+	static double solve(SuperMatrix A, int nprocs, int info[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, perm_c[] = new int[n], perm_r[] = new int[n], j, p;
+	    double b[] = new double[n], err = 0;
+	    SuperMatrix B = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    get_perm_c(6, A, perm_c);
+	    pdgssv(nprocs, A, perm_c, perm_r, new SuperMatrix(), new SuperMatrix(), B, info);
+	    for (j = 0; j < n; ++j) err = Math.max(err, Math.abs(b[j] - 1.0));
+	    return err;
+	}
+
+}
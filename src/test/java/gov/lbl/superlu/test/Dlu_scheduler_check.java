@@ -0,0 +1,111 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Factors 2-D and 3-D grids with 2 to 8 threads under each scheduler
+ * (the first-in first-out task queue, POSTORDER, CPATH_PRIORITY and
+ * WORK_STEALING, with and without PARK_IDLE, and DOMAINS with the queue,
+ * CPATH_PRIORITY and WORK_STEALING), ordered by AMD (permc_spec 6) and
+ * by nested dissection (4, 5), whose bushy etrees leave many panels
+ * ready at once. b = A * ones must be solved to max |x - 1| < 1e-10
+ * every time. Each case is run first with Dlu.CHK_SCHED set, where every
+ * panel must be taken once, after its kids, with its busy descendants
+ * on one path, and then without it, as the checks serialize the
+ * schedulers and so hide some races.
+ *
+ * Usage: Dlu_scheduler_check [2-D grid size [3-D grid size [reps]]]
+ */
+public class Dlu_scheduler_check {
+
+	static final String scheds[] = {
+	    "fifo", "postorder", "cpath", "steal", "steal+park",
+	    "domains", "dom+cpath", "dom+steal"
+	};
+	static final int orders[] = { 6, 4, 5 };
+
+	public static void main(String args[])
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+	    int reps = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+	    SuperMatrix grids[] = {
+		Dlu_grid.grid(g2, 2), Dlu_grid.grid(g3, 3)
+	    };
+	    int info[] = new int[1], s, o, c, d, P, r;
+	    double err;
+	    boolean ok = true;
+
+	    /* The threads even for the small grids. */
+	    Dlu.SEQUENTIAL = false;
+	    for (s = 0; s < scheds.length; ++s) {
+		Dlu.POSTORDER = s == 1;
+		Dlu.CPATH_PRIORITY = s == 2 || s == 6;
+		Dlu.WORK_STEALING = s == 3 || s == 4 || s == 7;
+		Dlu.PARK_IDLE = s == 4;
+		Dlu.DOMAINS = s >= 5;
+		for (o = 0; o < orders.length; ++o)
+		for (c = 0; c < 2; ++c) {
+		    Dlu.CHK_SCHED = c == 0;
+		    for (d = 0; d < grids.length; ++d) {
+			for (P = 2; P <= 8; P *= 2) {
+			    for (r = 0; r < reps; ++r) {
+				try {
+				    err = solve(grids[d], orders[o], P, info);
+				} catch (IllegalStateException e) {
+				    printf("  %-10s order %d n %6d P %d: %s\n", scheds[s],
+					   orders[o], grids[d].ncol, P, e.getMessage());
+				    ok = false;
+				    continue;
+				}
+				if ( info[0] != 0 || !(err < 1e-10) ) {
+				    printf("  %-10s order %d %s n %6d P %d: info %d, max|x-1| %.1e\n",
+					   scheds[s], orders[o], c == 0 ? "checked" : "unchecked",
+					   grids[d].ncol, P, info[0], err);
+				    ok = false;
+				}
+			    }
+			}
+		    }
+		}
+		printf("  %-10s done\n", scheds[s]);
+	    }
+	    Dlu.CHK_SCHED = false;
+	    Dlu.SEQUENTIAL = true;
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	/* Solve with nprocs threads after ordering permc_spec; max |x - 1|
+	   for b = A * ones. */
+	static double solve(SuperMatrix A, int permc_spec, int nprocs, int info[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, perm_c[] = new int[n], perm_r[] = new int[n], j, p;
+	    double b[] = new double[n], err = 0;
+	    SuperMatrix B = new SuperMatrix();
+
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    get_perm_c(permc_spec, A, perm_c);
+	    pdgssv(nprocs, A, perm_c, perm_r, new SuperMatrix(), new SuperMatrix(), B, info);
+	    for (j = 0; j < n; ++j) err = Math.max(err, Math.abs(b[j] - 1.0));
+	    return err;
+	}
+
+}
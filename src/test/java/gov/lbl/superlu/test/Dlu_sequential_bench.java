@@ -0,0 +1,104 @@
+package gov.lbl.superlu.test;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Compares the two factorization engines where pdgstrf() picks the
+ * sequential one (Dlu.SEQUENTIAL, on by default): the sequential engine
+ * (pdgstrf_sequential) and the parallel engine (pdgstrf_thread, with
+ * Dlu.SEQUENTIAL cleared), on one thread and on 4 threads, by the best
+ * time of pdgssv() on 2-D and 3-D grids ordered by AMD on A'+A, and by
+ * the error of the solution. On 4 threads, the sequential engine is
+ * used only for the small grid (at most Dlu.SEQUENTIAL_NCOL columns),
+ * where it saves starting the threads and their waits for panels.
+ *
+ * Usage: Dlu_sequential_bench [2-D grid size [3-D grid size [reps]]]
+ */
+public class Dlu_sequential_bench {
+
+	static final boolean engines[] = { true, false };
+	static final String names[] = { "sequential", "parallel" };
+
+	/* Best time of pdgssv() on nprocs over reps, with b = A * ones;
+	   err[0] is max |x - 1| of the last solve. */
+	static double time(SuperMatrix A, int perm_c[], int nprocs, int reps,
+			   int info[], double err[])
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, perm_r[] = new int[n], j, p, r;
+	    double b[] = new double[n];
+	    SuperMatrix L, U, B;
+	    long t, best = Long.MAX_VALUE;
+
+	    for (r = 0; r < reps; ++r) {
+		for (j = 0; j < n; ++j) b[j] = 0;
+		for (j = 0; j < n; ++j)
+		    for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+			b[Astore.rowind[p]] += Astore.nzval[p];
+		B = new SuperMatrix();
+		dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+		L = new SuperMatrix();
+		U = new SuperMatrix();
+		t = System.nanoTime();
+		pdgssv(nprocs, A, perm_c, perm_r, L, U, B, info);
+		best = Math.min(best, System.nanoTime() - t);
+	    }
+	    err[0] = 0;
+	    for (j = 0; j < n; ++j) err[0] = Math.max(err[0], Math.abs(b[j] - 1.0));
+	    return best * 1e-9;
+	}
+
+	static void run(String name, SuperMatrix A, int reps)
+	{
+	    int n = A.ncol, perm_c[] = new int[n], info[] = new int[1], e, P;
+	    boolean saved = Dlu.SEQUENTIAL;
+	    double t[] = new double[engines.length], err[] = new double[1];
+
+	    printf("%s: n %d, nnz %d\n", name, n, ((NCformat) A.Store).nnz);
+	    get_perm_c(6, A, perm_c);
+	    for (P = 1; P <= 4; P *= 4) {
+		if ( P > 1 && n > Dlu.SEQUENTIAL_NCOL ) continue;
+		for (e = 0; e < engines.length; ++e) {
+		    Dlu.SEQUENTIAL = engines[e];
+		    t[e] = Double.NaN;
+		    try {
+			t[e] = time(A, perm_c, P, reps, info, err);
+		    } catch (Throwable x) {
+			printf("  P %d %-20s failed (%s)\n", P, names[e],
+			       x.getClass().getSimpleName());
+			continue;
+		    } finally {
+			Dlu.SEQUENTIAL = saved;
+		    }
+		    printf("  P %d %-20s time %8.4f s   info %d   max|x-1| %.1e\n",
+			   P, names[e], t[e], info[0], err[0]);
+		}
+		printf("  P %d speedup of the sequential engine %.2f\n", P, t[1] / t[0]);
+	    }
+	}
+
+	public static void main(String args[])
+	{
+	    int g2 = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+	    int g3 = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+	    int reps = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+	    run("2-D grid", Dlu_grid.grid(g2, 2), reps);
+	    run("3-D grid", Dlu_grid.grid(g3, 3), reps);
+	    run("small 2-D grid", Dlu_grid.grid(20, 2), reps);
+	}
+
+}
@@ -0,0 +1,190 @@
+package gov.lbl.superlu.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import gov.lbl.superlu.Dlu;
+import gov.lbl.superlu.Dlu_symbolic_cache;
+import gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache_t;
+import gov.lbl.superlu.Dlu_supermatrix.NCformat;
+import gov.lbl.superlu.Dlu_supermatrix.SuperMatrix;
+
+import static gov.lbl.superlu.Dlu.printf;
+
+import static gov.lbl.superlu.Dlu_get_perm_c.get_perm_c;
+import static gov.lbl.superlu.Dlu_pdgssv.pdgssv;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_CompCol_Matrix;
+import static gov.lbl.superlu.Dlu_pdutil.dCreate_Dense_Matrix;
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache_create;
+import static gov.lbl.superlu.Dlu_symbolic_cache.symbolic_cache_print;
+
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_DN;
+import static gov.lbl.superlu.Dlu_supermatrix.Stype_t.SLU_NC;
+import static gov.lbl.superlu.Dlu_supermatrix.Dtype_t.SLU_D;
+import static gov.lbl.superlu.Dlu_supermatrix.Mtype_t.SLU_GE;
+
+
+/*
+ * Solves 2-D grids by pdgssv() with a symbolic cache installed (see
+ * Dlu_symbolic_cache), spilling to a temporary directory, and checks
+ * when the cached ordering and analysis are used and that they are
+ * never stale:
+ *
+ *    o the first solve of a pattern only misses, the next only hits,
+ *      with the ordering computed without a cache;
+ *    o the same pattern with other values only hits;
+ *    o another pattern only misses;
+ *    o get_perm_c() after a change of AMD_AGGRESSIVE misses, and returns
+ *      the ordering computed under the new setting without a cache;
+ *    o a new cache on the same directory hits from disk;
+ *    o a new cache on the directory after its files were overwritten
+ *      misses and recomputes, rather than using them;
+ *    o a cache of capacity 1 misses again after another pattern.
+ *
+ * b = A * ones must be solved to max |x - 1| < 1e-10 every time.
+ *
+ * Usage: Dlu_symbolic_cache_check [2-D grid size]
+ */
+public class Dlu_symbolic_cache_check {
+
+	static final int SPEC = 6;
+
+	public static void main(String args[]) throws IOException
+	{
+	    int g = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+	    SuperMatrix A = Dlu_grid.grid(g, 2), A2 = scaled(A, 2.0);
+	    SuperMatrix C = Dlu_grid.grid(g, 2, 1, 3);
+	    File dir = Files.createTempDirectory("slu_symbolic").toFile();
+	    int ref[], perm_c[] = new int[A.ncol], hits, misses;
+	    symbolic_cache_t cache;
+	    boolean ok = true;
+
+	    ref = uncached(A);
+
+	    cache = install(symbolic_cache_create(16, dir.getPath()));
+	    ok &= run("first solve", cache, A, ref, false, true);
+	    ok &= run("same matrix", cache, A, ref, true, false);
+	    ok &= run("new values", cache, A2, ref, true, false);
+	    ok &= run("new pattern", cache, C, uncached(C), false, true);
+
+	    Dlu.AMD_AGGRESSIVE = !Dlu.AMD_AGGRESSIVE;
+	    ref = uncached(A);
+	    install(cache);
+	    misses = cache.misses;
+	    hits = cache.hits;
+	    get_perm_c(SPEC, A, perm_c);
+	    ok &= expect("changed setting", cache, Arrays.equals(perm_c, ref)
+			 && cache.misses == misses + 1 && cache.hits == hits);
+	    Dlu.AMD_AGGRESSIVE = !Dlu.AMD_AGGRESSIVE;
+	    ref = uncached(A);
+
+	    cache = install(symbolic_cache_create(16, dir.getPath()));
+	    ok &= run("from disk", cache, A, ref, true, false) && expect_disk(cache, true);
+
+	    for (File f : dir.listFiles()) overwrite(f);
+	    cache = install(symbolic_cache_create(16, dir.getPath()));
+	    ok &= run("overwritten files", cache, A, ref, false, true) && expect_disk(cache, false);
+
+	    cache = install(symbolic_cache_create(1, null));
+	    run("capacity 1", cache, A, ref, false, true);
+	    run("capacity 1", cache, C, uncached(C), false, true);
+	    install(cache);
+	    ok &= run("capacity 1, again", cache, A, ref, false, true);
+
+	    install(null);
+	    for (File f : dir.listFiles()) f.delete();
+	    dir.delete();
+	    printf("%s\n", ok ? "PASSED" : "FAILED");
+	    System.exit(ok ? 0 : 1);
+	}
+
+	static symbolic_cache_t install(symbolic_cache_t cache)
+	{
+	    Dlu_symbolic_cache.symbolic_cache = cache;
+	    return cache;
+	}
+
+	/* The ordering of A, without a cache. */
+	static int[] uncached(SuperMatrix A)
+	{
+	    int perm_c[] = new int[A.ncol];
+
+	    install(null);
+	    get_perm_c(SPEC, A, perm_c);
+	    return perm_c;
+	}
+
+	/*
+	 * Solve b = A * ones through the cache; its lookups must have all
+	 * hit (all missed if not hit), and the ordering must be ref.
+	 */
+	static boolean run(String test, symbolic_cache_t cache, SuperMatrix A,
+			   int ref[], boolean hit, boolean miss)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    int n = A.ncol, perm_c[] = new int[n], info[] = new int[1], j, p;
+	    int hits = cache.hits, misses = cache.misses;
+	    double b[] = new double[n], err = 0;
+	    SuperMatrix B = new SuperMatrix();
+	    boolean ok;
+
+	    install(cache);
+	    for (j = 0; j < n; ++j)
+		for (p = Astore.colptr[j]; p < Astore.colptr[j+1]; ++p)
+		    b[Astore.rowind[p]] += Astore.nzval[p];
+	    dCreate_Dense_Matrix(B, n, 1, b, n, SLU_DN, SLU_D, SLU_GE);
+	    get_perm_c(SPEC, A, perm_c);
+	    ok = Arrays.equals(perm_c, ref);
+	    pdgssv(1, A, perm_c, new int[n], new SuperMatrix(), new SuperMatrix(), B, info);
+	    for (j = 0; j < n; ++j) err = Math.max(err, Math.abs(b[j] - 1.0));
+	    ok &= info[0] == 0 && err < 1e-10
+		  && (cache.hits > hits) == hit && (cache.misses > misses) == miss;
+	    printf("  %-20s %-6s %d hits, %d misses, max|x-1| %.1e\n", test,
+		   ok ? "ok" : "WRONG", cache.hits - hits, cache.misses - misses, err);
+	    return ok;
+	}
+
+	static boolean expect(String test, symbolic_cache_t cache, boolean ok)
+	{
+	    printf("  %-20s %-6s ", test, ok ? "ok" : "WRONG");
+	    symbolic_cache_print(cache);
+	    return ok;
+	}
+
+	static boolean expect_disk(symbolic_cache_t cache, boolean disk)
+	{
+	    return expect("disk hits", cache, (cache.disk_hits > 0) == disk);
+	}
+
+	/* A with the values multiplied by s: the same pattern. */
+	static SuperMatrix scaled(SuperMatrix A, double s)
+	{
+	    NCformat Astore = (NCformat) A.Store;
+	    SuperMatrix As = new SuperMatrix();
+	    double nzval[] = new double[Astore.nnz];
+	    int k;
+
+	    for (k = 0; k < Astore.nnz; ++k) nzval[k] = s * Astore.nzval[k];
+	    dCreate_CompCol_Matrix(As, A.nrow, A.ncol, Astore.nnz, nzval,
+				   Astore.rowind.clone(), Astore.colptr.clone(),
+				   SLU_NC, SLU_D, SLU_GE);
+	    return As;
+	}
+
+	/* Overwrite a spilled entry past its header (magic, sizes and
+	   fingerprint), so that its vectors are garbage. */
+	static void overwrite(File f) throws IOException
+	{
+	    RandomAccessFile raf = new RandomAccessFile(f, "rw");
+	    byte junk[] = new byte[(int) raf.length() - 28];
+
+	    Arrays.fill(junk, (byte) 0x7f);
+	    raf.seek(28);
+	    raf.write(junk);
+	    raf.close();
+	}
+
+}